@@ -151,6 +151,58 @@ $aa$);
 call apply_audit_change(8, $aa$
 ALTER TYPE AuditEventTypeType ADD VALUE IF NOT EXISTS 'INFORMATION_DISCLOSURE' AFTER 'DISCOVER_OBJECT';
 $aa$);
+
+-- Drops the oldest monthly partition older than the cleanup cutoff, see postgres-audit.sql for details.
+call apply_audit_change(9, $aa$
+CREATE OR REPLACE FUNCTION audit_drop_partitions_before(cutoff TIMESTAMPTZ)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    partition RECORD;
+    tableSuffix TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(48);
+
+    FOR partition IN
+        SELECT c.relname AS tableName,
+            substring(pg_get_expr(c.relpartbound, c.oid) FROM 'FROM \(''([^'']+)''\)')::timestamptz AS lowerBound,
+            substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \(''([^'']+)''\)')::timestamptz AS upperBound
+        FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'ma_audit_event'::regclass
+            AND c.relname ~ '^ma_audit_event_[0-9]{6}$'
+        ORDER BY c.relname
+    LOOP
+        CONTINUE WHEN partition.upperBound IS NULL OR partition.upperBound > cutoff;
+
+        tableSuffix := substring(partition.tableName FROM '[0-9]{6}$');
+        RAISE NOTICE 'Dropping partitions for %, upper bound %', tableSuffix, partition.upperBound;
+
+        -- E.g. rows inserted before the monthly partitions of deltas and refs existed.
+        DELETE FROM ma_audit_delta_default
+            WHERE timestamp >= partition.lowerBound AND timestamp < partition.upperBound;
+        DELETE FROM ma_audit_ref_default
+            WHERE timestamp >= partition.lowerBound AND timestamp < partition.upperBound;
+
+        IF to_regclass('ma_audit_delta_' || tableSuffix) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE ma_audit_delta DETACH PARTITION %I', 'ma_audit_delta_' || tableSuffix);
+            EXECUTE format('DROP TABLE %I', 'ma_audit_delta_' || tableSuffix);
+        END IF;
+        IF to_regclass('ma_audit_ref_' || tableSuffix) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE ma_audit_ref DETACH PARTITION %I', 'ma_audit_ref_' || tableSuffix);
+            EXECUTE format('DROP TABLE %I', 'ma_audit_ref_' || tableSuffix);
+        END IF;
+        EXECUTE format('ALTER TABLE ma_audit_event DETACH PARTITION %I', partition.tableName);
+        EXECUTE format('DROP TABLE %I', partition.tableName);
+
+        -- One month per call, the caller commits and calls again.
+        RETURN 1;
+    END LOOP;
+
+    RETURN 0;
+END $$;
+$aa$);
 -- WRITE CHANGES ABOVE ^^
 -- IMPORTANT: update apply_audit_change number at the end of postgres-new-audit.sql
 -- to match the number used in the last change here!
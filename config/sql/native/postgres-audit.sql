@@ -340,6 +340,71 @@ In short, for our case PK and constraints are created automatically, but FK are
 
     END loop;
 END $$;
+
+/*
+Drops the oldest monthly partitions (see audit_create_monthly_partitions) that contain only audit events
+older than the cutoff, that is partitions with the upper bound lower or equal to the cutoff.
+Rows of the same month left in the default partitions are deleted first, as they would block
+detaching of the partitions. Then partitions of ma_audit_delta and ma_audit_ref for the same month
+are detached and dropped, and finally the ma_audit_event partition itself.
+Only one month is dropped per call: detaching takes ACCESS EXCLUSIVE locks on the partitioned tables,
+which are held until the end of the transaction, blocking all audit writes and reads.
+The caller should commit after each call and call again while it returns 1, e.g.:
+select audit_drop_partitions_before('2024-01-01'); -- repeat until it returns 0
+Default partitions are never dropped, older events in them (and in the partition containing the cutoff)
+must be deleted with normal DELETE.
+Runs under the transaction-level advisory lock 48, the same as the creation of future partitions
+by midPoint, so only one node maintains the partitions at a time.
+Returns 1 if a month was dropped, 0 if there is no month to drop.
+*/
+CREATE OR REPLACE FUNCTION audit_drop_partitions_before(cutoff TIMESTAMPTZ)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    partition RECORD;
+    tableSuffix TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(48);
+
+    FOR partition IN
+        SELECT c.relname AS tableName,
+            substring(pg_get_expr(c.relpartbound, c.oid) FROM 'FROM \(''([^'']+)''\)')::timestamptz AS lowerBound,
+            substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \(''([^'']+)''\)')::timestamptz AS upperBound
+        FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'ma_audit_event'::regclass
+            AND c.relname ~ '^ma_audit_event_[0-9]{6}$'
+        ORDER BY c.relname
+    LOOP
+        CONTINUE WHEN partition.upperBound IS NULL OR partition.upperBound > cutoff;
+
+        tableSuffix := substring(partition.tableName FROM '[0-9]{6}$');
+        RAISE NOTICE 'Dropping partitions for %, upper bound %', tableSuffix, partition.upperBound;
+
+        -- E.g. rows inserted before the monthly partitions of deltas and refs existed.
+        DELETE FROM ma_audit_delta_default
+            WHERE timestamp >= partition.lowerBound AND timestamp < partition.upperBound;
+        DELETE FROM ma_audit_ref_default
+            WHERE timestamp >= partition.lowerBound AND timestamp < partition.upperBound;
+
+        IF to_regclass('ma_audit_delta_' || tableSuffix) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE ma_audit_delta DETACH PARTITION %I', 'ma_audit_delta_' || tableSuffix);
+            EXECUTE format('DROP TABLE %I', 'ma_audit_delta_' || tableSuffix);
+        END IF;
+        IF to_regclass('ma_audit_ref_' || tableSuffix) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE ma_audit_ref DETACH PARTITION %I', 'ma_audit_ref_' || tableSuffix);
+            EXECUTE format('DROP TABLE %I', 'ma_audit_ref_' || tableSuffix);
+        END IF;
+        EXECUTE format('ALTER TABLE ma_audit_event DETACH PARTITION %I', partition.tableName);
+        EXECUTE format('DROP TABLE %I', partition.tableName);
+
+        -- One month per call, the caller commits and calls again.
+        RETURN 1;
+    END LOOP;
+
+    RETURN 0;
+END $$;
 -- endregion
 
 /*
@@ -355,6 +420,9 @@ It can be safely called multiple times, so you can run it again anytime in the f
 If you forget to run, audit events will go to default partition so no data is lost,
 however it may be complicated to organize it into proper partitions after the fact.
 
+Old partitions are dropped by the audit cleanup (see audit_drop_partitions_before) and midPoint
+also creates missing future partitions periodically if monthly partitions are used.
+
 Create past partitions if needed, e.g. for migration. E.g., for last 12 months (including current):
 call audit_create_monthly_partitions(-12);
 
@@ -374,4 +442,4 @@ limit 50;
 -- This is important to avoid applying any change more than once.
 -- Also update SqaleUtils.CURRENT_SCHEMA_AUDIT_CHANGE_NUMBER
 -- repo/repo-sqale/src/main/java/com/evolveum/midpoint/repo/sqale/SqaleUtils.java
-call apply_audit_change(7, $$ SELECT 1 $$, true);
+call apply_audit_change(9, $$ SELECT 1 $$, true);
@@ -461,6 +461,219 @@ BEGIN
 END;
 $$;
 $aa$);
+
+-- Work bucket table for activities (bucketStore = repositoryTable)
+call apply_change(26, $aa$
+CREATE TYPE WorkBucketStateType AS ENUM ('READY', 'DELEGATED', 'COMPLETE');
+
+-- Work buckets of activities that use the repository table as their bucket store
+-- (see WorkAllocationDefinitionType.bucketStore); the owner task keeps only the summary.
+-- Buckets are claimed by SELECT ... FOR UPDATE SKIP LOCKED, so the claimers do not block each other.
+CREATE TABLE m_task_work_bucket (
+    ownerOid UUID NOT NULL REFERENCES m_object_oid(oid) ON DELETE CASCADE,
+    activityPath TEXT NOT NULL,
+    bucketSetId UUID NOT NULL,
+    sequentialNumber INTEGER NOT NULL,
+    state WorkBucketStateType NOT NULL,
+    workerOid UUID,
+    bucket BYTEA NOT NULL,
+
+    PRIMARY KEY (bucketSetId, sequentialNumber)
+);
+
+CREATE INDEX m_task_work_bucket_ownerOid_idx ON m_task_work_bucket (ownerOid);
+CREATE INDEX m_task_work_bucket_state_idx ON m_task_work_bucket (bucketSetId, state, sequentialNumber);
+$aa$);
+
+-- Org closure is a table maintained incrementally by triggers instead of lazily refreshed materialized view
+call apply_change(27, $aa$
+DROP TRIGGER m_ref_object_parent_mark_refresh_tr ON m_ref_object_parent_org;
+DROP TRIGGER m_ref_object_parent_mark_refresh_trunc_tr ON m_ref_object_parent_org;
+DROP TRIGGER m_org_mark_refresh_tr ON m_org;
+DROP TRIGGER m_org_mark_refresh_trunc_tr ON m_org;
+DROP FUNCTION mark_org_closure_for_refresh();
+DROP FUNCTION mark_org_closure_for_refresh_org();
+DROP MATERIALIZED VIEW m_org_closure;
+
+/*
+Org closure table is maintained incrementally by triggers on m_ref_object_parent_org and m_org,
+in the same transaction as the parent-org reference or the org is changed.
+Closure contains also identity (org = org) entries because:
+* It makes the incremental maintenance easier, see m_org_closure_remove_edge.
+* It actually makes some query easier and requires AND instead of OR conditions.
+* While the table shows that o => o (=> means "is parent of"), this is not the semantics
+of isParent/ChildOf searches and they never return parameter OID as a result.
+The incremental maintenance assumes acyclic org hierarchy (which it should be anyway).
+Procedure m_refresh_org_closure(true) rebuilds the whole closure, it is used only for repairs.
+All closure changes are serialized using the transaction-level advisory lock 47.
+*/
+CREATE TABLE m_org_closure (
+    ancestor_oid UUID NOT NULL,
+    descendant_oid UUID NOT NULL,
+
+    PRIMARY KEY (ancestor_oid, descendant_oid)
+);
+
+CREATE INDEX m_org_closure_desc_asc_idx
+    ON m_org_closure (descendant_oid, ancestor_oid);
+
+-- Adds parent => child edge: all ancestors of the parent (and the parent itself)
+-- become ancestors of all the descendants of the child (and the child itself).
+CREATE OR REPLACE FUNCTION m_org_closure_add_edge(parent UUID, child UUID)
+    RETURNS void
+    LANGUAGE sql
+AS $$
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        SELECT a.oid, d.oid
+            FROM (SELECT parent AS oid
+                    UNION SELECT ancestor_oid FROM m_org_closure WHERE descendant_oid = parent) a,
+                (SELECT child AS oid
+                    UNION SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child) d
+    ON CONFLICT DO NOTHING;
+$$;
+
+-- Removes parent => child edge (the parent-org reference row must be already deleted).
+-- Pairs (ancestor of parent, descendant of child) are suspect, they are deleted first.
+-- Those still connected by other paths are then inserted back. For acyclic graph it is enough
+-- to look for paths of length up to 3 in the "trusty" relation consisting of the remaining closure,
+-- the remaining edges and identities (Dong et al., Maintaining transitive closure of graphs in SQL).
+CREATE OR REPLACE FUNCTION m_org_closure_remove_edge(parent UUID, child UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    ancestors UUID[];
+    descendants UUID[];
+BEGIN
+    -- The edge may still exist, e.g. the reference with a different relation.
+    IF EXISTS(SELECT 1 FROM m_ref_object_parent_org WHERE ownerOid = child AND targetOid = parent) THEN
+        RETURN;
+    END IF;
+
+    ancestors := ARRAY(SELECT parent
+        UNION SELECT ancestor_oid FROM m_org_closure WHERE descendant_oid = parent);
+    descendants := ARRAY(SELECT child
+        UNION SELECT descendant_oid FROM m_org_closure WHERE ancestor_oid = child);
+
+    DELETE FROM m_org_closure
+        WHERE ancestor_oid = ANY(ancestors)
+            AND descendant_oid = ANY(descendants)
+            AND ancestor_oid <> descendant_oid;
+
+    WITH trusty (anc, des) AS NOT MATERIALIZED (
+        SELECT ancestor_oid, descendant_oid FROM m_org_closure
+        UNION ALL
+        SELECT targetOid, ownerOid FROM m_ref_object_parent_org WHERE ownerType = 'ORG'
+        UNION ALL
+        -- the parent may not exist (yet), so it may not have the identity row
+        SELECT oid, oid FROM unnest(ancestors) oid
+    )
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+        SELECT DISTINCT t1.anc, t3.des
+            FROM trusty t1
+                JOIN trusty t2 ON t2.anc = t1.des
+                JOIN trusty t3 ON t3.anc = t2.des
+            WHERE t1.anc = ANY(ancestors)
+                AND t3.des = ANY(descendants)
+                AND t1.anc <> t3.des
+    ON CONFLICT DO NOTHING;
+END $$;
+
+-- The trigger for m_ref_object_parent_org that updates the closure for parent-org references of orgs.
+CREATE OR REPLACE FUNCTION m_org_closure_update_for_ref()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        DELETE FROM m_org_closure WHERE ancestor_oid <> descendant_oid;
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ownerType = 'ORG' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_remove_edge(OLD.targetOid, OLD.ownerOid);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.ownerType = 'ORG' THEN
+        PERFORM pg_advisory_xact_lock(47);
+        PERFORM m_org_closure_add_edge(NEW.targetOid, NEW.ownerOid);
+    END IF;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER m_ref_object_parent_org_closure_tr
+    AFTER INSERT OR UPDATE OR DELETE ON m_ref_object_parent_org
+    FOR EACH ROW EXECUTE FUNCTION m_org_closure_update_for_ref();
+CREATE TRIGGER m_ref_object_parent_org_closure_trunc_tr
+    AFTER TRUNCATE ON m_ref_object_parent_org
+    FOR EACH STATEMENT EXECUTE FUNCTION m_org_closure_update_for_ref();
+
+-- The trigger for m_org that maintains the identity rows.
+-- Update is not necessary, it does not change relations between orgs.
+-- If it does, it is handled by trigger on m_ref_object_parent_org.
+CREATE OR REPLACE FUNCTION m_org_closure_update_for_org()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO m_org_closure VALUES (NEW.oid, NEW.oid)
+            ON CONFLICT DO NOTHING;
+    ELSIF TG_OP = 'DELETE' THEN
+        DELETE FROM m_org_closure WHERE ancestor_oid = OLD.oid AND descendant_oid = OLD.oid;
+    ELSE -- TRUNCATE
+        DELETE FROM m_org_closure;
+    END IF;
+
+    -- after trigger returns null
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER m_org_closure_tr
+    AFTER INSERT OR DELETE ON m_org
+    FOR EACH ROW EXECUTE FUNCTION m_org_closure_update_for_org();
+CREATE TRIGGER m_org_closure_trunc_tr
+    AFTER TRUNCATE ON m_org
+    FOR EACH STATEMENT EXECUTE FUNCTION m_org_closure_update_for_org();
+
+-- This procedure rebuilds the whole closure, it is called from the application code to repair it.
+-- Without force it does nothing, as the closure is maintained incrementally by the triggers above.
+-- (Before, it was refreshed lazily when flagged by the triggers; the flag is only cleaned up now.)
+CREATE OR REPLACE PROCEDURE m_refresh_org_closure(force boolean = false)
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF force THEN
+        PERFORM pg_advisory_xact_lock(47);
+        DELETE FROM m_org_closure;
+        INSERT INTO m_org_closure (ancestor_oid, descendant_oid)
+            WITH RECURSIVE org_h (
+                ancestor_oid, -- ref.targetoid
+                descendant_oid --ref.ownerOid
+            ) AS (
+                -- non-recursive term: identity lines (o => o) for all orgs
+                SELECT o.oid, o.oid FROM m_org o
+                UNION
+                -- recursive (iterative) term:
+                -- Generate their parents (anc => desc, that is target => owner), => means "is parent of".
+                SELECT par.targetoid, chi.descendant_oid -- leaving original child there generates closure
+                    FROM m_ref_object_parent_org as par, org_h as chi
+                    WHERE par.ownerOid = chi.ancestor_oid
+            )
+            SELECT * FROM org_h;
+    END IF;
+    DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
+END;
+$$;
+
+-- initial population of the closure table
+CALL m_refresh_org_closure(true);
+$aa$);
+
 ---
 -- WRITE CHANGES ABOVE ^^
 -- IMPORTANT: update apply_change number at the end of postgres-new.sql
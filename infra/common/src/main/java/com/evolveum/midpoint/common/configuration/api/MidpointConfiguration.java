@@ -47,6 +47,8 @@ public interface MidpointConfiguration {
     String WEB_APP_CONFIGURATION = "midpoint.webApplication";
     String WORKFLOW_CONFIGURATION = "midpoint.workflow";
     String INTERNALS_CONFIGURATION = "midpoint.internals";
+    String CLUSTER_CACHE_INVALIDATION_CONFIGURATION = "midpoint.clusterCacheInvalidation";
+    String SCRIPT_CACHE_CONFIGURATION = "midpoint.scriptCache";
 
     /**
      * Reference to midpoint-system.properties generated in system-init component.
@@ -15,6 +15,7 @@ import com.evolveum.midpoint.schema.result.OperationResultStatus;
 import com.evolveum.midpoint.schema.statistics.ProvisioningOperation;
 
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ConnIdOperationRecordType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ConnIdReadAheadStatisticsType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultStatusType;
@@ -40,6 +41,12 @@ public class ConnIdOperation {
     private OperationResultStatus status;
     private String message;
 
+    /** Number of objects returned by the connector (for search operations). */
+    private Integer size;
+
+    /** Statistics of the read-ahead buffer; present only if the (search) operation used it. */
+    private ReadAheadStatistics readAheadStatistics;
+
     private ConnIdOperation(
             @NotNull String identifier,
             @NotNull ProvisioningOperation operation,
@@ -125,6 +132,22 @@ public class ConnIdOperation {
         this.message = message;
     }
 
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+
+    public ReadAheadStatistics getReadAheadStatistics() {
+        return readAheadStatistics;
+    }
+
+    public void setReadAheadStatistics(ReadAheadStatistics readAheadStatistics) {
+        this.readAheadStatistics = readAheadStatistics;
+    }
+
     @Override
     public String toString() {
         return "ConnIdOperation{" +
@@ -137,6 +160,8 @@ public class ConnIdOperation {
                 ", endTimestamp=" + endTimestamp +
                 ", result=" + status +
                 ", message='" + message + '\'' +
+                ", size=" + size +
+                ", readAheadStatistics=" + readAheadStatistics +
                 '}';
     }
 
@@ -186,16 +211,43 @@ public class ConnIdOperation {
                 .operation(String.valueOf(operation))
                 .status(getStatusBean())
                 .message(message)
-                // TODO size
+                .size(size)
                 .startTimestamp(XmlTypeConverter.createXMLGregorianCalendar(startTimestamp))
                 .endTimestamp(XmlTypeConverter.createXMLGregorianCalendar(endTimestamp))
-                .duration((double) getNetRunningTime()); // TODO
+                .duration((double) getNetRunningTime()) // TODO
+                .readAhead(readAheadStatistics != null ? readAheadStatistics.toBean() : null);
     }
 
     public boolean isNotFatalError() {
         return status != OperationResultStatus.FATAL_ERROR;
     }
 
+    /**
+     * How the read-ahead buffer of a search operation was used.
+     *
+     * @param bufferSize Capacity of the buffer.
+     * @param maxOccupancy Maximal number of objects found in the buffer when midPoint took an object from it.
+     * @param averageOccupancy Average number of objects found in the buffer when midPoint took an object from it.
+     * @param producerStallTime Time (in milliseconds) the connector waited because the buffer was full.
+     * @param consumerStallTime Time (in milliseconds) midPoint waited because the buffer was empty.
+     */
+    public record ReadAheadStatistics(
+            int bufferSize,
+            int maxOccupancy,
+            double averageOccupancy,
+            long producerStallTime,
+            long consumerStallTime) {
+
+        public ConnIdReadAheadStatisticsType toBean() {
+            return new ConnIdReadAheadStatisticsType()
+                    .bufferSize(bufferSize)
+                    .maxOccupancy(maxOccupancy)
+                    .averageOccupancy(averageOccupancy)
+                    .producerStallTime(producerStallTime)
+                    .consumerStallTime(consumerStallTime);
+        }
+    }
+
     public static final class ConnIdOperationBuilder {
         private String identifier;
         private ProvisioningOperation operation;
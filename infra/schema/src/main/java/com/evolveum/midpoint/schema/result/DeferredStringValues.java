@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.schema.result;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.Containerable;
+import com.evolveum.midpoint.prism.Freezable;
+
+/**
+ * Parameter (context, return) values of {@link OperationResult} that are converted to strings only when
+ * they are needed, i.e. when the result is serialized, dumped, compared, and so on.
+ *
+ * Used for minor results, which are mostly successful and then thrown away during result cleanup,
+ * so the (often expensive) `toString` of objects, deltas or queries is not needed at all.
+ *
+ * Only immutable (frozen) values are deferred, see {@link #canDefer(Object)}. A mutable value would be stringified
+ * in its state at the time of the first access (possibly while being modified by another thread), and it would be
+ * kept reachable for the whole life of the result. The collection is copied, so its later changes are not visible.
+ *
+ * The list is read-only. It is serialized as a plain {@link ArrayList} of strings.
+ */
+class DeferredStringValues extends AbstractList<String> implements Serializable {
+
+    @Serial private static final long serialVersionUID = 1L;
+
+    /** Single value or a collection of values, see {@link #sourceIsCollection}. Cleared after stringification. */
+    private transient Object source;
+    private final transient boolean sourceIsCollection;
+
+    private List<String> strings;
+
+    private DeferredStringValues(@NotNull Object source, boolean sourceIsCollection) {
+        this.source = source;
+        this.sourceIsCollection = sourceIsCollection;
+    }
+
+    static @NotNull DeferredStringValues of(@NotNull Object value) {
+        return new DeferredStringValues(value, false);
+    }
+
+    static @NotNull DeferredStringValues ofCollection(@NotNull Collection<?> values) {
+        return new DeferredStringValues(new ArrayList<>(values), true);
+    }
+
+    /** Returns true if the value cannot change, so it can be stringified later. */
+    static boolean canDefer(Object value) {
+        return value == null
+                || value instanceof Freezable freezable && freezable.isImmutable()
+                || value instanceof Containerable containerable && containerable.asPrismContainerValue().isImmutable();
+    }
+
+    static boolean canDeferAll(@NotNull Collection<?> values) {
+        for (Object value : values) {
+            if (!canDefer(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> getStrings() {
+        if (strings == null) {
+            List<String> converted;
+            if (sourceIsCollection) {
+                Collection<?> values = (Collection<?>) source;
+                converted = new ArrayList<>(values.size());
+                for (Object value : values) {
+                    converted.add(value != null ? value.toString() : null);
+                }
+            } else {
+                converted = new ArrayList<>(1);
+                converted.add(source.toString());
+            }
+            strings = converted;
+            source = null;
+        }
+        return strings;
+    }
+
+    @Override
+    public String get(int index) {
+        return getStrings().get(index);
+    }
+
+    @Override
+    public int size() {
+        if (strings != null) {
+            return strings.size();
+        } else {
+            return sourceIsCollection ? ((Collection<?>) source).size() : 1;
+        }
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new ArrayList<>(getStrings());
+    }
+}
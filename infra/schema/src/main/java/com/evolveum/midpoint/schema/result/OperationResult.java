@@ -234,7 +234,7 @@ public class OperationResult
     private Map<String, Collection<String>> params;
     private Map<String, Collection<String>> context;
     private Map<String, Collection<String>> returns;
-    @NotNull private final List<String> qualifiers = new ArrayList<>();
+    private List<String> qualifiers; // allocated lazily, as the following lists
 
     private long token;
     private String messageCode;
@@ -259,7 +259,7 @@ public class OperationResult
     private Long cpuMicroseconds;
     private Long invocationId;
 
-    private final List<LogSegmentType> logSegments = new ArrayList<>();
+    private List<LogSegmentType> logSegments;
 
     /** See {@link #markExceptionRecorded()}. */
     private boolean exceptionRecorded;
@@ -294,7 +294,7 @@ public class OperationResult
      */
     private TraceDictionaryType extractedDictionary; // NOT SERIALIZED
 
-    private final List<TraceType> traces = new ArrayList<>();
+    private List<TraceType> traces;
 
     /** The operation monitoring configuration for the current thread when the current operation started. */
     private OperationMonitoringConfiguration operationMonitoringConfigurationAtStart;
@@ -374,7 +374,6 @@ public class OperationResult
         this.userFriendlyMessage = userFriendlyMessage;
         this.cause = cause;
         this.subresults = subresults;
-        this.details = new ArrayList<>();
     }
 
     public static OperationResult keepRootOnly(OperationResult result) {
@@ -462,17 +461,30 @@ public class OperationResult
                 LevelOverrideTurboFilter.overrideLogging(loggingOverrideConfiguration);
                 startedLoggingOverride = true;
             }
-            logRecorder = LogRecorder.open(logSegments, parentLogRecorder, this);
+            logRecorder = LogRecorder.open(getLogSegments(), parentLogRecorder, this);
         }
     }
 
     private Object[] createArguments() {
-        List<String> arguments = new ArrayList<>();
-        getParams().forEach((key, value) -> arguments.add(key + " => " + value));       // todo what with large values?
-        getContext().forEach((key, value) -> arguments.add("c:" + key + " => " + value));
+        List<Object> arguments = new ArrayList<>();
+        // Formatted only if the invocation is logged, so deferred values are not stringified needlessly.
+        if (params != null) {
+            params.forEach((key, value) -> arguments.add(new InvocationArgument("", key, value)));
+        }
+        if (context != null) {
+            context.forEach((key, value) -> arguments.add(new InvocationArgument("c:", key, value)));
+        }
         return arguments.toArray();
     }
 
+    private record InvocationArgument(String prefix, String name, Collection<String> values) {
+
+        @Override
+        public String toString() {
+            return prefix + name + " => " + values; // todo what with large values?
+        }
+    }
+
     public OperationResult createSubresult(String operation) {
         return createSubresult(operation, false, new Object[0]);
     }
@@ -496,7 +508,7 @@ public class OperationResult
         if (invocationRecord != null) {
             // This is not quite clean. We should report the exception via processException method - but that does not allow
             // showing return values that can be present in operation result. So this is a hack until InvocationRecord is fixed.
-            invocationRecord.processReturnValue(getReturns(), cause);
+            invocationRecord.processReturnValue(returns != null ? returns : Map.of(), cause);
             invocationRecord.afterCall();
             microseconds = invocationRecord.getElapsedTimeMicros();
             cpuMicroseconds = invocationRecord.getCpuTimeMicros();
@@ -1093,7 +1105,7 @@ public class OperationResult
     }
 
     public void addTrace(TraceType trace) {
-        traces.add(trace);
+        getTraces().add(trace);
     }
 
     @Override
@@ -1103,7 +1115,7 @@ public class OperationResult
     }
 
     public <T> T getFirstTrace(Class<T> traceClass) {
-        Optional<TraceType> first = traces.stream().filter(t -> traceClass.isAssignableFrom(t.getClass())).findFirst();
+        Optional<TraceType> first = emptyIfNull(traces).stream().filter(t -> traceClass.isAssignableFrom(t.getClass())).findFirst();
         if (first.isPresent()) {
             //noinspection unchecked
             return (T) first.get();
@@ -1333,7 +1345,7 @@ public class OperationResult
 
     @Override
     public OperationResult addQualifier(String value) {
-        qualifiers.add(value);
+        getQualifiers().add(value);
         return this;
     }
 
@@ -1345,13 +1357,13 @@ public class OperationResult
 
     @Override
     public OperationResult addParam(String name, PrismObject<? extends ObjectType> value) {
-        getParams().put(name, collectionize(stringify(value)));
+        getParams().put(name, stringifyDeferrable(value));
         return this;
     }
 
     @Override
     public OperationResult addParam(String name, ObjectType value) {
-        getParams().put(name, collectionize(stringify(value)));
+        getParams().put(name, stringifyDeferrable(value));
         return this;
     }
 
@@ -1398,13 +1410,13 @@ public class OperationResult
 
     @Override
     public OperationResult addParam(String name, ObjectQuery value) {
-        getParams().put(name, collectionize(stringify(value)));
+        getParams().put(name, stringifyDeferrable(value));
         return this;
     }
 
     @Override
     public OperationResult addParam(String name, ObjectDelta<?> value) {
-        getParams().put(name, collectionize(stringify(value)));
+        getParams().put(name, stringifyDeferrable(value));
         return this;
     }
 
@@ -1416,13 +1428,13 @@ public class OperationResult
 
     @Override
     public OperationResult addArbitraryObjectAsParam(String paramName, Object paramValue) {
-        getParams().put(paramName, collectionize(stringify(paramValue)));
+        getParams().put(paramName, stringifyDeferrable(paramValue));
         return this;
     }
 
     @Override
     public OperationResult addArbitraryObjectCollectionAsParam(String name, Collection<?> value) {
-        getParams().put(name, stringifyCol(value));
+        getParams().put(name, stringifyColDeferrable(value));
         return this;
     }
 
@@ -1445,13 +1457,13 @@ public class OperationResult
 
     @Override
     public OperationResult addContext(String name, PrismObject<? extends ObjectType> value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, stringifyDeferrable(value));
         return this;
     }
 
     @Override
     public OperationResult addContext(String name, ObjectType value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, stringifyDeferrable(value));
         return this;
     }
 
@@ -1498,13 +1510,13 @@ public class OperationResult
 
     @Override
     public OperationResult addContext(String name, ObjectQuery value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, stringifyDeferrable(value));
         return this;
     }
 
     @Override
     public OperationResult addContext(String name, ObjectDelta<?> value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, stringifyDeferrable(value));
         return this;
     }
 
@@ -1516,13 +1528,13 @@ public class OperationResult
 
     @Override
     public OperationResult addArbitraryObjectAsContext(String name, Object value) {
-        getContext().put(name, collectionize(stringify(value)));
+        getContext().put(name, stringifyDeferrable(value));
         return this;
     }
 
     @Override
     public OperationResult addArbitraryObjectCollectionAsContext(String paramName, Collection<?> paramValue) {
-        getContext().put(paramName, stringifyCol(paramValue));
+        getContext().put(paramName, stringifyColDeferrable(paramValue));
         return this;
     }
 
@@ -1561,11 +1573,11 @@ public class OperationResult
     }
 
     public void addReturn(String name, PrismObject<? extends ObjectType> value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, stringifyDeferrable(value));
     }
 
     public void addReturn(String name, ObjectType value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, stringifyDeferrable(value));
     }
 
     public void addReturn(String name, Boolean value) {
@@ -1598,11 +1610,11 @@ public class OperationResult
     }
 
     public void addReturn(String name, ObjectQuery value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, stringifyDeferrable(value));
     }
 
     public void addReturn(String name, ObjectDelta<?> value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, stringifyDeferrable(value));
     }
 
     public void addReturn(String name, String... values) {
@@ -1610,11 +1622,11 @@ public class OperationResult
     }
 
     public void addArbitraryObjectAsReturn(String name, Object value) {
-        getReturns().put(name, collectionize(stringify(value)));
+        getReturns().put(name, stringifyDeferrable(value));
     }
 
     public void addArbitraryObjectCollectionAsReturn(String paramName, Collection<?> paramValue) {
-        getReturns().put(paramName, stringifyCol(paramValue));
+        getReturns().put(paramName, stringifyColDeferrable(paramValue));
     }
 
     private String stringify(Object value) {
@@ -1625,6 +1637,26 @@ public class OperationResult
         }
     }
 
+    /**
+     * Stringifies a value that may be expensive to convert (object, delta, query, ...). For minor results
+     * the conversion of immutable values is deferred until the value is needed, see {@link DeferredStringValues}.
+     */
+    private Collection<String> stringifyDeferrable(Object value) {
+        if (value != null && isMinor() && DeferredStringValues.canDefer(value)) {
+            return DeferredStringValues.of(value);
+        } else {
+            return collectionize(stringify(value));
+        }
+    }
+
+    private Collection<String> stringifyColDeferrable(Collection<?> values) {
+        if (values != null && isMinor() && DeferredStringValues.canDeferAll(values)) {
+            return DeferredStringValues.ofCollection(values);
+        } else {
+            return stringifyCol(values);
+        }
+    }
+
     private Collection<String> collectionize(String value) {
         Collection<String> out = new ArrayList<>(1);
         out.add(value);
@@ -1963,10 +1995,13 @@ public class OperationResult
 
     public void appendDetail(String detailLine) {
         // May be switched to a more structured method later
-        details.add(detailLine);
+        getDetail().add(detailLine);
     }
 
     public List<String> getDetail() {
+        if (details == null) {
+            details = new ArrayList<>();
+        }
         return details;
     }
 
@@ -1999,7 +2034,9 @@ public class OperationResult
                 bean.getMessageCode(), bean.getMessage(), localizableMessage, null,
                 subresults);
         result.operationKind(bean.getOperationKind());
-        result.getQualifiers().addAll(bean.getQualifier());
+        if (!bean.getQualifier().isEmpty()) {
+            result.getQualifiers().addAll(bean.getQualifier());
+        }
         result.setImportance(bean.getImportance());
         result.setAsynchronousOperationReference(bean.getAsynchronousOperationReference());
         if (bean.getCount() != null) {
@@ -2017,7 +2054,9 @@ public class OperationResult
         result.setMicroseconds(bean.getMicroseconds());
         result.setCpuMicroseconds(bean.getCpuMicroseconds());
         result.setInvocationId(bean.getInvocationId());
-        result.logSegments.addAll(bean.getLog());
+        if (!bean.getLog().isEmpty()) {
+            result.getLogSegments().addAll(bean.getLog());
+        }
         result.setMonitoredOperations(bean.getMonitoredOperations());
         return result;
     }
@@ -2065,11 +2104,12 @@ public class OperationResult
         bean.setMessage(opResult.getMessage());
         bean.setMessageCode(opResult.getMessageCode());
 
-        if (opResult.getCause() != null || !opResult.details.isEmpty()) {
+        boolean hasDetails = opResult.details != null && !opResult.details.isEmpty();
+        if (opResult.getCause() != null || hasDetails) {
             StringBuilder detailSb = new StringBuilder();
 
             // Record text messages in details (if present)
-            if (!opResult.details.isEmpty()) {
+            if (hasDetails) {
                 for (String line : opResult.details) {
                     detailSb.append(line);
                     detailSb.append("\n");
@@ -2121,8 +2161,8 @@ public class OperationResult
         bean.setMicroseconds(opResult.microseconds);
         bean.setCpuMicroseconds(opResult.cpuMicroseconds);
         bean.setInvocationId(opResult.invocationId);
-        bean.getLog().addAll(opResult.logSegments); // consider cloning here
-        bean.getTrace().addAll(opResult.traces); // consider cloning here
+        bean.getLog().addAll(emptyIfNull(opResult.logSegments)); // consider cloning here
+        bean.getTrace().addAll(emptyIfNull(opResult.traces)); // consider cloning here
         bean.setMonitoredOperations(cloneCloneable(opResult.getMonitoredOperations()));
         return bean;
     }
@@ -2451,7 +2491,7 @@ public class OperationResult
             sb.append("\n");
         }
 
-        for (String line : details) {
+        for (String line : emptyIfNull(details)) {
             DebugUtil.indentDebugDump(sb, indent + 2);
             sb.append("[d]");
             sb.append(line);
@@ -2643,7 +2683,7 @@ public class OperationResult
 
         clone.operationKind = operationKind;
         clone.status = status;
-        clone.qualifiers.addAll(qualifiers);
+        clone.qualifiers = qualifiers != null ? new ArrayList<>(qualifiers) : null;
         clone.params = cloneParams(params, full);
         clone.context = cloneParams(context, full);
         clone.returns = cloneParams(returns, full);
@@ -2675,7 +2715,7 @@ public class OperationResult
         clone.microseconds = microseconds;
         clone.cpuMicroseconds = cpuMicroseconds;
         clone.invocationId = invocationId;
-        clone.traces.addAll(CloneUtil.cloneCollectionMembers(traces));
+        clone.traces = traces != null ? new ArrayList<>(CloneUtil.cloneCollectionMembers(traces)) : null;
 
         clone.building = building;
         clone.futureParent = futureParent;
@@ -2785,7 +2825,7 @@ public class OperationResult
                 Objects.equals(invocationId, result.invocationId) &&
                 Objects.equals(tracingProfile, result.tracingProfile) &&
                 Objects.equals(operation, result.operation) &&
-                Objects.equals(qualifiers, result.qualifiers) &&
+                Objects.equals(emptyIfNull(qualifiers), emptyIfNull(result.qualifiers)) &&
                 status == result.status &&
                 Objects.equals(params, result.params) &&
                 Objects.equals(context, result.context) &&
@@ -2795,18 +2835,18 @@ public class OperationResult
                 Objects.equals(userFriendlyMessage, result.userFriendlyMessage) &&
                 Objects.equals(cause, result.cause) &&
                 Objects.equals(subresults, result.subresults) &&
-                Objects.equals(details, result.details) &&
-                Objects.equals(traces, result.traces) &&
+                Objects.equals(emptyIfNull(details), emptyIfNull(result.details)) &&
+                Objects.equals(emptyIfNull(traces), emptyIfNull(result.traces)) &&
                 Objects.equals(asynchronousOperationReference, result.asynchronousOperationReference);
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(
-                operation, qualifiers, status, params, context, returns, token, messageCode,
-                message, userFriendlyMessage, cause, count, hiddenRecordsCount, subresults, details,
+                operation, emptyIfNull(qualifiers), status, params, context, returns, token, messageCode,
+                message, userFriendlyMessage, cause, count, hiddenRecordsCount, subresults, emptyIfNull(details),
                 summarizeErrors, summarizePartialErrors, summarizeSuccesses, building, start, end,
-                microseconds, cpuMicroseconds, invocationId, traces, asynchronousOperationReference);
+                microseconds, cpuMicroseconds, invocationId, emptyIfNull(traces), asynchronousOperationReference);
     }
 
     public Long getStart() {
@@ -2858,6 +2898,9 @@ public class OperationResult
     }
 
     public List<TraceType> getTraces() {
+        if (traces == null) {
+            traces = new ArrayList<>();
+        }
         return traces;
     }
 
@@ -2870,6 +2913,9 @@ public class OperationResult
     }
 
     public @NotNull List<String> getQualifiers() {
+        if (qualifiers == null) {
+            qualifiers = new ArrayList<>();
+        }
         return qualifiers;
     }
 
@@ -2882,6 +2928,9 @@ public class OperationResult
     }
 
     public List<LogSegmentType> getLogSegments() {
+        if (logSegments == null) {
+            logSegments = new ArrayList<>();
+        }
         return logSegments;
     }
 
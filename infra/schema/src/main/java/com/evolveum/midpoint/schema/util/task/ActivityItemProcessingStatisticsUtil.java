@@ -281,6 +281,17 @@ public class ActivityItemProcessingStatisticsUtil {
         addProcessed(sum.getProcessed(), delta.getProcessed());
         addCurrent(sum.getCurrent(), delta.getCurrent());
         addRunRecords(sum, delta);
+        addWorkerTimes(sum, delta);
+    }
+
+    private static void addWorkerTimes(@NotNull ActivityItemProcessingStatisticsType sum,
+            @NotNull ActivityItemProcessingStatisticsType delta) {
+        if (delta.getQueueWaitTime() != null) {
+            sum.setQueueWaitTime(or0(sum.getQueueWaitTime()) + delta.getQueueWaitTime());
+        }
+        if (delta.getWorkerIdleTime() != null) {
+            sum.setWorkerIdleTime(or0(sum.getWorkerIdleTime()) + delta.getWorkerIdleTime());
+        }
     }
 
     private static void addRunRecords(@NotNull ActivityItemProcessingStatisticsType sum,
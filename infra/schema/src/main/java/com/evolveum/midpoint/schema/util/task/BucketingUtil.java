@@ -11,6 +11,7 @@ import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -60,10 +61,12 @@ public class BucketingUtil {
     }
 
     static int getCompleteBucketsNumber(ActivityBucketingStateType bucketing) {
-        if (bucketing != null) {
-            return getCompleteBucketsNumber(bucketing.getBucket());
-        } else {
+        if (bucketing == null) {
             return 0;
+        } else if (isInBucketTable(bucketing)) {
+            return Objects.requireNonNullElse(bucketing.getNumberOfCompleteBuckets(), 0);
+        } else {
+            return getCompleteBucketsNumber(bucketing.getBucket());
         }
     }
 
@@ -186,6 +189,14 @@ public class BucketingUtil {
         return bucketing != null && Boolean.TRUE.equals(bucketing.isScavenging());
     }
 
+    /**
+     * Are the buckets kept in the repository bucket table (instead of the task)?
+     * Then the task holds only the summary information.
+     */
+    public static boolean isInBucketTable(@Nullable ActivityBucketingStateType bucketing) {
+        return bucketing != null && bucketing.getBucketSetId() != null;
+    }
+
     public static boolean isWorkComplete(ActivityStateType state) {
         return state != null && state.getBucketing() != null && Boolean.TRUE.equals(state.getBucketing().isWorkComplete());
     }
@@ -11,11 +11,13 @@ import static org.testng.AssertJUnit.assertEquals;
 import static com.evolveum.midpoint.prism.util.PrismTestUtil.getPrismContext;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultImportanceType.MAJOR;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.testng.annotations.Test;
 
+import com.evolveum.midpoint.prism.Freezable;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -208,6 +210,94 @@ public class TestOperationResult extends AbstractSchemaTest {
         checkResultConversion(root, true);
     }
 
+    @Test
+    public void testDeferredParamsInMinorResult() throws Exception {
+        given("minor and normal subresult");
+        OperationResult root = new OperationResult("dummy");
+        OperationResult minor = root.createMinorSubresult("minor");
+        OperationResult normal = root.createSubresult("normal");
+        CountingToString minorValue = new CountingToString("minor-value");
+        CountingToString normalValue = new CountingToString("normal-value");
+        minorValue.freeze();
+        normalValue.freeze();
+
+        when("expensive immutable values are added as parameters");
+        minor.addArbitraryObjectAsParam("value", minorValue);
+        minor.addArbitraryObjectCollectionAsContext("values", List.of(minorValue, minorValue));
+        normal.addArbitraryObjectAsParam("value", normalValue);
+
+        then("values of the minor result are not stringified yet");
+        assertEquals("Wrong # of toString calls for minor result", 0, minorValue.count);
+        assertEquals("Wrong # of toString calls for normal result", 1, normalValue.count);
+
+        when("results are converted to beans (twice)");
+        minor.recordSuccess();
+        normal.recordSuccess();
+        root.computeStatus();
+        checkResultConversion(root, true);
+        OperationResultType bean = root.createOperationResultType();
+
+        then("values are stringified once, with correct content");
+        assertEquals("Wrong # of toString calls for minor result", 3, minorValue.count);
+        assertEquals("Wrong parameter value", "minor-value", minor.getParamSingle("value"));
+        assertEquals("Wrong context values", List.of("minor-value", "minor-value"), minor.getContext().get("values"));
+        assertEquals("Wrong # of subresults in bean", 2, bean.getPartialResults().size());
+        assertEquals("Wrong # of toString calls for normal result", 1, normalValue.count);
+    }
+
+    @Test
+    public void testMutableParamsInMinorResult() {
+        given("minor result");
+        OperationResult root = new OperationResult("dummy");
+        OperationResult minor = root.createMinorSubresult("minor");
+        CountingToString mutableValue = new CountingToString("before");
+        CountingToString frozenValue = new CountingToString("frozen");
+        frozenValue.freeze();
+        List<Object> values = new ArrayList<>(List.of(frozenValue));
+
+        when("mutable value and a mutable collection of frozen values are added, and then changed");
+        minor.addArbitraryObjectAsParam("value", mutableValue);
+        minor.addArbitraryObjectCollectionAsContext("values", values);
+        mutableValue.value = "after";
+        values.add(frozenValue);
+
+        then("the mutable value is stringified immediately, in its state at the time of adding");
+        assertEquals("Wrong # of toString calls for mutable value", 1, mutableValue.count);
+        assertEquals("Wrong parameter value", "before", minor.getParamSingle("value"));
+
+        and("the collection is not affected by the later change");
+        assertEquals("Wrong # of toString calls for frozen value", 0, frozenValue.count);
+        assertEquals("Wrong context values", List.of("frozen"), minor.getContext().get("values"));
+    }
+
+    /** Counts calls of {@link #toString()}, as it is considered expensive. */
+    private static class CountingToString implements Freezable {
+
+        private String value;
+        private int count;
+        private boolean immutable;
+
+        private CountingToString(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            count++;
+            return value;
+        }
+
+        @Override
+        public boolean isImmutable() {
+            return immutable;
+        }
+
+        @Override
+        public void freeze() {
+            immutable = true;
+        }
+    }
+
     private void checkResultConversion(OperationResult result, boolean assertEquals) throws SchemaException {
         when();
         OperationResultType resultType = result.createOperationResultType();
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import static com.evolveum.midpoint.certification.impl.AccessCertificationOpenNextStageActivityHandler.findStageBeingOpened;
+import static com.evolveum.midpoint.schema.result.OperationResultStatus.FATAL_ERROR;
+import static com.evolveum.midpoint.task.api.TaskRunResult.TaskRunResultStatus.PERMANENT_ERROR;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.Containerable;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.repo.common.activity.run.*;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Common superclass for the sub-activities that create or advance certification cases when a stage is being opened.
+ *
+ * The deltas for the cases are collected from all worker threads, and written directly to the repository in batches
+ * of (roughly) {@link ModificationsToExecute#BATCH_SIZE} deltas. The rest is written at the end of each bucket. All deltas
+ * for a single item are always written together.
+ *
+ * A failure to write a batch stops the activity, and the current bucket is not marked as complete. So its items are
+ * processed again when the task is resumed; hence the processing of the items must be idempotent.
+ *
+ * @param <C> Type of items being processed.
+ */
+abstract class AbstractOpenNextStageCasesActivityRun<C extends Containerable>
+        extends SearchBasedActivityRun<
+        C, AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler,
+        AbstractActivityWorkStateType> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(AbstractOpenNextStageCasesActivityRun.class);
+
+    /** The campaign as it was when this run started. Cases are not loaded. */
+    AccessCertificationCampaignType campaign;
+
+    /** The stage being opened; it was added to the campaign by the preparation sub-activity. */
+    AccessCertificationStageType stage;
+
+    /** Reviewers specification for the stage being opened. */
+    AccessCertificationReviewerSpecificationType reviewerSpec;
+
+    /** Shared by all worker threads of this run. */
+    final AccCertReviewersCache reviewersCache = new AccCertReviewersCache();
+
+    /** Deltas not yet written to the repository. Guarded by itself. */
+    private final List<ItemDelta<?, ?>> pendingDeltas = new ArrayList<>();
+
+    AbstractOpenNextStageCasesActivityRun(
+            @NotNull ActivityRunInstantiationContext<
+                    AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> context,
+            @NotNull String shortName) {
+        super(context, shortName);
+    }
+
+    @Override
+    public @NotNull ActivityReportingCharacteristics createReportingCharacteristics() {
+        return super.createReportingCharacteristics()
+                .skipWritingOperationExecutionRecords(true); // because of performance
+    }
+
+    @Override
+    public boolean doesRequireDirectRepositoryAccess() {
+        return true; // the authorization is checked in the preparation sub-activity
+    }
+
+    @Override
+    public void beforeRun(OperationResult result) throws CommonException, ActivityRunException {
+        ensureNoPreviewNorDryRun();
+        campaign = getActivityHandler().generalHelper.getCampaign(
+                getWorkDefinition().getCampaignOid(), null, getRunningTask(), result);
+        campaign.asPrismObject().freeze(); // it is shared by the worker threads
+        stage = findStageBeingOpened(campaign);
+        if (stage == null) {
+            throw new ActivityRunException(
+                    "No stage being opened in " + campaign + "; has the preparation sub-activity been run?",
+                    FATAL_ERROR, PERMANENT_ERROR);
+        }
+        reviewerSpec = getActivityHandler().reviewersHelper.findReviewersSpecification(campaign, stage.getNumber());
+    }
+
+    @Override
+    public void afterBucketProcessing(OperationResult result) throws CommonException, ActivityRunException {
+        super.afterBucketProcessing(result);
+        List<ItemDelta<?, ?>> batch;
+        synchronized (pendingDeltas) {
+            batch = new ArrayList<>(pendingDeltas);
+            pendingDeltas.clear();
+        }
+        writeDeltas(batch, result);
+    }
+
+    /**
+     * Adds deltas for a single item. If there are enough of them pending, they are written to the repository
+     * (in the current thread).
+     */
+    void addDeltas(@NotNull Collection<? extends ItemDelta<?, ?>> deltas, OperationResult result) throws CommonException {
+        List<ItemDelta<?, ?>> batch;
+        synchronized (pendingDeltas) {
+            pendingDeltas.addAll(deltas);
+            if (pendingDeltas.size() < ModificationsToExecute.BATCH_SIZE) {
+                return;
+            }
+            batch = new ArrayList<>(pendingDeltas);
+            pendingDeltas.clear();
+        }
+        try {
+            writeDeltas(batch, result);
+        } catch (CommonException | RuntimeException e) {
+            // Otherwise, the item would be simply marked as failed, and the deltas of the other items would be lost.
+            getErrorState().setStoppingException(e);
+            throw e;
+        }
+    }
+
+    /** Goes directly to the repository, to avoid the overhead of the model. This is also why there is no audit. */
+    private void writeDeltas(List<ItemDelta<?, ?>> deltas, OperationResult result) throws CommonException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        LOGGER.trace("Applying {} changes to campaign {}", deltas.size(), campaign.getOid());
+        getActivityHandler().repositoryService.modifyObject(
+                AccessCertificationCampaignType.class, campaign.getOid(), deltas, result);
+    }
+}
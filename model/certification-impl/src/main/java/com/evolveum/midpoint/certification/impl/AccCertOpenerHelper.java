@@ -210,7 +210,7 @@ public class AccCertOpenerHelper {
 
     //region ================================ Stage open ================================
 
-    private static class OpeningContext {
+    static class OpeningContext {
         int casesEnteringStage;
         int workItemsCreated;
     }
@@ -221,8 +221,16 @@ public class AccCertOpenerHelper {
         int requestedStageNumber = campaign.getStageNumber() + 1;
         for (;;) {
             OpeningContext openingContext = new OpeningContext();
-            AccessCertificationStageType stage = createStage(campaign, requestedStageNumber);
-            ModificationsToExecute modifications = getDeltasForStageOpen(campaign, stage, handler, openingContext, task, result);
+            // The stage may have been added by the preparation part of the "open next stage" activity that did not finish.
+            AccessCertificationStageType existingStage = requestedStageNumber == campaign.getStageNumber() + 1 ?
+                    AccessCertificationOpenNextStageActivityHandler.findStageBeingOpened(campaign) : null;
+            if (existingStage != null) {
+                LOGGER.debug("Stage {} was already added to {}, continuing with it", requestedStageNumber, campaign);
+            }
+            AccessCertificationStageType stage =
+                    existingStage != null ? existingStage.clone() : createStage(campaign, requestedStageNumber);
+            ModificationsToExecute modifications = getDeltasForStageOpen(
+                    campaign, stage, existingStage != null, handler, openingContext, new AccCertReviewersCache(), task, result);
             if (!skipEmptyStages || openingContext.casesEnteringStage > 0) {
                 updateHelper.modifyCampaignPreAuthorized(campaign.getOid(), modifications, task, result);
                 afterStageOpen(campaign.getOid(), stage, task, result);       // notifications, bookkeeping, ...
@@ -238,8 +246,8 @@ public class AccCertOpenerHelper {
     }
 
     private ModificationsToExecute getDeltasForStageOpen(AccessCertificationCampaignType campaign,
-            AccessCertificationStageType stage, CertificationHandler handler,
-            OpeningContext openingContext, final Task task, OperationResult result)
+            AccessCertificationStageType stage, boolean resuming, CertificationHandler handler,
+            OpeningContext openingContext, AccCertReviewersCache cache, final Task task, OperationResult result)
             throws SchemaException, ObjectNotFoundException {
 
         int stageNumber = campaign.getStageNumber();
@@ -249,17 +257,16 @@ public class AccCertOpenerHelper {
                 ObjectTypeUtil.toShortStringLazy(campaign), stageNumber, newStageNumber, norm(campaign.getIteration()));
 
         ModificationsToExecute rv = new ModificationsToExecute();
-        if (stageNumber == 0 && norm(campaign.getIteration()) == 1) {
-            getDeltasToCreateCases(campaign, stage, handler, rv, openingContext, task, result);
+        if (isCaseCreationNeeded(campaign)) {
+            getDeltasToCreateCases(campaign, stage, resuming, handler, rv, openingContext, cache, task, result);
         } else {
-            getDeltasToUpdateCases(campaign, stage, rv, openingContext, task, result);
+            getDeltasToUpdateCases(campaign, stage, rv, openingContext, cache, task, result);
         }
         rv.createNewBatch();
-        rv.add(createStageAddDelta(stage));
-        rv.add(createDeltasToRecordStageOpen(campaign, stage));
-        rv.add(updateHelper.getDeltasToCreateTriggersForTimedActions(campaign.getOid(), 0,
-                XmlTypeConverter.toDate(stage.getStartTimestamp()), XmlTypeConverter.toDate(stage.getDeadline()),
-                CertCampaignTypeUtil.findStageDefinition(campaign, newStageNumber).getTimedActions()));
+        if (!resuming) {
+            rv.add(createStageAddDelta(stage));
+        }
+        rv.add(getDeltasToRecordStageOpen(campaign, stage));
 
         if (LOGGER.isTraceEnabled()) {
             List<ItemDelta<?, ?>> allDeltas = rv.getAllDeltas();
@@ -269,25 +276,37 @@ public class AccCertOpenerHelper {
         return rv;
     }
 
+    /** Cases are created when the first stage of the first iteration is opened. Otherwise, existing cases are advanced. */
+    static boolean isCaseCreationNeeded(AccessCertificationCampaignType campaign) {
+        return campaign.getStageNumber() == 0 && norm(campaign.getIteration()) == 1;
+    }
+
     /**
      *  Creates certification cases (in the form of delta list) on first stage opening.
+     *
+     *  When resuming the opening started by the "open next stage" activity, the objects that already have their cases
+     *  are skipped. (The activity writes the cases for an object all at once.)
      */
     private <F extends FocusType> void getDeltasToCreateCases(AccessCertificationCampaignType campaign,
-            AccessCertificationStageType stage,
-            CertificationHandler handler, ModificationsToExecute modifications, OpeningContext openingContext, Task task,
-            OperationResult result) throws SchemaException, ObjectNotFoundException {
+            AccessCertificationStageType stage, boolean resuming,
+            CertificationHandler handler, ModificationsToExecute modifications, OpeningContext openingContext,
+            AccCertReviewersCache cache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
         String campaignShortName = toShortString(campaign);
 
-        AccessCertificationScopeType scope = campaign.getScopeDefinition();
-        LOGGER.trace("Creating cases for scope {} in campaign {}", scope, campaignShortName);
-        if (scope != null && !(scope instanceof AccessCertificationObjectBasedScopeType)) {
-            throw new IllegalStateException("Unsupported access certification scope type: " + scope.getClass() + " for campaign " + campaignShortName);
+        Set<String> objectsWithCases = new HashSet<>();
+        if (resuming) {
+            List<AccessCertificationCaseType> existingCases = queryHelper.searchCases(campaign.getOid(), null, result);
+            for (AccessCertificationCaseType existingCase : existingCases) {
+                objectsWithCases.add(existingCase.getObjectRef().getOid());
+            }
+            openingContext.casesEnteringStage += existingCases.size();
+            LOGGER.debug("There are {} existing case(s) for {} object(s) in {}, these objects will be skipped",
+                    existingCases.size(), objectsWithCases.size(), campaignShortName);
+        } else {
+            assertNoExistingCases(campaign, result);
         }
-        AccessCertificationObjectBasedScopeType objectBasedScope = (AccessCertificationObjectBasedScopeType) scope;
 
-        assertNoExistingCases(campaign, result);
-
-        TypedObjectQuery<F> typedQuery = prepareObjectQuery(objectBasedScope, handler, campaignShortName);
+        TypedObjectQuery<F> typedQuery = prepareScopeQuery(campaign, handler);
 
         List<AccessCertificationCaseType> caseList = new ArrayList<>();
 
@@ -295,6 +314,10 @@ public class AccCertOpenerHelper {
         // here the subclasses of this class come into play
         repositoryService.searchObjectsIterative(typedQuery.getObjectClass(), typedQuery.getObjectQuery(),
                 (object, parentResult) -> {
+                    if (objectsWithCases.contains(object.getOid())) {
+                        LOGGER.trace("Cases for {} already exist, skipping the object", object);
+                        return true;
+                    }
                     try {
                         caseList.addAll(handler.createCasesForObject(object, campaign, task, parentResult));
                     } catch (CommonException | RuntimeException e) {
@@ -310,28 +333,8 @@ public class AccCertOpenerHelper {
         assert norm(campaign.getIteration()) == 1;
 
         for (AccessCertificationCaseType aCase : caseList) {
-            ContainerDelta<AccessCertificationCaseType> caseDelta = prismContext.deltaFactory().container().createDelta(F_CASE,
-                    AccessCertificationCampaignType.class);
-            aCase.setIteration(1);
-            aCase.setStageNumber(1);
-            aCase.setCurrentStageCreateTimestamp(stage.getStartTimestamp());
-            aCase.setCurrentStageDeadline(stage.getDeadline());
-
-            List<ObjectReferenceType> reviewers = reviewersHelper.getReviewersForCase(aCase, campaign, reviewerSpec, task, result);
-            aCase.getWorkItem().addAll(createWorkItems(reviewers, 1, 1, aCase));
-
-            openingContext.workItemsCreated += aCase.getWorkItem().size();
-            openingContext.casesEnteringStage++;
-
-            AccessCertificationResponseType currentStageOutcome = computationHelper.computeOutcomeForStage(aCase, campaign, 1);
-            aCase.setCurrentStageOutcome(toUri(currentStageOutcome));
-            aCase.setOutcome(toUri(computationHelper.computeOverallOutcome(aCase, campaign, 1, currentStageOutcome)));
-
-            @SuppressWarnings({ "raw", "unchecked" })
-            PrismContainerValue<AccessCertificationCaseType> caseCVal = aCase.asPrismContainerValue();
-            caseDelta.addValueToAdd(caseCVal);
-            LOGGER.trace("Adding certification case:\n{}", caseCVal.debugDumpLazily());
-            modifications.add(caseDelta);
+            prepareNewCase(aCase, campaign, stage, reviewerSpec, openingContext, cache, task, result);
+            modifications.add(createCaseAddDelta(aCase));
         }
 
         LOGGER.trace("Created {} deltas (in {} batches) to create {} cases ({} work items) for campaign {}",
@@ -339,6 +342,52 @@ public class AccCertOpenerHelper {
                 openingContext.workItemsCreated, campaignShortName);
     }
 
+    /**
+     * Fills in the stage-related information, work items, and outcomes into a case just created by the certification handler.
+     */
+    void prepareNewCase(AccessCertificationCaseType aCase, AccessCertificationCampaignType campaign,
+            AccessCertificationStageType stage, AccessCertificationReviewerSpecificationType reviewerSpec,
+            OpeningContext openingContext, AccCertReviewersCache cache, Task task, OperationResult result)
+            throws SchemaException, ObjectNotFoundException {
+        assert norm(campaign.getIteration()) == 1;
+        aCase.setIteration(1);
+        aCase.setStageNumber(1);
+        aCase.setCurrentStageCreateTimestamp(stage.getStartTimestamp());
+        aCase.setCurrentStageDeadline(stage.getDeadline());
+
+        List<ObjectReferenceType> reviewers = reviewersHelper.getReviewersForCase(aCase, campaign, reviewerSpec, cache, task, result);
+        aCase.getWorkItem().addAll(createWorkItems(reviewers, 1, 1, aCase));
+
+        openingContext.workItemsCreated += aCase.getWorkItem().size();
+        openingContext.casesEnteringStage++;
+
+        AccessCertificationResponseType currentStageOutcome = computationHelper.computeOutcomeForStage(aCase, campaign, 1);
+        aCase.setCurrentStageOutcome(toUri(currentStageOutcome));
+        aCase.setOutcome(toUri(computationHelper.computeOverallOutcome(aCase, campaign, 1, currentStageOutcome)));
+    }
+
+    ItemDelta<?, ?> createCaseAddDelta(AccessCertificationCaseType aCase) {
+        ContainerDelta<AccessCertificationCaseType> caseDelta = prismContext.deltaFactory().container().createDelta(F_CASE,
+                AccessCertificationCampaignType.class);
+        @SuppressWarnings({ "raw", "unchecked" })
+        PrismContainerValue<AccessCertificationCaseType> caseCVal = aCase.asPrismContainerValue();
+        caseDelta.addValueToAdd(caseCVal);
+        LOGGER.trace("Adding certification case:\n{}", caseCVal.debugDumpLazily());
+        return caseDelta;
+    }
+
+    /** Creates a query to find objects from which certification cases will be created. */
+    @NotNull <F extends FocusType> TypedObjectQuery<F> prepareScopeQuery(
+            AccessCertificationCampaignType campaign, CertificationHandler handler) throws SchemaException {
+        String campaignShortName = toShortString(campaign);
+        AccessCertificationScopeType scope = campaign.getScopeDefinition();
+        LOGGER.trace("Creating cases for scope {} in campaign {}", scope, campaignShortName);
+        if (scope != null && !(scope instanceof AccessCertificationObjectBasedScopeType)) {
+            throw new IllegalStateException("Unsupported access certification scope type: " + scope.getClass() + " for campaign " + campaignShortName);
+        }
+        return prepareObjectQuery((AccessCertificationObjectBasedScopeType) scope, handler, campaignShortName);
+    }
+
     // create a query to find target objects from which certification cases will be created
     @NotNull
     private <F extends FocusType> TypedObjectQuery<F> prepareObjectQuery(AccessCertificationObjectBasedScopeType objectBasedScope,
@@ -371,7 +420,7 @@ public class AccCertOpenerHelper {
         return new TypedObjectQuery<>(objectClass, query);
     }
 
-    private void assertNoExistingCases(AccessCertificationCampaignType campaign, OperationResult result)
+    void assertNoExistingCases(AccessCertificationCampaignType campaign, OperationResult result)
             throws SchemaException {
         List<AccessCertificationCaseType> existingCases = queryHelper.searchCases(campaign.getOid(), null, result);
         if (!existingCases.isEmpty()) {
@@ -417,7 +466,7 @@ public class AccCertOpenerHelper {
      */
     private void getDeltasToUpdateCases(AccessCertificationCampaignType campaign, AccessCertificationStageType stage,
             ModificationsToExecute modifications, OpeningContext openingContext,
-            Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
+            AccCertReviewersCache cache, Task task, OperationResult result) throws SchemaException, ObjectNotFoundException {
 
         int stageToBe = stage.getNumber();
         int iteration = norm(campaign.getIteration());
@@ -430,41 +479,8 @@ public class AccCertOpenerHelper {
 
         LOGGER.trace("cases: {}, reviewerSpec: {}", caseList.size(), reviewerSpec);
         for (AccessCertificationCaseType aCase : caseList) {
-            LOGGER.trace("----------------------------------------------------------------------------------------");
-            LOGGER.trace("Considering case: {}", aCase);
-            Long caseId = aCase.asPrismContainerValue().getId();
-            assert caseId != null;
-            if (aCase.getReviewFinishedTimestamp() != null) {
-                LOGGER.trace("Case {} review process has already finished", caseId);
-                continue;
-            }
-            AccessCertificationResponseType stageOutcome = computationHelper.getStageOutcome(aCase, stageToBe);
-            if (OutcomeUtils.normalizeToNull(stageOutcome) != null) {
-                LOGGER.trace("Case {} already has an outcome for stage {} - it will not be reviewed in this stage in iteration {}",
-                        caseId, stageToBe, iteration);
-                continue;
-            }
-
-            List<ObjectReferenceType> reviewers = reviewersHelper.getReviewersForCase(aCase, campaign, reviewerSpec, task, result);
-            List<AccessCertificationWorkItemType> workItems = createWorkItems(reviewers, stageToBe, iteration, aCase);
-            openingContext.workItemsCreated += workItems.size();
-            openingContext.casesEnteringStage++;
-            aCase.getWorkItem().addAll(CloneUtil.cloneCollectionMembers(workItems));
-            AccessCertificationResponseType currentStageOutcome = computationHelper.computeOutcomeForStage(aCase, campaign, stageToBe);
-            AccessCertificationResponseType overallOutcome = computationHelper.computeOverallOutcome(aCase, campaign, stageToBe, currentStageOutcome);
-            if (LOGGER.isTraceEnabled()) {
-                LOGGER.trace("Computed: reviewers: {}, workItems: {}, currentStageOutcome: {}, overallOutcome: {}",
-                        PrettyPrinter.prettyPrint(reviewers), workItems.size(), currentStageOutcome, overallOutcome);
-            }
-            modifications.add(prismContext.deltaFor(AccessCertificationCampaignType.class)
-                    .item(F_CASE, caseId, F_WORK_ITEM).add(PrismContainerValue.toPcvList(workItems))
-                    .item(F_CASE, caseId, F_CURRENT_STAGE_CREATE_TIMESTAMP).replace(stage.getStartTimestamp())
-                    .item(F_CASE, caseId, F_CURRENT_STAGE_DEADLINE).replace(stage.getDeadline())
-                    .item(F_CASE, caseId, F_CURRENT_STAGE_OUTCOME).replace(toUri(currentStageOutcome))
-                    .item(F_CASE, caseId, F_OUTCOME).replace(toUri(overallOutcome))
-                    .item(F_CASE, caseId, F_STAGE_NUMBER).replace(stageToBe)
-                    .item(F_CASE, caseId, F_ITERATION).replace(iteration)
-                    .asItemDeltas());
+            modifications.add(
+                    getDeltasToAdvanceCase(aCase, campaign, stage, reviewerSpec, openingContext, cache, task, result));
         }
 
         LOGGER.debug("Created {} deltas (in {} batches) to advance {} out of {} cases for campaign {}; work items created: {}",
@@ -472,6 +488,68 @@ public class AccCertOpenerHelper {
                 caseList.size(), toShortString(campaign), openingContext.workItemsCreated);
     }
 
+    /**
+     * Deltas to advance given case to the stage being opened. Returns no deltas if the case does not enter the stage,
+     * or if it is already there (advanced by an interrupted "open next stage" activity).
+     */
+    List<ItemDelta<?, ?>> getDeltasToAdvanceCase(AccessCertificationCaseType aCase, AccessCertificationCampaignType campaign,
+            AccessCertificationStageType stage, AccessCertificationReviewerSpecificationType reviewerSpec,
+            OpeningContext openingContext, AccCertReviewersCache cache, Task task, OperationResult result)
+            throws SchemaException, ObjectNotFoundException {
+        int stageToBe = stage.getNumber();
+        int iteration = norm(campaign.getIteration());
+        LOGGER.trace("----------------------------------------------------------------------------------------");
+        LOGGER.trace("Considering case: {}", aCase);
+        Long caseId = aCase.asPrismContainerValue().getId();
+        assert caseId != null;
+        if (aCase.getReviewFinishedTimestamp() != null) {
+            LOGGER.trace("Case {} review process has already finished", caseId);
+            return List.of();
+        }
+        if (Objects.equals(aCase.getStageNumber(), stageToBe)) {
+            LOGGER.trace("Case {} is already in stage {}", caseId, stageToBe);
+            openingContext.casesEnteringStage++;
+            return List.of();
+        }
+        AccessCertificationResponseType stageOutcome = computationHelper.getStageOutcome(aCase, stageToBe);
+        if (OutcomeUtils.normalizeToNull(stageOutcome) != null) {
+            LOGGER.trace("Case {} already has an outcome for stage {} - it will not be reviewed in this stage in iteration {}",
+                    caseId, stageToBe, iteration);
+            return List.of();
+        }
+
+        List<ObjectReferenceType> reviewers = reviewersHelper.getReviewersForCase(aCase, campaign, reviewerSpec, cache, task, result);
+        List<AccessCertificationWorkItemType> workItems = createWorkItems(reviewers, stageToBe, iteration, aCase);
+        openingContext.workItemsCreated += workItems.size();
+        openingContext.casesEnteringStage++;
+        aCase.getWorkItem().addAll(CloneUtil.cloneCollectionMembers(workItems));
+        AccessCertificationResponseType currentStageOutcome = computationHelper.computeOutcomeForStage(aCase, campaign, stageToBe);
+        AccessCertificationResponseType overallOutcome = computationHelper.computeOverallOutcome(aCase, campaign, stageToBe, currentStageOutcome);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Computed: reviewers: {}, workItems: {}, currentStageOutcome: {}, overallOutcome: {}",
+                    PrettyPrinter.prettyPrint(reviewers), workItems.size(), currentStageOutcome, overallOutcome);
+        }
+        return prismContext.deltaFor(AccessCertificationCampaignType.class)
+                .item(F_CASE, caseId, F_WORK_ITEM).add(PrismContainerValue.toPcvList(workItems))
+                .item(F_CASE, caseId, F_CURRENT_STAGE_CREATE_TIMESTAMP).replace(stage.getStartTimestamp())
+                .item(F_CASE, caseId, F_CURRENT_STAGE_DEADLINE).replace(stage.getDeadline())
+                .item(F_CASE, caseId, F_CURRENT_STAGE_OUTCOME).replace(toUri(currentStageOutcome))
+                .item(F_CASE, caseId, F_OUTCOME).replace(toUri(overallOutcome))
+                .item(F_CASE, caseId, F_STAGE_NUMBER).replace(stageToBe)
+                .item(F_CASE, caseId, F_ITERATION).replace(iteration)
+                .asItemDeltas();
+    }
+
+    /** Stage#, state, start time, and triggers (including the ones for timed actions). */
+    List<ItemDelta<?, ?>> getDeltasToRecordStageOpen(AccessCertificationCampaignType campaign,
+            AccessCertificationStageType newStage) throws SchemaException {
+        List<ItemDelta<?, ?>> deltas = new ArrayList<>(createDeltasToRecordStageOpen(campaign, newStage));
+        deltas.addAll(updateHelper.getDeltasToCreateTriggersForTimedActions(campaign.getOid(), 0,
+                XmlTypeConverter.toDate(newStage.getStartTimestamp()), XmlTypeConverter.toDate(newStage.getDeadline()),
+                CertCampaignTypeUtil.findStageDefinition(campaign, newStage.getNumber()).getTimedActions()));
+        return deltas;
+    }
+
     // some bureaucracy... stage#, state, start time, triggers
     private List<ItemDelta<?,?>> createDeltasToRecordStageOpen(AccessCertificationCampaignType campaign,
             AccessCertificationStageType newStage) throws SchemaException {
@@ -522,7 +600,7 @@ public class AccCertOpenerHelper {
         return itemDeltaList;
     }
 
-    private AccessCertificationStageType createStage(AccessCertificationCampaignType campaign, int requestedStageNumber) {
+    AccessCertificationStageType createStage(AccessCertificationCampaignType campaign, int requestedStageNumber) {
         AccessCertificationStageType stage = new AccessCertificationStageType();
         stage.setIteration(norm(campaign.getIteration()));
         stage.setNumber(requestedStageNumber);
@@ -558,7 +636,7 @@ public class AccCertOpenerHelper {
         return deadline;
     }
 
-    private void afterStageOpen(String campaignOid, AccessCertificationStageType newStage, Task task,
+    void afterStageOpen(String campaignOid, AccessCertificationStageType newStage, Task task,
             OperationResult result) throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
         // notifications
         final AccessCertificationCampaignType campaign = generalHelper.getCampaign(campaignOid, null, task, result);
@@ -631,7 +709,7 @@ public class AccCertOpenerHelper {
     //endregion
 
     //region ================================ Misc / helper methods ================================
-    private ItemDelta<?, ?> createStageAddDelta(AccessCertificationStageType stage) throws SchemaException {
+    ItemDelta<?, ?> createStageAddDelta(AccessCertificationStageType stage) throws SchemaException {
         return prismContext.deltaFor(AccessCertificationCampaignType.class)
                 .item(F_STAGE).add(stage)
                 .asItemDelta();
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.util.CloneUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RelationKindType;
+
+/**
+ * Caches the results of reviewer-related lookups made by {@link AccCertReviewersHelper} when opening a stage.
+ *
+ * There are typically many cases sharing the same target (e.g. a role assigned to thousands of users), or the same object
+ * (a user with many assignments). So owners, approvers, and managers of these objects, as well as members of roles
+ * that are specified as reviewers, are looked up only once per stage opening. Reviewer expressions are not cached,
+ * as they can depend on the case itself.
+ *
+ * The cache is thread-safe, as it is shared by the worker threads of the stage opening activity. There is no invalidation:
+ * the cache should live only during a single stage opening.
+ */
+class AccCertReviewersCache {
+
+    /** Owners or approvers of given object. The `resourcesIncluded` flag distinguishes target and object lookups. */
+    private record RelatedReviewersKey(@NotNull String oid, @NotNull RelationKindType relationKind, boolean resourcesIncluded) {
+    }
+
+    /** Values are `null`-free: "no reviewers" is stored as an empty list. */
+    private final Map<RelatedReviewersKey, List<ObjectReferenceType>> relatedReviewers = new ConcurrentHashMap<>();
+
+    /** Managers of given object (user or org), with respect to the manager search of the stage being opened. */
+    private final Map<String, List<ObjectReferenceType>> managers = new ConcurrentHashMap<>();
+
+    /** Members of given abstract role. */
+    private final Map<String, List<ObjectReferenceType>> members = new ConcurrentHashMap<>();
+
+    @Nullable List<ObjectReferenceType> getRelatedReviewers(
+            @NotNull String oid, @NotNull RelationKindType relationKind, boolean resourcesIncluded) {
+        return copy(relatedReviewers.get(new RelatedReviewersKey(oid, relationKind, resourcesIncluded)));
+    }
+
+    void putRelatedReviewers(
+            @NotNull String oid, @NotNull RelationKindType relationKind, boolean resourcesIncluded,
+            @NotNull List<ObjectReferenceType> reviewers) {
+        relatedReviewers.put(new RelatedReviewersKey(oid, relationKind, resourcesIncluded), copy(reviewers));
+    }
+
+    @Nullable List<ObjectReferenceType> getManagers(@NotNull String oid) {
+        return copy(managers.get(oid));
+    }
+
+    void putManagers(@NotNull String oid, @NotNull List<ObjectReferenceType> value) {
+        managers.put(oid, copy(value));
+    }
+
+    @Nullable List<ObjectReferenceType> getMembers(@NotNull String oid) {
+        return copy(members.get(oid));
+    }
+
+    void putMembers(@NotNull String oid, @NotNull List<ObjectReferenceType> value) {
+        members.put(oid, copy(value));
+    }
+
+    /** The references end up in work items, so we never share them between cases. */
+    private static List<ObjectReferenceType> copy(List<ObjectReferenceType> refs) {
+        return refs != null ? CloneUtil.cloneCollectionMembers(refs) : null;
+    }
+}
@@ -29,6 +29,7 @@ import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -56,10 +57,15 @@ public class AccCertReviewersHelper {
                 .getReviewerSpecification();
     }
 
+    /**
+     * Determines reviewers for given case. The cache must be used for a single stage opening only,
+     * because the lookups it caches are driven by the reviewer specification of that stage.
+     */
     List<ObjectReferenceType> getReviewersForCase(
             AccessCertificationCaseType _case,
             AccessCertificationCampaignType campaign,
             AccessCertificationReviewerSpecificationType reviewerSpec,
+            @NotNull AccCertReviewersCache cache,
             Task task,
             OperationResult result) throws SchemaException, ObjectNotFoundException {
         if (reviewerSpec == null) {
@@ -68,19 +74,19 @@ public class AccCertReviewersHelper {
 
         List<ObjectReferenceType> reviewers = new ArrayList<>();
         if (Boolean.TRUE.equals(reviewerSpec.isUseTargetOwner())) {
-            cloneAndMerge(reviewers, getTargetObjectOwners(_case, result));
+            cloneAndMerge(reviewers, getRelatedReviewers(_case.getTargetRef(), RelationKindType.OWNER, true, cache, result));
         }
         if (Boolean.TRUE.equals(reviewerSpec.isUseTargetApprover())) {
-            cloneAndMerge(reviewers, getTargetObjectApprovers(_case, result));
+            cloneAndMerge(reviewers, getRelatedReviewers(_case.getTargetRef(), RelationKindType.APPROVER, true, cache, result));
         }
         if (Boolean.TRUE.equals(reviewerSpec.isUseObjectOwner())) {
-            cloneAndMerge(reviewers, getObjectOwners(_case, result));
+            cloneAndMerge(reviewers, getRelatedReviewers(_case.getObjectRef(), RelationKindType.OWNER, false, cache, result));
         }
         if (Boolean.TRUE.equals(reviewerSpec.isUseObjectApprover())) {
-            cloneAndMerge(reviewers, getObjectApprovers(_case, result));
+            cloneAndMerge(reviewers, getRelatedReviewers(_case.getObjectRef(), RelationKindType.APPROVER, false, cache, result));
         }
         if (reviewerSpec.getUseObjectManager() != null) {
-            cloneAndMerge(reviewers, getObjectManagers(_case, reviewerSpec.getUseObjectManager(), task, result));
+            cloneAndMerge(reviewers, getObjectManagers(_case, reviewerSpec.getUseObjectManager(), cache, task, result));
         }
         for (ExpressionType reviewerExpression : reviewerSpec.getReviewerExpression()) {
             VariablesMap variables = new VariablesMap();
@@ -93,17 +99,18 @@ public class AccCertReviewersHelper {
                             reviewerExpression, variables, "reviewer expression", task, result);
             cloneAndMerge(reviewers, refList);
         }
-        resolveRoleReviewers(reviewers, result);
+        resolveRoleReviewers(reviewers, cache, result);
         if (reviewers.isEmpty()) {
             cloneAndMerge(reviewers, reviewerSpec.getDefaultReviewerRef());
         }
         cloneAndMerge(reviewers, reviewerSpec.getAdditionalReviewerRef());
-        resolveRoleReviewers(reviewers, result);
+        resolveRoleReviewers(reviewers, cache, result);
 
         return reviewers;
     }
 
-    private void resolveRoleReviewers(List<ObjectReferenceType> reviewers, OperationResult result)
+    private void resolveRoleReviewers(
+            List<ObjectReferenceType> reviewers, AccCertReviewersCache cache, OperationResult result)
             throws SchemaException {
         List<ObjectReferenceType> resolved = new ArrayList<>();
         for (Iterator<ObjectReferenceType> iterator = reviewers.iterator(); iterator.hasNext(); ) {
@@ -112,7 +119,7 @@ public class AccCertReviewersHelper {
                     || QNameUtil.match(reviewer.getType(), OrgType.COMPLEX_TYPE)
                     || QNameUtil.match(reviewer.getType(), ServiceType.COMPLEX_TYPE)) {
                 iterator.remove();
-                resolved.addAll(getMembers(reviewer, result));
+                resolved.addAll(getMembers(reviewer, cache, result));
             }
         }
         for (ObjectReferenceType ref : resolved) {
@@ -122,8 +129,13 @@ public class AccCertReviewersHelper {
         }
     }
 
-    private List<ObjectReferenceType> getMembers(ObjectReferenceType abstractRoleRef, OperationResult result)
+    private List<ObjectReferenceType> getMembers(
+            ObjectReferenceType abstractRoleRef, AccCertReviewersCache cache, OperationResult result)
             throws SchemaException {
+        List<ObjectReferenceType> cached = cache.getMembers(abstractRoleRef.getOid());
+        if (cached != null) {
+            return cached;
+        }
         Collection<PrismReferenceValue> references = ObjectQueryUtil
                 .createReferences(abstractRoleRef.getOid(), RelationKindType.MEMBER, relationRegistry);
         ObjectQuery query = references.isEmpty()
@@ -131,9 +143,11 @@ public class AccCertReviewersHelper {
                 : prismContext.queryFor(UserType.class)
                     .item(UserType.F_ROLE_MEMBERSHIP_REF).ref(references)
                     .build();
-        return repositoryService.searchObjects(UserType.class, query, null, result).stream()
+        List<ObjectReferenceType> members = repositoryService.searchObjects(UserType.class, query, null, result).stream()
                 .map(obj -> ObjectTypeUtil.createObjectRef(obj))
                 .collect(Collectors.toList());
+        cache.putMembers(abstractRoleRef.getOid(), members);
+        return members;
     }
 
     private void cloneAndMerge(List<ObjectReferenceType> reviewers, Collection<ObjectReferenceType> newReviewers) {
@@ -158,11 +172,16 @@ public class AccCertReviewersHelper {
     }
 
     private Collection<ObjectReferenceType> getObjectManagers(
-            AccessCertificationCaseType _case, ManagerSearchType managerSearch, Task task, OperationResult result)
+            AccessCertificationCaseType _case, ManagerSearchType managerSearch, AccCertReviewersCache cache,
+            Task task, OperationResult result)
             throws ObjectNotFoundException, SchemaException {
+        ObjectReferenceType objectRef = _case.getObjectRef();
+        List<ObjectReferenceType> cached = cache.getManagers(objectRef.getOid());
+        if (cached != null) {
+            return cached;
+        }
         ExpressionEnvironmentThreadLocalHolder.pushExpressionEnvironment(new ExpressionEnvironment(task, result));
         try {
-            ObjectReferenceType objectRef = _case.getObjectRef();
             ObjectType object = resolveReference(objectRef, ObjectType.class, result);
 
             String orgType = managerSearch.getOrgType();
@@ -184,6 +203,7 @@ public class AccCertReviewersHelper {
             for (UserType manager : managers) {
                 retval.add(ObjectTypeUtil.createObjectRef(manager, prismContext));
             }
+            cache.putManagers(objectRef.getOid(), retval);
             return retval;
         } catch (SecurityViolationException e) {
             // never occurs, as preAuthorized is TRUE above
@@ -193,19 +213,35 @@ public class AccCertReviewersHelper {
         }
     }
 
-    private List<ObjectReferenceType> getTargetObjectOwners(AccessCertificationCaseType _case, OperationResult result)
+    /**
+     * Returns owners or approvers of the case target or object. Resources are considered only for the target,
+     * as their owners/approvers are taken from the resource definition, not from the role membership.
+     */
+    private List<ObjectReferenceType> getRelatedReviewers(
+            ObjectReferenceType ref, RelationKindType relationKind, boolean resourcesIncluded,
+            AccCertReviewersCache cache, OperationResult result)
             throws SchemaException, ObjectNotFoundException {
-        if (_case.getTargetRef() == null) {
+        if (ref == null) {
             return null;
         }
-        ObjectType target = resolveReference(_case.getTargetRef(), ObjectType.class, result);
-        if (target instanceof AbstractRoleType) {
-            return getReviewers((AbstractRoleType) target, RelationKindType.OWNER, result);
-        } else if (target instanceof ResourceType) {
-            return ResourceTypeUtil.getOwnerRef((ResourceType) target);
+        List<ObjectReferenceType> cached = cache.getRelatedReviewers(ref.getOid(), relationKind, resourcesIncluded);
+        if (cached != null) {
+            return cached;
+        }
+        ObjectType object = resolveReference(ref, ObjectType.class, result);
+        List<ObjectReferenceType> reviewers;
+        if (object instanceof AbstractRoleType) {
+            reviewers = getReviewers((AbstractRoleType) object, relationKind, result);
+        } else if (resourcesIncluded && object instanceof ResourceType) {
+            reviewers = relationKind == RelationKindType.OWNER
+                    ? ResourceTypeUtil.getOwnerRef((ResourceType) object)
+                    : ResourceTypeUtil.getApproverRef((ResourceType) object);
         } else {
-            return null;
+            reviewers = null;
         }
+        cache.putRelatedReviewers(
+                ref.getOid(), relationKind, resourcesIncluded, reviewers != null ? reviewers : List.of());
+        return reviewers;
     }
 
     private List<ObjectReferenceType> getReviewers(AbstractRoleType role, RelationKindType relationKind, OperationResult result)
@@ -230,47 +266,6 @@ public class AccCertReviewersHelper {
         return rv;
     }
 
-    private List<ObjectReferenceType> getObjectOwners(AccessCertificationCaseType _case, OperationResult result)
-            throws SchemaException, ObjectNotFoundException {
-        if (_case.getObjectRef() == null) {
-            return null;
-        }
-        ObjectType object = resolveReference(_case.getObjectRef(), ObjectType.class, result);
-        if (object instanceof AbstractRoleType) {
-            return getReviewers((AbstractRoleType) object, RelationKindType.OWNER, result);
-        } else {
-            return null;
-        }
-    }
-
-    private Collection<ObjectReferenceType> getTargetObjectApprovers(AccessCertificationCaseType _case,
-            OperationResult result) throws SchemaException, ObjectNotFoundException {
-        if (_case.getTargetRef() == null) {
-            return null;
-        }
-        ObjectType target = resolveReference(_case.getTargetRef(), ObjectType.class, result);
-        if (target instanceof AbstractRoleType) {
-            return getReviewers((AbstractRoleType) target, RelationKindType.APPROVER, result);
-        } else if (target instanceof ResourceType) {
-            return ResourceTypeUtil.getApproverRef((ResourceType) target);
-        } else {
-            return null;
-        }
-    }
-
-    private Collection<ObjectReferenceType> getObjectApprovers(AccessCertificationCaseType _case,
-            OperationResult result) throws SchemaException, ObjectNotFoundException {
-        if (_case.getObjectRef() == null) {
-            return null;
-        }
-        ObjectType object = resolveReference(_case.getObjectRef(), ObjectType.class, result);
-        if (object instanceof AbstractRoleType) {
-            return getReviewers((AbstractRoleType) object, RelationKindType.APPROVER, result);
-        } else {
-            return null;
-        }
-    }
-
     @SuppressWarnings("SameParameterValue")
     private ObjectType resolveReference(ObjectReferenceType objectRef, Class<? extends ObjectType> defaultObjectTypeClass,
             OperationResult result) throws SchemaException, ObjectNotFoundException {
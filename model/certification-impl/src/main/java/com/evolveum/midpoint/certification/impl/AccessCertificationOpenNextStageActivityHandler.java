@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import static com.evolveum.midpoint.schema.util.CertCampaignTypeUtil.norm;
+
+import java.util.ArrayList;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.common.activity.Activity;
+import com.evolveum.midpoint.repo.common.activity.EmbeddedActivity;
+import com.evolveum.midpoint.repo.common.activity.handlers.ActivityHandler;
+import com.evolveum.midpoint.repo.common.activity.handlers.ActivityHandlerRegistry;
+import com.evolveum.midpoint.repo.common.activity.run.ActivityRunInstantiationContext;
+import com.evolveum.midpoint.repo.common.activity.run.CompositeActivityRun;
+import com.evolveum.midpoint.repo.common.activity.run.state.ActivityStateDefinition;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.CertCampaignTypeUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Opens the next stage of a certification campaign. It is an alternative to the synchronous
+ * {@link CertificationManagerImpl#openNextStage(String, com.evolveum.midpoint.task.api.Task, OperationResult)},
+ * suitable for large campaigns: the cases are never held in memory all at once, and they can be processed
+ * in buckets and by multiple worker threads (or tasks).
+ *
+ * It provides four sub-activities:
+ *
+ * 1. Preparation: checks the authorization and the campaign state, and adds the stage being opened to the campaign.
+ * 2. Case creation (the first stage only): iterates over the objects in the campaign scope and creates the cases for them.
+ * 3. Case advance (other stages): iterates over the cases of the current iteration and moves them to the stage being opened.
+ * 4. Finalization: records the stage as open (campaign state, stage number, triggers) and sends the notifications.
+ *
+ * The stage is identified by the campaign: it is the stage that follows the current one. It is being added in the first
+ * sub-activity, so the other ones (even when restarted) find it in the campaign.
+ *
+ * Cases are written directly to the repository, in batches (see {@link AbstractOpenNextStageCasesActivityRun}).
+ *
+ * Limitations: Skipping empty stages is not supported, and neither is opening stages in iterations other than the first one;
+ * the synchronous method should be used in these cases.
+ */
+@Component
+public class AccessCertificationOpenNextStageActivityHandler
+        implements ActivityHandler<AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> {
+
+    private static final String ARCHETYPE_OID = SystemObjectsType.ARCHETYPE_CERTIFICATION_TASK.value();
+
+    @Autowired ActivityHandlerRegistry registry;
+    @Autowired CertificationManagerImpl certificationManager;
+    @Autowired AccCertGeneralHelper generalHelper;
+    @Autowired AccCertOpenerHelper openerHelper;
+    @Autowired AccCertReviewersHelper reviewersHelper;
+    @Autowired AccCertUpdateHelper updateHelper;
+    @Autowired @Qualifier("cacheRepositoryService") RepositoryService repositoryService;
+
+    @PostConstruct
+    public void register() {
+        registry.register(
+                CertificationOpenNextStageWorkDefinitionType.COMPLEX_TYPE, WorkDefinitionsType.F_CERTIFICATION_OPEN_NEXT_STAGE,
+                AccessCertificationOpenNextStageWorkDefinition.class, AccessCertificationOpenNextStageWorkDefinition::new, this);
+    }
+
+    @PreDestroy
+    public void unregister() {
+        registry.unregister(
+                CertificationOpenNextStageWorkDefinitionType.COMPLEX_TYPE,
+                AccessCertificationOpenNextStageWorkDefinition.class);
+    }
+
+    @Override
+    public @NotNull CompositeActivityRun<
+            AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler, ?> createActivityRun(
+            @NotNull ActivityRunInstantiationContext<
+                    AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> context,
+            @NotNull OperationResult result) {
+        return new CompositeActivityRun<>(context);
+    }
+
+    @Override
+    public ArrayList<Activity<?, ?>> createChildActivities(
+            Activity<AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> parentActivity) {
+        ArrayList<Activity<?, ?>> children = new ArrayList<>();
+        children.add(EmbeddedActivity.create(
+                parentActivity.getDefinition().cloneWithoutId(),
+                (context, result) -> new OpenNextStagePreparationActivityRun(context),
+                null,
+                (i) -> "preparation",
+                ActivityStateDefinition.normal(),
+                parentActivity));
+        children.add(EmbeddedActivity.create(
+                parentActivity.getDefinition().cloneWithoutId(),
+                (context, result) -> new OpenNextStageCaseCreationActivityRun(context),
+                null,
+                (i) -> "case-creation",
+                ActivityStateDefinition.normal(),
+                parentActivity));
+        children.add(EmbeddedActivity.create(
+                parentActivity.getDefinition().cloneWithoutId(),
+                (context, result) -> new OpenNextStageCaseAdvanceActivityRun(context),
+                null,
+                (i) -> "case-advance",
+                ActivityStateDefinition.normal(),
+                parentActivity));
+        children.add(EmbeddedActivity.create(
+                parentActivity.getDefinition().cloneWithoutId(),
+                (context, result) -> new OpenNextStageFinalizationActivityRun(context),
+                null,
+                (i) -> "finalization",
+                ActivityStateDefinition.normal(),
+                parentActivity));
+        return children;
+    }
+
+    /**
+     * Returns the stage that is being opened, i.e. the one following the current stage; or `null` if it was not added yet.
+     * (Unlike {@link CertCampaignTypeUtil#findStage(AccessCertificationCampaignType, int)} that fails in such a case.)
+     */
+    static @Nullable AccessCertificationStageType findStageBeingOpened(@NotNull AccessCertificationCampaignType campaign) {
+        int number = campaign.getStageNumber() + 1;
+        for (AccessCertificationStageType stage : campaign.getStage()) {
+            if (stage.getNumber() == number && norm(stage.getIteration()) == norm(campaign.getIteration())) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getIdentifierPrefix() {
+        return "certification-open-next-stage";
+    }
+
+    @Override
+    public @Nullable String getDefaultArchetypeOid() {
+        return ARCHETYPE_OID;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import static com.evolveum.midpoint.util.MiscUtil.configNonNull;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.Referencable;
+import com.evolveum.midpoint.repo.common.activity.definition.AbstractWorkDefinition;
+import com.evolveum.midpoint.repo.common.activity.definition.AffectedObjectsInformation;
+import com.evolveum.midpoint.repo.common.activity.definition.WorkDefinitionFactory.WorkDefinitionInfo;
+import com.evolveum.midpoint.util.DebugUtil;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.CertificationOpenNextStageWorkDefinitionType;
+
+/**
+ * Work definition for opening the next stage of a certification campaign.
+ */
+public class AccessCertificationOpenNextStageWorkDefinition extends AbstractWorkDefinition {
+
+    @NotNull private final String campaignOid;
+
+    AccessCertificationOpenNextStageWorkDefinition(@NotNull WorkDefinitionInfo info) throws ConfigurationException {
+        super(info);
+        var typedDefinition = (CertificationOpenNextStageWorkDefinitionType) info.getBean();
+        campaignOid = configNonNull(
+                Referencable.getOid(typedDefinition.getCertificationCampaignRef()),
+                "No campaign OID in work definition in %s", info.origin());
+    }
+
+    public @NotNull String getCampaignOid() {
+        return campaignOid;
+    }
+
+    @Override
+    public @NotNull AffectedObjectsInformation.ObjectSet getAffectedObjectSetInformation() {
+        return AffectedObjectsInformation.ObjectSet.notSupported();
+    }
+
+    @Override
+    protected void debugDumpContent(StringBuilder sb, int indent) {
+        DebugUtil.debugDumpWithLabel(sb, "campaignOid", campaignOid, indent + 1);
+    }
+}
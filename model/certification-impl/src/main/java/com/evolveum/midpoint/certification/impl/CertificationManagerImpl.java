@@ -231,25 +231,11 @@ public class CertificationManagerImpl implements CertificationManager {
 
             LOGGER.debug("openNextStage starting for {}", ObjectTypeUtil.toShortStringLazy(campaign));
 
-            securityEnforcer.authorize(
-                    ModelAuthorizationAction.OPEN_CERTIFICATION_CAMPAIGN_REVIEW_STAGE.getUrl(), null,
-                    AuthorizationParameters.Builder.buildObject(campaign.asPrismObject()), task, result);
+            authorizeOpenNextStage(campaign, task, result);
 
-            final int currentStageNumber = campaign.getStageNumber();
-            final int stages = CertCampaignTypeUtil.getNumberOfStages(campaign);
-            final AccessCertificationCampaignStateType state = campaign.getState();
-            LOGGER.trace("openNextStage: iteration={}, currentStageNumber={}, stages={}, state={}", norm(campaign.getIteration()), currentStageNumber, stages, state);
-            if (IN_REVIEW_STAGE.equals(state)) {
-                result.recordFatalError("Couldn't advance to the next review stage as the stage " + currentStageNumber + " is currently open.");
-            } else if (IN_REMEDIATION.equals(state)) {
-                result.recordFatalError("Couldn't advance to the next review stage as the campaign is currently in the remediation phase.");
-            } else if (CLOSED.equals(state)) {
-                result.recordFatalError("Couldn't advance to the next review stage as the campaign is already closed.");
-            } else if (!REVIEW_STAGE_DONE.equals(state) && !CREATED.equals(state)) {
-                throw new IllegalStateException("Unexpected campaign state: " + state);
-            } else if (currentStageNumber >= stages) {
-                result.recordFatalError(
-                        "Couldn't advance to the next review stage as the campaign has only " + stages + " stages");
+            String problem = checkNextStageCanBeOpened(campaign);
+            if (problem != null) {
+                result.recordFatalError(problem);
             } else {
                 CertificationHandler handler = findCertificationHandler(campaign);
                 openerHelper.openNextStage(campaign, handler, task, result);
@@ -262,6 +248,35 @@ public class CertificationManagerImpl implements CertificationManager {
         }
     }
 
+    void authorizeOpenNextStage(AccessCertificationCampaignType campaign, Task task, OperationResult result)
+            throws SchemaException, SecurityViolationException, ObjectNotFoundException, ExpressionEvaluationException,
+            CommunicationException, ConfigurationException {
+        securityEnforcer.authorize(
+                ModelAuthorizationAction.OPEN_CERTIFICATION_CAMPAIGN_REVIEW_STAGE.getUrl(), null,
+                AuthorizationParameters.Builder.buildObject(campaign.asPrismObject()), task, result);
+    }
+
+    /** Returns the reason why the next stage of the campaign cannot be opened, or `null` if it can. */
+    @Nullable String checkNextStageCanBeOpened(AccessCertificationCampaignType campaign) {
+        final int currentStageNumber = campaign.getStageNumber();
+        final int stages = CertCampaignTypeUtil.getNumberOfStages(campaign);
+        final AccessCertificationCampaignStateType state = campaign.getState();
+        LOGGER.trace("openNextStage: iteration={}, currentStageNumber={}, stages={}, state={}", norm(campaign.getIteration()), currentStageNumber, stages, state);
+        if (IN_REVIEW_STAGE.equals(state)) {
+            return "Couldn't advance to the next review stage as the stage " + currentStageNumber + " is currently open.";
+        } else if (IN_REMEDIATION.equals(state)) {
+            return "Couldn't advance to the next review stage as the campaign is currently in the remediation phase.";
+        } else if (CLOSED.equals(state)) {
+            return "Couldn't advance to the next review stage as the campaign is already closed.";
+        } else if (!REVIEW_STAGE_DONE.equals(state) && !CREATED.equals(state)) {
+            throw new IllegalStateException("Unexpected campaign state: " + state);
+        } else if (currentStageNumber >= stages) {
+            return "Couldn't advance to the next review stage as the campaign has only " + stages + " stages";
+        } else {
+            return null;
+        }
+    }
+
     @Override
     public void closeCurrentStage(String campaignOid, Task task, OperationResult parentResult)
             throws SchemaException, SecurityViolationException, ObjectNotFoundException, ObjectAlreadyExistsException,
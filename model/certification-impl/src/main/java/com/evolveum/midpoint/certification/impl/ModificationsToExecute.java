@@ -20,7 +20,7 @@ import java.util.stream.Collectors;
  */
 public class ModificationsToExecute {
 
-    private static final int BATCH_SIZE = 50;
+    static final int BATCH_SIZE = 50;
 
     final List<List<ItemDelta<?, ?>>> batches = new ArrayList<>();
 
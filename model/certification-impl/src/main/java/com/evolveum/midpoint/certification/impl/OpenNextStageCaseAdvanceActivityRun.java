@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import static com.evolveum.midpoint.schema.util.CertCampaignTypeUtil.norm;
+
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.certification.impl.AccCertOpenerHelper.OpeningContext;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.common.activity.run.ActivityRunException;
+import com.evolveum.midpoint.repo.common.activity.run.ActivityRunInstantiationContext;
+import com.evolveum.midpoint.repo.common.activity.run.SearchSpecification;
+import com.evolveum.midpoint.repo.common.activity.run.processing.ItemProcessingRequest;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCaseType;
+
+/**
+ * Advances the cases of the current iteration to the stage being opened. Not applicable when the first stage
+ * of the first iteration is being opened (there are no cases yet); then nothing is searched for.
+ *
+ * Cases that are already in the stage being opened (from an interrupted run) are skipped.
+ */
+final class OpenNextStageCaseAdvanceActivityRun extends AbstractOpenNextStageCasesActivityRun<AccessCertificationCaseType> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(OpenNextStageCaseAdvanceActivityRun.class);
+
+    private ObjectQuery casesQuery;
+
+    OpenNextStageCaseAdvanceActivityRun(
+            @NotNull ActivityRunInstantiationContext<
+                    AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> context) {
+        super(context, "Certification cases advance");
+        setInstanceReady();
+    }
+
+    @Override
+    public void beforeRun(OperationResult result) throws CommonException, ActivityRunException {
+        super.beforeRun(result);
+        if (AccCertOpenerHelper.isCaseCreationNeeded(campaign)) {
+            LOGGER.debug("No cases are to be advanced in {}", campaign);
+            casesQuery = PrismContext.get().queryFor(AccessCertificationCaseType.class)
+                    .none()
+                    .build();
+        } else {
+            casesQuery = PrismContext.get().queryFor(AccessCertificationCaseType.class)
+                    .ownerId(campaign.getOid())
+                    .and().item(AccessCertificationCaseType.F_ITERATION).eq(norm(campaign.getIteration()))
+                    .build();
+        }
+    }
+
+    @Override
+    public @NotNull SearchSpecification<AccessCertificationCaseType> createCustomSearchSpecification(OperationResult result) {
+        return new SearchSpecification<>(AccessCertificationCaseType.class, casesQuery.clone(), null, true);
+    }
+
+    @Override
+    public boolean processItem(@NotNull AccessCertificationCaseType aCase,
+            @NotNull ItemProcessingRequest<AccessCertificationCaseType> request,
+            RunningTask workerTask, OperationResult result) throws CommonException {
+        if (Objects.equals(aCase.getStageNumber(), stage.getNumber())) {
+            LOGGER.trace("Case {} is already in stage {}, skipping it", aCase.getId(), stage.getNumber());
+            result.recordNotApplicable("Case is already in the stage being opened");
+            return true;
+        }
+        addDeltas(
+                getActivityHandler().openerHelper.getDeltasToAdvanceCase(
+                        aCase, campaign, stage, reviewerSpec, new OpeningContext(), reviewersCache, workerTask, result),
+                result);
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.certification.impl.AccCertOpenerHelper.OpeningContext;
+import com.evolveum.midpoint.certification.impl.handlers.CertificationHandler;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.TypedObjectQuery;
+import com.evolveum.midpoint.repo.common.activity.run.ActivityRunException;
+import com.evolveum.midpoint.repo.common.activity.run.ActivityRunInstantiationContext;
+import com.evolveum.midpoint.repo.common.activity.run.SearchSpecification;
+import com.evolveum.midpoint.repo.common.activity.run.processing.ItemProcessingRequest;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCaseType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+
+/**
+ * Creates certification cases for the objects in the campaign scope. Applicable only when the first stage of the first
+ * iteration is being opened; otherwise, nothing is searched for.
+ *
+ * Cases for an object are written all at once. If there are any cases in the campaign when this run starts, we are resuming
+ * an interrupted run (the preparation sub-activity checks there are none at the beginning). In that case, objects that
+ * already have their cases are skipped.
+ */
+final class OpenNextStageCaseCreationActivityRun extends AbstractOpenNextStageCasesActivityRun<FocusType> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(OpenNextStageCaseCreationActivityRun.class);
+
+    private CertificationHandler certificationHandler;
+
+    /** Search specification for the objects in the scope; or for nothing, if no cases should be created. */
+    private SearchSpecification<FocusType> scopeSearchSpecification;
+
+    /** Whether we have to check for existing cases before creating new ones. See the class javadoc. */
+    private boolean checkExistingCases;
+
+    OpenNextStageCaseCreationActivityRun(
+            @NotNull ActivityRunInstantiationContext<
+                    AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> context) {
+        super(context, "Certification cases creation");
+        setInstanceReady();
+    }
+
+    @Override
+    public void beforeRun(OperationResult result) throws CommonException, ActivityRunException {
+        super.beforeRun(result);
+        if (AccCertOpenerHelper.isCaseCreationNeeded(campaign)) {
+            certificationHandler = getActivityHandler().certificationManager.findCertificationHandler(campaign);
+            TypedObjectQuery<FocusType> scopeQuery =
+                    getActivityHandler().openerHelper.prepareScopeQuery(campaign, certificationHandler);
+            scopeSearchSpecification = new SearchSpecification<>(
+                    scopeQuery.getObjectClass(), scopeQuery.getObjectQuery(), null, true);
+            checkExistingCases = countCases(null, result) > 0;
+            if (checkExistingCases) {
+                LOGGER.info("There are existing cases in {}, probably from an interrupted run. Objects having them will be "
+                        + "skipped.", campaign);
+            }
+        } else {
+            LOGGER.debug("No cases are to be created in {}", campaign);
+            scopeSearchSpecification = new SearchSpecification<>(
+                    FocusType.class, PrismContext.get().queryFor(FocusType.class).none().build(), null, true);
+        }
+    }
+
+    @Override
+    public @NotNull SearchSpecification<FocusType> createCustomSearchSpecification(OperationResult result) {
+        return scopeSearchSpecification.clone();
+    }
+
+    @Override
+    public boolean processItem(@NotNull FocusType object, @NotNull ItemProcessingRequest<FocusType> request,
+            RunningTask workerTask, OperationResult result) throws CommonException {
+        if (checkExistingCases && countCases(object.getOid(), result) > 0) {
+            LOGGER.trace("Cases for {} already exist, skipping the object", object);
+            result.recordNotApplicable("Cases already exist");
+            return true;
+        }
+
+        Collection<? extends AccessCertificationCaseType> cases =
+                certificationHandler.createCasesForObject(object.asPrismObject(), campaign, workerTask, result);
+        List<ItemDelta<?, ?>> deltas = new ArrayList<>(cases.size());
+        for (AccessCertificationCaseType aCase : cases) {
+            getActivityHandler().openerHelper.prepareNewCase(
+                    aCase, campaign, stage, reviewerSpec, new OpeningContext(), reviewersCache, workerTask, result);
+            deltas.add(getActivityHandler().openerHelper.createCaseAddDelta(aCase));
+        }
+        addDeltas(deltas, result);
+        return true;
+    }
+
+    /** Counts cases in the campaign; for given object, if specified. */
+    private int countCases(String objectOid, OperationResult result) {
+        var queryBuilder = PrismContext.get().queryFor(AccessCertificationCaseType.class)
+                .ownerId(campaign.getOid());
+        ObjectQuery query = objectOid != null ?
+                queryBuilder.and().item(AccessCertificationCaseType.F_OBJECT_REF).ref(objectOid).build() :
+                queryBuilder.build();
+        return getActivityHandler().repositoryService.countContainers(AccessCertificationCaseType.class, query, null, result);
+    }
+}
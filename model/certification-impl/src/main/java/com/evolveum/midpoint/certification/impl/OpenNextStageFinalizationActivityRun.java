@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import static com.evolveum.midpoint.certification.impl.AccessCertificationOpenNextStageActivityHandler.findStageBeingOpened;
+import static com.evolveum.midpoint.schema.result.OperationResultStatus.FATAL_ERROR;
+import static com.evolveum.midpoint.task.api.TaskRunResult.TaskRunResultStatus.PERMANENT_ERROR;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.repo.common.activity.run.*;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractActivityWorkStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationStageType;
+
+/**
+ * Records the stage as open (stage number, campaign state, triggers), and sends the notifications.
+ */
+final class OpenNextStageFinalizationActivityRun
+        extends LocalActivityRun<
+        AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler,
+        AbstractActivityWorkStateType> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(OpenNextStageFinalizationActivityRun.class);
+
+    OpenNextStageFinalizationActivityRun(
+            @NotNull ActivityRunInstantiationContext<
+                    AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> context) {
+        super(context);
+        setInstanceReady();
+    }
+
+    @Override
+    public @NotNull ActivityReportingCharacteristics createReportingCharacteristics() {
+        return super.createReportingCharacteristics()
+                .progressSupported(false);
+    }
+
+    @Override
+    protected @NotNull ActivityRunResult runLocally(OperationResult result) throws ActivityRunException, CommonException {
+        ensureNoPreviewNorDryRun();
+
+        var handler = getActivityHandler();
+        RunningTask task = getRunningTask();
+        AccessCertificationCampaignType campaign =
+                handler.generalHelper.getCampaign(getWorkDefinition().getCampaignOid(), null, task, result);
+
+        if (campaign.getState() == AccessCertificationCampaignStateType.IN_REVIEW_STAGE) {
+            LOGGER.warn("Stage {} is already open in {}; the notifications might not have been sent",
+                    campaign.getStageNumber(), ObjectTypeUtil.toShortString(campaign));
+            return standardRunResult();
+        }
+
+        AccessCertificationStageType stage = findStageBeingOpened(campaign);
+        if (stage == null) {
+            throw new ActivityRunException(
+                    "No stage being opened in " + campaign + "; has the preparation sub-activity been run?",
+                    FATAL_ERROR, PERMANENT_ERROR);
+        }
+        handler.updateHelper.modifyObjectPreAuthorized(
+                AccessCertificationCampaignType.class, campaign.getOid(),
+                handler.openerHelper.getDeltasToRecordStageOpen(campaign, stage), task, result);
+        handler.openerHelper.afterStageOpen(campaign.getOid(), stage, task, result); // notifications, bookkeeping, ...
+        LOGGER.info("Stage {} was opened in {}", stage.getNumber(), ObjectTypeUtil.toShortString(campaign));
+        return standardRunResult();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.impl;
+
+import static com.evolveum.midpoint.certification.impl.AccessCertificationOpenNextStageActivityHandler.findStageBeingOpened;
+import static com.evolveum.midpoint.schema.result.OperationResultStatus.FATAL_ERROR;
+import static com.evolveum.midpoint.schema.util.CertCampaignTypeUtil.norm;
+import static com.evolveum.midpoint.task.api.TaskRunResult.TaskRunResultStatus.PERMANENT_ERROR;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.repo.common.activity.run.*;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractActivityWorkStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationStageType;
+
+/**
+ * Checks that the next stage can be opened, and adds it to the campaign. (Unless it was already added by an interrupted run.)
+ */
+final class OpenNextStagePreparationActivityRun
+        extends LocalActivityRun<
+        AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler,
+        AbstractActivityWorkStateType> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(OpenNextStagePreparationActivityRun.class);
+
+    OpenNextStagePreparationActivityRun(
+            @NotNull ActivityRunInstantiationContext<
+                    AccessCertificationOpenNextStageWorkDefinition, AccessCertificationOpenNextStageActivityHandler> context) {
+        super(context);
+        setInstanceReady();
+    }
+
+    @Override
+    public @NotNull ActivityReportingCharacteristics createReportingCharacteristics() {
+        return super.createReportingCharacteristics()
+                .progressSupported(false);
+    }
+
+    @Override
+    protected @NotNull ActivityRunResult runLocally(OperationResult result) throws ActivityRunException, CommonException {
+        ensureNoPreviewNorDryRun();
+
+        var handler = getActivityHandler();
+        RunningTask task = getRunningTask();
+        AccessCertificationCampaignType campaign =
+                handler.generalHelper.getCampaign(getWorkDefinition().getCampaignOid(), null, task, result);
+
+        handler.certificationManager.authorizeOpenNextStage(campaign, task, result);
+
+        String problem = handler.certificationManager.checkNextStageCanBeOpened(campaign);
+        if (problem != null) {
+            throw new ActivityRunException(problem, FATAL_ERROR, PERMANENT_ERROR);
+        }
+        if (norm(campaign.getIteration()) > 1) {
+            throw new ActivityRunException(
+                    "Opening stages in iterations other than the first one is not supported by this activity",
+                    FATAL_ERROR, PERMANENT_ERROR);
+        }
+
+        AccessCertificationStageType existingStage = findStageBeingOpened(campaign);
+        if (existingStage != null) {
+            LOGGER.info("Stage {} was already added to {}, continuing with it", existingStage.getNumber(), campaign);
+            return standardRunResult();
+        }
+
+        if (AccCertOpenerHelper.isCaseCreationNeeded(campaign)) {
+            handler.openerHelper.assertNoExistingCases(campaign, result);
+        }
+        AccessCertificationStageType stage = handler.openerHelper.createStage(campaign, campaign.getStageNumber() + 1);
+        handler.updateHelper.modifyObjectPreAuthorized(
+                AccessCertificationCampaignType.class, campaign.getOid(),
+                List.of(handler.openerHelper.createStageAddDelta(stage)), task, result);
+        LOGGER.info("Stage {} is being opened in {}", stage.getNumber(), ObjectTypeUtil.toShortString(campaign));
+        return standardRunResult();
+    }
+}
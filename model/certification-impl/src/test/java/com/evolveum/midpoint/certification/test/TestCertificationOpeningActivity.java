@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.certification.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.AccessCertificationCampaignType.F_CASE;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.util.TestUtil;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Opens the stages of a campaign using the `certificationOpenNextStage` activity (instead of the synchronous method),
+ * with multiple worker threads.
+ *
+ * The second campaign (tests 3xx) checks the case creation in buckets, and continuing after an interrupted opening:
+ * by the activity itself, as well as by the synchronous method (after no or partial case creation, and after partial
+ * case advance).
+ *
+ * Uses the same definition as {@link TestRoleInducementCertification}.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-certification-test-main.xml" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestCertificationOpeningActivity extends AbstractCertificationTest {
+
+    private AccessCertificationDefinitionType certificationDefinition;
+    private String campaignOid;
+    private String secondCampaignOid;
+
+    @Test
+    public void test010CreateCampaign() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("certification definition");
+        certificationDefinition = repoAddObjectFromFile(ROLE_INDUCEMENT_CERT_DEF_FILE,
+                AccessCertificationDefinitionType.class, result).asObjectable();
+
+        when("campaign is created");
+        campaignOid = certificationManager.createCampaign(certificationDefinition.getOid(), task, result).getOid();
+
+        then("campaign is OK");
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertSanityAfterCampaignCreate(getCampaignWithCases(campaignOid), certificationDefinition);
+    }
+
+    @Test
+    public void test100OpenFirstStage() throws Exception {
+        when("first stage is opened by the activity");
+        runOpenNextStageTask();
+
+        then("the cases are created");
+        AccessCertificationCampaignType campaign = getCampaignWithCases(campaignOid);
+        display("campaign in stage 1", campaign);
+        assertSanityAfterCampaignStart(campaign, certificationDefinition, 5);
+
+        List<AccessCertificationCaseType> cases = campaign.getCase();
+        assertReviewers(cases, ROLE_CEO_OID, RESOURCE_DUMMY_OID, 1, USER_ELAINE_OID);
+        assertReviewers(cases, ROLE_COO_OID, RESOURCE_DUMMY_OID, 1, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_COO_OID, RESOURCE_DUMMY_BLACK_OID, 1, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_COO_OID, ROLE_SUPERUSER_OID, 1, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_SUPERUSER_OID, RESOURCE_DUMMY_OID, 1);
+    }
+
+    @Test
+    public void test110CloseFirstStage() throws Exception {
+        Task task = getTestTask();
+        task.setOwner(userAdministrator.asPrismObject());
+        OperationResult result = task.getResult();
+
+        when("first stage is closed (with no responses)");
+        certificationManager.closeCurrentStage(campaignOid, task, result);
+
+        then("the stage is closed");
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertSanityAfterStageClose(getCampaignWithCases(campaignOid), certificationDefinition, 1);
+    }
+
+    @Test
+    public void test200OpenSecondStage() throws Exception {
+        when("second stage is opened by the activity");
+        runOpenNextStageTask();
+
+        then("all the cases are advanced (accepted if not denied in stage 1)");
+        assertSecondStageOpen(campaignOid);
+    }
+
+    @Test
+    public void test210OpenThirdStage() throws Exception {
+        Task task = getTestTask();
+        task.setOwner(userAdministrator.asPrismObject());
+        OperationResult result = task.getResult();
+
+        given("second stage is closed");
+        certificationManager.closeCurrentStage(campaignOid, task, result);
+
+        when("the activity is run again");
+        String taskOid = addOpenNextStageTask(result);
+        waitForTaskCloseOrSuspend(taskOid);
+
+        then("it fails, as there are only two stages");
+        assertTask(taskOid, "after")
+                .display()
+                .assertFatalError();
+        assertSanityAfterStageClose(getCampaignWithCases(campaignOid), certificationDefinition, 2);
+    }
+
+    @Test
+    public void test300OpenFirstStageInBuckets() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("another campaign");
+        secondCampaignOid = certificationManager.createCampaign(certificationDefinition.getOid(), task, result).getOid();
+
+        when("first stage is opened by the activity, creating the cases in buckets");
+        runOpenNextStageTask(secondCampaignOid, new ActivitiesTailoringType()
+                .change(new ActivityTailoringType()
+                        .reference("case-creation")
+                        .distribution(new ActivityDistributionDefinitionTailoringType()
+                                .buckets(new BucketsDefinitionType()
+                                        .oidSegmentation(new OidWorkSegmentationType()
+                                                .depth(1)))
+                                .workerThreads(2)
+                                .tailoringMode(TailoringModeType.OVERWRITE_SPECIFIED))));
+
+        then("the cases are created, each one once");
+        assertFirstStageOpen(secondCampaignOid);
+    }
+
+    /** Preparation and a part of case creation were done, then the task was interrupted. */
+    @Test
+    public void test310ResumeInterruptedOpening() throws Exception {
+        OperationResult result = getTestOperationResult();
+
+        given("campaign with the first stage added, but with the cases created only for some objects");
+        revertToStageBeingOpened(secondCampaignOid, 1, Set.of(ROLE_COO_OID), result);
+
+        when("the activity is run again");
+        runOpenNextStageTask(secondCampaignOid, null);
+
+        then("the stage is reused and the missing cases are created");
+        assertFirstStageOpen(secondCampaignOid);
+    }
+
+    /** Preparation was done, but the case creation failed. The stage is then opened synchronously. */
+    @Test
+    public void test320OpenSynchronouslyAfterFailedActivity() throws Exception {
+        Task task = getTestTask();
+        task.setOwner(userAdministrator.asPrismObject());
+        OperationResult result = task.getResult();
+
+        given("campaign with the first stage added, but with no cases");
+        revertToStageBeingOpened(secondCampaignOid, 1, Set.of(), result);
+
+        when("the stage is opened synchronously");
+        certificationManager.openNextStage(secondCampaignOid, task, result);
+
+        then("the stage is reused (not added again) and the cases are created");
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertFirstStageOpen(secondCampaignOid);
+    }
+
+    /** Preparation and a part of case creation were done, then the activity failed. The stage is opened synchronously. */
+    @Test
+    public void test330OpenSynchronouslyAfterPartialCaseCreation() throws Exception {
+        Task task = getTestTask();
+        task.setOwner(userAdministrator.asPrismObject());
+        OperationResult result = task.getResult();
+
+        given("campaign with the first stage added, but with the cases created only for some objects");
+        revertToStageBeingOpened(secondCampaignOid, 1, Set.of(ROLE_COO_OID), result);
+
+        when("the stage is opened synchronously");
+        certificationManager.openNextStage(secondCampaignOid, task, result);
+
+        then("the existing cases are kept and only the missing ones are created");
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertFirstStageOpen(secondCampaignOid);
+    }
+
+    /** Preparation and a part of case advance were done, then the activity failed. The stage is opened synchronously. */
+    @Test
+    public void test340OpenSynchronouslyAfterPartialCaseAdvance() throws Exception {
+        Task task = getTestTask();
+        task.setOwner(userAdministrator.asPrismObject());
+        OperationResult result = task.getResult();
+
+        given("campaign with the second stage added, but with only some cases advanced to it");
+        certificationManager.closeCurrentStage(secondCampaignOid, task, result);
+        runOpenNextStageTask(secondCampaignOid, null);
+        revertToStageBeingOpened(secondCampaignOid, 2, Set.of(ROLE_COO_OID), result);
+
+        when("the stage is opened synchronously");
+        certificationManager.openNextStage(secondCampaignOid, task, result);
+
+        then("the advanced cases are kept as they are and the other ones are advanced, each one once");
+        result.computeStatus();
+        TestUtil.assertSuccess(result);
+        assertSecondStageOpen(secondCampaignOid);
+    }
+
+    /** Checks the state after the first stage was opened; including that the stage is there only once. */
+    private void assertFirstStageOpen(String campaignOid) throws Exception {
+        AccessCertificationCampaignType campaign = getCampaignWithCases(campaignOid);
+        display("campaign in stage 1", campaign);
+        assertSanityAfterCampaignStart(campaign, certificationDefinition, 5);
+
+        List<AccessCertificationCaseType> cases = campaign.getCase();
+        assertReviewers(cases, ROLE_CEO_OID, RESOURCE_DUMMY_OID, 1, USER_ELAINE_OID);
+        assertReviewers(cases, ROLE_COO_OID, RESOURCE_DUMMY_OID, 1, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_COO_OID, RESOURCE_DUMMY_BLACK_OID, 1, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_COO_OID, ROLE_SUPERUSER_OID, 1, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_SUPERUSER_OID, RESOURCE_DUMMY_OID, 1);
+    }
+
+    /** Checks the state after the second stage was opened; including that each case entered the stage once. */
+    private void assertSecondStageOpen(String campaignOid) throws Exception {
+        AccessCertificationCampaignType campaign = getCampaignWithCases(campaignOid);
+        display("campaign in stage 2", campaign);
+        assertSanityAfterStageOpen(campaign, certificationDefinition, 2);
+
+        List<AccessCertificationCaseType> cases = campaign.getCase();
+        assertEquals("Wrong number of certification cases", 5, cases.size());
+        for (AccessCertificationCaseType aCase : cases) {
+            assertEquals("Wrong stage number in " + aCase, (Integer) 2, aCase.getStageNumber());
+        }
+        assertReviewers(cases, ROLE_CEO_OID, RESOURCE_DUMMY_OID, 2, USER_JACK_OID, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_COO_OID, RESOURCE_DUMMY_OID, 2, USER_JACK_OID, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_COO_OID, RESOURCE_DUMMY_BLACK_OID, 2, USER_ADMINISTRATOR_OID, USER_ELAINE_OID);
+        assertReviewers(cases, ROLE_COO_OID, ROLE_SUPERUSER_OID, 2, USER_ADMINISTRATOR_OID);
+        assertReviewers(cases, ROLE_SUPERUSER_OID, RESOURCE_DUMMY_OID, 2, USER_JACK_OID, USER_ADMINISTRATOR_OID);
+    }
+
+    /**
+     * Puts the campaign into the state in which an interrupted opening of given stage leaves it: the stage is added,
+     * and the campaign was not switched to the review stage yet. For the first stage, the cases exist only for given
+     * objects (they are created for an object all at once). For later stages, only the cases of given objects are
+     * advanced to the stage; the other ones stay in the previous stage, without the work items of the stage being opened.
+     */
+    private void revertToStageBeingOpened(
+            String campaignOid, int stageNumber, Set<String> objectOidsToKeep, OperationResult result)
+            throws Exception {
+        AccessCertificationCampaignType campaign = getCampaignWithCases(campaignOid);
+        List<ItemDelta<?, ?>> deltas = new ArrayList<>();
+        int casesKept = 0;
+        for (AccessCertificationCaseType aCase : campaign.getCase()) {
+            if (objectOidsToKeep.contains(aCase.getObjectRef().getOid())) {
+                casesKept++;
+            } else if (stageNumber == 1) {
+                deltas.addAll(deltaFor(AccessCertificationCampaignType.class)
+                        .item(F_CASE).delete(new AccessCertificationCaseType().id(aCase.getId()))
+                        .asItemDeltas());
+            } else {
+                for (AccessCertificationWorkItemType workItem : aCase.getWorkItem()) {
+                    if (workItem.getStageNumber() == stageNumber) {
+                        deltas.addAll(deltaFor(AccessCertificationCampaignType.class)
+                                .item(F_CASE, aCase.getId(), AccessCertificationCaseType.F_WORK_ITEM)
+                                .delete(new AccessCertificationWorkItemType().id(workItem.getId()))
+                                .asItemDeltas());
+                    }
+                }
+                deltas.addAll(deltaFor(AccessCertificationCampaignType.class)
+                        .item(F_CASE, aCase.getId(), AccessCertificationCaseType.F_STAGE_NUMBER).replace(stageNumber - 1)
+                        .asItemDeltas());
+            }
+        }
+        deltas.addAll(deltaFor(AccessCertificationCampaignType.class)
+                .item(AccessCertificationCampaignType.F_STATE).replace(
+                        stageNumber == 1 ?
+                                AccessCertificationCampaignStateType.CREATED :
+                                AccessCertificationCampaignStateType.REVIEW_STAGE_DONE)
+                .item(AccessCertificationCampaignType.F_STAGE_NUMBER).replace(stageNumber - 1)
+                .asItemDeltas());
+        repositoryService.modifyObject(AccessCertificationCampaignType.class, campaignOid, deltas, result);
+
+        AccessCertificationCampaignType reverted = getCampaignWithCases(campaignOid);
+        assertEquals("Wrong # of stages", stageNumber, reverted.getStage().size());
+        if (stageNumber == 1) {
+            assertEquals("Wrong # of cases", casesKept, reverted.getCase().size());
+        } else {
+            assertEquals("Wrong # of cases in the stage being opened", casesKept,
+                    reverted.getCase().stream()
+                            .filter(c -> c.getStageNumber() == stageNumber)
+                            .count());
+        }
+    }
+
+    private void runOpenNextStageTask() throws Exception {
+        runOpenNextStageTask(campaignOid, null);
+    }
+
+    private void runOpenNextStageTask(String campaignOid, ActivitiesTailoringType tailoring) throws Exception {
+        OperationResult result = getTestOperationResult();
+        String taskOid = addOpenNextStageTask(campaignOid, tailoring, result);
+        waitForTaskFinish(taskOid);
+        assertTask(taskOid, "after")
+                .display()
+                .assertClosed()
+                .assertSuccess();
+    }
+
+    private String addOpenNextStageTask(OperationResult result) throws Exception {
+        return addOpenNextStageTask(campaignOid, null, result);
+    }
+
+    private String addOpenNextStageTask(String campaignOid, ActivitiesTailoringType tailoring, OperationResult result)
+            throws Exception {
+        TaskType task = new TaskType()
+                .name(getTestNameShort())
+                .ownerRef(USER_ADMINISTRATOR_OID, UserType.COMPLEX_TYPE)
+                .executionState(TaskExecutionStateType.RUNNABLE)
+                .activity(new ActivityDefinitionType()
+                        .work(new WorkDefinitionsType()
+                                .certificationOpenNextStage(new CertificationOpenNextStageWorkDefinitionType()
+                                        .certificationCampaignRef(campaignOid, AccessCertificationCampaignType.COMPLEX_TYPE)))
+                        .distribution(new ActivityDistributionDefinitionType()
+                                .workerThreads(2))
+                        .tailoring(tailoring));
+        return taskManager.addTask(task.asPrismObject(), result);
+    }
+
+    private void assertReviewers(Collection<AccessCertificationCaseType> cases, String objectOid, String targetOid,
+            int stageNumber, String... expectedReviewerOids) {
+        AccessCertificationCaseType aCase = findCase(cases, objectOid, targetOid);
+        List<AccessCertificationWorkItemType> workItems = aCase.getWorkItem().stream()
+                .filter(wi -> wi.getStageNumber() == stageNumber)
+                .collect(Collectors.toList());
+        Set<String> reviewerOids = workItems.stream()
+                .flatMap(wi -> wi.getAssigneeRef().stream())
+                .map(ObjectReferenceType::getOid)
+                .collect(Collectors.toSet());
+        assertEquals("Wrong reviewers in stage " + stageNumber + " for " + objectOid + "->" + targetOid,
+                Set.of(expectedReviewerOids), reviewerOids);
+        assertEquals("Wrong # of work items in stage " + stageNumber + " for " + objectOid + "->" + targetOid,
+                expectedReviewerOids.length, workItems.size());
+    }
+}
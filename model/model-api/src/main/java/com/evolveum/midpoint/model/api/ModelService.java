@@ -78,6 +78,7 @@ public interface ModelService {
     String COUNT_REFERENCES = CLASS_NAME_WITH_DOT + "countReferences";
     String EXECUTE_CHANGES = CLASS_NAME_WITH_DOT + "executeChanges";
     String EXECUTE_CHANGE = CLASS_NAME_WITH_DOT + "executeChange";
+    String EXECUTE_CHANGES_IN_BULK = CLASS_NAME_WITH_DOT + "executeChangesInBulk";
     String RECOMPUTE = CLASS_NAME_WITH_DOT + "recompute";
     String LIST_ACCOUNT_SHADOW_OWNER = CLASS_NAME_WITH_DOT + "listAccountShadowOwner";
     String IMPORT_ACCOUNTS_FROM_RESOURCE = CLASS_NAME_WITH_DOT + "importAccountsFromResource";
@@ -235,6 +236,35 @@ public interface ModelService {
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException, ExpressionEvaluationException,
             CommunicationException, ConfigurationException, PolicyViolationException, SecurityViolationException;
 
+    /**
+     * Executes a batch of mutually independent changes.
+     *
+     * Unlike {@link #executeChanges(Collection, ModelExecuteOptions, Task, OperationResult)}, each delta is executed
+     * as a separate operation, i.e. in its own clockwork run, with its own authorization, auditing and operation result.
+     * A failure of one delta does not prevent the other ones from being executed.
+     *
+     * The deltas are partitioned by the OID of the object they are applied to. The partitions are executed concurrently,
+     * using at most `threads` threads; deltas in the same partition (i.e. touching the same object) are executed
+     * one after another, in the order in which they were provided. ADD deltas without OID are considered independent
+     * of each other.
+     *
+     * Note that only the object the delta is applied to is considered when partitioning. If independent deltas
+     * cause changes of the same object (e.g. via inducements or object templates), they are resolved by the usual
+     * conflict detection means, just like if they were executed by concurrent requests.
+     *
+     * @param threads maximal number of threads to use; values less than 2 mean that the deltas are executed
+     * on the calling thread (sequentially). The value is capped by the number of available processors.
+     * @return one delta operation for each input delta, in the input order; it contains the original delta,
+     * the OID of the object (relevant for ADD deltas without OID) and the operation result of the execution.
+     */
+    @Experimental
+    @NotNull List<ObjectDeltaOperation<? extends ObjectType>> executeChangesInBulk(
+            @NotNull List<ObjectDelta<? extends ObjectType>> deltas,
+            @Nullable ModelExecuteOptions options,
+            int threads,
+            @NotNull Task task,
+            @NotNull OperationResult parentResult);
+
     /**
      * Recomputes focal object with the specified OID. The operation considers all the applicable policies and
      * mapping and tries to re-apply them as necessary.
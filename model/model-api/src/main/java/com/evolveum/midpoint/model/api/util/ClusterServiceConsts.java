@@ -6,6 +6,12 @@ package com.evolveum.midpoint.model.api.util;
 public class ClusterServiceConsts {
 
     public static final String EVENT_INVALIDATION = "/event/invalidation/";
+
+    /**
+     * Batch of invalidations, sent as text/plain body with one line per invalidation:
+     * `restType/oid`, `restType` or `*` (for all types).
+     */
+    public static final String EVENT_INVALIDATION_BATCH = "/event/invalidationBatch";
     public static final String EVENT_TERMINATE_SESSION = "/event/terminateSession/";
     public static final String EVENT_LIST_USER_SESSION = "/event/listUserSession";
 }
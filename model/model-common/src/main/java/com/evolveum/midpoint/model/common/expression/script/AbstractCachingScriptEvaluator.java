@@ -11,10 +11,13 @@ import org.jetbrains.annotations.NotNull;
 import com.evolveum.midpoint.common.LocalizationService;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.crypto.Protector;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.schema.expression.ScriptLanguageExpressionProfile;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -53,21 +56,35 @@ public abstract class AbstractCachingScriptEvaluator<I, C> extends AbstractScrip
 
     private C getCompiledScript(String codeString, ScriptExpressionEvaluationContext context)
             throws ExpressionEvaluationException, SecurityViolationException {
-        C cachedCompiledScript = scriptCache.getCode(context.getExpressionProfile(), codeString);
-        if (cachedCompiledScript != null) {
-            return cachedCompiledScript;
-        }
-        InternalMonitor.recordCount(InternalCounters.SCRIPT_COMPILE_COUNT);
-        C compiledScript;
-        try {
-            compiledScript = compileScript(codeString, context);
-        } catch (ExpressionEvaluationException | SecurityViolationException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new ExpressionEvaluationException(e.getMessage() + " while compiling " + context.getContextDescription(), e);
-        }
-        scriptCache.putCode(context.getExpressionProfile(), codeString, compiledScript);
-        return compiledScript;
+        return scriptCache.getOrCompile(context.getExpressionProfile(), codeString, () -> {
+            InternalMonitor.recordCount(InternalCounters.SCRIPT_COMPILE_COUNT);
+            try {
+                return compileScript(codeString, context);
+            } catch (ExpressionEvaluationException | SecurityViolationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ExpressionEvaluationException(e.getMessage() + " while compiling " + context.getContextDescription(), e);
+            }
+        });
+    }
+
+    /**
+     * Compiles the script for given expression profile and puts it into the cache, if not there yet.
+     * Used to warm up the cache, so that the first evaluation does not have to wait for the compilation.
+     */
+    public void precompile(@NotNull String codeString, ExpressionProfile expressionProfile,
+            ScriptLanguageExpressionProfile scriptExpressionProfile, String contextDescription)
+            throws ExpressionEvaluationException, SecurityViolationException {
+        ScriptExpressionEvaluationContext context = new ScriptExpressionEvaluationContext();
+        context.setExpressionProfile(expressionProfile);
+        context.setScriptExpressionProfile(scriptExpressionProfile);
+        context.setContextDescription(contextDescription);
+        getCompiledScript(codeString, context);
+    }
+
+    /** Returns the state of the compiled script cache, for the cache registry. */
+    public @NotNull SingleCacheStateInformationType getCacheStateInformation() {
+        return scriptCache.getStateInformation(ScriptCache.class.getName() + "." + getLanguageName());
     }
 
     protected abstract C compileScript(String codeString, ScriptExpressionEvaluationContext context) throws Exception;
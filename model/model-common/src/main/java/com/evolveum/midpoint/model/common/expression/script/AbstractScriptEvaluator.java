@@ -91,6 +91,7 @@ public abstract class AbstractScriptEvaluator implements ScriptEvaluator {
             // Exception already processed by the underlying code.
             throw e;
         } catch (Throwable e) {
+            rethrowLazyVariableConversionException(e);
             throw getLocalizationService().translate(
                     new ExpressionEvaluationException(
                             e.getMessage() + " in " + context.getContextDescription(),
@@ -158,26 +159,7 @@ public abstract class AbstractScriptEvaluator implements ScriptEvaluator {
                     continue;
                 }
                 String variableName = variableEntry.getKey();
-                ValueVariableModeType valueVariableMode = ObjectUtils.defaultIfNull(
-                        context.getScriptBean().getValueVariableMode(), ValueVariableModeType.REAL_VALUE);
-
-                //noinspection rawtypes
-                TypedValue variableTypedValue = ExpressionUtil.convertVariableValue(
-                        variableEntry.getValue(), variableName,
-                        context.getObjectResolver(), context.getContextDescription(),
-                        context.getScriptBean().getObjectVariableMode(),
-                        valueVariableMode,
-                        prismContext, context.getTask(), context.getResult());
-
-                scriptVariableMap.put(variableName, variableTypedValue.getValue());
-                if (context.getTrace() != null && !variables.isAlias(variableName)) {
-                    ScriptVariableEvaluationTraceType variableTrace = new ScriptVariableEvaluationTraceType();
-                    variableTrace.setName(new QName(variableName));
-                    Object clonedValue = cloneIfPossible(variableTypedValue.getValue());
-                    variableTrace.getValue().addAll(TraceUtil.toAnyValueTypeList(clonedValue, prismContext));
-                    variables.getAliases(variableName).forEach(alias -> variableTrace.getAlias().add(new QName(alias)));
-                    context.getTrace().getVariable().add(variableTrace);
-                }
+                scriptVariableMap.put(variableName, convertVariableValue(variableName, variableEntry.getValue(), context));
             }
         }
 
@@ -187,6 +169,102 @@ public abstract class AbstractScriptEvaluator implements ScriptEvaluator {
         return scriptVariableMap;
     }
 
+    /**
+     * Returns variable map (name -> value) that converts the variables only when they are accessed by the script.
+     * Converting a variable can mean resolving a reference from the repository, and scripts typically use only
+     * a few of the variables they get.
+     *
+     * Conversion errors are thrown as {@link TunnelException} from the map, they are unwrapped in {@link #evaluate}.
+     *
+     * When tracing, all variables are converted in advance, as their values are recorded in the trace.
+     */
+    protected Map<String, Object> prepareLazyScriptVariablesValueMap(ScriptExpressionEvaluationContext context)
+            throws ExpressionSyntaxException, ObjectNotFoundException, CommunicationException, ConfigurationException,
+            SecurityViolationException, ExpressionEvaluationException {
+        if (context.getTrace() != null) {
+            return prepareScriptVariablesValueMap(context);
+        }
+
+        LazyScriptVariablesMap scriptVariableMap = new LazyScriptVariablesMap(
+                (name, typedValue) -> convertVariableValue(name, typedValue, context));
+        // Functions
+        for (FunctionLibraryBinding funcLib : emptyIfNull(context.getFunctionLibraryBindings())) {
+            scriptVariableMap.put(funcLib.getVariableName(), funcLib.getImplementation());
+        }
+
+        // Variables
+        VariablesMap variables = context.getVariables();
+        if (variables != null) {
+            for (Entry<String, TypedValue<?>> variableEntry : variables.entrySet()) {
+                if (variableEntry.getKey() == null) {
+                    // This is the "root" node. We have no use for it in script expressions, just skip it
+                    continue;
+                }
+                scriptVariableMap.putUnresolved(variableEntry.getKey(), variableEntry.getValue());
+            }
+        }
+
+        scriptVariableMap.putIfMissing(ExpressionConstants.VAR_PRISM_CONTEXT, prismContext);
+        scriptVariableMap.putIfMissing(ExpressionConstants.VAR_LOCALIZATION_SERVICE, localizationService);
+
+        return scriptVariableMap;
+    }
+
+    private Object convertVariableValue(
+            String variableName, TypedValue<?> typedValue, ScriptExpressionEvaluationContext context)
+            throws ExpressionSyntaxException, ObjectNotFoundException, CommunicationException, ConfigurationException,
+            SecurityViolationException, ExpressionEvaluationException {
+        ValueVariableModeType valueVariableMode = ObjectUtils.defaultIfNull(
+                context.getScriptBean().getValueVariableMode(), ValueVariableModeType.REAL_VALUE);
+
+        //noinspection rawtypes
+        TypedValue variableTypedValue = ExpressionUtil.convertVariableValue(
+                typedValue, variableName,
+                context.getObjectResolver(), context.getContextDescription(),
+                context.getScriptBean().getObjectVariableMode(),
+                valueVariableMode,
+                prismContext, context.getTask(), context.getResult());
+
+        VariablesMap variables = context.getVariables();
+        if (context.getTrace() != null && !variables.isAlias(variableName)) {
+            ScriptVariableEvaluationTraceType variableTrace = new ScriptVariableEvaluationTraceType();
+            variableTrace.setName(new QName(variableName));
+            Object clonedValue = cloneIfPossible(variableTypedValue.getValue());
+            variableTrace.getValue().addAll(TraceUtil.toAnyValueTypeList(clonedValue, prismContext));
+            variables.getAliases(variableName).forEach(alias -> variableTrace.getAlias().add(new QName(alias)));
+            context.getTrace().getVariable().add(variableTrace);
+        }
+        return variableTypedValue.getValue();
+    }
+
+    /**
+     * Script engines may wrap exceptions thrown from variable access (e.g. JSR223 into `ScriptException`),
+     * so we look for the tunneled conversion exception in the whole cause chain.
+     */
+    private void rethrowLazyVariableConversionException(Throwable t)
+            throws ExpressionEvaluationException, ObjectNotFoundException, ExpressionSyntaxException, CommunicationException,
+            ConfigurationException, SecurityViolationException {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TunnelException) {
+                Throwable original = cause.getCause();
+                if (original instanceof ExpressionEvaluationException e) {
+                    throw e;
+                } else if (original instanceof ObjectNotFoundException e) {
+                    throw e;
+                } else if (original instanceof ExpressionSyntaxException e) {
+                    throw e;
+                } else if (original instanceof CommunicationException e) {
+                    throw e;
+                } else if (original instanceof ConfigurationException e) {
+                    throw e;
+                } else if (original instanceof SecurityViolationException e) {
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
     private void putIfMissing(Map<String, Object> scriptVariableMap, String key, Object value) {
         if (!scriptVariableMap.containsKey(key)) {
             scriptVariableMap.put(key, value);
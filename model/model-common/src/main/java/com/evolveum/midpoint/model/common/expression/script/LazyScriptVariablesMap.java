@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.common.expression.script;
+
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.schema.expression.TypedValue;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.TunnelException;
+
+/**
+ * Script variables (name -> value) that are converted to the script form only when the script asks for them.
+ *
+ * Conversion of a variable may be expensive: references are resolved from the repository and prism values
+ * are converted to real values. Scripts usually use only a few of the variables provided to them,
+ * so the map keeps the original typed values and converts each of them on its first access (`get`, `entrySet`, ...).
+ * The converted value is then kept for the rest of the evaluation.
+ *
+ * Both Groovy `Binding` and JSR223 `SimpleBindings` access the variables by `get` and `containsKey`, so they
+ * can use this map directly.
+ *
+ * Conversion exceptions are thrown wrapped in {@link TunnelException}, as the `Map` interface does not allow
+ * checked exceptions. See {@link AbstractScriptEvaluator#evaluate(ScriptExpressionEvaluationContext)} for unwrapping.
+ *
+ * Not thread-safe, it is meant to be used for a single evaluation.
+ */
+class LazyScriptVariablesMap extends AbstractMap<String, Object> {
+
+    /** Values ready to be used by the script: converted variables and other values (functions, services). */
+    private final Map<String, Object> resolved = new HashMap<>();
+
+    /** Variables not converted yet. Keys are disjoint with {@link #resolved}. */
+    private final Map<String, TypedValue<?>> unresolved = new HashMap<>();
+
+    @NotNull private final VariableConverter converter;
+
+    LazyScriptVariablesMap(@NotNull VariableConverter converter) {
+        this.converter = converter;
+    }
+
+    /** Adds a variable to be converted when needed. Replaces any existing value of the same name. */
+    void putUnresolved(@NotNull String name, @NotNull TypedValue<?> typedValue) {
+        resolved.remove(name);
+        unresolved.put(name, typedValue);
+    }
+
+    /** Adds a value that needs no conversion, unless there is a variable or a value of the same name already. */
+    void putIfMissing(@NotNull String name, Object value) {
+        if (!containsKey(name)) {
+            resolved.put(name, value);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = resolved.get(key);
+        if (value != null || resolved.containsKey(key)) {
+            return value;
+        }
+        //noinspection SuspiciousMethodCalls
+        TypedValue<?> typedValue = unresolved.remove(key);
+        if (typedValue == null) {
+            return null;
+        }
+        return resolve((String) key, typedValue);
+    }
+
+    private Object resolve(String name, TypedValue<?> typedValue) {
+        Object value;
+        try {
+            value = converter.convert(name, typedValue);
+        } catch (CommonException e) {
+            // Let the next access try again (and fail in the same way).
+            unresolved.put(name, typedValue);
+            throw new TunnelException(e);
+        }
+        resolved.put(name, value);
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        //noinspection SuspiciousMethodCalls
+        return resolved.containsKey(key) || unresolved.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        // Set by the script, or by the script engine (e.g. "context" or "out" in JSR223).
+        boolean wasUnresolved = unresolved.remove(key) != null;
+        Object previous = resolved.put(key, value);
+        // Previous value is not converted, nobody needs it.
+        return wasUnresolved ? null : previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        //noinspection SuspiciousMethodCalls
+        unresolved.remove(key);
+        return resolved.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return resolved.size() + unresolved.size();
+    }
+
+    @Override
+    public void clear() {
+        resolved.clear();
+        unresolved.clear();
+    }
+
+    /** Iterating over all entries (e.g. by engines that copy the bindings) converts all the variables. */
+    @Override
+    public @NotNull Set<Entry<String, Object>> entrySet() {
+        resolveAll();
+        return resolved.entrySet();
+    }
+
+    private void resolveAll() {
+        for (String name : new ArrayList<>(unresolved.keySet())) {
+            resolve(name, unresolved.remove(name));
+        }
+    }
+
+    /** Returns true if the variable was already converted (or needed no conversion). For tests and diagnostics. */
+    boolean isResolved(String name) {
+        return resolved.containsKey(name);
+    }
+
+    @FunctionalInterface
+    interface VariableConverter {
+        Object convert(@NotNull String name, @NotNull TypedValue<?> typedValue) throws CommonException;
+    }
+}
@@ -6,55 +6,229 @@
  */
 package com.evolveum.midpoint.model.common.expression.script;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
+import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ComponentSizeInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * Cache for compiled scripts and interpreters, aware of expression profiles.
  *
+ * The cache is safe for concurrent use without global locking. Each (profile, source code) key is compiled
+ * only once: other threads asking for the same key while it is being compiled wait for the result.
+ * Failed compilations are not cached.
+ *
+ * The number of compiled scripts is bounded. When the limit is exceeded, least recently used entries are evicted
+ * (approximately, the eviction is done in bulk down to {@link #EVICTION_TARGET_RATIO} of the limit).
+ *
+ * @param <I> interpreter
  * @param <C> compiled code
  * @author Radovan Semancik
  */
-public class ScriptCache<I,C> {
+public class ScriptCache<I, C> {
 
-    private final Map<String, I> interpreterCache = new HashMap<>();
+    public static final int DEFAULT_MAX_SIZE = 10_000;
 
-    /**
-     * Profile ID (key; nullable) -> Source code (key) -> Compiled code (value)
-     */
-    private final Map<String, Map<String, C>> codeCache = new HashMap<>();
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    /** Profile ID is nullable, but the concurrent map does not support null keys. */
+    private static final String NO_PROFILE_KEY = "";
+
+    /** Profile ID (key) -> interpreter */
+    private final Map<String, I> interpreterCache = new ConcurrentHashMap<>();
+
+    private final Map<CodeKey, CodeEntry<C>> codeCache = new ConcurrentHashMap<>();
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    private final AtomicBoolean evictionRunning = new AtomicBoolean();
+
+    /** Used instead of the wall clock to order the entries by access. */
+    private final AtomicLong accessCounter = new AtomicLong();
 
-    public synchronized I getInterpreter(ExpressionProfile profile) {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder compilationTimeNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public I getInterpreter(ExpressionProfile profile) {
         return interpreterCache.get(getProfileKey(profile));
     }
 
-    public synchronized void putInterpreter(ExpressionProfile profile, I interpreter) {
-        interpreterCache.put(getProfileKey(profile), interpreter);
+    /**
+     * Stores the interpreter unless another one was stored for the profile concurrently.
+     * Returns the interpreter that is in the cache after the call (the one to use).
+     */
+    public @NotNull I putInterpreter(ExpressionProfile profile, @NotNull I interpreter) {
+        I existing = interpreterCache.putIfAbsent(getProfileKey(profile), interpreter);
+        return existing != null ? existing : interpreter;
     }
 
-    synchronized C getCode(ExpressionProfile profile, String sourceCodeKey) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.get(profileKey);
-        return profileCache != null ? profileCache.get(sourceCodeKey) : null;
+    /**
+     * Returns compiled code from the cache or compiles it using provided compiler.
+     * If the same code is being compiled by another thread, waits for its result.
+     */
+    C getOrCompile(ExpressionProfile profile, @NotNull String sourceCode, @NotNull Compiler<C> compiler)
+            throws ExpressionEvaluationException, SecurityViolationException {
+        CodeKey key = new CodeKey(getProfileKey(profile), sourceCode);
+        CodeEntry<C> entry = codeCache.get(key);
+        if (entry == null) {
+            CodeEntry<C> newEntry = new CodeEntry<>(accessCounter.incrementAndGet());
+            entry = codeCache.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                misses.increment();
+                return compile(key, newEntry, compiler);
+            }
+        }
+        hits.increment();
+        entry.lastAccess = accessCounter.incrementAndGet();
+        return entry.await();
     }
 
-    synchronized void putCode(ExpressionProfile profile, String sourceCodeKey, C compiledCode) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.computeIfAbsent(profileKey, k -> new HashMap<>());
-        profileCache.put(sourceCodeKey, compiledCode);
+    private C compile(CodeKey key, CodeEntry<C> entry, Compiler<C> compiler)
+            throws ExpressionEvaluationException, SecurityViolationException {
+        long start = System.nanoTime();
+        C compiledCode;
+        try {
+            compiledCode = compiler.compile();
+        } catch (ExpressionEvaluationException | SecurityViolationException | RuntimeException | Error e) {
+            // Waiting threads get the same exception, next request will try to compile again.
+            codeCache.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            compilations.increment();
+            compilationTimeNanos.add(System.nanoTime() - start);
+        }
+        entry.future.complete(compiledCode);
+        evictIfNeeded();
+        return compiledCode;
+    }
+
+    private void evictIfNeeded() {
+        int limit = maxSize;
+        if (codeCache.size() <= limit || !evictionRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<CodeKey, CodeEntry<C>>> entries = new ArrayList<>(codeCache.entrySet());
+            int toRemove = entries.size() - (int) (limit * EVICTION_TARGET_RATIO);
+            if (toRemove <= 0) {
+                return;
+            }
+            entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (int i = 0; i < toRemove; i++) {
+                Map.Entry<CodeKey, CodeEntry<C>> e = entries.get(i);
+                if (codeCache.remove(e.getKey(), e.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionRunning.set(false);
+        }
     }
 
     private String getProfileKey(ExpressionProfile profile) {
         if (profile == null) {
-            return null;
+            return NO_PROFILE_KEY;
         } else {
             return profile.getIdentifier();
         }
     }
 
-    public synchronized void clear() {
+    public void clear() {
         codeCache.clear();
     }
+
+    public int size() {
+        return codeCache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        evictIfNeeded();
+    }
+
+    /**
+     * Returns the state information for the cache registry: size, hit/miss counts and components for
+     * compilations (size = count, secondary size = total time in milliseconds) and evictions.
+     */
+    public @NotNull SingleCacheStateInformationType getStateInformation(@NotNull String name) {
+        return new SingleCacheStateInformationType()
+                .name(name)
+                .size(codeCache.size())
+                .secondarySize(interpreterCache.size())
+                .performance(new SingleCachePerformanceInformationType()
+                        .name(name)
+                        .hitCount((int) hits.sum())
+                        .missCount((int) misses.sum()))
+                .component(new ComponentSizeInformationType()
+                        .name("compilations")
+                        .size((int) compilations.sum())
+                        .secondarySize((int) (compilationTimeNanos.sum() / 1_000_000)))
+                .component(new ComponentSizeInformationType()
+                        .name("evictions")
+                        .size((int) evictions.sum()));
+    }
+
+    @FunctionalInterface
+    interface Compiler<C> {
+        C compile() throws ExpressionEvaluationException, SecurityViolationException;
+    }
+
+    private record CodeKey(@NotNull String profileKey, @NotNull String sourceCode) {
+    }
+
+    private static class CodeEntry<C> {
+
+        private final CompletableFuture<C> future = new CompletableFuture<>();
+        private volatile long lastAccess;
+
+        private CodeEntry(long lastAccess) {
+            this.lastAccess = lastAccess;
+        }
+
+        private C await() throws ExpressionEvaluationException, SecurityViolationException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SystemException("Interrupted while waiting for script compilation", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ExpressionEvaluationException eee) {
+                    throw eee;
+                } else if (cause instanceof SecurityViolationException sve) {
+                    throw sve;
+                } else if (cause instanceof RuntimeException re) {
+                    throw re;
+                } else if (cause instanceof Error err) {
+                    throw err;
+                } else {
+                    throw new SystemException(cause);
+                }
+            }
+        }
+    }
 }
@@ -12,15 +12,22 @@ import java.util.stream.Collectors;
 
 import com.evolveum.midpoint.schema.expression.ExpressionEvaluatorsProfile;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
 import com.evolveum.midpoint.model.common.ModelCommonBeans;
 import com.evolveum.midpoint.model.common.expression.functions.FunctionLibraryBinding;
 import com.evolveum.midpoint.model.common.expression.functions.FunctionLibraryManager;
 import com.evolveum.midpoint.prism.ItemDefinition;
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.repo.api.Cache;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
 import com.evolveum.midpoint.repo.common.ObjectResolver;
 import com.evolveum.midpoint.repo.common.expression.ExpressionSyntaxException;
 import com.evolveum.midpoint.schema.AccessDecision;
@@ -30,8 +37,12 @@ import com.evolveum.midpoint.schema.expression.ScriptLanguageExpressionProfile;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEvaluatorType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * Creates {@link ScriptExpression} instances. They evaluate Groovy/JS/Python/Velocity/... scripts.
@@ -40,10 +51,16 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEval
  *
  * . creates {@link ScriptExpression} instances from {@link ScriptExpressionEvaluatorType} beans;
  * . manages {@link ScriptEvaluator} instances for individual languages (Groovy, JavaScript, ...);
+ * . configures caches of compiled scripts (see {@link ScriptCache}) and reports their state to the cache registry.
  *
  * @author Radovan Semancik
  */
-public class ScriptExpressionFactory {
+public class ScriptExpressionFactory implements Cache {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ScriptExpressionFactory.class);
+
+    /** Maximum number of compiled scripts per language (in `midpoint.scriptCache` configuration section). */
+    public static final String CONFIGURATION_MAX_SIZE = "maxSize";
 
     private static final String DEFAULT_LANGUAGE = "http://midpoint.evolveum.com/xml/ns/public/expression/language#Groovy";
 
@@ -60,6 +77,12 @@ public class ScriptExpressionFactory {
     /** Initialized at startup. The collection is immutable. */
     @NotNull private final Collection<FunctionLibraryBinding> builtInLibraryBindings;
 
+    /** Null in low-level tests. */
+    @Autowired(required = false) private CacheRegistry cacheRegistry;
+
+    /** Null in low-level tests. */
+    @Autowired(required = false) private MidpointConfiguration midpointConfiguration;
+
     // Invoked by Spring
     public ScriptExpressionFactory(
             @NotNull PrismContext prismContext,
@@ -84,6 +107,29 @@ public class ScriptExpressionFactory {
         this.functionLibraryManager = null;
     }
 
+    @PostConstruct
+    public void init() {
+        if (midpointConfiguration != null) {
+            int maxSize = midpointConfiguration.getConfiguration(MidpointConfiguration.SCRIPT_CACHE_CONFIGURATION)
+                    .getInt(CONFIGURATION_MAX_SIZE, ScriptCache.DEFAULT_MAX_SIZE);
+            for (ScriptEvaluator evaluator : evaluatorMap.values()) {
+                if (evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator) {
+                    cachingEvaluator.getScriptCache().setMaxSize(maxSize);
+                }
+            }
+        }
+        if (cacheRegistry != null) {
+            cacheRegistry.registerCache(this);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (cacheRegistry != null) {
+            cacheRegistry.unregisterCache(this);
+        }
+    }
+
     private void registerEvaluators(@NotNull Collection<ScriptEvaluator> evaluators) {
         for (ScriptEvaluator evaluator : evaluators) {
             registerEvaluator(evaluator);
@@ -208,6 +254,61 @@ public class ScriptExpressionFactory {
         throw new ExpressionSyntaxException("Unsupported language " + languageUri + " used in script in " + shortDesc);
     }
 
+    /**
+     * Compiles the script for given expression profile and puts it into the cache of its evaluator,
+     * if the evaluator caches compiled scripts. Returns true if the script was compiled or found in the cache.
+     *
+     * The profile must be the one the script will be evaluated with, as compiled scripts are cached per profile.
+     */
+    public boolean precompile(
+            @NotNull ScriptExpressionEvaluatorType scriptExpressionBean, ExpressionProfile expressionProfile, String shortDesc)
+            throws ExpressionSyntaxException, ExpressionEvaluationException, SecurityViolationException {
+        String code = scriptExpressionBean.getCode();
+        if (code == null) {
+            return false;
+        }
+        ScriptEvaluator evaluator = getEvaluator(getLanguage(scriptExpressionBean), shortDesc);
+        if (evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator && evaluator.isInitialized()) {
+            cachingEvaluator.precompile(
+                    code,
+                    expressionProfile,
+                    getScriptLanguageExpressionProfileOrFail(expressionProfile, evaluator.getLanguageUrl(), shortDesc),
+                    shortDesc);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
+        // Compiled scripts are keyed by their source code, so they can't get stale.
+        // Only explicit invalidation of all caches clears them.
+        if (type == null) {
+            LOGGER.trace("Clearing compiled script caches");
+            for (ScriptEvaluator evaluator : evaluatorMap.values()) {
+                if (evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator) {
+                    cachingEvaluator.getScriptCache().clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public @NotNull Collection<SingleCacheStateInformationType> getStateInformation() {
+        List<SingleCacheStateInformationType> rv = new ArrayList<>();
+        for (ScriptEvaluator evaluator : evaluatorMap.values()) {
+            if (evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator) {
+                rv.add(cachingEvaluator.getCacheStateInformation());
+            }
+        }
+        return rv;
+    }
+
+    @Override
+    public void dumpContent() {
+        // Compiled scripts are not worth dumping.
+    }
+
     @VisibleForTesting
     public @Nullable ScriptEvaluator getEvaluatorSimple(String languageUri) {
         return evaluatorMap.get(languageUri);
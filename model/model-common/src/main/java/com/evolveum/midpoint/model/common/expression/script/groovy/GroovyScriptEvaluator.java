@@ -109,9 +109,7 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
         if (existingLoader != null) {
             return existingLoader;
         }
-        var newLoader = createGroovyLoader(context);
-        getScriptCache().putInterpreter(context.getExpressionProfile(), newLoader);
-        return newLoader;
+        return getScriptCache().putInterpreter(context.getExpressionProfile(), createGroovyLoader(context));
     }
 
     private GroovyClassLoader createGroovyLoader(ScriptExpressionEvaluationContext context) throws SecurityViolationException {
@@ -183,7 +181,7 @@ public class GroovyScriptEvaluator extends AbstractCachingScriptEvaluator<Groovy
             throw new ExpressionEvaluationException("Expected groovy script class, but got " + compiledScriptClass);
         }
 
-        Binding binding = new Binding(prepareScriptVariablesValueMap(context));
+        Binding binding = new Binding(prepareLazyScriptVariablesValueMap(context));
         try {
             Script scriptResultObject = InvokerHelper.createScript(compiledScriptClass, binding);
 
@@ -6,6 +6,7 @@
  */
 package com.evolveum.midpoint.model.common.expression.script.jsr223;
 
+import java.util.Map;
 import javax.script.*;
 
 import com.evolveum.midpoint.common.LocalizationService;
@@ -68,7 +69,13 @@ public class Jsr223ScriptEvaluator extends AbstractCachingScriptEvaluator<Script
     private Bindings convertToBindings(ScriptExpressionEvaluationContext context)
             throws ExpressionSyntaxException, ObjectNotFoundException, CommunicationException, ConfigurationException, SecurityViolationException, ExpressionEvaluationException {
         Bindings bindings = scriptEngine.createBindings();
-        bindings.putAll(prepareScriptVariablesValueMap(context));
+        Map<String, Object> variables = prepareLazyScriptVariablesValueMap(context);
+        if (bindings instanceof SimpleBindings) {
+            // Plain map-based bindings can be backed by the lazy map directly, so only the variables
+            // used by the script are converted. Engine-specific bindings get a copy of all the variables.
+            return new SimpleBindings(variables);
+        }
+        bindings.putAll(variables);
         return bindings;
     }
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.common.expression.script;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.SimpleBindings;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.schema.expression.TypedValue;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.TunnelException;
+
+/**
+ * Tests that script variables are converted only when (and only once) they are accessed by the script.
+ */
+public class TestLazyScriptVariablesMap extends AbstractUnitTest {
+
+    private final List<String> conversions = new ArrayList<>();
+
+    @Test
+    public void test100GroovyBindingConvertsOnlyUsedVariables() {
+        given("variables map with three variables");
+        LazyScriptVariablesMap variables = createVariables();
+
+        when("script using one of them twice is evaluated");
+        Object result = new GroovyShell(new Binding(variables)).evaluate("input + input");
+
+        then("only the used variable is converted, and only once");
+        assertThat(result).isEqualTo("INPUT-VALUEINPUT-VALUE");
+        assertThat(conversions).containsExactly("input");
+        assertThat(variables.isResolved("unused")).isFalse();
+    }
+
+    @Test
+    public void test110Jsr223BindingsConvertOnlyUsedVariables() throws Exception {
+        given("variables map with three variables");
+        LazyScriptVariablesMap variables = createVariables();
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("groovy");
+
+        when("script using one of them is evaluated with the map as bindings");
+        Object result = engine.eval("input.toLowerCase()", new SimpleBindings(variables));
+
+        then("only the used variable is converted");
+        assertThat(result).isEqualTo("input-value");
+        assertThat(conversions).containsExactly("input");
+    }
+
+    @Test
+    public void test120ValuesWithoutConversionAndAssignments() {
+        given("variables map with a function-like value");
+        LazyScriptVariablesMap variables = createVariables();
+        variables.put("basic", "BASIC");
+        variables.putIfMissing("input", "should-not-override");
+
+        when("script uses the value and assigns a variable");
+        Object result = new GroovyShell(new Binding(variables)).evaluate("other = 'assigned'; basic + other");
+
+        then("no conversion is done");
+        assertThat(result).isEqualTo("BASICassigned");
+        assertThat(conversions).isEmpty();
+        assertThat(variables.get("other")).isEqualTo("assigned");
+    }
+
+    @Test
+    public void test130IterationConvertsAll() {
+        given("variables map with three variables");
+        LazyScriptVariablesMap variables = createVariables();
+
+        when("all entries are listed");
+        Map<String, Object> copy = Map.copyOf(variables);
+
+        then("all variables are converted");
+        assertThat(copy).containsOnlyKeys("input", "other", "unused");
+        assertThat(conversions).containsExactlyInAnyOrder("input", "other", "unused");
+    }
+
+    @Test
+    public void test140ConversionExceptionIsTunneled() {
+        given("variable that can't be converted");
+        LazyScriptVariablesMap variables = new LazyScriptVariablesMap((name, typedValue) -> {
+            throw new ObjectNotFoundException("Object for " + name + " not found");
+        });
+        variables.putUnresolved("missing", new TypedValue<>("x", String.class));
+
+        expect("the exception is thrown from the script in a tunnel");
+        assertThatThrownBy(() -> new GroovyShell(new Binding(variables)).evaluate("missing"))
+                .isInstanceOf(TunnelException.class)
+                .hasCauseInstanceOf(ObjectNotFoundException.class);
+        assertThat(variables.isResolved("missing")).isFalse();
+    }
+
+    private LazyScriptVariablesMap createVariables() {
+        conversions.clear();
+        LazyScriptVariablesMap variables = new LazyScriptVariablesMap((name, typedValue) -> {
+            conversions.add(name);
+            return ((String) typedValue.getValue()).toUpperCase();
+        });
+        variables.putUnresolved("input", new TypedValue<>("input-value", String.class));
+        variables.putUnresolved("other", new TypedValue<>("other-value", String.class));
+        variables.putUnresolved("unused", new TypedValue<>("unused-value", String.class));
+        return variables;
+    }
+}
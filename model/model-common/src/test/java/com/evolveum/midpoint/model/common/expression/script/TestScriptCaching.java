@@ -16,6 +16,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.namespace.QName;
 
 import org.testng.AssertJUnit;
@@ -38,6 +43,7 @@ import com.evolveum.midpoint.prism.crypto.Protector;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.repo.common.DirectoryFileObjectResolver;
 import com.evolveum.midpoint.repo.common.ObjectResolver;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
 import com.evolveum.midpoint.schema.expression.VariablesMap;
 import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
@@ -50,6 +56,7 @@ import com.evolveum.midpoint.util.DOMUtil;
 import com.evolveum.midpoint.util.PrettyPrinter;
 import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEvaluatorType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * @author semancik
@@ -119,6 +126,90 @@ public class TestScriptCaching extends AbstractUnitTest
         assertTrue("Even Horatio was wrong! " + horatio1Time + " -> " + horatio2Time, horatio2Time <= horatio1Time);
     }
 
+    @Test
+    public void testPrecompile() throws Exception {
+        given("empty cache");
+        ((AbstractCachingScriptEvaluator<?, ?>) evaluator).getScriptCache().clear();
+        ScriptExpressionEvaluatorType scriptType = parseScriptType("expression-string-variables.xml");
+
+        when("script is precompiled for the profile it is evaluated with at runtime");
+        InternalMonitor.reset();
+        boolean precompiled = scriptExpressionfactory.precompile(scriptType, ExpressionProfile.full(), "warm-up");
+
+        then("it is compiled, but not executed");
+        assertTrue("Script was not precompiled", precompiled);
+        assertScriptMonitor(1, 0, "precompile");
+
+        when("script is executed with that profile");
+        executeScript("expression-string-variables.xml", "FOOBAR", "after precompile", ExpressionProfile.full());
+
+        then("it is taken from the cache, not compiled again");
+        assertScriptMonitor(1, 1, "after precompile");
+        assertEquals("Wrong number of cached scripts",
+                1, ((AbstractCachingScriptEvaluator<?, ?>) evaluator).getScriptCache().size());
+    }
+
+    @Test
+    public void testConcurrentCompilation() throws Exception {
+        given("cache and a slow compiler");
+        ScriptCache<Object, String> cache = new ScriptCache<>();
+        AtomicInteger compilations = new AtomicInteger();
+        int threads = 16;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        when("the same script is requested by many threads at once");
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    return cache.getOrCompile(null, "code", () -> {
+                        compilations.incrementAndGet();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            throw new AssertionError(e);
+                        }
+                        return "compiled";
+                    });
+                }));
+            }
+            startLatch.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("compiled", future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        then("the script is compiled only once");
+        assertEquals(1, compilations.get());
+        SingleCacheStateInformationType state = cache.getStateInformation("test");
+        displayValue("cache state", state);
+        assertEquals(1, state.getPerformance().getMissCount().intValue());
+        assertEquals(threads - 1, state.getPerformance().getHitCount().intValue());
+    }
+
+    @Test
+    public void testBoundedSize() throws Exception {
+        given("cache with size limit");
+        ScriptCache<Object, String> cache = new ScriptCache<>();
+        cache.setMaxSize(10);
+
+        when("more scripts than the limit are compiled");
+        for (int i = 0; i < 25; i++) {
+            String code = "code" + i;
+            cache.getOrCompile(null, code, () -> "compiled " + code);
+        }
+
+        then("the cache does not exceed the limit");
+        assertTrue("Cache is too big: " + cache.size(), cache.size() <= 10);
+        assertTrue("No evictions were recorded",
+                cache.getStateInformation("test").getComponent().stream()
+                        .anyMatch(c -> c.getName().equals("evictions") && c.getSize() > 0));
+    }
+
     private void assertScriptMonitor(int expCompilations, int expExecutions, String desc) {
         assertEquals("Unexpected number of script compilations after " + desc, expCompilations, InternalMonitor.getCount(InternalCounters.SCRIPT_COMPILE_COUNT));
         assertEquals("Unexpected number of script executions after " + desc, expExecutions, InternalMonitor.getCount(InternalCounters.SCRIPT_EXECUTION_COUNT));
@@ -127,6 +218,12 @@ public class TestScriptCaching extends AbstractUnitTest
     private long executeScript(String filname, String expectedResult, String desc)
             throws SchemaException, SecurityViolationException, ExpressionEvaluationException,
             ObjectNotFoundException, CommunicationException, ConfigurationException, IOException {
+        return executeScript(filname, expectedResult, desc, null);
+    }
+
+    private long executeScript(String filname, String expectedResult, String desc, ExpressionProfile expressionProfile)
+            throws SchemaException, SecurityViolationException, ExpressionEvaluationException,
+            ObjectNotFoundException, CommunicationException, ConfigurationException, IOException {
         // GIVEN
         OperationResult result = createOperationResult(desc);
         ScriptExpressionEvaluatorType scriptType = parseScriptType(filname);
@@ -149,6 +246,7 @@ public class TestScriptCaching extends AbstractUnitTest
         context.setScriptExpression(scriptExpression);
         context.setContextDescription(desc);
         context.setResult(result);
+        context.setExpressionProfile(expressionProfile);
 
         List<PrismPropertyValue<String>> scripResults = scriptExpression.evaluate(context);
         long endTime = System.currentTimeMillis();
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.apache.commons.configuration2.Configuration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
+import com.evolveum.midpoint.model.api.util.ClusterServiceConsts;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.task.api.ClusterExecutionHelper;
+import com.evolveum.midpoint.task.api.ClusterExecutionOptions;
+import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.NodeOperationalStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.NodeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Asynchronous channel for cluster-wide cache invalidation, used by {@link ClusterCacheListener}
+ * if enabled in `midpoint.clusterCacheInvalidation` configuration section (`asynchronous` = true).
+ *
+ * Invalidation requests are put into a pending queue and the caller returns immediately.
+ * Every coalescing window, a background thread moves the pending requests to per-node outbound queues
+ * and sends them to other nodes in batches (see {@link ClusterServiceConsts#EVENT_INVALIDATION_BATCH}).
+ * Duplicate type/OID pairs are sent only once per batch. There is at most one request in flight for each node,
+ * so a slow node does not block the others; requests for it are accumulated (and coalesced) meanwhile.
+ * If a queue overflows, it is collapsed into a single "invalidate everything" request.
+ *
+ * The list of other cluster nodes is cached and refreshed periodically by the background thread,
+ * instead of searching for nodes for each invalidation event. Until the list is obtained for the first time,
+ * the requests are kept in the pending queue. The cached list is used only to address the nodes (nodes that are
+ * down are skipped): the requests are sent regardless of the last check-in time in the cached node objects,
+ * as that information gets out of date quickly.
+ *
+ * If a node rejects the batch (e.g. because it runs an older version without the batch endpoint),
+ * the requests are sent to it one by one using {@link ClusterServiceConsts#EVENT_INVALIDATION}.
+ *
+ * Requests that cannot be delivered are put back to the node queue and retried after {@link #RETRY_INTERVAL}.
+ * The exception are nodes that were not checking in at the time of the last node list refresh: requests for them
+ * are discarded (with a warning), as such nodes are most probably not running. When they start, their caches are empty.
+ */
+@Component
+public class ClusterCacheInvalidationSender {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ClusterCacheInvalidationSender.class);
+
+    private static final String OP_SEND_INVALIDATIONS = ClusterCacheInvalidationSender.class.getName() + ".sendInvalidations";
+    private static final String OP_REFRESH_NODES = ClusterCacheInvalidationSender.class.getName() + ".refreshNodes";
+
+    private static final String PROPERTY_ASYNCHRONOUS = "asynchronous";
+    private static final String PROPERTY_COALESCING_WINDOW = "coalescingWindow";
+    private static final String PROPERTY_MAX_BATCH_SIZE = "maxBatchSize";
+    private static final String PROPERTY_QUEUE_CAPACITY = "queueCapacity";
+    private static final String PROPERTY_NODE_REFRESH_INTERVAL = "nodeRefreshInterval";
+
+    private static final long DEFAULT_COALESCING_WINDOW = 100; // milliseconds
+    private static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final long DEFAULT_NODE_REFRESH_INTERVAL = 30; // seconds
+
+    /** How long to wait before sending undelivered requests to a node again. */
+    private static final long RETRY_INTERVAL = 5000; // milliseconds
+
+    /** Nodes are addressed by the cached list; their liveness is not checked by the cluster execution helper. */
+    private static final ClusterExecutionOptions SEND_OPTIONS = new ClusterExecutionOptions().tryNodesInTransition();
+
+    /** Line in the batch meaning "invalidate everything". */
+    public static final String INVALIDATE_ALL = "*";
+
+    @Autowired private MidpointConfiguration midpointConfiguration;
+    @Autowired private PrismContext prismContext;
+    @Autowired private TaskManager taskManager;
+    @Autowired private ClusterExecutionHelper clusterExecutionHelper;
+
+    private boolean enabled;
+    private long coalescingWindow;
+    private int maxBatchSize;
+    private int queueCapacity;
+    private long nodeRefreshIntervalMillis;
+
+    /** Requests not yet distributed to node queues. */
+    private InvalidationQueue pending;
+
+    /** Outbound queues, keyed by node identifier. Accessed only from the scheduler thread. */
+    private final Map<String, NodeQueue> nodeQueues = new HashMap<>();
+
+    /** Other cluster nodes, as known from the last refresh. Accessed only from the scheduler thread. */
+    @NotNull private List<NodeType> otherNodes = List.of();
+    private long nodesRefreshedAt;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void init() {
+        Configuration config = midpointConfiguration.getConfiguration(
+                MidpointConfiguration.CLUSTER_CACHE_INVALIDATION_CONFIGURATION);
+        enabled = config.getBoolean(PROPERTY_ASYNCHRONOUS, false);
+        coalescingWindow = Math.max(1, config.getLong(PROPERTY_COALESCING_WINDOW, DEFAULT_COALESCING_WINDOW));
+        maxBatchSize = Math.max(1, config.getInt(PROPERTY_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE));
+        queueCapacity = Math.max(1, config.getInt(PROPERTY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY));
+        nodeRefreshIntervalMillis =
+                Math.max(1, config.getLong(PROPERTY_NODE_REFRESH_INTERVAL, DEFAULT_NODE_REFRESH_INTERVAL)) * 1000;
+        if (!enabled) {
+            return;
+        }
+
+        LOGGER.info("Asynchronous cluster cache invalidation is enabled: coalescing window = {} ms, max batch size = {},"
+                + " queue capacity = {}", coalescingWindow, maxBatchSize, queueCapacity);
+        pending = new InvalidationQueue(queueCapacity);
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("cluster-cache-invalidation"));
+        senders = Executors.newCachedThreadPool(daemonThreadFactory("cluster-cache-invalidation-sender"));
+        scheduler.scheduleWithFixedDelay(this::flush, coalescingWindow, coalescingWindow, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Enqueues the invalidation request; it will be sent to other nodes asynchronously. */
+    public <O extends ObjectType> void enqueue(@Nullable Class<O> type, @Nullable String oid) {
+        pending.add(toLine(type, oid));
+    }
+
+    private <O extends ObjectType> String toLine(Class<O> type, String oid) {
+        if (type == null) {
+            if (oid != null) {
+                LOGGER.warn("Cannot invalidate object type null with specific OID. Converting to global invalidation (type=null, oid=null).");
+            }
+            return INVALIDATE_ALL;
+        }
+        String restType = ObjectTypes.getRestTypeFromClass(type);
+        return oid != null ? restType + "/" + oid : restType;
+    }
+
+    /** Runs in the scheduler thread. */
+    private void flush() {
+        try {
+            refreshNodesIfNeeded();
+            if (nodesRefreshedAt == 0) {
+                return; // We don't know where to send the requests yet; they stay pending.
+            }
+            List<String> lines = pending.drain(Integer.MAX_VALUE);
+            for (NodeQueue nodeQueue : nodeQueues.values()) {
+                nodeQueue.queue.addAll(lines);
+                nodeQueue.sendIfIdle();
+            }
+        } catch (Throwable t) {
+            // We must not let the exception propagate, as it would stop the scheduled execution.
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't distribute cluster cache invalidation requests", t);
+        }
+    }
+
+    private void refreshNodesIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (nodesRefreshedAt != 0 && now - nodesRefreshedAt < nodeRefreshIntervalMillis) {
+            return;
+        }
+        OperationResult result = new OperationResult(OP_REFRESH_NODES);
+        try {
+            ObjectQuery query = prismContext.queryFor(NodeType.class)
+                    .not().item(NodeType.F_NODE_IDENTIFIER).eq(taskManager.getNodeId())
+                    .build();
+            List<NodeType> nodes = new ArrayList<>();
+            for (PrismObject<NodeType> node : taskManager.searchObjects(NodeType.class, query, null, result)) {
+                nodes.add(node.asObjectable());
+            }
+            otherNodes = nodes;
+            nodesRefreshedAt = now;
+        } catch (Exception e) {
+            // Keeping the old list; we will try again in the next window.
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't refresh the list of cluster nodes for cache invalidation", e);
+            return;
+        }
+
+        Set<String> currentIdentifiers = new HashSet<>();
+        for (NodeType node : otherNodes) {
+            if (node.getOperationalState() == NodeOperationalStateType.DOWN) {
+                continue; // The node was shut down; its caches will be empty when it starts again.
+            }
+            String identifier = node.getNodeIdentifier();
+            currentIdentifiers.add(identifier);
+            NodeQueue nodeQueue = nodeQueues.get(identifier);
+            if (nodeQueue != null) {
+                nodeQueue.node = node; // URL, operational state, or version may have changed
+                nodeQueue.batchSupported = true;
+            } else {
+                LOGGER.debug("Starting to send cache invalidation requests to node {}", identifier);
+                nodeQueue = new NodeQueue(node);
+                nodeQueues.put(identifier, nodeQueue);
+            }
+            // The node object is fresh here, so this is the right time to check the liveness.
+            nodeQueue.checkingIn = taskManager.isCheckingIn(node);
+        }
+        nodeQueues.keySet().removeIf(identifier -> !currentIdentifiers.contains(identifier));
+    }
+
+    /** Returns the requests that could not be delivered to the node. */
+    private List<String> send(NodeQueue nodeQueue, List<String> lines) {
+        NodeType node = nodeQueue.node;
+        if (nodeQueue.batchSupported) {
+            Integer status = sendBatch(node, lines);
+            if (status == null) {
+                return lines; // The node is not reachable at all (so sending individual requests is futile).
+            }
+            if (Response.Status.Family.familyOf(status) == Response.Status.Family.SUCCESSFUL) {
+                return List.of();
+            }
+            if (status == Response.Status.NOT_FOUND.getStatusCode()
+                    || status == Response.Status.METHOD_NOT_ALLOWED.getStatusCode()
+                    || status == Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode()) {
+                LOGGER.info("Node {} does not support batched cache invalidation (status {}), will send the requests"
+                        + " one by one until the next node list refresh", node.getNodeIdentifier(), status);
+                nodeQueue.batchSupported = false;
+            }
+        }
+        return sendIndividually(node, lines);
+    }
+
+    /** Returns the HTTP status, or null if the request could not be sent. */
+    private Integer sendBatch(NodeType node, List<String> lines) {
+        String body = String.join("\n", lines);
+        OperationResult result = new OperationResult(OP_SEND_INVALIDATIONS);
+        Integer[] status = new Integer[1];
+        try {
+            OperationResult executionResult = clusterExecutionHelper.execute(node, (client, node1, result1) -> {
+                client.path(ClusterServiceConsts.EVENT_INVALIDATION_BATCH);
+                client.type(MediaType.TEXT_PLAIN);
+                Response response = client.post(body);
+                Response.StatusType statusInfo = response.getStatusInfo();
+                if (statusInfo.getFamily() != Response.Status.Family.SUCCESSFUL) {
+                    LOGGER.warn("Cluster-wide cache clearance ({} requests) finished on {} with status {}, {}", lines.size(),
+                            node1.getNodeIdentifier(), statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
+                } else {
+                    LOGGER.debug("Cluster-wide cache clearance ({} requests) finished on {} with status {}, {}", lines.size(),
+                            node1.getNodeIdentifier(), statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
+                }
+                status[0] = statusInfo.getStatusCode();
+                response.close();
+            }, SEND_OPTIONS, "cache invalidation", result);
+            if (executionResult.getStatus() == OperationResultStatus.NOT_APPLICABLE) {
+                LOGGER.debug("Couldn't send cache invalidation requests to node {}: {}",
+                        node.getNodeIdentifier(), executionResult.getMessage());
+            }
+        } catch (Throwable t) {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't send cache invalidation requests to node {}",
+                    t, node.getNodeIdentifier());
+        }
+        return status[0];
+    }
+
+    /**
+     * The same as the synchronous invalidation in {@link ClusterCacheListener}, just for a single node.
+     * Returns the requests that could not be delivered.
+     */
+    private List<String> sendIndividually(NodeType node, List<String> lines) {
+        OperationResult result = new OperationResult(OP_SEND_INVALIDATIONS);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String path = ClusterServiceConsts.EVENT_INVALIDATION + (INVALIDATE_ALL.equals(line) ? "" : line);
+            List<String> undelivered = lines.subList(i, lines.size());
+            try {
+                OperationResult executionResult = clusterExecutionHelper.execute(node, (client, node1, result1) -> {
+                    client.path(path);
+                    Response response = client.post(null);
+                    Response.StatusType statusInfo = response.getStatusInfo();
+                    if (statusInfo.getFamily() != Response.Status.Family.SUCCESSFUL) {
+                        LOGGER.warn("Cluster-wide cache clearance finished on {} with status {}, {}", node1.getNodeIdentifier(),
+                                statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
+                    }
+                    response.close();
+                }, SEND_OPTIONS, "cache invalidation", result);
+                if (executionResult.getStatus() == OperationResultStatus.NOT_APPLICABLE) {
+                    LOGGER.debug("Couldn't send cache invalidation request to node {}: {}",
+                            node.getNodeIdentifier(), executionResult.getMessage());
+                    return undelivered;
+                }
+            } catch (Throwable t) {
+                LoggingUtils.logUnexpectedException(LOGGER, "Couldn't send cache invalidation request to node {}",
+                        t, node.getNodeIdentifier());
+                return undelivered; // The node is most probably not reachable; no point in trying the other requests.
+            }
+        }
+        return List.of();
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Outbound queue for a single node. */
+    private class NodeQueue {
+
+        @NotNull private volatile NodeType node;
+        @NotNull private final InvalidationQueue queue = new InvalidationQueue(queueCapacity);
+
+        /** Set while a batch is being sent to the node; we send at most one batch at a time. */
+        private volatile boolean sending;
+
+        /** Cleared if the node rejects the batch request; reset on each node list refresh. */
+        private volatile boolean batchSupported = true;
+
+        /** Whether the node was checking in at the time of the last node list refresh. */
+        private volatile boolean checkingIn = true;
+
+        /** Undelivered requests are not sent again before this time. */
+        private volatile long retryAt;
+
+        private NodeQueue(@NotNull NodeType node) {
+            this.node = node;
+        }
+
+        /** Called from the scheduler thread only. */
+        private void sendIfIdle() {
+            if (sending || queue.isEmpty() || System.currentTimeMillis() < retryAt) {
+                return;
+            }
+            sending = true;
+            try {
+                senders.execute(this::sendAll);
+            } catch (RejectedExecutionException e) {
+                sending = false; // shutting down
+            }
+        }
+
+        private void sendAll() {
+            try {
+                List<String> batch;
+                while (!(batch = queue.drain(maxBatchSize)).isEmpty()) {
+                    List<String> undelivered = send(this, batch);
+                    if (!undelivered.isEmpty()) {
+                        processUndelivered(undelivered);
+                        return;
+                    }
+                }
+            } finally {
+                sending = false;
+            }
+        }
+
+        private void processUndelivered(List<String> undelivered) {
+            String identifier = node.getNodeIdentifier();
+            if (checkingIn) {
+                LOGGER.warn("Couldn't deliver {} cache invalidation request(s) to node {}, will retry in {} ms",
+                        undelivered.size(), identifier, RETRY_INTERVAL);
+                queue.addAll(undelivered);
+                retryAt = System.currentTimeMillis() + RETRY_INTERVAL;
+            } else {
+                LOGGER.warn("Couldn't deliver {} cache invalidation request(s) to node {} that was not checking in"
+                        + " at the last node list refresh; discarding them", undelivered.size(), identifier);
+            }
+        }
+    }
+
+    /**
+     * Bounded queue of invalidation lines that ignores duplicates.
+     * When full, it collapses into a single {@link #INVALIDATE_ALL} line.
+     */
+    static class InvalidationQueue {
+
+        private final int capacity;
+        private final Set<String> lines = new LinkedHashSet<>();
+        private boolean all;
+
+        InvalidationQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(String line) {
+            if (all) {
+                return;
+            }
+            if (INVALIDATE_ALL.equals(line) || lines.size() >= capacity && !lines.contains(line)) {
+                all = true;
+                lines.clear();
+            } else {
+                lines.add(line);
+            }
+        }
+
+        synchronized void addAll(Collection<String> newLines) {
+            for (String line : newLines) {
+                add(line);
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return !all && lines.isEmpty();
+        }
+
+        /** Removes and returns up to `max` lines. */
+        synchronized List<String> drain(int max) {
+            if (all) {
+                all = false;
+                return List.of(INVALIDATE_ALL);
+            }
+            List<String> drained = new ArrayList<>(Math.min(max, lines.size()));
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext() && drained.size() < max) {
+                drained.add(iterator.next());
+                iterator.remove();
+            }
+            return drained;
+        }
+    }
+}
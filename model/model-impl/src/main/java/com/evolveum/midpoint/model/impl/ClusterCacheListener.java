@@ -38,6 +38,7 @@ public class ClusterCacheListener implements CacheListener {
     @Autowired private TaskManager taskManager;
     @Autowired private CacheDispatcher cacheDispatcher;
     @Autowired private ClusterExecutionHelper clusterExecutionHelper;
+    @Autowired private ClusterCacheInvalidationSender invalidationSender;
 
     @PostConstruct
     public void addListener() {
@@ -52,6 +53,12 @@ public class ClusterCacheListener implements CacheListener {
             return;
         }
 
+        if (invalidationSender.isEnabled()) {
+            LOGGER.trace("Enqueueing cluster-wide invalidation of {} (oid={}), context {}", type, oid, context);
+            invalidationSender.enqueue(type, oid);
+            return;
+        }
+
         Task task = taskManager.createTaskInstance("invalidate");
         OperationResult result = task.getResult();
 
@@ -34,6 +34,7 @@ import com.evolveum.midpoint.model.common.ModelCommonBeans;
 import com.evolveum.midpoint.model.common.archetypes.ArchetypeManager;
 import com.evolveum.midpoint.model.common.mapping.MappingFactory;
 import com.evolveum.midpoint.repo.common.AuditHelper;
+import com.evolveum.midpoint.model.impl.controller.BulkChangesThreadPool;
 import com.evolveum.midpoint.model.impl.controller.ModelController;
 import com.evolveum.midpoint.model.impl.correlation.CorrelationCaseManager;
 import com.evolveum.midpoint.model.impl.correlation.CorrelationServiceImpl;
@@ -44,6 +45,7 @@ import com.evolveum.midpoint.model.impl.lens.indexing.IndexingManager;
 import com.evolveum.midpoint.model.impl.lens.projector.Projector;
 import com.evolveum.midpoint.model.impl.lens.projector.credentials.CredentialsProcessor;
 import com.evolveum.midpoint.model.impl.lens.projector.focus.AutoAssignMappingCollector;
+import com.evolveum.midpoint.model.impl.lens.projector.focus.MappingEvaluationPlanCache;
 import com.evolveum.midpoint.model.impl.lens.projector.focus.ProjectionMappingSetEvaluator;
 import com.evolveum.midpoint.model.impl.lens.projector.focus.ProjectionValueMetadataCreator;
 import com.evolveum.midpoint.model.impl.lens.projector.loader.ContextLoader;
@@ -100,6 +102,7 @@ public class ModelBeans {
     @Autowired @Qualifier("cacheRepositoryService") public RepositoryService cacheRepositoryService;
     @Autowired public MatchingRuleRegistry matchingRuleRegistry;
     @Autowired public AutoAssignMappingCollector autoAssignMappingCollector;
+    @Autowired public MappingEvaluationPlanCache mappingEvaluationPlanCache;
     @Autowired public MappingEvaluator mappingEvaluator;
     @Autowired public ProjectionMappingSetEvaluator projectionMappingSetEvaluator;
     @Autowired public MappingFactory mappingFactory;
@@ -149,6 +152,7 @@ public class ModelBeans {
     @Autowired public ExpressionProfileManager expressionProfileManager;
     @Autowired public AuditHelper auditHelper;
     @Autowired public ModelController modelController;
+    @Autowired public BulkChangesThreadPool bulkChangesThreadPool;
     @Autowired public SimulationResultManagerImpl simulationResultManager;
     @Autowired public MarkManager markManager;
     @Autowired public AuthorizationMigrator authorizationMigrator;
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.controller;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.security.core.Authentication;
+
+import com.evolveum.midpoint.model.api.ModelExecuteOptions;
+import com.evolveum.midpoint.model.api.ModelService;
+import com.evolveum.midpoint.model.impl.ModelBeans;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.util.CloneUtil;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.security.api.HttpConnectionInformation;
+import com.evolveum.midpoint.security.api.SecurityContextManager;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Helper class to execute {@link ModelService#executeChangesInBulk(List, ModelExecuteOptions, int, Task, OperationResult)}.
+ *
+ * Deltas are grouped into partitions by the OID of the object they modify. Each partition is processed by a single thread,
+ * delta after delta, each one by a regular {@link ModelController#executeChanges(Collection, ModelExecuteOptions, Task,
+ * OperationResult)} call. Different partitions are processed concurrently, by the threads of the {@link BulkChangesThreadPool}
+ * shared by all bulk operations. At most {@link #threads} workers are used for a single operation; each of them takes
+ * the partitions one after another, until there is none left.
+ *
+ * Thread confinement: each partition gets its own {@link Task} and the operation results of individual deltas are
+ * created as roots; they are attached to the caller's result only after all the workers are done. The security context
+ * and the connection information are copied from the calling thread to the workers.
+ */
+class BulkChangesExecutor {
+
+    private static final Trace LOGGER = TraceManager.getTrace(BulkChangesExecutor.class);
+
+    private static final String OP_EXECUTE_DELTA = BulkChangesExecutor.class.getName() + ".executeDelta";
+    private static final String OP_EXECUTE_PARTITION = BulkChangesExecutor.class.getName() + ".executePartition";
+
+    private final ModelController modelController = ModelBeans.get().modelController;
+    private final TaskManager taskManager = ModelBeans.get().taskManager;
+    private final SecurityContextManager securityContextManager = ModelBeans.get().securityContextManager;
+    private final BulkChangesThreadPool threadPool = ModelBeans.get().bulkChangesThreadPool;
+
+    @NotNull private final List<ObjectDelta<? extends ObjectType>> deltas;
+    @Nullable private final ModelExecuteOptions options;
+    private final int threads;
+    @NotNull private final Task task;
+
+    /** Results, indexed in the same way as {@link #deltas}. Each item is written by exactly one thread. */
+    @NotNull private final ObjectDeltaOperation<?>[] deltaOperations;
+
+    BulkChangesExecutor(
+            @NotNull List<ObjectDelta<? extends ObjectType>> deltas,
+            @Nullable ModelExecuteOptions options,
+            int threads,
+            @NotNull Task task) {
+        this.deltas = deltas;
+        this.options = options;
+        this.threads = threadPool.isInWorkerThread() ? 1 : Math.min(threads, threadPool.getMaximumPoolSize());
+        this.task = task;
+        this.deltaOperations = new ObjectDeltaOperation<?>[deltas.size()];
+    }
+
+    @NotNull List<ObjectDeltaOperation<? extends ObjectType>> execute(@NotNull OperationResult result) {
+        List<List<Integer>> partitions = createPartitions();
+        int workers = Math.min(threads, partitions.size());
+        LOGGER.debug("Executing {} deltas in {} partitions using {} thread(s)", deltas.size(), partitions.size(), workers);
+        result.addReturn("partitions", partitions.size());
+        result.addReturn("threads", Math.max(workers, 1));
+
+        if (workers < 2) {
+            for (List<Integer> partition : partitions) {
+                executePartition(partition, task);
+            }
+        } else {
+            executeConcurrently(partitions, workers, result);
+        }
+
+        List<ObjectDeltaOperation<? extends ObjectType>> rv = new ArrayList<>(deltaOperations.length);
+        for (ObjectDeltaOperation<?> deltaOperation : deltaOperations) {
+            //noinspection unchecked
+            rv.add((ObjectDeltaOperation<? extends ObjectType>) deltaOperation);
+            if (deltaOperation.getExecutionResult() != null) {
+                result.addSubresult(deltaOperation.getExecutionResult());
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Partitions keep the order of the first occurrence of their OID; indices in each partition are ascending.
+     * The order of partitions is relevant only for the sequential execution.
+     */
+    private List<List<Integer>> createPartitions() {
+        Map<String, List<Integer>> partitionsByOid = new LinkedHashMap<>();
+        List<List<Integer>> partitions = new ArrayList<>();
+        for (int i = 0; i < deltas.size(); i++) {
+            String oid = deltas.get(i).getOid();
+            if (oid == null) {
+                partitions.add(new ArrayList<>(List.of(i)));
+            } else {
+                List<Integer> partition = partitionsByOid.get(oid);
+                if (partition == null) {
+                    partition = new ArrayList<>();
+                    partitionsByOid.put(oid, partition);
+                    partitions.add(partition);
+                }
+                partition.add(i);
+            }
+        }
+        return partitions;
+    }
+
+    private void executeConcurrently(List<List<Integer>> partitions, int workers, OperationResult result) {
+        Authentication authentication = securityContextManager.getAuthentication();
+        HttpConnectionInformation connectionInformation = securityContextManager.getStoredConnectionInformation();
+        PrismObject<? extends FocusType> owner = task.getOwner(result);
+
+        // Tasks are created here, so that the calling task is accessed from the calling thread only.
+        List<Task> partitionTasks = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            partitionTasks.add(createPartitionTask(owner));
+        }
+
+        AtomicInteger nextPartition = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                futures.add(threadPool.submit(
+                        () -> executePartitionsInWorker(
+                                partitions, partitionTasks, nextPartition, authentication, connectionInformation)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for the bulk execution to finish", e);
+        } catch (ExecutionException e) {
+            // Should not occur, as all the exceptions are recorded in the results of individual deltas.
+            throw new SystemException("Unexpected exception during the bulk execution: " + e.getCause().getMessage(), e);
+        } finally {
+            // The threads are shared, so we must not leave our workers running (or waiting) after we return.
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Task createPartitionTask(PrismObject<? extends FocusType> owner) {
+        Task partitionTask = taskManager.createTaskInstance(OP_EXECUTE_PARTITION);
+        if (owner != null) {
+            partitionTask.setOwner(owner.clone());
+        }
+        partitionTask.setChannel(task.getChannel());
+        partitionTask.setExecutionEnvironment(CloneUtil.clone(task.getExecutionEnvironment()));
+        partitionTask.setExecutionMode(task.getExecutionMode());
+        return partitionTask;
+    }
+
+    private void executePartitionsInWorker(
+            List<List<Integer>> partitions, List<Task> partitionTasks, AtomicInteger nextPartition,
+            Authentication authentication, HttpConnectionInformation connectionInformation) {
+        securityContextManager.setupPreAuthenticatedSecurityContext(authentication);
+        securityContextManager.storeConnectionInformation(connectionInformation);
+        try {
+            int i;
+            while ((i = nextPartition.getAndIncrement()) < partitions.size() && !Thread.currentThread().isInterrupted()) {
+                executePartition(partitions.get(i), partitionTasks.get(i));
+            }
+        } finally {
+            securityContextManager.storeConnectionInformation(null);
+            securityContextManager.setupPreAuthenticatedSecurityContext((Authentication) null);
+        }
+    }
+
+    private void executePartition(List<Integer> partition, Task partitionTask) {
+        for (int index : partition) {
+            deltaOperations[index] = executeDelta(deltas.get(index), partitionTask);
+        }
+    }
+
+    private ObjectDeltaOperation<?> executeDelta(ObjectDelta<? extends ObjectType> delta, Task partitionTask) {
+        // A root result; it is attached to the caller's result after the workers are done.
+        OperationResult result = new OperationResult(OP_EXECUTE_DELTA);
+        result.addParam("oid", delta.getOid());
+        result.addParam("changeType", String.valueOf(delta.getChangeType()));
+        ObjectDeltaOperation<?> deltaOperation = new ObjectDeltaOperation<>(delta, result);
+        try {
+            Collection<ObjectDeltaOperation<? extends ObjectType>> executedDeltas =
+                    modelController.executeChanges(
+                            List.of(delta), options != null ? options.clone() : null, partitionTask, null, result);
+            if (delta.isAdd() && delta.getOid() == null) {
+                deltaOperation.setObjectOid(
+                        ObjectDeltaOperation.findAddDeltaOid(executedDeltas, delta.getObjectToAdd()));
+            } else {
+                deltaOperation.setObjectOid(delta.getOid());
+            }
+        } catch (CommonException | RuntimeException e) {
+            // The exception is already recorded in the result; we continue with other deltas.
+            LOGGER.debug("Execution of {} failed: {}", delta, e.getMessage(), e);
+            result.recordException(e);
+            deltaOperation.setObjectOid(delta.getOid());
+        } finally {
+            result.close();
+        }
+        return deltaOperation;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.controller;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Threads that execute deltas for {@link BulkChangesExecutor}, shared by all bulk operations on this node.
+ *
+ * The number of threads is limited to the number of processors, so concurrent bulk operations cannot together
+ * occupy more threads than that; their work waits in the queue instead. Idle threads are released after a while.
+ */
+@Component
+public class BulkChangesThreadPool {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    /** Marks the threads of this pool, see {@link #isInWorkerThread()}. */
+    private final ThreadLocal<Boolean> workerThread = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+
+    public BulkChangesThreadPool() {
+        int size = Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(
+                size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "bulk-changes-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Maximal number of threads, i.e. the maximal concurrency of a single bulk operation. */
+    int getMaximumPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * True if called from a thread of this pool, e.g. when a bulk operation is started while executing a delta.
+     * Such operation must not wait for the pool, as all its threads might be waiting in the same way.
+     */
+    boolean isInWorkerThread() {
+        return Boolean.TRUE.equals(workerThread.get());
+    }
+
+    Future<?> submit(Runnable runnable) {
+        return executor.submit(() -> {
+            workerThread.set(true);
+            try {
+                runnable.run();
+            } finally {
+                workerThread.remove();
+            }
+        });
+    }
+}
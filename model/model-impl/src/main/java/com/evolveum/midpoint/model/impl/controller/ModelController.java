@@ -45,6 +45,7 @@ import com.evolveum.midpoint.model.api.hooks.HookRegistry;
 import com.evolveum.midpoint.model.api.hooks.ReadHook;
 import com.evolveum.midpoint.repo.common.AuditHelper;
 import com.evolveum.midpoint.model.impl.ModelObjectResolver;
+import com.evolveum.midpoint.model.impl.expr.ScriptCacheWarmUp;
 import com.evolveum.midpoint.model.impl.importer.ObjectImporter;
 import com.evolveum.midpoint.model.impl.lens.*;
 import com.evolveum.midpoint.model.impl.scripting.ExecutionContext;
@@ -154,6 +155,7 @@ public class ModelController implements ModelService, TaskService, CaseService,
     @Autowired private SystemObjectCache systemObjectCache;
     @Autowired private ClockworkMedic clockworkMedic;
     @Autowired private EventDispatcher dispatcher;
+    @Autowired private ScriptCacheWarmUp scriptCacheWarmUp;
     @Autowired
     @Qualifier("cacheRepositoryService")
     private RepositoryService cacheRepositoryService;
@@ -320,6 +322,28 @@ public class ModelController implements ModelService, TaskService, CaseService,
         }
     }
 
+    @Override
+    public @NotNull List<ObjectDeltaOperation<? extends ObjectType>> executeChangesInBulk(
+            @NotNull List<ObjectDelta<? extends ObjectType>> deltas, @Nullable ModelExecuteOptions options, int threads,
+            @NotNull Task task, @NotNull OperationResult parentResult) {
+
+        OperationResult result = parentResult.subresult(EXECUTE_CHANGES_IN_BULK)
+                .addArbitraryObjectAsParam(OperationResult.PARAM_OPTIONS, options)
+                .addParam("deltas", deltas.size())
+                .addParam("threads", threads)
+                .build();
+        try {
+            // Each delta is executed (and entered into the model) separately, possibly in another thread.
+            return new BulkChangesExecutor(deltas, options, threads, task)
+                    .execute(result);
+        } catch (Throwable t) {
+            result.recordException(t);
+            throw t;
+        } finally {
+            result.close();
+        }
+    }
+
     private String getDeltasOnSeparateLines(Collection<? extends ObjectDelta<?>> deltas) {
         return deltas.stream()
                 .map(delta -> " - " + delta)
@@ -1661,6 +1685,8 @@ public class ModelController implements ModelService, TaskService, CaseService,
 
             provisioning.postInit(result);
 
+            scriptCacheWarmUp.startIfEnabled();
+
         } catch (SchemaException e) {
             result.recordFatalError(e);
             throw new SystemException(e.getMessage(), e);
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.expr;
+
+import java.util.List;
+import jakarta.xml.bind.JAXBElement;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
+import com.evolveum.midpoint.model.common.expression.ExpressionProfileManager;
+import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionFactory;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Precompiles scripts found in object templates, resources and function libraries at node start,
+ * so that the first evaluations (typically by many worker threads at once) do not have to wait for compilation.
+ *
+ * It is switched off by default; enabled by `warmUp` property in `midpoint.scriptCache` configuration section.
+ * The warm-up runs in a background thread and does not delay the start of the node.
+ *
+ * Compiled scripts are cached per expression profile, so each script is compiled for the profile determined
+ * for its object (by archetype or object policy, see {@link ExpressionProfileManager}), i.e. the one used at runtime.
+ */
+@Component
+public class ScriptCacheWarmUp {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ScriptCacheWarmUp.class);
+
+    private static final String OP_WARM_UP = ScriptCacheWarmUp.class.getName() + ".warmUp";
+
+    public static final String CONFIGURATION_WARM_UP = "warmUp";
+
+    private static final List<Class<? extends ObjectType>> TYPES_TO_SCAN =
+            List.of(ObjectTemplateType.class, ResourceType.class, FunctionLibraryType.class);
+
+    @Autowired private MidpointConfiguration midpointConfiguration;
+    @Autowired private ScriptExpressionFactory scriptExpressionFactory;
+    @Autowired private ExpressionProfileManager expressionProfileManager;
+
+    @Autowired
+    @Qualifier("cacheRepositoryService")
+    private RepositoryService repositoryService;
+
+    /** Starts the warm-up in a background thread, if it is enabled in the configuration. */
+    public void startIfEnabled() {
+        boolean enabled = midpointConfiguration.getConfiguration(MidpointConfiguration.SCRIPT_CACHE_CONFIGURATION)
+                .getBoolean(CONFIGURATION_WARM_UP, false);
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "script-cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        OperationResult result = new OperationResult(OP_WARM_UP);
+        long start = System.currentTimeMillis();
+        Counts counts = new Counts();
+        for (Class<? extends ObjectType> type : TYPES_TO_SCAN) {
+            try {
+                repositoryService.searchObjectsIterative(type, null,
+                        (object, lResult) -> {
+                            precompileScripts(object, counts, lResult);
+                            return true;
+                        },
+                        GetOperationOptions.createReadOnlyCollection(), true, result);
+            } catch (Exception e) {
+                LoggingUtils.logUnexpectedException(LOGGER, "Couldn't search for {} during script cache warm-up", e,
+                        type.getSimpleName());
+            }
+        }
+        LOGGER.info("Script cache warm-up finished in {} ms: {} scripts compiled, {} scripts failed to compile",
+                System.currentTimeMillis() - start, counts.compiled, counts.failed);
+    }
+
+    private void precompileScripts(PrismObject<? extends ObjectType> object, Counts counts, OperationResult result) {
+        ExpressionProfile profile;
+        try {
+            profile = expressionProfileManager.determineExpressionProfile(object, result);
+        } catch (Exception e) {
+            // The same error will be reported when the scripts are evaluated.
+            LOGGER.debug("Couldn't determine expression profile for {}: {}", object, e.getMessage(), e);
+            return;
+        }
+        object.accept(visitable -> {
+            if (visitable instanceof PrismPropertyValue<?> propertyValue) {
+                Object realValue = propertyValue.getRealValue();
+                if (realValue instanceof ExpressionType expression) {
+                    for (JAXBElement<?> evaluator : expression.getExpressionEvaluator()) {
+                        if (evaluator.getValue() instanceof ScriptExpressionEvaluatorType script) {
+                            precompile(script, profile, object, counts);
+                        }
+                    }
+                } else if (realValue instanceof ScriptExpressionEvaluatorType script) {
+                    precompile(script, profile, object, counts);
+                }
+            }
+        });
+    }
+
+    private void precompile(
+            ScriptExpressionEvaluatorType script, ExpressionProfile profile, PrismObject<?> object, Counts counts) {
+        try {
+            if (scriptExpressionFactory.precompile(script, profile, "script warm-up in " + object)) {
+                counts.compiled++;
+            }
+        } catch (Exception e) {
+            // The same error will be reported when the script is evaluated.
+            LOGGER.debug("Couldn't precompile script in {}: {}", object, e.getMessage(), e);
+            counts.failed++;
+        }
+    }
+
+    /** Used by a single thread only. */
+    private static class Counts {
+        private int compiled;
+        private int failed;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.lens.projector.focus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.model.impl.lens.projector.mappings.FocalMappingEvaluationRequest;
+import com.evolveum.midpoint.repo.api.Cache;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Caches the evaluation plans computed by {@link MappingSorter}, i.e. the order in which the mappings are to be evaluated.
+ *
+ * A plan depends only on the sources, targets and phases of the mappings. For template and auto-assignment mappings,
+ * these are given by the objects the mappings come from (the template, its included templates, auto-assignable roles).
+ * Hence, the key is the list of OIDs and versions of these objects, one item per mapping. Other kinds of mappings
+ * (e.g. the ones from assignments) are not cached, as their presence may depend on the focus.
+ */
+@Component
+public class MappingEvaluationPlanCache implements Cache {
+
+    private static final Trace LOGGER = TraceManager.getTrace(MappingEvaluationPlanCache.class);
+    private static final Trace LOGGER_CONTENT = TraceManager.getTrace(MappingEvaluationPlanCache.class.getName() + ".content");
+
+    /** There is usually only a handful of templates; so this limit is reached only if templates change often. */
+    private static final int MAX_SIZE = 1000;
+
+    @Autowired private CacheRegistry cacheRegistry;
+
+    private final Map<Key, Plan> plans = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void register() {
+        cacheRegistry.registerCache(this);
+    }
+
+    @PreDestroy
+    public void unregister() {
+        cacheRegistry.unregisterCache(this);
+    }
+
+    /** Returns `null` if the plan for given requests cannot be cached. */
+    static @Nullable Key createKey(
+            @NotNull List<? extends FocalMappingEvaluationRequest<?, ?>> requests,
+            @Nullable ObjectTemplateMappingEvaluationPhaseType phase) {
+        List<Origin> origins = new ArrayList<>(requests.size());
+        for (FocalMappingEvaluationRequest<?, ?> request : requests) {
+            MappingKindType kind = request.getMappingKind();
+            if (kind != MappingKindType.TEMPLATE && kind != MappingKindType.AUTO_ASSIGN) {
+                return null;
+            }
+            ObjectType originObject = request.getOriginObject();
+            if (originObject.getOid() == null || originObject.getVersion() == null) {
+                return null; // e.g. an in-memory template
+            }
+            origins.add(new Origin(kind, originObject.getOid(), originObject.getVersion()));
+        }
+        return new Key(phase, origins);
+    }
+
+    @Nullable Plan get(@NotNull Key key) {
+        Plan plan = plans.get(key);
+        if (plan != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return plan;
+    }
+
+    void put(@NotNull Key key, @NotNull Plan plan) {
+        if (plans.size() >= MAX_SIZE) {
+            LOGGER.debug("Too many cached plans ({}), clearing the cache", plans.size());
+            plans.clear();
+        }
+        plans.put(key, plan);
+    }
+
+    /**
+     * The keys contain object versions, so the plans are never out of date. But an object can be deleted and re-created
+     * with the same OID, so the plans using it are removed anyway.
+     */
+    @Override
+    public void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
+        if (type == null || (oid == null && isRelevant(type))) {
+            plans.clear();
+        } else if (isRelevant(type)) {
+            plans.keySet().removeIf(key -> key.containsOid(oid));
+        }
+    }
+
+    private static boolean isRelevant(@NotNull Class<?> type) {
+        return type.isAssignableFrom(ObjectTemplateType.class)
+                || type.isAssignableFrom(AbstractRoleType.class)
+                || AbstractRoleType.class.isAssignableFrom(type);
+    }
+
+    @NotNull
+    @Override
+    public Collection<SingleCacheStateInformationType> getStateInformation() {
+        String name = MappingEvaluationPlanCache.class.getName();
+        return Collections.singleton(
+                new SingleCacheStateInformationType()
+                        .name(name)
+                        .size(plans.size())
+                        .performance(new SingleCachePerformanceInformationType()
+                                .name(name)
+                                .hitCount((int) hits.sum())
+                                .missCount((int) misses.sum())));
+    }
+
+    @Override
+    public void dumpContent() {
+        if (LOGGER_CONTENT.isInfoEnabled()) {
+            plans.forEach((k, v) -> LOGGER_CONTENT.info("Cached plan: {}: {}", k, v));
+        }
+    }
+
+    /** Object the mapping comes from. */
+    record Origin(@NotNull MappingKindType kind, @NotNull String oid, @NotNull String version) {
+    }
+
+    record Key(@Nullable ObjectTemplateMappingEvaluationPhaseType phase, @NotNull List<Origin> origins) {
+
+        boolean containsOid(String oid) {
+            for (Origin origin : origins) {
+                if (origin.oid().equals(oid)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Filtered and sorted mappings.
+     *
+     * @param order Indices of the mappings (in the original list) in the order in which they should be evaluated.
+     * @param unsortable Indices of the mappings that could not be sorted because of a cycle. They are at the end of
+     * {@link #order}. Empty if there is no cycle.
+     */
+    record Plan(@NotNull List<Integer> order, @NotNull List<Integer> unsortable) {
+
+        boolean hasCycle() {
+            return !unsortable.isEmpty();
+        }
+    }
+}
@@ -15,16 +15,17 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectTemplateMappingEvaluationPhaseType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.VariableBindingDefinitionType;
 
-import org.apache.commons.collections4.CollectionUtils;
-
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.evolveum.midpoint.util.DebugUtil.lazy;
 
 /**
  * Sorts mappings (evaluation requests) by their dependencies.
+ *
+ * Mappings are evaluated one after another, as chained mappings need the output of their predecessors.
+ * Mappings in the same stratum could be evaluated in parallel, but the evaluation (lens context, operation result)
+ * is not thread-safe, so that is not done.
  */
 class MappingSorter {
 
@@ -36,10 +37,25 @@ class MappingSorter {
         this.beans = beans;
     }
 
+    /**
+     * Filters the requests by the phase and sorts them by dependencies. The result of these operations (the plan)
+     * is cached, if possible; see {@link MappingEvaluationPlanCache}.
+     */
     List<? extends FocalMappingEvaluationRequest<?, ?>> filterAndSort(List<? extends FocalMappingEvaluationRequest<?, ?>> evaluationRequests,
             ObjectTemplateMappingEvaluationPhaseType phase) {
-        List<? extends FocalMappingEvaluationRequest<?, ?>> filtered = filter(evaluationRequests, phase);
-        return sortRequestsByDependencies(filtered);
+        MappingEvaluationPlanCache.Key key = MappingEvaluationPlanCache.createKey(evaluationRequests, phase);
+        MappingEvaluationPlanCache.Plan plan = key != null ? beans.mappingEvaluationPlanCache.get(key) : null;
+        if (plan == null) {
+            plan = createPlan(evaluationRequests, phase);
+            if (key != null) {
+                beans.mappingEvaluationPlanCache.put(key, plan);
+            }
+        } else if (plan.hasCycle()) {
+            LOGGER.debug("Using cached plan with mappings that cannot be sorted because of a cycle: #{}", plan.unsortable());
+        }
+        List<? extends FocalMappingEvaluationRequest<?, ?>> rv = selectRequests(evaluationRequests, plan.order());
+        LOGGER.trace("filterAndSort: final ordering: {}\n{}", plan.order(), lazy(() -> dumpMappings(rv)));
+        return rv;
     }
 
     List<? extends FocalMappingEvaluationRequest<?, ?>> filter(
@@ -54,43 +70,87 @@ class MappingSorter {
         }
     }
 
+    private MappingEvaluationPlanCache.Plan createPlan(
+            List<? extends FocalMappingEvaluationRequest<?, ?>> evaluationRequests,
+            ObjectTemplateMappingEvaluationPhaseType phase) {
+        List<Integer> filtered = new ArrayList<>();
+        for (int i = 0; i < evaluationRequests.size(); i++) {
+            if (phase == null || evaluationRequests.get(i).getEvaluationPhase() == phase) {
+                filtered.add(i);
+            }
+        }
+        return sortRequestsByDependencies(evaluationRequests, filtered);
+    }
+
     /**
      * If M2 has a source of X, and M1 has a target of X, then M1 must be placed before M2; we want also to detect cycles.
      *
-     * So let's stratify mappings according to their dependencies.
+     * So let's stratify mappings according to their dependencies. Among the mappings whose dependencies are satisfied,
+     * the one that comes first in the original list is always taken, so the original order is preserved as much as possible.
+     *
+     * @param requests All requests.
+     * @param numbers Indices of the requests to be sorted, in the original order.
+     * @return The plan, with the indices into `requests`.
      */
-    private List<? extends FocalMappingEvaluationRequest<?, ?>> sortRequestsByDependencies(List<? extends FocalMappingEvaluationRequest<?, ?>> requests) {
-        // map.get(X) = { Y1 ... Yn } means that mapping X depends on output of mappings Y1 ... Yn
-        // using indices instead of actual mappings because of equality issues
-        Map<Integer, Set<Integer>> dependencyMap = createDependencyMap(requests);
-        LOGGER.trace("sortMappingsByDependencies: Starting with mapping requests:\n{}\nDependency map (z=[a,b,c] means that z depends on a, b, c):\n{}\n",
-                lazy(() -> dumpMappings(requests)), dependencyMap);
-
-        List<Integer> processed = new ArrayList<>();
-        List<Integer> toProcess = Stream.iterate(0, t -> t+1).limit(requests.size()).collect(Collectors.toList()); // not a set: to preserve original order
-        while (!toProcess.isEmpty()) {
-            LOGGER.trace("sortMappingsByDependencies: toProcess: {}, processed: {}", toProcess, processed);
-            Integer available = toProcess.stream()
-                    .filter(i -> CollectionUtils.isSubCollection(dependencyMap.get(i), processed))    // cannot depend on yet-unprocessed mappings
-                    .findFirst().orElse(null);
-            if (available == null) {
-                LOGGER.warn("Cannot sort mappings according to dependencies, because there is a cycle involving mappings #{}. "
-                        + "Computation results may be incorrect. Please enable DEBUG logging to see the details.", toProcess);
-                LOGGER.debug("Mappings that cannot be sorted:\n{}", lazy(() -> dumpMappings(selectRequests(requests, toProcess))));
-                List<Integer> finalOrder = new ArrayList<>(processed);
-                finalOrder.addAll(toProcess);
-                List<? extends FocalMappingEvaluationRequest<?, ?>> rv = selectRequests(requests, finalOrder);
-                LOGGER.debug("Processing mappings in partially satisfying order: {}\n{}", finalOrder, lazy(() -> dumpMappings(rv)));
-                return rv;
+    private MappingEvaluationPlanCache.Plan sortRequestsByDependencies(
+            List<? extends FocalMappingEvaluationRequest<?, ?>> requests, List<Integer> numbers) {
+        List<? extends FocalMappingEvaluationRequest<?, ?>> selected = selectRequests(requests, numbers);
+        // dependencies.get(X) = { Y1 ... Yn } means that mapping X depends on output of mappings Y1 ... Yn
+        // using indices (in the selected list) instead of actual mappings because of equality issues
+        List<Set<Integer>> dependencies = createDependencies(selected);
+        LOGGER.trace("sortMappingsByDependencies: Starting with mapping requests:\n{}\nDependencies (z=[a,b,c] means that z depends on a, b, c):\n{}\n",
+                lazy(() -> dumpMappings(selected)), dependencies);
+
+        // dependents.get(Y) = mappings that depend on Y; unsatisfied[X] = number of not yet processed dependencies of X
+        List<List<Integer>> dependents = new ArrayList<>(selected.size());
+        int[] unsatisfied = new int[selected.size()];
+        PriorityQueue<Integer> available = new PriorityQueue<>(); // smallest index first: to preserve original order
+        for (int i = 0; i < selected.size(); i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < selected.size(); i++) {
+            unsatisfied[i] = dependencies.get(i).size();
+            for (int j : dependencies.get(i)) {
+                dependents.get(j).add(i);
+            }
+            if (unsatisfied[i] == 0) {
+                available.add(i);
             }
-            processed.add(available);
-            toProcess.remove(available);
         }
-        //noinspection UnnecessaryLocalVariable
-        List<Integer> finalOrder = processed;
-        List<? extends FocalMappingEvaluationRequest<?, ?>> rv = selectRequests(requests, finalOrder);
-        LOGGER.trace("sortMappingsByDependencies: final ordering: {}\n{}", finalOrder, lazy(() -> dumpMappings(rv)));
-        return rv;
+
+        List<Integer> processed = new ArrayList<>(selected.size());
+        while (!available.isEmpty()) {
+            int next = available.poll();
+            processed.add(next);
+            for (int dependent : dependents.get(next)) {
+                if (--unsatisfied[dependent] == 0) {
+                    available.add(dependent);
+                }
+            }
+        }
+
+        List<Integer> unsortable = new ArrayList<>();
+        if (processed.size() < selected.size()) {
+            for (int i = 0; i < selected.size(); i++) {
+                if (unsatisfied[i] > 0) {
+                    unsortable.add(i);
+                }
+            }
+            LOGGER.warn("Cannot sort mappings according to dependencies, because there is a cycle involving mappings #{}. "
+                    + "Computation results may be incorrect. Please enable DEBUG logging to see the details.", unsortable);
+            LOGGER.debug("Mappings that cannot be sorted:\n{}", lazy(() -> dumpMappings(selectRequests(selected, unsortable))));
+            processed.addAll(unsortable);
+            LOGGER.debug("Processing mappings in partially satisfying order: {}", processed);
+        }
+        return new MappingEvaluationPlanCache.Plan(
+                toOriginalIndices(processed, numbers),
+                toOriginalIndices(unsortable, numbers));
+    }
+
+    private static List<Integer> toOriginalIndices(List<Integer> indices, List<Integer> numbers) {
+        return indices.stream()
+                .map(numbers::get)
+                .toList();
     }
 
     private String dumpMappings(Iterable<? extends FocalMappingEvaluationRequest<?, ?>> requests) {
@@ -112,36 +172,53 @@ class MappingSorter {
         }
     }
 
-    private Map<Integer, Set<Integer>> createDependencyMap(List<? extends FocalMappingEvaluationRequest<?, ?>> mappings) {
-        Map<Integer, Set<Integer>> map = new HashMap<>();
+    private List<Set<Integer>> createDependencies(List<? extends FocalMappingEvaluationRequest<?, ?>> mappings) {
+        // Paths are parsed only once for each mapping.
+        List<List<ItemPath>> sourcePaths = new ArrayList<>(mappings.size());
+        List<ItemPath> targetPaths = new ArrayList<>(mappings.size());
+        for (FocalMappingEvaluationRequest<?, ?> mapping : mappings) {
+            sourcePaths.add(getSourcePaths(mapping));
+            targetPaths.add(getTargetPath(mapping));
+        }
+        List<Set<Integer>> dependencies = new ArrayList<>(mappings.size());
         for (int i = 0; i < mappings.size(); i++) {
             Set<Integer> dependsOn = new HashSet<>();
             for (int j = 0; j < mappings.size(); j++) {
-                if (i == j) {
-                    continue;
-                }
-                if (dependsOn(mappings.get(i), mappings.get(j))) {
+                if (i != j && dependsOn(sourcePaths.get(i), targetPaths.get(j))) {
                     dependsOn.add(j);
                 }
             }
-            map.put(i, dependsOn);
+            dependencies.add(dependsOn);
         }
-        return map;
+        return dependencies;
     }
 
-    // true if any source of mapping1 is equivalent to the target of mapping2
-    private boolean dependsOn(
-            FocalMappingEvaluationRequest<?, ?> mappingRequest1,
-            FocalMappingEvaluationRequest<?, ?> mappingRequest2) {
-        VariableBindingDefinitionType target = mappingRequest2.getTarget();
+    private List<ItemPath> getSourcePaths(FocalMappingEvaluationRequest<?, ?> mappingRequest) {
+        List<ItemPath> paths = new ArrayList<>();
+        for (VariableBindingDefinitionType source : mappingRequest.getSources()) {
+            ItemPath sourcePath = beans.prismContext.toPath(source.getPath());
+            if (sourcePath != null) {
+                paths.add(FocalMappingSetEvaluation.stripFocusVariableSegment(sourcePath));
+            }
+        }
+        return paths;
+    }
+
+    private ItemPath getTargetPath(FocalMappingEvaluationRequest<?, ?> mappingRequest) {
+        VariableBindingDefinitionType target = mappingRequest.getTarget();
         if (target == null || target.getPath() == null) {
-            return false;
+            return null;
         }
-        ItemPath targetPath = target.getPath().getItemPath().stripVariableSegment();
+        return target.getPath().getItemPath().stripVariableSegment();
+    }
 
-        for (VariableBindingDefinitionType source : mappingRequest1.getSources()) {
-            ItemPath sourcePath = beans.prismContext.toPath(source.getPath());
-            if (sourcePath != null && FocalMappingSetEvaluation.stripFocusVariableSegment(sourcePath).equivalent(targetPath)) {
+    // true if any source of mapping1 is equivalent to the target of mapping2
+    private boolean dependsOn(List<ItemPath> sourcePaths1, ItemPath targetPath2) {
+        if (targetPath2 == null) {
+            return false;
+        }
+        for (ItemPath sourcePath : sourcePaths1) {
+            if (sourcePath.equivalent(targetPath2)) {
                 return true;
             }
         }
@@ -14,7 +14,11 @@ import static com.evolveum.midpoint.util.MiscUtil.*;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.evolveum.midpoint.model.api.context.ProjectionContextFilter;
 import com.evolveum.midpoint.model.api.context.ProjectionContextKey;
@@ -69,6 +73,8 @@ public class ProjectionsLoadOperation<F extends FocusType> {
     private static final Trace LOGGER = TraceManager.getTrace(ProjectionsLoadOperation.class);
 
     private static final String OP_LOAD = ProjectionsLoadOperation.class.getName() + "." + "load";
+    private static final String OP_PREFETCH_LINKED_SHADOWS =
+            ProjectionsLoadOperation.class.getName() + "." + "prefetchLinkedShadows";
 
     @NotNull private final LensContext<F> context;
     @NotNull private final LensFocusContext<F> focusContext;
@@ -76,6 +82,9 @@ public class ProjectionsLoadOperation<F extends FocusType> {
     @NotNull private final ModelBeans beans;
     @NotNull private final ProvisioningService provisioningService;
 
+    /** Linked shadows retrieved in bulk, waiting to be used. See {@link #prefetchLinkedShadows(List, OperationResult)}. */
+    @NotNull private final Map<String, PrismObject<ShadowType>> prefetchedShadows = new HashMap<>();
+
     ProjectionsLoadOperation(@NotNull LensContext<F> context, @NotNull Task task) {
         this.context = context;
         this.focusContext = context.getFocusContext();
@@ -124,16 +133,71 @@ public class ProjectionsLoadOperation<F extends FocusType> {
         PrismObject<F> focus = focusContext.getObjectCurrent();
         List<ObjectReferenceType> linkRefs = focus != null ? focus.asObjectable().getLinkRef() : List.of();
 
+        prefetchLinkedShadows(linkRefs, result);
+
         for (ObjectReferenceType linkRef : linkRefs) {
             new LinkLevelLoadOperation(linkRef)
                     .getOrCreateFromExistingValue(result);
         }
+        prefetchedShadows.clear();
 
         context.checkConsistenceIfNeeded();
 
         LOGGER.trace("Loading projection contexts from focus linkRefs done ({} linkRefs considered)", linkRefs.size());
     }
 
+    /**
+     * Gets (in bulk) the shadows for active linkRefs that will need a new projection context. This replaces a separate
+     * `getObject` call for each of them. Shadows that are not retrieved here (non-existing ones, or the ones that could
+     * not be processed in bulk) are then retrieved individually, see {@link LinkLevelLoadOperation#getShadow(OperationResult)}.
+     */
+    private void prefetchLinkedShadows(List<ObjectReferenceType> linkRefs, OperationResult result) {
+        Set<String> oidsToFetch = new HashSet<>();
+        for (ObjectReferenceType linkRef : linkRefs) {
+            String oid = linkRef.getOid();
+            if (StringUtils.isNotBlank(oid)
+                    && !isInactive(linkRef)
+                    && linkRef.asReferenceValue().getObject() == null
+                    && context.findProjectionContextByOid(oid) == null) {
+                oidsToFetch.add(oid);
+            }
+        }
+        if (oidsToFetch.size() < 2) {
+            return; // nothing to gain here
+        }
+        LOGGER.trace("Prefetching {} linked shadows", oidsToFetch.size());
+        OperationResult prefetchResult = result.subresult(OP_PREFETCH_LINKED_SHADOWS)
+                .setMinor()
+                .addParam("shadows", oidsToFetch.size())
+                .build();
+        try {
+            prefetchedShadows.putAll(
+                    provisioningService.getShadowsNoFetch(
+                            oidsToFetch, createLinkedShadowOptions(), context.createProvisioningOperationContext(),
+                            task, prefetchResult));
+        } catch (SchemaException | RuntimeException e) {
+            LOGGER.debug("Couldn't prefetch linked shadows, will get them one by one", e);
+            prefetchResult.recordFatalError(e);
+        } finally {
+            prefetchResult.close();
+        }
+        // Shadows not prefetched will be retrieved one by one, reporting the error there (if it persists).
+        // So a failed prefetch is not kept in the result, just like failures of individual shadows in the bulk get.
+        result.deleteLastSubresultIfError();
+    }
+
+    /**
+     * Using NO_FETCH so we avoid reading in a full account. This is more efficient as we don't need full account here.
+     * We need to fetch from provisioning and not repository so the correct definition will be set.
+     */
+    private static Collection<SelectorOptions<GetOperationOptions>> createLinkedShadowOptions() {
+        return SchemaService.get().getOperationOptionsBuilder()
+                .noFetch()
+                .futurePointInTime()
+                //.readOnly() [not yet]
+                .build();
+    }
+
     private void getOrCreateProjectionContextsFromFocusPrimaryDelta(OperationResult result) throws SchemaException,
             ObjectNotFoundException, CommunicationException, ConfigurationException,
             SecurityViolationException, PolicyViolationException, ExpressionEvaluationException {
@@ -480,13 +544,12 @@ public class ProjectionsLoadOperation<F extends FocusType> {
             }
 
             String oid = linkRef.getOid();
-            // Using NO_FETCH so we avoid reading in a full account. This is more efficient as we don't need full account here.
-            // We need to fetch from provisioning and not repository so the correct definition will be set.
-            var options = SchemaService.get().getOperationOptionsBuilder()
-                    .noFetch()
-                    .futurePointInTime()
-                    //.readOnly() [not yet]
-                    .build();
+            PrismObject<ShadowType> prefetchedShadow = prefetchedShadows.remove(oid);
+            if (prefetchedShadow != null) {
+                LOGGER.trace("Using prefetched shadow {} from linkRef", prefetchedShadow);
+                return prefetchedShadow;
+            }
+            var options = createLinkedShadowOptions();
             LOGGER.trace("Loading shadow {} from linkRef, options={}", oid, options);
             try {
                 return provisioningService.getObject(ShadowType.class, oid, options, task, result);
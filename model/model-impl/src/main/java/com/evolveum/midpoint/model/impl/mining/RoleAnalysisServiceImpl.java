@@ -480,6 +480,7 @@ public class RoleAnalysisServiceImpl implements RoleAnalysisService, Serializabl
             recomputeSessionStatistic.setProcessedObjectCount(recomputeProcessedObjectCount);
         }
         recomputeSessionStatistic.setClusterCount(newClusterCount);
+        recomputeSessionStatistic.setNeighborSearchRecall(sessionStatistic.getNeighborSearchRecall());
         return recomputeSessionStatistic;
     }
 
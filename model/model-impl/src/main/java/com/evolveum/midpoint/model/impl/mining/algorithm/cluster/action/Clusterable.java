@@ -16,6 +16,7 @@ import com.evolveum.midpoint.model.api.mining.RoleAnalysisService;
 import com.evolveum.midpoint.task.api.Task;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -46,4 +47,12 @@ public interface Clusterable {
             @NotNull RoleAnalysisProgressIncrement handler,
             @NotNull Task task,
             @NotNull OperationResult result);
+
+    /**
+     * Returns the estimated recall of the approximate neighbor search used by the last clustering;
+     * null if the exact search was used.
+     */
+    default @Nullable Double getNeighborSearchRecall() {
+        return null;
+    }
 }
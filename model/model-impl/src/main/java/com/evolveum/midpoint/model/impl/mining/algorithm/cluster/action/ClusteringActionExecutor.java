@@ -132,6 +132,7 @@ public class ClusteringActionExecutor extends BaseAction {
         sessionStatistic.setProcessedObjectCount(processedObjectCount);
         sessionStatistic.setMeanDensity(meanDensity);
         sessionStatistic.setClusterCount(clusters.size());
+        sessionStatistic.setNeighborSearchRecall(clusterable.getNeighborSearchRecall());
 
         handler.enterNewStep("Update Session");
         handler.setOperationCountToProcess(clusters.size());
@@ -20,7 +20,9 @@ import com.google.common.collect.ListMultimap;
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.model.api.ModelService;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.BitmapDensityBasedClustering;
 import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.DataPoint;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.MinHashIndex;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.schema.ResultHandler;
@@ -29,6 +31,8 @@ import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractAnalysisSessionOptionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleAnalysisApproximateNeighborSearchType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.query_3.SearchFilterType;
@@ -42,6 +46,8 @@ import org.jetbrains.annotations.Nullable;
 public class ClusteringUtils {
 
     private static final Trace LOGGER = TraceManager.getTrace(ClusteringUtils.class);
+
+    private static final int DEFAULT_RECALL_SAMPLE_SIZE = 100;
     static Collection<SelectorOptions<GetOperationOptions>> defaultOptions = GetOperationOptionsBuilder.create().raw().build();
 
     /**
@@ -220,4 +226,25 @@ public class ClusteringUtils {
         return dataPoints;
     }
 
+    /**
+     * Switches the clustering to the approximate neighbor search, if it is configured in the session options.
+     *
+     * @param clustering The clustering to be configured.
+     * @param sessionOptions The session options.
+     */
+    protected static void configureNeighborSearch(
+            @NotNull BitmapDensityBasedClustering<DataPoint> clustering,
+            @NotNull AbstractAnalysisSessionOptionType sessionOptions) {
+        RoleAnalysisApproximateNeighborSearchType approximateSearch = sessionOptions.getApproximateNeighborSearch();
+        if (approximateSearch == null) {
+            return;
+        }
+        int bands = Objects.requireNonNullElse(approximateSearch.getBands(), MinHashIndex.DEFAULT_BANDS);
+        int rows = Objects.requireNonNullElse(approximateSearch.getRows(), MinHashIndex.DEFAULT_ROWS);
+        int recallSampleSize = Objects.requireNonNullElse(
+                approximateSearch.getRecallSampleSize(), DEFAULT_RECALL_SAMPLE_SIZE);
+        LOGGER.debug("Using approximate neighbor search with {} bands, {} rows, recall sample size {}",
+                bands, rows, recallSampleSize);
+        clustering.useApproximateSearch(bands, rows, recallSampleSize);
+    }
 }
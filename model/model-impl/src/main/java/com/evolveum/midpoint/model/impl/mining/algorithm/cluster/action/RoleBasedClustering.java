@@ -37,6 +37,8 @@ import org.jetbrains.annotations.Nullable;
  */
 public class RoleBasedClustering implements Clusterable {
 
+    private Double neighborSearchRecall;
+
     /**
      * Executes the clustering operation for role analysis.
      *
@@ -88,11 +90,13 @@ public class RoleBasedClustering implements Clusterable {
         int minUsersOverlap = sessionOptionType.getMinPropertiesOverlap();
         int minRolesCount = sessionOptionType.getMinMembersCount();
 
-        DistanceMeasure distanceMeasure = new JaccardDistancesMeasure(minUsersOverlap);
-        DensityBasedClustering<DataPoint> dbscan = new DensityBasedClustering<>(
+        JaccardDistancesMeasure distanceMeasure = new JaccardDistancesMeasure(minUsersOverlap);
+        BitmapDensityBasedClustering<DataPoint> dbscan = new BitmapDensityBasedClustering<>(
                 similarityDifference, minRolesCount, distanceMeasure, minUsersOverlap);
 
+        ClusteringUtils.configureNeighborSearch(dbscan, sessionOptionType);
         List<Cluster<DataPoint>> clusters = dbscan.cluster(dataPoints, handler);
+        neighborSearchRecall = dbscan.getNeighborSearchRecall();
 
         return new RoleAnalysisAlgorithmUtils().processClusters(roleAnalysisService, dataPoints, clusters, session,
                 handler, task, result);
@@ -117,4 +121,8 @@ public class RoleBasedClustering implements Clusterable {
         return ClusteringUtils.getRoleBasedUserToRoleMap(minProperties, maxProperties, roleToUserMap);
     }
 
+    @Override
+    public @Nullable Double getNeighborSearchRecall() {
+        return neighborSearchRecall;
+    }
 }
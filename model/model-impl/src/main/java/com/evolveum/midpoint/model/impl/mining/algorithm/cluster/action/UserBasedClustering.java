@@ -38,6 +38,8 @@ import static com.evolveum.midpoint.model.impl.mining.algorithm.cluster.action.C
  */
 public class UserBasedClustering implements Clusterable {
 
+    private Double neighborSearchRecall;
+
     /**
      * Executes the clustering operation for role analysis.
      *
@@ -90,10 +92,12 @@ public class UserBasedClustering implements Clusterable {
         int minRolesOverlap = sessionOptionType.getMinPropertiesOverlap();
         int minUsersCount = sessionOptionType.getMinMembersCount();
 
-        DistanceMeasure distanceMeasure = new JaccardDistancesMeasure(minRolesOverlap);
-        DensityBasedClustering<DataPoint> dbscan = new DensityBasedClustering<>(similarityDifference,
+        JaccardDistancesMeasure distanceMeasure = new JaccardDistancesMeasure(minRolesOverlap);
+        BitmapDensityBasedClustering<DataPoint> dbscan = new BitmapDensityBasedClustering<>(similarityDifference,
                 minUsersCount, distanceMeasure, minRolesOverlap);
+        ClusteringUtils.configureNeighborSearch(dbscan, sessionOptionType);
         List<Cluster<DataPoint>> clusters = dbscan.cluster(dataPoints, handler);
+        neighborSearchRecall = dbscan.getNeighborSearchRecall();
 
         return new RoleAnalysisAlgorithmUtils().processClusters(roleAnalysisService, dataPoints, clusters, session,
                 handler, task, result);
@@ -115,4 +119,8 @@ public class UserBasedClustering implements Clusterable {
         );
     }
 
+    @Override
+    public @Nullable Double getNeighborSearchRecall() {
+        return neighborSearchRecall;
+    }
 }
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.common.mining.objects.handler.RoleAnalysisProgressIncrement;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * The same density-based clustering (DBSCAN) as {@link DensityBasedClustering} with {@link JaccardDistancesMeasure},
+ * giving the same clusters for the same parameters, but suitable for large numbers of data points.
+ *
+ * Before the clustering starts, the properties (role or user OIDs) are mapped to dense integer IDs, and each data point
+ * is encoded as a {@link CompressedBitmap}. The Jaccard distance is then computed by counting bits instead of hashing
+ * strings. The most frequent properties get the lowest IDs, so that they share as few bitmap words as possible.
+ *
+ * The neighbors of a point are searched for in parallel, using the common fork/join pool. The DBSCAN expansion
+ * itself is sequential and follows {@link DensityBasedClustering} step by step; the neighbors are always returned
+ * in the order of the original collection. Hence the resulting clusters contain the same points in the same order.
+ *
+ * Optionally, the neighbors can be searched for approximately, using {@link MinHashIndex}: only the points that are
+ * likely to be similar are checked. Such a search never returns a point that is not a neighbor, but it may miss some
+ * neighbors; hence the clusters may differ from the exact ones. The recall of the approximate search is estimated
+ * by comparing it with the exact search for a sample of points, see {@link #getNeighborSearchRecall()}.
+ *
+ * Points are distinguished by their position in the collection; they are expected to be distinct objects.
+ */
+public class BitmapDensityBasedClustering<T extends Clusterable> extends Clusterer<T> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(BitmapDensityBasedClustering.class);
+
+    /** Below this number of points, the neighbors are searched for in the current thread. */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final int[] NO_NEIGHBORS = new int[0];
+
+    private static final byte NOT_VISITED = 0;
+    private static final byte NOISE = 1;
+    private static final byte PART_OF_CLUSTER = 2;
+
+    private double eps;
+    private int minPts;
+    private final int minPropertiesOverlap;
+
+    /** Minimal intersection for the Jaccard distance to be computed, see {@link JaccardDistancesMeasure}. */
+    private final int minIntersection;
+
+    /** Parameters of the approximate search; null means the exact search. */
+    private ApproximateSearch approximateSearch;
+
+    /** Recall of the approximate search, estimated during the last clustering. */
+    private Double neighborSearchRecall;
+
+    /**
+     * Constructs the instance with the same parameters as {@link DensityBasedClustering}.
+     *
+     * @param eps               The epsilon parameter for distance-based clustering.
+     * @param minPts            The minimum number of points required to form a dense cluster.
+     * @param measure           The Jaccard distance measure (only this one is supported).
+     * @param minRolesOverlap   The minimum properties overlap required for adding a point to a cluster.
+     */
+    public BitmapDensityBasedClustering(double eps, int minPts, JaccardDistancesMeasure measure, int minRolesOverlap) {
+        super(measure);
+
+        if (eps < 0.0) {
+            LOGGER.warn("Invalid parameter: eps={} is less than 0.0. Parameters not updated.", eps);
+        } else if (eps > 1.0) {
+            LOGGER.warn("Invalid parameter: eps={} is greater than 1.0. Parameters not updated.", eps);
+        } else if ((minPts - 1) < 0) {
+            LOGGER.warn("Invalid parameter: minPts={} results in minPts  being less than 1. Parameters not updated.", minPts);
+        } else {
+            this.eps = eps;
+            this.minPts = (minPts - 1);
+            LOGGER.debug("Updated parameters: eps={} and minPts={}. New values: eps={} and minPts={}.",
+                    eps, minPts, this.eps, this.minPts);
+        }
+
+        this.minPropertiesOverlap = minRolesOverlap;
+        this.minIntersection = measure.getMinIntersection();
+    }
+
+    /**
+     * Switches to the approximate neighbor search, see {@link MinHashIndex}.
+     *
+     * @param bands             The number of bands of MinHash signatures.
+     * @param rows              The number of rows in each band.
+     * @param recallSampleSize  The number of points used to estimate the recall; zero means no estimation.
+     */
+    public void useApproximateSearch(int bands, int rows, int recallSampleSize) {
+        this.approximateSearch = new ApproximateSearch(bands, rows, recallSampleSize);
+    }
+
+    /** Returns the estimated recall of the approximate search; null if exact search was used or there was no estimation. */
+    public Double getNeighborSearchRecall() {
+        return neighborSearchRecall;
+    }
+
+    /**
+     * Performs density-based clustering on the provided collection of data points.
+     *
+     * @param points   The collection of data points to cluster.
+     * @param handler  The progress increment handler for tracking the execution progress.
+     * @return A list of clusters containing the clustered data points.
+     */
+    @Override
+    public List<Cluster<T>> cluster(Collection<T> points, RoleAnalysisProgressIncrement handler) {
+        List<T> pointList = new ArrayList<>(points);
+        EncodedPoints encoded = encode(pointList);
+        neighborSearchRecall = encoded.index != null ? estimateRecall(encoded) : null;
+
+        List<Cluster<T>> clusters = new ArrayList<>();
+        byte[] visited = new byte[pointList.size()];
+
+        handler.setActive(true);
+        handler.enterNewStep("Clustering");
+        handler.setOperationCountToProcess(pointList.size());
+        for (int point = 0; point < pointList.size(); point++) {
+            handler.iterateActualStatus();
+
+            if (visited[point] == NOT_VISITED) {
+                int[] neighbors = getNeighbors(point, encoded);
+                int neighborsSize = getNeighborsSize(neighbors, encoded);
+
+                if (neighborsSize >= this.minPts || (encoded.membersCounts[point] >= this.minPts
+                        && encoded.bitmaps[point].cardinality() >= minPropertiesOverlap)) {
+                    clusters.add(expandCluster(point, neighbors, pointList, encoded, visited));
+                } else {
+                    visited[point] = NOISE;
+                }
+            }
+        }
+
+        LOGGER.debug("Clustered {} points with {} distinct properties into {} clusters",
+                pointList.size(), encoded.propertiesCount, clusters.size());
+        return clusters;
+    }
+
+    private Cluster<T> expandCluster(
+            int point, int[] neighbors, List<T> pointList, EncodedPoints encoded, byte[] visited) {
+        Cluster<T> cluster = new Cluster<>();
+        cluster.addPoint(pointList.get(point));
+        visited[point] = PART_OF_CLUSTER;
+
+        Seeds seeds = new Seeds(neighbors, pointList.size());
+        for (int index = 0; index < seeds.size(); ++index) {
+            int current = seeds.get(index);
+            byte status = visited[current];
+            if (status == NOT_VISITED) {
+                int[] currentNeighbors = getNeighbors(current, encoded);
+                if (getNeighborsSize(currentNeighbors, encoded) >= this.minPts) {
+                    seeds.merge(currentNeighbors);
+                }
+            }
+
+            if (status != PART_OF_CLUSTER) {
+                visited[current] = PART_OF_CLUSTER;
+                cluster.addPoint(pointList.get(current));
+            }
+        }
+
+        return cluster;
+    }
+
+    private int getNeighborsSize(int[] neighbors, EncodedPoints encoded) {
+        int count = 0;
+        for (int neighbor : neighbors) {
+            count += encoded.membersCounts[neighbor];
+        }
+        return count;
+    }
+
+    /** Returns indices of the neighbors of given point, in ascending order. */
+    private int[] getNeighbors(int point, EncodedPoints encoded) {
+        return encoded.index != null ?
+                getNeighborsApproximately(point, encoded) :
+                getNeighborsExactly(point, encoded);
+    }
+
+    private int[] getNeighborsApproximately(int point, EncodedPoints encoded) {
+        CompressedBitmap bitmap = encoded.bitmaps[point];
+        int[] candidates = encoded.index.getCandidates(point);
+        int count = 0;
+        for (int candidate : candidates) {
+            if (isNeighbor(bitmap, encoded.bitmaps[candidate])) {
+                candidates[count++] = candidate;
+            }
+        }
+        return count > 0 ? Arrays.copyOf(candidates, count) : NO_NEIGHBORS;
+    }
+
+    private int[] getNeighborsExactly(int point, EncodedPoints encoded) {
+        int count = encoded.bitmaps.length;
+        if (count <= PARALLEL_THRESHOLD) {
+            return findNeighbors(point, 0, count, encoded);
+        } else {
+            return ForkJoinPool.commonPool().invoke(new NeighborSearch(point, 0, count, encoded));
+        }
+    }
+
+    private int[] findNeighbors(int point, int from, int to, EncodedPoints encoded) {
+        CompressedBitmap bitmap = encoded.bitmaps[point];
+        int[] found = null;
+        int foundCount = 0;
+        for (int candidate = from; candidate < to; candidate++) {
+            if (candidate != point && isNeighbor(bitmap, encoded.bitmaps[candidate])) {
+                if (found == null) {
+                    found = new int[Math.min(16, to - from)];
+                } else if (foundCount == found.length) {
+                    found = Arrays.copyOf(found, found.length * 2);
+                }
+                found[foundCount++] = candidate;
+            }
+        }
+        return found != null ? Arrays.copyOf(found, foundCount) : NO_NEIGHBORS;
+    }
+
+    /**
+     * Compares the approximate and exact neighbors for evenly spread sample of points. As the approximate search
+     * returns only true neighbors, the recall is simply the ratio of the neighbors counts.
+     */
+    private Double estimateRecall(EncodedPoints encoded) {
+        int points = encoded.bitmaps.length;
+        int sampleSize = Math.min(approximateSearch.recallSampleSize(), points);
+        if (sampleSize <= 0) {
+            return null;
+        }
+        long exact = 0;
+        long approximate = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            int point = (int) ((long) i * points / sampleSize);
+            exact += getNeighborsExactly(point, encoded).length;
+            approximate += getNeighborsApproximately(point, encoded).length;
+        }
+        double recall = exact > 0 ? (double) approximate / exact : 1.0;
+        LOGGER.debug("Approximate neighbor search recall estimated on {} points: {} of {} neighbors found ({})",
+                sampleSize, approximate, exact, recall);
+        return recall;
+    }
+
+    /**
+     * Computes the distance exactly as {@link JaccardDistancesMeasure#compute(Set, Set)} does, so that the decision
+     * is the same even for the borderline cases.
+     */
+    private boolean isNeighbor(CompressedBitmap a, CompressedBitmap b) {
+        int sizeA = a.cardinality();
+        int sizeB = b.cardinality();
+
+        // The Jaccard index cannot be greater than min/max; so we can skip the points that are too different in size.
+        if (1 - (double) Math.min(sizeA, sizeB) / Math.max(sizeA, sizeB) > eps) {
+            return false;
+        }
+
+        int intersection = a.intersectionSize(b);
+        double distance;
+        if (intersection < minIntersection) {
+            distance = 1;
+        } else {
+            distance = 1 - (double) intersection / (sizeA + sizeB - intersection);
+        }
+        return distance <= eps;
+    }
+
+    private @NotNull EncodedPoints encode(List<T> pointList) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (T point : pointList) {
+            for (String property : point.getPoint()) {
+                frequencies.merge(property, 1, Integer::sum);
+            }
+        }
+
+        List<String> properties = new ArrayList<>(frequencies.keySet());
+        properties.sort(
+                Comparator.comparing((String property) -> frequencies.get(property))
+                        .reversed()
+                        .thenComparing(Comparator.naturalOrder()));
+        Map<String, Integer> ids = new HashMap<>(properties.size() * 2);
+        for (String property : properties) {
+            ids.put(property, ids.size());
+        }
+
+        CompressedBitmap[] bitmaps = new CompressedBitmap[pointList.size()];
+        int[] membersCounts = new int[pointList.size()];
+        for (int i = 0; i < pointList.size(); i++) {
+            T point = pointList.get(i);
+            bitmaps[i] = CompressedBitmap.of(
+                    point.getPoint().stream()
+                            .mapToInt(ids::get)
+                            .toArray());
+            membersCounts[i] = point.getMembersCount();
+        }
+        MinHashIndex index = approximateSearch != null ?
+                MinHashIndex.build(bitmaps, approximateSearch.bands(), approximateSearch.rows()) :
+                null;
+        return new EncodedPoints(bitmaps, membersCounts, ids.size(), index);
+    }
+
+    private record EncodedPoints(
+            CompressedBitmap[] bitmaps, int[] membersCounts, int propertiesCount, MinHashIndex index) {
+    }
+
+    private record ApproximateSearch(int bands, int rows, int recallSampleSize) {
+    }
+
+    /** Searches for neighbors of a point among candidates `from` (inclusive) to `to` (exclusive). */
+    private class NeighborSearch extends RecursiveTask<int[]> {
+
+        private final int point;
+        private final int from;
+        private final int to;
+        private final EncodedPoints encoded;
+
+        private NeighborSearch(int point, int from, int to, EncodedPoints encoded) {
+            this.point = point;
+            this.from = from;
+            this.to = to;
+            this.encoded = encoded;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return findNeighbors(point, from, to, encoded);
+            }
+            int middle = (from + to) >>> 1;
+            NeighborSearch left = new NeighborSearch(point, from, middle, encoded);
+            left.fork();
+            int[] rightNeighbors = new NeighborSearch(point, middle, to, encoded).compute();
+            int[] leftNeighbors = left.join();
+
+            int[] all = Arrays.copyOf(leftNeighbors, leftNeighbors.length + rightNeighbors.length);
+            System.arraycopy(rightNeighbors, 0, all, leftNeighbors.length, rightNeighbors.length);
+            return all;
+        }
+    }
+
+    /** Growing list of points to be expanded, remembering which points were already added. */
+    private static class Seeds {
+
+        private int[] points;
+        private int size;
+        private final BitSet present;
+
+        private Seeds(int[] initial, int allPoints) {
+            this.points = Arrays.copyOf(initial, Math.max(16, initial.length));
+            this.size = initial.length;
+            this.present = new BitSet(allPoints);
+            for (int point : initial) {
+                present.set(point);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return points[index];
+        }
+
+        /** Adds the points that are not present yet, keeping their order. */
+        void merge(int[] other) {
+            for (int point : other) {
+                if (!present.get(point)) {
+                    present.set(point);
+                    if (size == points.length) {
+                        points = Arrays.copyOf(points, size * 2);
+                    }
+                    points[size++] = point;
+                }
+            }
+        }
+    }
+}
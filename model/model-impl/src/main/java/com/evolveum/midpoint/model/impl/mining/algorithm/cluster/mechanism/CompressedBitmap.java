@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable set of non-negative integers, stored as a list of non-empty 64-bit words of a bitmap.
+ *
+ * Only the words that contain at least one bit are kept (along with their positions), so the size of the structure
+ * depends on the number of values and their spread, not on the highest value. This is important for role analysis,
+ * where a user typically has a few dozens of roles out of thousands.
+ *
+ * Intersection size is computed by merging the word positions and counting the bits of AND-ed words.
+ */
+public class CompressedBitmap implements Serializable {
+
+    /** Positions (indices) of the words in the full bitmap, ascending. */
+    private final int[] keys;
+
+    /** The non-empty words; `words[i]` is the word at position `keys[i]`. */
+    private final long[] words;
+
+    /** Number of values in the set, i.e. number of bits set. */
+    private final int cardinality;
+
+    private CompressedBitmap(int[] keys, long[] words, int cardinality) {
+        this.keys = keys;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /** Creates the bitmap from given values. They need not be sorted; duplicates are ignored. */
+    public static @NotNull CompressedBitmap of(int @NotNull [] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        int[] keys = new int[sorted.length];
+        long[] words = new long[sorted.length];
+        int wordCount = 0;
+        for (int value : sorted) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Negative value: " + value);
+            }
+            int key = value >>> 6;
+            if (wordCount == 0 || keys[wordCount - 1] != key) {
+                keys[wordCount] = key;
+                wordCount++;
+            }
+            words[wordCount - 1] |= 1L << value;
+        }
+
+        int cardinality = 0;
+        for (int i = 0; i < wordCount; i++) {
+            cardinality += Long.bitCount(words[i]);
+        }
+        return new CompressedBitmap(
+                Arrays.copyOf(keys, wordCount),
+                Arrays.copyOf(words, wordCount),
+                cardinality);
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /** Returns the values, in ascending order. */
+    public int @NotNull [] toArray() {
+        int[] values = new int[cardinality];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                values[count++] = (keys[i] << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    /** Returns the number of values present in both bitmaps. */
+    public int intersectionSize(@NotNull CompressedBitmap other) {
+        int[] keysA = this.keys;
+        int[] keysB = other.keys;
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < keysA.length && j < keysB.length) {
+            int keyA = keysA[i];
+            int keyB = keysB[j];
+            if (keyA < keyB) {
+                i++;
+            } else if (keyA > keyB) {
+                j++;
+            } else {
+                count += Long.bitCount(this.words[i++] & other.words[j++]);
+            }
+        }
+        return count;
+    }
+
+    /** Returns the number of values present in any of the bitmaps. */
+    public int unionSize(@NotNull CompressedBitmap other) {
+        return cardinality + other.cardinality - intersectionSize(other);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedBitmap{" +
+                "cardinality=" + cardinality +
+                ", words=" + words.length +
+                '}';
+    }
+}
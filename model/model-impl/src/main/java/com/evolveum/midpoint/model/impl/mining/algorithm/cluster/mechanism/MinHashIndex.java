@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Approximate index of sets with similar content (by Jaccard index), based on MinHash signatures
+ * and locality-sensitive hashing (LSH).
+ *
+ * Each set gets a signature of `bands * rows` minimal hash values. The signature is split into bands;
+ * the sets that agree on all values in a band fall into the same bucket. The candidates for a set are the sets
+ * sharing at least one bucket with it. Two sets having Jaccard index `s` become candidates with the probability
+ * of `1 - (1 - s^rows)^bands`; so more bands increase the recall, and more rows decrease the number of
+ * (mostly useless) candidates.
+ *
+ * The index only suggests the candidates; they have to be checked exactly by the caller.
+ */
+public class MinHashIndex {
+
+    public static final int DEFAULT_BANDS = 20;
+    public static final int DEFAULT_ROWS = 5;
+
+    /** Fixed seed, so that the clustering results are reproducible. */
+    private static final long SEED = 0x5DEECE66DL;
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    /** For each band and point, the index of the bucket (in {@link #buckets}) the point falls into; -1 for empty sets. */
+    private final int[][] bucketOfPoint;
+
+    /** For each band, the buckets, i.e. lists of points (in ascending order). */
+    private final int[][][] buckets;
+
+    private MinHashIndex(int[][] bucketOfPoint, int[][][] buckets) {
+        this.bucketOfPoint = bucketOfPoint;
+        this.buckets = buckets;
+    }
+
+    /** Builds the index for given sets. The signatures are computed in parallel. */
+    public static @NotNull MinHashIndex build(@NotNull CompressedBitmap[] points, int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("Number of bands and rows must be positive: " + bands + ", " + rows);
+        }
+        long[] hashSeeds = new Random(SEED).longs(bands * rows).toArray();
+
+        long[][] bandKeys = new long[points.length][];
+        IntStream.range(0, points.length)
+                .parallel()
+                .forEach(i -> bandKeys[i] = computeBandKeys(points[i], hashSeeds, bands, rows));
+
+        int[][] bucketOfPoint = new int[bands][points.length];
+        int[][][] buckets = new int[bands][][];
+        for (int band = 0; band < bands; band++) {
+            Map<Long, Integer> bucketIds = new HashMap<>();
+            List<int[]> bucketMembers = new ArrayList<>();
+            int[] bucketSizes = new int[points.length];
+            for (int i = 0; i < points.length; i++) {
+                if (bandKeys[i] == null) {
+                    bucketOfPoint[band][i] = -1;
+                    continue;
+                }
+                int bucket = bucketIds.computeIfAbsent(bandKeys[i][band], k -> bucketIds.size());
+                bucketOfPoint[band][i] = bucket;
+                bucketSizes[bucket]++;
+            }
+            for (int bucket = 0; bucket < bucketIds.size(); bucket++) {
+                bucketMembers.add(new int[bucketSizes[bucket]]);
+            }
+            int[] filled = new int[bucketIds.size()];
+            for (int i = 0; i < points.length; i++) {
+                int bucket = bucketOfPoint[band][i];
+                if (bucket >= 0) {
+                    bucketMembers.get(bucket)[filled[bucket]++] = i;
+                }
+            }
+            buckets[band] = bucketMembers.toArray(new int[0][]);
+        }
+        return new MinHashIndex(bucketOfPoint, buckets);
+    }
+
+    /** Returns null for empty sets, as they have no meaningful signature. */
+    private static long[] computeBandKeys(CompressedBitmap point, long[] hashSeeds, int bands, int rows) {
+        int[] values = point.toArray();
+        if (values.length == 0) {
+            return null;
+        }
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                long seed = hashSeeds[band * rows + row];
+                long min = Long.MAX_VALUE;
+                for (int value : values) {
+                    long hash = mix(value ^ seed);
+                    if (hash < min) {
+                        min = hash;
+                    }
+                }
+                key = key * 31 + min;
+            }
+            keys[band] = mix(key);
+        }
+        return keys;
+    }
+
+    /** The finalization step of SplitMix64; gives well-distributed values even for consecutive inputs. */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Returns the candidates for being similar to given point, in ascending order, without the point itself. */
+    public int @NotNull [] getCandidates(int point) {
+        int total = 0;
+        for (int band = 0; band < buckets.length; band++) {
+            int bucket = bucketOfPoint[band][point];
+            if (bucket >= 0) {
+                total += buckets[band][bucket].length;
+            }
+        }
+        if (total == 0) {
+            return NO_CANDIDATES;
+        }
+
+        int[] all = new int[total];
+        int count = 0;
+        for (int band = 0; band < buckets.length; band++) {
+            int bucket = bucketOfPoint[band][point];
+            if (bucket >= 0) {
+                int[] members = buckets[band][bucket];
+                System.arraycopy(members, 0, all, count, members.length);
+                count += members.length;
+            }
+        }
+        Arrays.sort(all);
+
+        int unique = 0;
+        for (int i = 0; i < all.length; i++) {
+            int candidate = all[i];
+            if (candidate != point && (unique == 0 || all[unique - 1] != candidate)) {
+                all[unique++] = candidate;
+            }
+        }
+        return Arrays.copyOf(all, unique);
+    }
+}
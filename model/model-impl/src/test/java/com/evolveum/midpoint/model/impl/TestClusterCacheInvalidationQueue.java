@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.model.impl.ClusterCacheInvalidationSender.INVALIDATE_ALL;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.impl.ClusterCacheInvalidationSender.InvalidationQueue;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests batching and coalescing of invalidation requests in {@link ClusterCacheInvalidationSender}.
+ */
+public class TestClusterCacheInvalidationQueue extends AbstractUnitTest {
+
+    @Test
+    public void test100DuplicatesAreSentOnce() {
+        given("queue with duplicate requests");
+        InvalidationQueue queue = new InvalidationQueue(100);
+        queue.add("users/1");
+        queue.add("roles/2");
+        queue.add("users/1");
+        queue.addAll(List.of("roles/2", "users/3"));
+
+        when("queue is drained");
+        List<String> lines = queue.drain(Integer.MAX_VALUE);
+
+        then("each request is there once, in the original order");
+        assertThat(lines).containsExactly("users/1", "roles/2", "users/3");
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void test110BatchesAreLimited() {
+        given("queue with five requests");
+        InvalidationQueue queue = new InvalidationQueue(100);
+        for (int i = 1; i <= 5; i++) {
+            queue.add("users/" + i);
+        }
+
+        when("queue is drained by batches of two");
+        List<String> first = queue.drain(2);
+        List<String> second = queue.drain(2);
+        List<String> third = queue.drain(2);
+        List<String> fourth = queue.drain(2);
+
+        then("the batches are correct");
+        assertThat(first).containsExactly("users/1", "users/2");
+        assertThat(second).containsExactly("users/3", "users/4");
+        assertThat(third).containsExactly("users/5");
+        assertThat(fourth).isEmpty();
+    }
+
+    @Test
+    public void test120InvalidateAllCoalesces() {
+        given("queue with specific requests and an 'invalidate all' request");
+        InvalidationQueue queue = new InvalidationQueue(100);
+        queue.add("users/1");
+        queue.add("roles");
+        queue.add(INVALIDATE_ALL);
+        queue.add("users/2");
+
+        when("queue is drained");
+        List<String> lines = queue.drain(1);
+
+        then("only 'invalidate all' is sent");
+        assertThat(lines).containsExactly(INVALIDATE_ALL);
+        assertThat(queue.isEmpty()).isTrue();
+
+        then("the queue is usable afterwards");
+        queue.add("users/3");
+        assertThat(queue.drain(Integer.MAX_VALUE)).containsExactly("users/3");
+    }
+
+    @Test
+    public void test130OverflowCollapsesToInvalidateAll() {
+        given("queue with capacity of 3");
+        InvalidationQueue queue = new InvalidationQueue(3);
+
+        when("duplicates are added to a full queue");
+        queue.addAll(List.of("users/1", "users/2", "users/3", "users/2", "users/1"));
+
+        then("the queue does not overflow");
+        assertThat(queue.drain(Integer.MAX_VALUE)).containsExactly("users/1", "users/2", "users/3");
+
+        when("more distinct requests than the capacity are added");
+        queue.addAll(List.of("users/1", "users/2", "users/3", "users/4"));
+
+        then("the queue collapses into 'invalidate all'");
+        assertThat(queue.drain(Integer.MAX_VALUE)).containsExactly(INVALIDATE_ALL);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+}
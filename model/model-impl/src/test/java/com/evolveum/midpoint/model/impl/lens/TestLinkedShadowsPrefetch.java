@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.lens;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.impl.lens.projector.loader.ContextLoader;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests the bulk retrieval of linked shadows when projection contexts are loaded (see `ProjectionsLoadOperation`):
+ * the shadows are prefetched in one repository search, and the ones that were not prefetched are retrieved individually.
+ *
+ * The prefetching is checked using the repository operation counts.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestLinkedShadowsPrefetch extends AbstractLensTest {
+
+    private static final File RESOURCE_DUMMY_EMPTY_FILE = new File(TEST_DIR, "resource-dummy-empty.xml");
+    private static final String RESOURCE_DUMMY_EMPTY_OID = "10000000-0000-0000-0000-00000000EEE4";
+    private static final String RESOURCE_DUMMY_EMPTY_INSTANCE_NAME = "empty";
+
+    private static final String ACCOUNT_NAME = "prefetch";
+    private static final String NON_EXISTENT_SHADOW_OID = "b7e5d9ac-6e4a-4d0c-9d4f-3a3c0e6f0a71";
+
+    private static final String OP_SEARCH_SHADOWS = "searchObjects.ShadowType";
+    private static final String OP_GET_SHADOW = "getObject.ShadowType";
+
+    @Autowired private ContextLoader contextLoader;
+
+    private String dummyShadowOid;
+    private String emptyShadowOid;
+    private String userOid;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        initDummyResourcePirate(RESOURCE_DUMMY_EMPTY_INSTANCE_NAME, RESOURCE_DUMMY_EMPTY_FILE,
+                RESOURCE_DUMMY_EMPTY_OID, initTask, initResult);
+
+        // Accounts on two different resources, so that their projection contexts do not clash.
+        getDummyResourceController().addAccount(ACCOUNT_NAME, "Prefetch", "Caribbean");
+        getDummyResourceController(RESOURCE_DUMMY_EMPTY_INSTANCE_NAME).addAccount(ACCOUNT_NAME, "Prefetch", "Caribbean");
+        dummyShadowOid = findAccountByUsername(ACCOUNT_NAME, getDummyResourceObject(), initTask, initResult).getOid();
+        emptyShadowOid = findAccountByUsername(
+                ACCOUNT_NAME, getDummyResourceObject(RESOURCE_DUMMY_EMPTY_INSTANCE_NAME), initTask, initResult).getOid();
+
+        UserType user = new UserType()
+                .name(ACCOUNT_NAME)
+                .linkRef(dummyShadowOid, ShadowType.COMPLEX_TYPE)
+                .linkRef(emptyShadowOid, ShadowType.COMPLEX_TYPE)
+                .linkRef(NON_EXISTENT_SHADOW_OID, ShadowType.COMPLEX_TYPE);
+        userOid = repositoryService.addObject(user.asPrismObject(), null, initResult);
+    }
+
+    /**
+     * The shadows are prefetched by a single search. Only the non-existing one (not found by the search)
+     * is looked for individually.
+     */
+    @Test
+    public void test100LoadWithPrefetch() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given();
+        LensContext<UserType> context = createUserLensContext();
+        fillContextWithUser(context, userOid, result);
+        repositoryService.getPerformanceMonitor().startThreadLocalPerformanceInformationCollection();
+
+        when("context is loaded");
+        contextLoader.load(context, getTestNameShort(), null, task, result);
+
+        then("all linked shadows were prefetched in one search, projection contexts are correct");
+        assertSuccess(result);
+        createRepoOpAsserter()
+                .display()
+                .assertOp(OP_SEARCH_SHADOWS, 1)
+                .assertOp(OP_GET_SHADOW, 1);
+
+        displayDumpable("Context after load", context);
+        assertThat(context.getProjectionContexts()).as("projection contexts").hasSize(3);
+        for (String oid : List.of(dummyShadowOid, emptyShadowOid)) {
+            LensProjectionContext projCtx = context.findProjectionContextByOid(oid);
+            assertThat(projCtx).as("projection context for " + oid).isNotNull();
+            assertThat(projCtx.getObjectCurrent()).as("current shadow in " + projCtx).isNotNull();
+            assertThat(projCtx.isGone()).as("gone flag in " + projCtx).isFalse();
+        }
+        LensProjectionContext missingCtx = context.findProjectionContextByOid(NON_EXISTENT_SHADOW_OID);
+        assertThat(missingCtx).as("projection context for non-existent shadow").isNotNull();
+        assertThat(missingCtx.isShadowExistsInRepo()).as("shadow exists in repo").isFalse();
+    }
+
+    /** With a single shadow to be loaded, there is nothing to prefetch. */
+    @Test
+    public void test120LoadSingleShadowWithoutPrefetch() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("user with a single linked shadow");
+        UserType user = new UserType()
+                .name(ACCOUNT_NAME + "-single")
+                .linkRef(dummyShadowOid, ShadowType.COMPLEX_TYPE);
+        String singleUserOid = repositoryService.addObject(user.asPrismObject(), null, result);
+        LensContext<UserType> context = createUserLensContext();
+        fillContextWithUser(context, singleUserOid, result);
+        repositoryService.getPerformanceMonitor().startThreadLocalPerformanceInformationCollection();
+
+        when("context is loaded");
+        contextLoader.load(context, getTestNameShort(), null, task, result);
+
+        then("nothing was prefetched, the shadow was retrieved individually");
+        assertSuccess(result);
+        createRepoOpAsserter()
+                .display()
+                .assertOp(OP_SEARCH_SHADOWS, 0)
+                .assertOp(OP_GET_SHADOW, 1);
+        LensProjectionContext projCtx = context.findProjectionContextByOid(dummyShadowOid);
+        assertThat(projCtx).as("projection context").isNotNull();
+        assertThat(projCtx.getObjectCurrent()).as("current shadow").isNotNull();
+    }
+}
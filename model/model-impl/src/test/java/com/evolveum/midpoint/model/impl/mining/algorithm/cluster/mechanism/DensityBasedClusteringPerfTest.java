@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.mining.objects.handler.RoleAnalysisProgressIncrement;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
+
+/**
+ * Compares {@link DensityBasedClustering} with {@link BitmapDensityBasedClustering} (exact and approximate)
+ * on synthetic data.
+ *
+ * The data mimic user-based role analysis: there are 8000 roles and a couple of hundreds of "business roles"
+ * (sets of 8-20 roles); each data point is a business role with a few roles removed and a few random roles added.
+ *
+ * The original implementation is run only for the smallest data set, as it would take hours for the larger ones.
+ *
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * The equivalence on small data is checked regularly by {@link TestBitmapDensityBasedClustering}.
+ */
+public class DensityBasedClusteringPerfTest extends AbstractUnitTest implements PerformanceTestClassMixin {
+
+    private static final int ROLES = 8000;
+    private static final int BUSINESS_ROLES = 300;
+
+    private static final double EPS = 0.2; // i.e. similarity threshold of 80%
+    private static final int MIN_MEMBERS = 5;
+    private static final int MIN_ROLES_OVERLAP = 3;
+
+    @Test
+    public void test100Compare10k() {
+        List<DataPoint> points = generatePoints(10_000);
+
+        List<Cluster<DataPoint>> original = runClustering("original-10k",
+                new DensityBasedClustering<>(EPS, MIN_MEMBERS, new JaccardDistancesMeasure(MIN_ROLES_OVERLAP),
+                        MIN_ROLES_OVERLAP),
+                points);
+        List<Cluster<DataPoint>> bitmap = runClustering("bitmap-10k", createBitmapClustering(), points);
+
+        assertSameClusters(bitmap, original);
+    }
+
+    @Test
+    public void test110CompareBorderlineParameters() {
+        List<DataPoint> points = generatePoints(3_000);
+        for (double eps : new double[] { 0.0, 0.5, 1.0 }) {
+            for (int minOverlap : new int[] { 0, 1, 5 }) {
+                List<Cluster<DataPoint>> original =
+                        new DensityBasedClustering<>(eps, 2, new JaccardDistancesMeasure(minOverlap), minOverlap)
+                                .cluster(points, createHandler());
+                List<Cluster<DataPoint>> bitmap =
+                        new BitmapDensityBasedClustering<>(eps, 2, new JaccardDistancesMeasure(minOverlap), minOverlap)
+                                .cluster(points, createHandler());
+                assertSameClusters(bitmap, original);
+            }
+        }
+    }
+
+    @Test
+    public void test200Bitmap50k() {
+        runClustering("bitmap-50k", createBitmapClustering(), generatePoints(50_000));
+    }
+
+    @Test
+    public void test300Bitmap200k() {
+        runClustering("bitmap-200k", createBitmapClustering(), generatePoints(200_000));
+    }
+
+    @Test
+    public void test400Approximate50k() {
+        List<DataPoint> points = generatePoints(50_000);
+        BitmapDensityBasedClustering<DataPoint> approximate = createBitmapClustering();
+        approximate.useApproximateSearch(MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS, 1000);
+        List<Cluster<DataPoint>> clusters = runClustering("approximate-50k", approximate, points);
+
+        Double recall = approximate.getNeighborSearchRecall();
+        report("Estimated recall: " + recall);
+        assertThat(recall).as("recall").isNotNull().isBetween(0.0, 1.0);
+
+        int clustered = clusters.stream().mapToInt(c -> c.getPoints().size()).sum();
+        int clusteredExactly = runClustering("bitmap-50k-again", createBitmapClustering(), points).stream()
+                .mapToInt(c -> c.getPoints().size())
+                .sum();
+        report("Clustered points: approximate " + clustered + ", exact " + clusteredExactly);
+    }
+
+    @Test
+    public void test410Approximate200k() {
+        BitmapDensityBasedClustering<DataPoint> approximate = createBitmapClustering();
+        approximate.useApproximateSearch(MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS, 100);
+        runClustering("approximate-200k", approximate, generatePoints(200_000));
+        report("Estimated recall: " + approximate.getNeighborSearchRecall());
+    }
+
+    private static BitmapDensityBasedClustering<DataPoint> createBitmapClustering() {
+        return new BitmapDensityBasedClustering<>(
+                EPS, MIN_MEMBERS, new JaccardDistancesMeasure(MIN_ROLES_OVERLAP), MIN_ROLES_OVERLAP);
+    }
+
+    private List<Cluster<DataPoint>> runClustering(
+            String label, Clusterer<DataPoint> clusterer, List<DataPoint> points) {
+        List<Cluster<DataPoint>> clusters;
+        Stopwatch watch = stopwatch(label, "Clustering of " + points.size() + " points");
+        try (Split ignored = watch.start()) {
+            //noinspection unchecked
+            clusters = (List<Cluster<DataPoint>>) clusterer.cluster(points, createHandler());
+        }
+        report(String.format("%s: %d points, %d clusters, %.1f s",
+                label, points.size(), clusters.size(), watch.getTotal() / 1e9));
+        return clusters;
+    }
+
+    private void report(String message) {
+        System.out.println(message);
+        logger.info(message);
+    }
+
+    private static RoleAnalysisProgressIncrement createHandler() {
+        return new RoleAnalysisProgressIncrement("Clustering", 1);
+    }
+
+    private static void assertSameClusters(List<Cluster<DataPoint>> actual, List<Cluster<DataPoint>> expected) {
+        assertThat(actual).as("clusters").hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getPoints())
+                    .as("points in cluster #" + i)
+                    .containsExactlyElementsOf(expected.get(i).getPoints());
+        }
+    }
+
+    private static List<DataPoint> generatePoints(int count) {
+        Random random = new Random(count); // to be reproducible
+
+        List<List<String>> businessRoles = new ArrayList<>();
+        for (int i = 0; i < BUSINESS_ROLES; i++) {
+            List<String> roles = new ArrayList<>();
+            int size = 8 + random.nextInt(13);
+            while (roles.size() < size) {
+                String role = roleOid(random.nextInt(ROLES));
+                if (!roles.contains(role)) {
+                    roles.add(role);
+                }
+            }
+            businessRoles.add(roles);
+        }
+
+        List<DataPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<String> businessRole = businessRoles.get(random.nextInt(BUSINESS_ROLES));
+            Set<String> roles = new HashSet<>();
+            for (String role : businessRole) {
+                if (random.nextInt(10) != 0) {
+                    roles.add(role);
+                }
+            }
+            int extra = random.nextInt(4);
+            for (int j = 0; j < extra; j++) {
+                roles.add(roleOid(random.nextInt(ROLES)));
+            }
+            Set<String> members = new HashSet<>();
+            int membersCount = 1 + random.nextInt(3);
+            for (int j = 0; j < membersCount; j++) {
+                members.add("user-" + i + "-" + j);
+            }
+            points.add(new DataPoint(members, roles));
+        }
+        return points;
+    }
+
+    private static String roleOid(int number) {
+        return String.format("00000000-0000-0000-0000-%012d", number);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.mining.objects.handler.RoleAnalysisProgressIncrement;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Checks that {@link BitmapDensityBasedClustering} (with the exact neighbor search) gives the same clusters,
+ * with the same points in the same order, as {@link DensityBasedClustering} does.
+ *
+ * The data are small and deterministic; performance is compared in {@link DensityBasedClusteringPerfTest}.
+ */
+public class TestBitmapDensityBasedClustering extends AbstractUnitTest {
+
+    /** Small number of properties, so that there are many neighbors and many borderline distances. */
+    private static final int PROPERTIES = 12;
+
+    @Test
+    public void test100NoPoints() {
+        when("no points are clustered");
+        List<Cluster<DataPoint>> clusters = new BitmapDensityBasedClustering<DataPoint>(
+                0.5, 2, new JaccardDistancesMeasure(1), 1)
+                .cluster(List.of(), createHandler());
+
+        then("there are no clusters");
+        assertThat(clusters).isEmpty();
+    }
+
+    @Test
+    public void test110EmptyPropertySets() {
+        given("points with no properties, and points with some");
+        List<DataPoint> points = List.of(
+                point(0, 2),
+                point(1, 3, "a", "b"),
+                point(2, 1),
+                point(3, 2, "a", "b"),
+                point(4, 4),
+                point(5, 1, "c"));
+
+        then("the clusters are the same for all parameters, including eps=1 and minIntersection=0");
+        assertSameClustersForAllParameters(points);
+    }
+
+    @Test
+    public void test120BorderlineParameters() {
+        given("pseudo-random points, including empty and duplicate ones");
+        List<DataPoint> points = generatePoints(300, 42);
+
+        then("the clusters are the same for all parameters");
+        assertSameClustersForAllParameters(points);
+    }
+
+    /** Exceeds the number of points above which the neighbors are searched for in parallel. */
+    @Test
+    public void test200ParallelNeighborSearch() {
+        given("pseudo-random points");
+        List<DataPoint> points = generatePoints(4200, 4200);
+
+        then("the clusters are the same");
+        assertSameClusters(points, 0.3, 3, 2, 2);
+    }
+
+    private void assertSameClustersForAllParameters(List<DataPoint> points) {
+        for (double eps : new double[] { 0.0, 0.25, 0.5, 1.0 }) {
+            for (int minPts : new int[] { 1, 2, 4 }) {
+                for (int minIntersection : new int[] { 0, 1, 3 }) {
+                    for (int minRolesOverlap : new int[] { 0, 2 }) {
+                        assertSameClusters(points, eps, minPts, minIntersection, minRolesOverlap);
+                    }
+                }
+            }
+        }
+    }
+
+    private void assertSameClusters(
+            List<DataPoint> points, double eps, int minPts, int minIntersection, int minRolesOverlap) {
+        List<Cluster<DataPoint>> expected =
+                new DensityBasedClustering<DataPoint>(
+                        eps, minPts, new JaccardDistancesMeasure(minIntersection), minRolesOverlap)
+                        .cluster(points, createHandler());
+        List<Cluster<DataPoint>> actual =
+                new BitmapDensityBasedClustering<DataPoint>(
+                        eps, minPts, new JaccardDistancesMeasure(minIntersection), minRolesOverlap)
+                        .cluster(points, createHandler());
+
+        String parameters = String.format("eps=%s, minPts=%d, minIntersection=%d, minRolesOverlap=%d",
+                eps, minPts, minIntersection, minRolesOverlap);
+        assertThat(actual).as("clusters for " + parameters).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getPoints())
+                    .as("points in cluster #" + i + " for " + parameters)
+                    .containsExactlyElementsOf(expected.get(i).getPoints());
+        }
+    }
+
+    private static RoleAnalysisProgressIncrement createHandler() {
+        return new RoleAnalysisProgressIncrement("Clustering", 1);
+    }
+
+    private static List<DataPoint> generatePoints(int count, long seed) {
+        Random random = new Random(seed); // to be reproducible
+        List<DataPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextInt(10) == 0) {
+                // A different point with the same properties.
+                DataPoint original = points.get(random.nextInt(i));
+                points.add(new DataPoint(members(i, 1 + random.nextInt(3)), new HashSet<>(original.getProperties())));
+                continue;
+            }
+            Set<String> properties = new HashSet<>();
+            int size = random.nextInt(6); // may be empty
+            for (int j = 0; j < size; j++) {
+                properties.add("property-" + random.nextInt(PROPERTIES));
+            }
+            points.add(new DataPoint(members(i, 1 + random.nextInt(3)), properties));
+        }
+        return points;
+    }
+
+    private static DataPoint point(int number, int members, String... properties) {
+        return new DataPoint(members(number, members), new HashSet<>(List.of(properties)));
+    }
+
+    private static Set<String> members(int point, int count) {
+        Set<String> members = new HashSet<>();
+        for (int j = 0; j < count; j++) {
+            members.add("user-" + point + "-" + j);
+        }
+        return members;
+    }
+}
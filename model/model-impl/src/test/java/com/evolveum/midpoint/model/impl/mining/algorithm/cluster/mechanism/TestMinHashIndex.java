@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.mining.objects.handler.RoleAnalysisProgressIncrement;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Checks the approximate neighbor search: {@link MinHashIndex} itself, and {@link BitmapDensityBasedClustering}
+ * using it (see {@link BitmapDensityBasedClustering#useApproximateSearch(int, int, int)}).
+ *
+ * The exact neighbors are computed by {@link JaccardDistancesMeasure}, i.e. the same way {@link DensityBasedClustering}
+ * computes them.
+ */
+public class TestMinHashIndex extends AbstractUnitTest {
+
+    private static final double EPS = 0.5;
+    private static final int MIN_INTERSECTION = 1;
+
+    @Test
+    public void test100ApproximateNeighborsAreExactNeighbors() {
+        given("pseudo-random sets");
+        List<Set<String>> sets = generateSets(500, 100);
+
+        when("index with the default parameters is built");
+        MinHashIndex index = MinHashIndex.build(
+                toBitmaps(sets), MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+
+        then("the candidates are distinct, ascending, without the point itself");
+        for (int point = 0; point < sets.size(); point++) {
+            int[] candidates = index.getCandidates(point);
+            assertThat(candidates).as("candidates for " + point).isSorted().doesNotHaveDuplicates().doesNotContain(point);
+        }
+
+        and("every approximate neighbor is an exact neighbor");
+        for (int point = 0; point < sets.size(); point++) {
+            assertThat(getExactNeighbors(point, sets))
+                    .as("exact neighbors of " + point)
+                    .containsAll(getApproximateNeighbors(point, sets, index));
+        }
+
+        and("the clustering with the approximate search estimates the recall not to be above 1.0");
+        BitmapDensityBasedClustering<DataPoint> clustering = createClustering();
+        clustering.useApproximateSearch(MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS, sets.size());
+        clustering.cluster(toDataPoints(sets), createHandler());
+        assertThat(clustering.getNeighborSearchRecall()).as("recall").isNotNull().isBetween(0.0, 1.0);
+    }
+
+    @Test
+    public void test110IdenticalSets() {
+        given("groups of identical sets");
+        List<Set<String>> sets = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            sets.add(Set.of("1", "2", "3", "4", "5", "6"));
+            sets.add(Set.of("10", "11", "12"));
+            sets.add(Set.of("20", "21", "22", "23", "24", "25", "26", "27", "28", "29"));
+        }
+
+        when("index is built");
+        MinHashIndex index = MinHashIndex.build(toBitmaps(sets), MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+
+        then("all identical sets are found");
+        for (int point = 0; point < sets.size(); point++) {
+            assertThat(getApproximateNeighbors(point, sets, index))
+                    .as("approximate neighbors of " + point)
+                    .isEqualTo(getExactNeighbors(point, sets))
+                    .hasSize(29);
+        }
+
+        and("the clustering estimates the recall to be 1.0 and gives the exact clusters");
+        assertApproximateClusteringIsExact(sets, MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+    }
+
+    @Test
+    public void test120HighBandCount() {
+        given("pseudo-random sets");
+        List<Set<String>> sets = generateSets(500, 120);
+
+        when("index with many single-row bands is built");
+        int bands = 100;
+        MinHashIndex index = MinHashIndex.build(toBitmaps(sets), bands, 1);
+
+        then("all neighbors are found");
+        for (int point = 0; point < sets.size(); point++) {
+            assertThat(getApproximateNeighbors(point, sets, index))
+                    .as("approximate neighbors of " + point)
+                    .isEqualTo(getExactNeighbors(point, sets));
+        }
+
+        and("the clustering estimates the recall to be 1.0 and gives the exact clusters");
+        assertApproximateClusteringIsExact(sets, bands, 1);
+    }
+
+    @Test
+    public void test130EmptySets() {
+        given("sets, some of them empty");
+        List<Set<String>> sets = new ArrayList<>(generateSets(100, 130));
+        sets.add(0, Set.of());
+        sets.add(50, Set.of());
+        sets.add(Set.of());
+
+        when("index is built");
+        MinHashIndex index = MinHashIndex.build(toBitmaps(sets), MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+
+        then("empty sets have no candidates and are no candidates");
+        for (int point = 0; point < sets.size(); point++) {
+            int[] candidates = index.getCandidates(point);
+            if (sets.get(point).isEmpty()) {
+                assertThat(candidates).as("candidates for empty set " + point).isEmpty();
+            } else {
+                for (int candidate : candidates) {
+                    assertThat(sets.get(candidate)).as("candidate " + candidate + " for " + point).isNotEmpty();
+                }
+            }
+        }
+
+        and("the clustering with the approximate search works");
+        BitmapDensityBasedClustering<DataPoint> clustering = createClustering();
+        clustering.useApproximateSearch(MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS, sets.size());
+        clustering.cluster(toDataPoints(sets), createHandler());
+        assertThat(clustering.getNeighborSearchRecall()).as("recall").isNotNull().isBetween(0.0, 1.0);
+
+        and("the index of empty sets only has no candidates at all");
+        MinHashIndex emptyIndex = MinHashIndex.build(
+                toBitmaps(List.of(Set.of(), Set.of())), MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+        assertThat(emptyIndex.getCandidates(0)).isEmpty();
+        assertThat(emptyIndex.getCandidates(1)).isEmpty();
+    }
+
+    @Test
+    public void test140Reproducibility() {
+        given("pseudo-random sets");
+        List<Set<String>> sets = generateSets(500, 140);
+
+        when("index is built twice");
+        MinHashIndex first = MinHashIndex.build(toBitmaps(sets), MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+        MinHashIndex second = MinHashIndex.build(toBitmaps(sets), MinHashIndex.DEFAULT_BANDS, MinHashIndex.DEFAULT_ROWS);
+
+        then("the candidates are the same");
+        for (int point = 0; point < sets.size(); point++) {
+            assertThat(second.getCandidates(point))
+                    .as("candidates for " + point)
+                    .containsExactly(first.getCandidates(point));
+        }
+
+        and("the clusters are the same");
+        List<Cluster<DataPoint>> firstClusters = clusterApproximately(sets, MinHashIndex.DEFAULT_BANDS, 2);
+        List<Cluster<DataPoint>> secondClusters = clusterApproximately(sets, MinHashIndex.DEFAULT_BANDS, 2);
+        assertSameClusters(secondClusters, firstClusters);
+    }
+
+    @Test
+    public void test150InvalidParameters() {
+        CompressedBitmap[] bitmaps = toBitmaps(List.of(Set.of("1"), Set.of("1", "2")));
+
+        expect("non-positive number of bands or rows is rejected");
+        assertThatThrownBy(() -> MinHashIndex.build(bitmaps, 0, 5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MinHashIndex.build(bitmaps, 20, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MinHashIndex.build(bitmaps, -1, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        and("also by the clustering");
+        assertThatThrownBy(() -> clusterApproximately(List.of(Set.of("1")), 0, 5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertApproximateClusteringIsExact(List<Set<String>> sets, int bands, int rows) {
+        BitmapDensityBasedClustering<DataPoint> clustering = createClustering();
+        clustering.useApproximateSearch(bands, rows, sets.size());
+        List<DataPoint> points = toDataPoints(sets);
+        List<Cluster<DataPoint>> approximate = clustering.cluster(points, createHandler());
+        assertThat(clustering.getNeighborSearchRecall()).as("recall").isEqualTo(1.0);
+
+        List<Cluster<DataPoint>> exact = createClustering().cluster(points, createHandler());
+        assertSameClusters(approximate, exact);
+    }
+
+    private void assertSameClusters(List<Cluster<DataPoint>> actual, List<Cluster<DataPoint>> expected) {
+        assertThat(actual).as("clusters").hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getPoints())
+                    .as("points in cluster #" + i)
+                    .containsExactlyElementsOf(expected.get(i).getPoints());
+        }
+    }
+
+    private List<Cluster<DataPoint>> clusterApproximately(List<Set<String>> sets, int bands, int rows) {
+        BitmapDensityBasedClustering<DataPoint> clustering = createClustering();
+        clustering.useApproximateSearch(bands, rows, 0);
+        return clustering.cluster(toDataPoints(sets), createHandler());
+    }
+
+    private static BitmapDensityBasedClustering<DataPoint> createClustering() {
+        return new BitmapDensityBasedClustering<>(EPS, 2, new JaccardDistancesMeasure(MIN_INTERSECTION), 0);
+    }
+
+    private static Set<Integer> getExactNeighbors(int point, List<Set<String>> sets) {
+        Set<Integer> neighbors = new TreeSet<>();
+        for (int other = 0; other < sets.size(); other++) {
+            if (other != point && isNeighbor(sets.get(point), sets.get(other))) {
+                neighbors.add(other);
+            }
+        }
+        return neighbors;
+    }
+
+    private static Set<Integer> getApproximateNeighbors(int point, List<Set<String>> sets, MinHashIndex index) {
+        Set<Integer> neighbors = new TreeSet<>();
+        for (int candidate : index.getCandidates(point)) {
+            if (isNeighbor(sets.get(point), sets.get(candidate))) {
+                neighbors.add(candidate);
+            }
+        }
+        return neighbors;
+    }
+
+    private static boolean isNeighbor(Set<String> a, Set<String> b) {
+        return new JaccardDistancesMeasure(MIN_INTERSECTION).compute(a, b) <= EPS;
+    }
+
+    /** Property names are non-negative integers, so they can be used directly as bitmap values. */
+    private static CompressedBitmap[] toBitmaps(List<Set<String>> sets) {
+        return sets.stream()
+                .map(set -> CompressedBitmap.of(set.stream().mapToInt(Integer::parseInt).toArray()))
+                .toArray(CompressedBitmap[]::new);
+    }
+
+    private static List<DataPoint> toDataPoints(List<Set<String>> sets) {
+        List<DataPoint> points = new ArrayList<>(sets.size());
+        for (int i = 0; i < sets.size(); i++) {
+            points.add(new DataPoint(Set.of("user-" + i), new HashSet<>(sets.get(i))));
+        }
+        return points;
+    }
+
+    /** Sets of 1-8 values out of 30, so that there are both similar and dissimilar ones. */
+    private static List<Set<String>> generateSets(int count, long seed) {
+        Random random = new Random(seed); // to be reproducible
+        List<Set<String>> sets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int size = 1 + random.nextInt(8);
+            sets.add(random.ints(size, 0, 30)
+                    .mapToObj(String::valueOf)
+                    .collect(Collectors.toSet()));
+        }
+        return sets;
+    }
+
+    private static RoleAnalysisProgressIncrement createHandler() {
+        return new RoleAnalysisProgressIncrement("Clustering", 1);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.intest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.api.ModelService;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests {@link ModelService#executeChangesInBulk(List, com.evolveum.midpoint.model.api.ModelExecuteOptions, int, Task,
+ * OperationResult)}.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-intest-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestBulkChanges extends AbstractEmptyModelIntegrationTest {
+
+    private static final int USERS = 40;
+    private static final int THREADS = 8;
+    private static final String USER_NAME_PREFIX = "bulk-";
+
+    private final List<String> userOids = new ArrayList<>();
+
+    /** Independent ADD deltas without OIDs. */
+    @Test
+    public void test100AddUsers() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        List<ObjectDelta<? extends ObjectType>> deltas = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            deltas.add(new UserType()
+                    .name(USER_NAME_PREFIX + i)
+                    .asPrismObject()
+                    .createAddDelta());
+        }
+
+        when();
+        List<ObjectDeltaOperation<? extends ObjectType>> deltaOperations =
+                modelService.executeChangesInBulk(deltas, null, THREADS, task, result);
+
+        then();
+        assertSuccess(result);
+        assertThat(deltaOperations).as("delta operations").hasSize(USERS);
+        for (int i = 0; i < USERS; i++) {
+            ObjectDeltaOperation<? extends ObjectType> deltaOperation = deltaOperations.get(i);
+            assertThat(deltaOperation.getObjectDelta()).as("delta #" + i).isSameAs(deltas.get(i));
+            assertThat(deltaOperation.getStatus()).as("status of #" + i).isEqualTo(OperationResultStatus.SUCCESS);
+            String oid = deltaOperation.getObjectOid();
+            assertThat(oid).as("OID of #" + i).isNotNull();
+            assertUser(oid, "after")
+                    .assertName(USER_NAME_PREFIX + i);
+            userOids.add(oid);
+        }
+    }
+
+    /** Deltas on the same object must be executed one after another, in the order given. */
+    @Test
+    public void test110ModifyUsersRepeatedly() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        int rounds = 5;
+        List<ObjectDelta<? extends ObjectType>> deltas = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            for (String oid : userOids) {
+                deltas.add(deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("round " + round)
+                        .item(UserType.F_ORGANIZATION).add(PolyString.fromOrig("org-" + round))
+                        .asObjectDelta(oid));
+            }
+        }
+
+        when();
+        List<ObjectDeltaOperation<? extends ObjectType>> deltaOperations =
+                modelService.executeChangesInBulk(deltas, null, THREADS, task, result);
+
+        then();
+        assertSuccess(result);
+        assertThat(deltaOperations).as("delta operations").hasSize(deltas.size());
+        for (int i = 0; i < deltas.size(); i++) {
+            assertThat(deltaOperations.get(i).getObjectOid()).as("OID of #" + i).isEqualTo(deltas.get(i).getOid());
+        }
+        for (String oid : userOids) {
+            assertUser(oid, "after")
+                    .assertDescription("round " + (rounds - 1))
+                    .assertOrganizations("org-0", "org-1", "org-2", "org-3", "org-4");
+        }
+    }
+
+    /** A failure of one delta does not influence the others. */
+    @Test
+    public void test120PartialFailure() throws Exception {
+        given();
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        String nonExistingOid = "8f3ac2a4-5a6c-4e0a-9a5e-7c0bd5e2c1f0";
+        List<ObjectDelta<? extends ObjectType>> deltas = List.of(
+                deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("first")
+                        .asObjectDelta(userOids.get(0)),
+                deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("non-existing")
+                        .asObjectDelta(nonExistingOid),
+                new UserType()
+                        .name(USER_NAME_PREFIX + 0) // conflicts with an existing user
+                        .asPrismObject()
+                        .createAddDelta(),
+                deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("last")
+                        .asObjectDelta(userOids.get(1)));
+
+        when();
+        List<ObjectDeltaOperation<? extends ObjectType>> deltaOperations =
+                modelService.executeChangesInBulk(deltas, null, THREADS, task, result);
+
+        then();
+        assertThat(deltaOperations).as("delta operations").hasSize(4);
+        assertThat(deltaOperations.get(0).getStatus()).isEqualTo(OperationResultStatus.SUCCESS);
+        assertThat(deltaOperations.get(1).getStatus()).isEqualTo(OperationResultStatus.FATAL_ERROR);
+        assertThat(deltaOperations.get(1).getObjectOid()).isEqualTo(nonExistingOid);
+        assertThat(deltaOperations.get(2).getStatus()).isEqualTo(OperationResultStatus.FATAL_ERROR);
+        assertThat(deltaOperations.get(3).getStatus()).isEqualTo(OperationResultStatus.SUCCESS);
+
+        assertUser(userOids.get(0), "after")
+                .assertDescription("first");
+        assertUser(userOids.get(1), "after")
+                .assertDescription("last");
+    }
+
+    /**
+     * Concurrent bulk operations share the same threads, so together they cannot use more threads
+     * than there are processors.
+     */
+    @Test
+    public void test130ConcurrentBulkOperations() throws Exception {
+        given();
+        int callers = 4;
+        Authentication authentication = securityContextManager.getAuthentication();
+
+        when("bulk operations are executed concurrently, each with the maximal number of threads");
+        ExecutorService callersExecutor = Executors.newFixedThreadPool(callers);
+        List<Future<List<ObjectDeltaOperation<? extends ObjectType>>>> futures = new ArrayList<>();
+        try {
+            for (int c = 0; c < callers; c++) {
+                String description = "caller " + c;
+                futures.add(callersExecutor.submit(() -> {
+                    securityContextManager.setupPreAuthenticatedSecurityContext(authentication);
+                    Task task = createPlainTask(description);
+                    List<ObjectDelta<? extends ObjectType>> deltas = new ArrayList<>();
+                    for (String oid : userOids) {
+                        deltas.add(deltaFor(UserType.class)
+                                .item(UserType.F_ORGANIZATIONAL_UNIT).add(PolyString.fromOrig(description))
+                                .asObjectDelta(oid));
+                    }
+                    return modelService.executeChangesInBulk(deltas, null, Integer.MAX_VALUE, task, task.getResult());
+                }));
+            }
+            then("all deltas are executed");
+            for (Future<List<ObjectDeltaOperation<? extends ObjectType>>> future : futures) {
+                List<ObjectDeltaOperation<? extends ObjectType>> deltaOperations = future.get(5, TimeUnit.MINUTES);
+                assertThat(deltaOperations).as("delta operations").hasSize(USERS);
+                for (ObjectDeltaOperation<? extends ObjectType> deltaOperation : deltaOperations) {
+                    assertThat(deltaOperation.getStatus()).isEqualTo(OperationResultStatus.SUCCESS);
+                }
+            }
+        } finally {
+            callersExecutor.shutdownNow();
+        }
+
+        then("the number of threads used is limited");
+        long bulkThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("bulk-changes-"))
+                .count();
+        assertThat(bulkThreads)
+                .as("bulk changes threads")
+                .isLessThanOrEqualTo(Runtime.getRuntime().availableProcessors());
+        for (String oid : userOids) {
+            assertUser(oid, "after")
+                    .assertOrganizationalUnits("caller 0", "caller 1", "caller 2", "caller 3");
+        }
+    }
+}
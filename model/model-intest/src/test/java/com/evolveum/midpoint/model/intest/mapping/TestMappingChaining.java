@@ -6,16 +6,21 @@
  */
 package com.evolveum.midpoint.model.intest.mapping;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.io.File;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
 
+import com.evolveum.midpoint.model.impl.lens.projector.focus.MappingEvaluationPlanCache;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.TestObject;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
 
 /**
  * Testing mapping chaining (eventually in all contexts - in template, in assignments, etc).
@@ -33,6 +38,8 @@ public class TestMappingChaining extends AbstractMappingTest {
     private static final TestObject<?> ROLE_MASTER = TestObject.file(TEST_DIR, "role-master.xml", "c7968dad-0711-4e45-8846-b6c28fc8c71a");
     private static final TestObject<?> USER_LEGALL = TestObject.file(TEST_DIR, "user-legall.xml", "db3875df-5f5e-4379-bca5-d1349eee5033");
 
+    @Autowired private MappingEvaluationPlanCache mappingEvaluationPlanCache;
+
     @Override
     public void initSystem(Task initTask, OperationResult initResult) throws Exception {
         super.initSystem(initTask, initResult);
@@ -68,4 +75,34 @@ public class TestMappingChaining extends AbstractMappingTest {
                 .assertAssignments(0)
                 .assertExtensionValue("booleanFlag", false);
     }
+
+    /**
+     * The second recomputation should use the cached evaluation plan, with the same results.
+     */
+    @Test
+    public void test110RecomputeUserAgain() throws Exception {
+        given();
+
+        Task task = getTestTask();
+        OperationResult result = getTestOperationResult();
+        int hitsBefore = getPlanCacheHits();
+
+        when();
+
+        recomputeUser(USER_LEGALL.oid, task, result);
+
+        then();
+
+        assertSuccess(result);
+        assertUser(USER_LEGALL.oid, "user after")
+                .assertAssignments(0)
+                .assertExtensionValue("booleanFlag", false);
+        assertThat(getPlanCacheHits()).as("plan cache hits").isGreaterThan(hitsBefore);
+    }
+
+    private int getPlanCacheHits() {
+        SingleCachePerformanceInformationType performance =
+                mappingEvaluationPlanCache.getStateInformation().iterator().next().getPerformance();
+        return performance.getHitCount();
+    }
 }
@@ -65,6 +65,7 @@ public class ClusterRestController extends AbstractRestController {
     public static final String CLASS_DOT = ClusterRestController.class.getName() + ".";
 
     private static final String OPERATION_EXECUTE_CLUSTER_CACHE_INVALIDATION_EVENT = CLASS_DOT + "executeClusterCacheInvalidationEvent";
+    private static final String OPERATION_EXECUTE_CLUSTER_CACHE_INVALIDATION_BATCH_EVENT = CLASS_DOT + "executeClusterCacheInvalidationBatchEvent";
     private static final String OPERATION_EXECUTE_CLUSTER_TERMINATE_SESSION_EVENT = CLASS_DOT + "executeClusterTerminateSessionEvent";
     private static final String OPERATION_GET_LOCAL_SCHEDULER_INFORMATION = CLASS_DOT + "getLocalSchedulerInformation";
     private static final String OPERATION_STOP_LOCAL_SCHEDULER = CLASS_DOT + "stopLocalScheduler";
@@ -122,6 +123,47 @@ public class ClusterRestController extends AbstractRestController {
         return response;
     }
 
+    @PostMapping(value = ClusterServiceConsts.EVENT_INVALIDATION_BATCH, consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<?> executeClusterCacheInvalidationBatchEvent(
+            @RequestBody(required = false) String batch) {
+        Task task = initRequest();
+        OperationResult result = createSubresult(task, OPERATION_EXECUTE_CLUSTER_CACHE_INVALIDATION_BATCH_EVENT);
+
+        ResponseEntity<?> response;
+        try {
+            checkNodeAuthentication();
+
+            int count = 0;
+            for (String line : batch != null ? batch.split("\n") : new String[0]) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Class<? extends ObjectType> clazz;
+                String oid;
+                if (line.equals("*")) {
+                    clazz = null;
+                    oid = null;
+                } else {
+                    int slash = line.indexOf('/');
+                    clazz = ObjectTypes.getClassFromRestType(slash >= 0 ? line.substring(0, slash) : line);
+                    oid = slash >= 0 ? line.substring(slash + 1) : null;
+                }
+                // clusterwide is false: we got this from another node so we don't need to redistribute it
+                cacheDispatcher.dispatchInvalidation(clazz, oid, false, new CacheInvalidationContext(true, null));
+                count++;
+            }
+            result.addReturn("invalidations", count);
+
+            result.recordSuccess();
+            response = createResponse(HttpStatus.OK, result);
+        } catch (Throwable t) {
+            response = handleException(result, t);
+        }
+        finishRequest(task, result);
+        return response;
+    }
+
     @PostMapping(ClusterServiceConsts.EVENT_TERMINATE_SESSION)
     public ResponseEntity<?> executeClusterTerminateSessionEvent(
             @RequestBody TerminateSessionEventType event) {
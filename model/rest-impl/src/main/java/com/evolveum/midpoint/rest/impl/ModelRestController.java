@@ -8,7 +8,9 @@ package com.evolveum.midpoint.rest.impl;
 
 import static org.springframework.http.ResponseEntity.status;
 
+import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -17,11 +19,13 @@ import javax.xml.namespace.QName;
 import com.evolveum.midpoint.schema.config.ConfigurationItemOrigin;
 import com.evolveum.midpoint.schema.config.ExecuteScriptConfigItem;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.core.Response;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -34,12 +38,14 @@ import com.evolveum.midpoint.model.impl.ModelCrudService;
 import com.evolveum.midpoint.model.impl.scripting.PipelineData;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.path.ItemPathCollectionsUtil;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.schema.DefinitionProcessingOption;
 import com.evolveum.midpoint.schema.DeltaConvertor;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
@@ -54,6 +60,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import com.evolveum.midpoint.xml.ns._public.model.scripting_3.ExecuteScriptOutputType;
 import com.evolveum.midpoint.xml.ns._public.model.scripting_3.ExecuteScriptType;
 import com.evolveum.prism.xml.ns._public.query_3.QueryType;
+import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
 
 @RestController
 @RequestMapping({ "/ws/rest", "/rest/model", "/api/model" })
@@ -642,6 +649,98 @@ public class ModelRestController extends AbstractRestController {
         return response;
     }
 
+    /**
+     * Streaming variant of {@link #searchObjectsByType}: objects are written to the response one by one,
+     * as they are found, so the memory needed does not depend on the number of objects.
+     *
+     * @see #searchObjectsStreaming
+     */
+    @GetMapping("/{type}/stream")
+    public ResponseEntity<?> searchObjectsByTypeStreaming(
+            @PathVariable("type") String type,
+            @RequestParam(value = "options", required = false) List<String> options,
+            @RequestParam(value = "include", required = false) List<String> include,
+            @RequestParam(value = "exclude", required = false) List<String> exclude,
+            @RequestParam(value = "resolveNames", required = false) List<String> resolveNames,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse httpResponse) {
+        return searchObjectsStreaming(type, options, include, exclude, resolveNames, accept, null, httpResponse);
+    }
+
+    /**
+     * Streaming variant of {@link #searchObjects}: objects are written to the response one by one, as they are found
+     * by the iterative search, so the memory needed does not depend on the number of objects. Security post-processing
+     * (e.g. removal of non-readable items) is done for each object separately.
+     *
+     * The format is selected by `Accept` header: XML (default, the `objects` element), JSON (array of objects),
+     * NDJSON (`application/x-ndjson`, one object per line), or YAML (one document per object).
+     *
+     * As the status is sent along with the first object, errors occurring later cannot be reported by the status
+     * nor by the operation result. The output is then terminated prematurely, without the closing part.
+     */
+    @PostMapping("/{type}/search/stream")
+    public ResponseEntity<?> searchObjectsStreaming(
+            @PathVariable("type") String type,
+            @RequestParam(value = "options", required = false) List<String> options,
+            @RequestParam(value = "include", required = false) List<String> include,
+            @RequestParam(value = "exclude", required = false) List<String> exclude,
+            @RequestParam(value = "resolveNames", required = false) List<String> resolveNames,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestBody(required = false) QueryType queryType,
+            HttpServletResponse httpResponse) {
+
+        Task task = initRequest();
+        OperationResult result = task.getResult().createSubresult("searchObjectsStreaming");
+
+        Class<? extends ObjectType> clazz = ObjectTypes.getClassFromRestType(type);
+        ObjectStreamWriter writer = new ObjectStreamWriter(
+                ObjectStreamWriter.Format.forAcceptHeader(accept), prismContext, httpResponse);
+        ResponseEntity<?> response;
+        try {
+            ObjectQuery query = queryType != null
+                    ? prismContext.getQueryConverter().createObjectQuery(clazz, queryType)
+                    : null;
+            Collection<SelectorOptions<GetOperationOptions>> searchOptions = GetOperationOptions.fromRestOptions(options, include,
+                    exclude, resolveNames, DefinitionProcessingOption.ONLY_IF_EXISTS, prismContext);
+
+            streamObjects(clazz, query, searchOptions, exclude, writer, task, result);
+            writer.finish();
+            result.addReturn("count", writer.getCount());
+
+            response = null; // the response was already written
+        } catch (Exception ex) {
+            if (writer.isStarted()) {
+                LoggingUtils.logUnexpectedException(logger,
+                        "Couldn't finish streaming of search results for {}, {} objects were written", ex,
+                        type, writer.getCount());
+                result.recordFatalError(ex);
+                response = null; // nothing more can be done, the status was already sent
+            } else {
+                response = handleException(result, ex);
+            }
+        }
+
+        result.computeStatus();
+        finishRequest(task, result);
+        return response;
+    }
+
+    private <T extends ObjectType> void streamObjects(Class<T> clazz, ObjectQuery query,
+            Collection<SelectorOptions<GetOperationOptions>> searchOptions, List<String> exclude,
+            ObjectStreamWriter writer, Task task, OperationResult result) throws CommonException {
+        modelService.searchObjectsIterative(clazz, query,
+                (object, lResult) -> {
+                    try {
+                        removeExcludes(object, exclude); // temporary measure until fixed in repo
+                        writer.write(object);
+                        return true;
+                    } catch (SchemaException | IOException e) {
+                        throw new SystemException("Couldn't write " + object + " to the response: " + e.getMessage(), e);
+                    }
+                },
+                searchOptions, task, result);
+    }
+
     private void removeExcludes(PrismObject<? extends ObjectType> object, List<String> exclude)
             throws SchemaException {
         object.getValue().removePaths(
@@ -797,6 +896,48 @@ public class ModelRestController extends AbstractRestController {
         return response;
     }
 
+    /**
+     * Executes independent deltas, each one as a separate operation, concurrently if possible.
+     * See {@link ModelService#executeChangesInBulk(List, ModelExecuteOptions, int, Task, OperationResult)}.
+     *
+     * The response contains one delta operation for each delta in the request, in the same order.
+     * The status is 200 even if some of the deltas failed; their results have to be checked individually.
+     */
+    @PostMapping("/rpc/executeChanges")
+    public ResponseEntity<?> executeChangesInBulk(
+            @RequestParam(value = "options", required = false) List<String> options,
+            @RequestParam(value = "threads", required = false) Integer threads,
+            @RequestBody ObjectDeltaListType deltaList) {
+        Task task = initRequest();
+        OperationResult result = task.getResult().createSubresult("executeChangesInBulk");
+
+        ResponseEntity<?> response;
+        try {
+            List<ObjectDelta<? extends ObjectType>> deltas = new ArrayList<>();
+            for (ObjectDeltaType deltaBean : deltaList.getDelta()) {
+                deltas.add(DeltaConvertor.createObjectDelta(deltaBean));
+            }
+            List<ObjectDeltaOperation<? extends ObjectType>> deltaOperations = modelService.executeChangesInBulk(
+                    deltas,
+                    ModelExecuteOptions.fromRestOptions(options),
+                    threads != null ? threads : Runtime.getRuntime().availableProcessors(),
+                    task,
+                    result);
+
+            ObjectDeltaOperationListType responseData = new ObjectDeltaOperationListType();
+            for (ObjectDeltaOperation<? extends ObjectType> deltaOperation : deltaOperations) {
+                responseData.getDeltaOperation().add(DeltaConvertor.toObjectDeltaOperationType(deltaOperation));
+            }
+            // Not createResponse(): a partial or handled error in some deltas would replace the list by the result.
+            response = ResponseEntity.ok(responseData);
+        } catch (Exception ex) {
+            response = handleException(result, ex);
+        }
+        result.computeStatus();
+        finishRequest(task, result);
+        return response;
+    }
+
     @PostMapping("/rpc/compare")
 //    @Consumes({ "application/xml" }) TODO do we need to limit it to XML?
     public <T extends ObjectType> ResponseEntity<?> compare(
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.rest.impl;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismSerializer;
+import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.util.exception.SchemaException;
+
+/**
+ * Writes objects to the HTTP response one by one, as they are found by the iterative search.
+ * Nothing but the currently written object is kept in memory.
+ *
+ * The response is committed (status and content type are set, the prolog is written) only when the first object
+ * is written, or when the writing is finished. Until then, the caller can still send an error response instead.
+ * If the writing fails after that, the caller should just stop: the epilog is not written, so the client
+ * gets an incomplete (and hence invalid, except for NDJSON) document.
+ *
+ * Supported formats:
+ *
+ * - XML: the `objects` element, as used e.g. by ninja export and import,
+ * - JSON: array of objects,
+ * - NDJSON: one object per line,
+ * - YAML: one document per object.
+ */
+class ObjectStreamWriter {
+
+    static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    private static final String XML_PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<c:objects xmlns=\"http://midpoint.evolveum.com/xml/ns/public/common/common-3\"\n" +
+            "\txmlns:c=\"http://midpoint.evolveum.com/xml/ns/public/common/common-3\"\n" +
+            "\txmlns:org=\"http://midpoint.evolveum.com/xml/ns/public/common/org-3\">\n";
+    private static final String XML_EPILOG = "</c:objects>\n";
+
+    enum Format {
+
+        XML(MediaType.APPLICATION_XML, XML_PROLOG, "\n", XML_EPILOG),
+        JSON(MediaType.APPLICATION_JSON, "[\n", ",\n", "\n]\n"),
+        NDJSON(APPLICATION_NDJSON, "", "\n", "\n"),
+        YAML(MidpointYamlHttpMessageConverter.MEDIA_TYPES[0], "---\n", "\n---\n", "\n");
+
+        private final MediaType mediaType;
+        private final String prolog;
+        private final String separator;
+        private final String epilog;
+
+        Format(MediaType mediaType, String prolog, String separator, String epilog) {
+            this.mediaType = mediaType;
+            this.prolog = prolog;
+            this.separator = separator;
+            this.epilog = epilog;
+        }
+
+        /** Selects the format by the `Accept` header. XML is the default, as for other REST operations. */
+        static @NotNull Format forAcceptHeader(@Nullable String accept) {
+            List<MediaType> acceptedTypes = new ArrayList<>();
+            try {
+                acceptedTypes.addAll(MediaType.parseMediaTypes(accept));
+            } catch (InvalidMediaTypeException e) {
+                // ignoring the header, the default will be used
+            }
+            MimeTypeUtils.sortBySpecificity(acceptedTypes);
+            for (MediaType acceptedType : acceptedTypes) {
+                if (acceptedType.isWildcardType()) {
+                    return XML;
+                }
+                for (Format format : values()) {
+                    if (format.mediaType.isCompatibleWith(acceptedType)) {
+                        return format;
+                    }
+                }
+                for (MediaType yamlType : MidpointYamlHttpMessageConverter.MEDIA_TYPES) {
+                    if (yamlType.isCompatibleWith(acceptedType)) {
+                        return YAML;
+                    }
+                }
+                for (MediaType xmlType : MidpointXmlHttpMessageConverter.MEDIA_TYPES) {
+                    if (xmlType.isCompatibleWith(acceptedType)) {
+                        return XML;
+                    }
+                }
+            }
+            return XML;
+        }
+    }
+
+    @NotNull private final Format format;
+    @NotNull private final PrismSerializer<String> serializer;
+    @NotNull private final HttpServletResponse response;
+
+    private Writer writer;
+    private long count;
+
+    ObjectStreamWriter(@NotNull Format format, @NotNull PrismContext prismContext, @NotNull HttpServletResponse response) {
+        this.format = format;
+        this.serializer = createSerializer(format, prismContext)
+                .options(SerializationOptions.createSerializeReferenceNames());
+        this.response = response;
+    }
+
+    private static PrismSerializer<String> createSerializer(Format format, PrismContext prismContext) {
+        return switch (format) {
+            case XML -> prismContext.xmlSerializer();
+            case JSON, NDJSON -> prismContext.jsonSerializer();
+            case YAML -> prismContext.yamlSerializer();
+        };
+    }
+
+    /** True if the response was already committed, i.e. it is no longer possible to send an error response. */
+    boolean isStarted() {
+        return writer != null;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    void write(@NotNull PrismObject<?> object) throws SchemaException, IOException {
+        String serialized = serializer.serialize(object);
+        if (format == Format.NDJSON) {
+            serialized = toSingleLine(serialized);
+        }
+        if (writer == null) {
+            start();
+        } else {
+            writer.write(format.separator);
+        }
+        writer.write(serialized);
+        count++;
+    }
+
+    void finish() throws IOException {
+        if (writer == null) {
+            start();
+        }
+        if (count > 0 || format != Format.NDJSON) {
+            // The NDJSON epilog just terminates the last line; an empty result has no lines at all.
+            writer.write(format.epilog);
+        }
+        writer.flush();
+    }
+
+    private void start() throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(format.mediaType.toString());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        writer = new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        writer.write(format.prolog);
+    }
+
+    /** Removes whitespace outside of string literals from JSON text, so that the whole object fits on a single line. */
+    private static String toSingleLine(String json) {
+        StringBuilder sb = new StringBuilder(json.length());
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -8,6 +8,7 @@ package com.evolveum.midpoint.provisioning.api;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.evolveum.midpoint.prism.query.ObjectFilter;
@@ -333,6 +334,34 @@ public interface ProvisioningService {
         return getObject(type, oid, options, new ProvisioningOperationContext(), task, parentResult);
     }
 
+    /**
+     * Returns a set of shadows, identified by their OIDs, without contacting the resource(s).
+     *
+     * The shadows are read from the repository using a single query, and then processed just like in
+     * {@link #getObject(Class, String, Collection, ProvisioningOperationContext, Task, OperationResult)} called with
+     * the same options: definitions are applied, shadow lifecycle state is determined, quick refresh is done if needed,
+     * and so on. This is much more efficient than calling `getObject` for each shadow separately, e.g. when loading
+     * all the projections of a focus.
+     *
+     * Shadows that do not exist, as well as shadows that could not be processed, are *not* present in the returned map.
+     * The caller should get them individually using `getObject`, in order to get the regular error handling (like
+     * {@link ObjectNotFoundException} being thrown for non-existent shadows).
+     *
+     * @param oids OIDs of the shadows to get
+     * @param options Options that must include either `noFetch` or `raw` (on the root level)
+     * @return Shadows retrieved, indexed by OID
+     *
+     * @throws SchemaException error dealing with the repository query
+     * @throws IllegalArgumentException if neither `noFetch` nor `raw` option is present
+     */
+    @NotNull Map<String, PrismObject<ShadowType>> getShadowsNoFetch(
+            @NotNull Collection<String> oids,
+            @NotNull Collection<SelectorOptions<GetOperationOptions>> options,
+            @NotNull ProvisioningOperationContext context,
+            @NotNull Task task,
+            @NotNull OperationResult parentResult)
+            throws SchemaException;
+
     /**
      * Add new object.
      *
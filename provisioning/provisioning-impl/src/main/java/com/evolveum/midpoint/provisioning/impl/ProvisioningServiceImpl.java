@@ -9,7 +9,9 @@ package com.evolveum.midpoint.provisioning.impl;
 import static com.evolveum.midpoint.schema.util.ObjectTypeUtil.asPrismObject;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import jakarta.annotation.PostConstruct;
@@ -103,6 +105,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 public class ProvisioningServiceImpl implements ProvisioningService, SystemConfigurationChangeListener {
 
     private static final String OP_GET_OBJECT = ProvisioningService.class.getName() + ".getObject";
+    private static final String OP_GET_SHADOWS_NO_FETCH = ProvisioningService.class.getName() + ".getShadowsNoFetch";
     private static final String OP_SEARCH_OBJECTS = ProvisioningService.class.getName() + ".searchObjects";
     private static final String OP_COUNT_OBJECTS = ProvisioningService.class.getName() + ".countObjects";
     private static final String OP_REFRESH_SHADOW = ProvisioningServiceImpl.class.getName() + ".refreshShadow";
@@ -174,6 +177,39 @@ public class ProvisioningServiceImpl implements ProvisioningService, SystemConfi
                 .asPrismObject();
     }
 
+    @Override
+    public @NotNull Map<String, PrismObject<ShadowType>> getShadowsNoFetch(
+            @NotNull Collection<String> oids,
+            @NotNull Collection<SelectorOptions<GetOperationOptions>> options,
+            @NotNull ProvisioningOperationContext context,
+            @NotNull Task task,
+            @NotNull OperationResult parentResult) throws SchemaException {
+
+        Preconditions.checkNotNull(oids, "oids");
+        Preconditions.checkNotNull(task, "task");
+        Preconditions.checkNotNull(parentResult, "parentResult");
+
+        OperationResult result = parentResult.subresult(OP_GET_SHADOWS_NO_FETCH)
+                .addParam("shadows", oids.size())
+                .addArbitraryObjectCollectionAsParam(OperationResult.PARAM_OPTIONS, options)
+                .addContext(OperationResult.CONTEXT_IMPLEMENTATION_CLASS, ProvisioningServiceImpl.class)
+                .build();
+        try {
+            Map<String, PrismObject<ShadowType>> shadows = new HashMap<>();
+            shadowsFacade.getShadows(oids, options, context, task, result)
+                    .forEach((oid, shadow) -> shadows.put(oid, shadow.asPrismObject()));
+            LOGGER.trace("Retrieved {} out of {} shadows", shadows.size(), oids.size());
+            result.addReturn("retrieved", shadows.size());
+            return shadows;
+        } catch (Throwable t) {
+            result.recordException(t);
+            throw t;
+        } finally {
+            result.close();
+            result.cleanup();
+        }
+    }
+
     private static <T extends ObjectType> T storeFetchResultIfApplicable(T object, OperationResult result) {
         if (result.isSuccess()) {
             // Let's avoid storing SUCCESS result. This is an optimization in case of read-only object retrieval,
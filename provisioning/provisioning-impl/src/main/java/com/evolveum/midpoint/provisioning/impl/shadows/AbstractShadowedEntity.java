@@ -92,7 +92,8 @@ public abstract class AbstractShadowedEntity implements InitializableObjectMixin
 
         // Now find or create repository shadow, along with its classification (maybe it is not a good idea to merge the two).
         try {
-            return ShadowAcquisition.acquireRepoShadow(estimatedCtx, resourceObjectBean, false, result);
+            return ShadowAcquisition.acquireRepoShadow(
+                    estimatedCtx, resourceObjectBean, false, getPrefetchedLiveRepoShadow(), result);
         } catch (Exception e) {
             // No need to log stack trace now. It will be logged at the place where the exception is processed.
             LoggingUtils.logExceptionAsWarning(
@@ -103,6 +104,14 @@ public abstract class AbstractShadowedEntity implements InitializableObjectMixin
         }
     }
 
+    /**
+     * Live repo shadow for the resource object that was looked up in advance, if any.
+     * It is used only in the regular (non-emergency) shadow acquisition.
+     */
+    @Nullable ShadowType getPrefetchedLiveRepoShadow() {
+        return null;
+    }
+
     /** Called when we know we are in emergency mode. */
     void acquireAndSetRepoShadowInEmergency(OperationResult result)
             throws SchemaException, ConfigurationException, ObjectNotFoundException,
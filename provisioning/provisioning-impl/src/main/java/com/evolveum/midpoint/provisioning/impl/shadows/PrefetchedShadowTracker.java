@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.impl.shadows;
+
+import static com.evolveum.midpoint.repo.api.CacheInvalidationEventSpecification.MODIFY_DELETE;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheInvalidationEventSpecification;
+import com.evolveum.midpoint.repo.api.CacheInvalidationListener;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Tracks modifications and deletions of shadows while the shadows prefetched by {@link ShadowAcquisitionBatch}
+ * are being used, so that a stale prefetched shadow is not used for the shadow acquisition.
+ *
+ * The information comes from the (local) cache invalidation events, which are emitted for every shadow modified
+ * or deleted on this node via the repository cache. So no additional repository operations are needed.
+ * Changes made by other nodes are not seen here; they are handled by the usual conflict and dead shadow processing,
+ * just like changes made by other nodes right after an individual shadow lookup.
+ */
+@Component
+class PrefetchedShadowTracker implements CacheInvalidationListener {
+
+    private static final Collection<CacheInvalidationEventSpecification> EVENT_SPECIFICATIONS =
+            Set.of(CacheInvalidationEventSpecification.of(ShadowType.class, MODIFY_DELETE));
+
+    @Autowired private CacheDispatcher cacheDispatcher;
+
+    /** Watches that are currently open. */
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void register() {
+        cacheDispatcher.registerCacheInvalidationListener(this);
+    }
+
+    @PreDestroy
+    public void unregister() {
+        cacheDispatcher.unregisterCacheInvalidationListener(this);
+    }
+
+    /** Starts recording the shadow changes. Must be opened before the shadows are looked up, and closed afterwards. */
+    Watch openWatch() {
+        Watch watch = new Watch();
+        watches.add(watch);
+        return watch;
+    }
+
+    @Override
+    public Collection<CacheInvalidationEventSpecification> getEventSpecifications() {
+        return EVENT_SPECIFICATIONS;
+    }
+
+    @Override
+    public <O extends ObjectType> void invalidate(
+            Class<O> type, String oid, boolean clusterwide, CacheInvalidationContext context) {
+        if (watches.isEmpty() || type != null && !type.isAssignableFrom(ShadowType.class)) {
+            return;
+        }
+        for (Watch watch : watches) {
+            watch.recordChange(oid);
+        }
+    }
+
+    /** Shadows changed since the watch was opened. */
+    class Watch implements AutoCloseable {
+
+        private final Set<String> changedOids = ConcurrentHashMap.newKeySet();
+
+        /** Set if all shadows (or all objects) were invalidated. */
+        private volatile boolean allChanged;
+
+        private void recordChange(String oid) {
+            if (oid != null) {
+                changedOids.add(oid);
+            } else {
+                allChanged = true;
+            }
+        }
+
+        boolean isChanged(String oid) {
+            return allChanged || changedOids.contains(oid);
+        }
+
+        @Override
+        public void close() {
+            watches.remove(this);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.xml.namespace.QName;
 
@@ -69,6 +70,12 @@ class ShadowAcquisition {
     /** Whether we want to skip the classification. It is used e.g. in emergency shadow creation. */
     private final boolean skipClassification;
 
+    /**
+     * Live repo shadow for the resource object, if it was looked up in advance (see {@link ShadowAcquisitionBatch}).
+     * If null, the shadow is looked up in the usual way.
+     */
+    @Nullable private final ShadowType prefetchedLiveShadow;
+
     private final ShadowsLocalBeans b = ShadowsLocalBeans.get();
 
     private ShadowAcquisition(
@@ -76,12 +83,14 @@ class ShadowAcquisition {
             @NotNull PrismProperty<?> primaryIdentifier,
             @NotNull QName objectClass,
             @NotNull ShadowType resourceObject,
-            boolean skipClassification) {
+            boolean skipClassification,
+            @Nullable ShadowType prefetchedLiveShadow) {
         this.ctx = ctx;
         this.primaryIdentifier = primaryIdentifier;
         this.objectClass = objectClass;
         this.resourceObject = resourceObject;
         this.skipClassification = skipClassification;
+        this.prefetchedLiveShadow = prefetchedLiveShadow;
     }
 
     /**
@@ -104,13 +113,26 @@ class ShadowAcquisition {
             @NotNull OperationResult result)
             throws SchemaException, ConfigurationException, ObjectNotFoundException, SecurityViolationException,
             CommunicationException, GenericConnectorException, ExpressionEvaluationException, EncryptionException {
+        return acquireRepoShadow(ctx, resourceObject, skipClassification, null, result);
+    }
+
+    /** As {@link #acquireRepoShadow(ProvisioningContext, ShadowType, boolean, OperationResult)}, using prefetched shadow. */
+    @NotNull static ShadowType acquireRepoShadow(
+            @NotNull ProvisioningContext ctx,
+            @NotNull ShadowType resourceObject,
+            boolean skipClassification,
+            @Nullable ShadowType prefetchedLiveShadow,
+            @NotNull OperationResult result)
+            throws SchemaException, ConfigurationException, ObjectNotFoundException, SecurityViolationException,
+            CommunicationException, GenericConnectorException, ExpressionEvaluationException, EncryptionException {
 
         PrismProperty<?> primaryIdentifier = ProvisioningUtil.getSingleValuedPrimaryIdentifierRequired(resourceObject);
         QName objectClass = requireNonNull(
                 resourceObject.getObjectClass(),
                 () -> "No object class in " + ShadowUtil.shortDumpShadow(resourceObject));
 
-        return new ShadowAcquisition(ctx, primaryIdentifier, objectClass, resourceObject, skipClassification)
+        return new ShadowAcquisition(
+                ctx, primaryIdentifier, objectClass, resourceObject, skipClassification, prefetchedLiveShadow)
                 .execute(result);
     }
 
@@ -158,7 +180,9 @@ class ShadowAcquisition {
     private @NotNull ShadowType acquireRawRepoShadow(OperationResult result)
             throws SchemaException, EncryptionException {
 
-        var existingLiveRepoShadow = b.shadowFinder.lookupLiveShadowByPrimaryId(ctx, primaryIdentifier, objectClass, result);
+        var existingLiveRepoShadow = prefetchedLiveShadow != null ?
+                prefetchedLiveShadow :
+                b.shadowFinder.lookupLiveShadowByPrimaryId(ctx, primaryIdentifier, objectClass, result);
         if (existingLiveRepoShadow != null) {
             LOGGER.trace("Found live shadow object in the repository {}", shortDumpShadowLazily(existingLiveRepoShadow));
             if (b.shadowUpdater.markLiveShadowExistingIfNotMarkedSo(existingLiveRepoShadow, result)) {
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.impl.shadows;
+
+import static com.evolveum.midpoint.provisioning.impl.shadows.manager.ShadowManagerMiscUtil.determinePrimaryIdentifierValue;
+
+import java.util.*;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
+import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectFound;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Buffers resource objects found by a search on a resource, so that their live repository shadows can be looked up
+ * by a single repository query (see {@link ShadowAcquisition}), instead of one query per object.
+ *
+ * Objects whose shadows are not found this way go through the regular shadow acquisition,
+ * i.e. the shadow is looked up again by the primary identifier and created if it does not exist.
+ * So the prefetching is only an optimization; the conflict and dead shadow handling stays the same.
+ *
+ * The objects are handled one by one after the whole batch is looked up, so a prefetched shadow may be modified or deleted
+ * (e.g. by the handler of an earlier object) before it is used. Such changes are recorded by {@link PrefetchedShadowTracker}
+ * from the time of the lookup until the batch is released, and changed shadows are looked up again when used.
+ */
+class ShadowAcquisitionBatch {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ShadowAcquisitionBatch.class);
+
+    private static final String OP_LOOKUP_LIVE_SHADOWS = ShadowAcquisitionBatch.class.getName() + ".lookupLiveShadows";
+
+    /** The search context. Its object definition is used to determine the primary identifier values. */
+    @NotNull private final ProvisioningContext ctx;
+
+    private final int batchSize;
+
+    @NotNull private final List<ResourceObjectFound> objectsFound = new ArrayList<>();
+
+    @NotNull private final ShadowsLocalBeans b = ShadowsLocalBeans.get();
+
+    /** Records changes of the shadows prefetched by the last {@link #drain(OperationResult)}, until {@link #release()}. */
+    private PrefetchedShadowTracker.Watch watch;
+
+    ShadowAcquisitionBatch(@NotNull ProvisioningContext ctx, int batchSize) {
+        this.ctx = ctx;
+        this.batchSize = batchSize;
+    }
+
+    /** Adds the object to the batch. Returns true if the batch is full, and should be processed now. */
+    boolean add(@NotNull ResourceObjectFound objectFound) {
+        objectsFound.add(objectFound);
+        return objectsFound.size() >= batchSize;
+    }
+
+    boolean isEmpty() {
+        return objectsFound.isEmpty();
+    }
+
+    /**
+     * Looks up live shadows for all objects in the batch and returns the objects ready for the shadowing, in the original
+     * order. The batch is empty afterwards. The objects must be processed before {@link #release()} is called.
+     */
+    @NotNull List<ShadowedObjectFound> drain(@NotNull OperationResult parentResult) {
+        List<ResourceObjectFound> objects = new ArrayList<>(objectsFound);
+        objectsFound.clear();
+
+        release();
+        // Opened before the lookup, so that no change after the lookup is missed.
+        PrefetchedShadowTracker.Watch currentWatch = b.prefetchedShadowTracker.openWatch();
+        watch = currentWatch;
+
+        OperationResult result = parentResult.subresult(OP_LOOKUP_LIVE_SHADOWS)
+                .setMinor()
+                .addParam("batchSize", objects.size())
+                .build();
+        try {
+            Map<ResourceObjectFound, ShadowType> prefetched = lookupLiveShadows(objects, result);
+            result.addReturn("shadowsFound", prefetched.size());
+
+            List<ShadowedObjectFound> shadowedObjects = new ArrayList<>(objects.size());
+            for (ResourceObjectFound object : objects) {
+                shadowedObjects.add(new ShadowedObjectFound(object, ctx, prefetched.get(object), currentWatch));
+            }
+            return shadowedObjects;
+        } catch (Throwable t) {
+            result.recordException(t);
+            throw t;
+        } finally {
+            result.close();
+        }
+    }
+
+    /** Stops recording the changes of the shadows prefetched by the last {@link #drain(OperationResult)}. */
+    void release() {
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+    }
+
+    private @NotNull Map<ResourceObjectFound, ShadowType> lookupLiveShadows(
+            @NotNull List<ResourceObjectFound> objects, @NotNull OperationResult result) {
+
+        // object class -> primary identifier value -> objects (normally there is only one object for given value)
+        Map<QName, Map<String, List<ResourceObjectFound>>> objectsByClassAndValue = new HashMap<>();
+        for (ResourceObjectFound object : objects) {
+            ShadowType bean = object.getBean();
+            QName objectClass = bean.getObjectClass();
+            String primaryIdentifierValue = determinePrimaryIdentifierValueSafely(bean);
+            if (objectClass != null && primaryIdentifierValue != null) {
+                objectsByClassAndValue
+                        .computeIfAbsent(objectClass, k -> new HashMap<>())
+                        .computeIfAbsent(primaryIdentifierValue, k -> new ArrayList<>())
+                        .add(object);
+            }
+        }
+
+        Map<ResourceObjectFound, ShadowType> prefetched = new IdentityHashMap<>();
+        for (var classEntry : objectsByClassAndValue.entrySet()) {
+            Map<String, List<ResourceObjectFound>> objectsByValue = classEntry.getValue();
+            Map<String, ShadowType> liveShadows;
+            try {
+                liveShadows = b.shadowFinder.lookupLiveShadowsByIndexedPrimaryIdValues(
+                        ctx, classEntry.getKey(), objectsByValue.keySet(), result);
+            } catch (SchemaException | RuntimeException e) {
+                // Each object will look up its shadow individually, reporting the error if it persists.
+                // So this is not a problem of the search, and it should not be visible in its result.
+                LOGGER.debug("Couldn't look up live shadows for a batch of {} objects of {}, falling back to individual"
+                        + " lookups: {}", objectsByValue.size(), classEntry.getKey(), e.getMessage(), e);
+                result.muteAllSubresultErrors();
+                continue;
+            }
+            for (var valueEntry : objectsByValue.entrySet()) {
+                ShadowType liveShadow = liveShadows.get(valueEntry.getKey());
+                List<ResourceObjectFound> objectsForValue = valueEntry.getValue();
+                // The same object returned twice by the resource (strange but possible) is acquired individually,
+                // so that the instances do not share the same shadow object.
+                if (liveShadow != null && objectsForValue.size() == 1) {
+                    prefetched.put(objectsForValue.get(0), liveShadow);
+                }
+            }
+        }
+        return prefetched;
+    }
+
+    /** Problems are reported later, when the object is processed individually. */
+    private String determinePrimaryIdentifierValueSafely(ShadowType resourceObject) {
+        try {
+            return determinePrimaryIdentifierValue(ctx, resourceObject);
+        } catch (SchemaException | RuntimeException e) {
+            LOGGER.trace("Couldn't determine primary identifier value for {}, it will not be prefetched",
+                    resourceObject, e);
+            return null;
+        }
+    }
+}
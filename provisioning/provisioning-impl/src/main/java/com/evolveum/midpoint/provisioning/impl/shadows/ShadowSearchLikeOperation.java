@@ -25,6 +25,7 @@ import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectFou
 import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectHandler;
 import com.evolveum.midpoint.provisioning.util.DefinitionsUtil;
 import com.evolveum.midpoint.provisioning.util.ProvisioningUtil;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.*;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
@@ -45,6 +46,9 @@ class ShadowSearchLikeOperation {
 
     private static final Trace LOGGER = TraceManager.getTrace(ShadowSearchLikeOperation.class);
 
+    /** How many objects found on the resource are processed together, see {@link ShadowAcquisitionBatch}. */
+    private static final int SHADOW_ACQUISITION_BATCH_SIZE = 100;
+
     @NotNull private final ProvisioningContext ctx;
     @Nullable private final ObjectQuery query;
 
@@ -149,14 +153,16 @@ class ShadowSearchLikeOperation {
         // We need to record the fetch down here. Now it is certain that we are going to fetch from resource.
         InternalMonitor.recordCount(InternalCounters.SHADOW_FETCH_OPERATION_COUNT);
 
+        // Objects found are processed in batches, so that their repo shadows can be looked up by a single query.
+        ShadowAcquisitionBatch batch = new ShadowAcquisitionBatch(ctx, SHADOW_ACQUISITION_BATCH_SIZE);
         ResourceObjectHandler shadowHandler = (ResourceObjectFound objectFound, OperationResult lResult) -> {
-
-            ShadowedObjectFound shadowedObjectFound = new ShadowedObjectFound(objectFound, ctx);
-            shadowedObjectFound.initialize(ctx.getTask(), lResult);
-            ShadowType shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod);
-
             try {
-                return handler.handle(shadowedObject.asPrismObject(), lResult);
+                if (!batch.add(objectFound)) {
+                    return true; // will be processed when the batch is full or when the search is over
+                }
+                // The batch is processed under the result of the object that completed it; the outer result
+                // must not be touched while the search (and its result) is still in progress.
+                return processBatch(batch, handler, ucfErrorReportingMethod, lResult);
             } catch (Throwable t) {
                 lResult.recordException(t);
                 throw t;
@@ -167,14 +173,56 @@ class ShadowSearchLikeOperation {
 
         boolean fetchAssociations = SelectorOptions.hasToIncludePath(ShadowType.F_ASSOCIATION, options, true);
         try {
-            return b.resourceObjectConverter.searchResourceObjects(
+            SearchResultMetadata metadata = b.resourceObjectConverter.searchResourceObjects(
                     ctx, shadowHandler, createOnResourceQuery(), fetchAssociations, ucfErrorReportingMethod, result);
+            if (!batch.isEmpty()) {
+                RepositoryCache.enterLocalCaches(b.cacheConfigurationManager);
+                try {
+                    processBatch(batch, handler, ucfErrorReportingMethod, result);
+                } finally {
+                    RepositoryCache.exitLocalCaches();
+                }
+            }
+            return metadata;
         } catch (TunnelException e) {
             unwrapAndThrowSearchingTunnelException(e);
             throw new AssertionError();
         }
     }
 
+    /**
+     * Acquires repo shadows for the objects in the batch and passes the shadowed objects to the handler.
+     * Each object is processed in its own subresult of the provided result.
+     * Returns false if the handler requested to stop the search; the rest of the batch is skipped in that case.
+     */
+    private boolean processBatch(
+            ShadowAcquisitionBatch batch,
+            ResultHandler<ShadowType> handler,
+            FetchErrorReportingMethodType ucfErrorReportingMethod,
+            OperationResult result) {
+        try {
+            for (ShadowedObjectFound shadowedObjectFound : batch.drain(result)) {
+                OperationResult lResult = result.createMinorSubresult(ShadowsFacade.OP_HANDLE_OBJECT);
+                try {
+                    shadowedObjectFound.initialize(ctx.getTask(), lResult);
+                    ShadowType shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod);
+                    if (!handler.handle(shadowedObject.asPrismObject(), lResult)) {
+                        return false;
+                    }
+                } catch (Throwable t) {
+                    lResult.recordException(t);
+                    throw t;
+                } finally {
+                    lResult.close();
+                    result.summarize();
+                }
+            }
+            return true;
+        } finally {
+            batch.release();
+        }
+    }
+
     private ObjectQuery createOnResourceQuery() throws SchemaException {
         if (query == null) {
             return null;
@@ -68,9 +68,25 @@ public class ShadowedObjectFound extends AbstractShadowedEntity {
      */
     private ShadowType shadowedObject;
 
+    /** Live repo shadow looked up for a batch of found objects, see {@link ShadowAcquisitionBatch}. */
+    @Nullable private final ShadowType prefetchedLiveRepoShadow;
+
+    /** Changes of the shadows since {@link #prefetchedLiveRepoShadow} was looked up. Not null if the shadow is not null. */
+    @Nullable private final PrefetchedShadowTracker.Watch prefetchWatch;
+
     ShadowedObjectFound(@NotNull ResourceObjectFound resourceObjectFound, @NotNull ProvisioningContext globalCtx) {
+        this(resourceObjectFound, globalCtx, null, null);
+    }
+
+    ShadowedObjectFound(
+            @NotNull ResourceObjectFound resourceObjectFound,
+            @NotNull ProvisioningContext globalCtx,
+            @Nullable ShadowType prefetchedLiveRepoShadow,
+            @Nullable PrefetchedShadowTracker.Watch prefetchWatch) {
         super(resourceObjectFound);
         this.resourceObjectFound = resourceObjectFound;
+        this.prefetchedLiveRepoShadow = prefetchedLiveRepoShadow;
+        this.prefetchWatch = prefetchWatch;
     }
 
     @Override
@@ -124,6 +140,20 @@ public class ShadowedObjectFound extends AbstractShadowedEntity {
         acquireAndSetRepoShadowInEmergency(result);
     }
 
+    /** The prefetched shadow is not used if it was modified or deleted since it was looked up. */
+    @Override
+    @Nullable ShadowType getPrefetchedLiveRepoShadow() {
+        if (prefetchedLiveRepoShadow == null) {
+            return null;
+        } else if (prefetchWatch != null && !prefetchWatch.isChanged(prefetchedLiveRepoShadow.getOid())) {
+            return prefetchedLiveRepoShadow;
+        } else {
+            LOGGER.trace("Prefetched shadow {} was changed since it was looked up, it will be looked up again",
+                    prefetchedLiveRepoShadow);
+            return null;
+        }
+    }
+
     @Override
     public void setAcquiredRepoShadowInEmergency(ShadowType repoShadow) {
         this.shadowedObject = repoShadow;
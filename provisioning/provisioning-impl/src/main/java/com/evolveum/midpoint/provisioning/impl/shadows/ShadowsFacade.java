@@ -6,7 +6,12 @@
  */
 package com.evolveum.midpoint.provisioning.impl.shadows;
 
+import static com.evolveum.midpoint.util.MiscUtil.argCheck;
+
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -29,6 +34,8 @@ import com.evolveum.midpoint.schema.processor.ResourceAttribute;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationProvisioningScriptsType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
@@ -47,8 +54,11 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 @Component
 public class ShadowsFacade {
 
+    private static final Trace LOGGER = TraceManager.getTrace(ShadowsFacade.class);
+
     static final String OP_DELAYED_OPERATION = ShadowsFacade.class.getName() + ".delayedOperation";
     static final String OP_HANDLE_OBJECT = ShadowsFacade.class.getName() + ".handleObject";
+    private static final String OP_GET_SHADOW_IN_BULK = ShadowsFacade.class.getName() + ".getShadowInBulk";
 
     @Autowired private DefinitionsHelper definitionsHelper;
     @Autowired private ShadowOperationPropagationHelper propagationHelper;
@@ -74,6 +84,57 @@ public class ShadowsFacade {
         return ShadowGetOperation.execute(oid, repositoryShadow, identifiersOverride, options, context, task, result);
     }
 
+    /**
+     * Gets a set of shadows without contacting the resource. The repository shadows are fetched by a single query,
+     * and then each one is processed just like in {@link #getShadow(String, ShadowType, Collection, Collection,
+     * ProvisioningOperationContext, Task, OperationResult)}.
+     *
+     * Shadows that do not exist, as well as shadows that could not be processed, are not present in the returned map.
+     * The caller is expected to get them individually, in order to get the regular error handling.
+     *
+     * @param options must be either "no fetch" or "raw"; "read only" option is ignored
+     */
+    public @NotNull Map<String, ShadowType> getShadows(
+            @NotNull Collection<String> oids,
+            @Nullable Collection<SelectorOptions<GetOperationOptions>> options,
+            @NotNull ProvisioningOperationContext context,
+            @NotNull Task task,
+            @NotNull OperationResult result)
+            throws SchemaException {
+        GetOperationOptions rootOptions = SelectorOptions.findRootOptions(options);
+        argCheck(GetOperationOptions.isNoFetch(rootOptions) || GetOperationOptions.isRaw(rootOptions),
+                "Only 'no fetch' or 'raw' shadows can be retrieved in bulk");
+
+        Map<String, ShadowType> shadows = new HashMap<>();
+        List<ShadowType> repoShadows = ShadowsLocalBeans.get().shadowFinder
+                .getShadowBeans(oids, GetOperationOptions.disableReadOnly(options), result);
+        for (ShadowType repoShadow : repoShadows) {
+            String oid = repoShadow.getOid();
+            OperationResult shadowResult = result.subresult(OP_GET_SHADOW_IN_BULK)
+                    .setMinor()
+                    .addParam(OperationResult.PARAM_OID, oid)
+                    .build();
+            try {
+                shadows.put(oid,
+                        ShadowGetOperation.execute(oid, repoShadow, null, options, context, task, shadowResult));
+            } catch (CommonException | EncryptionException e) {
+                LOGGER.debug("Couldn't get {} in bulk, leaving it for individual retrieval: {}", repoShadow, e.getMessage());
+                shadowResult.recordFatalError(e);
+            } catch (Throwable t) {
+                shadowResult.recordException(t);
+                throw t;
+            } finally {
+                shadowResult.close();
+            }
+            if (!shadows.containsKey(oid)) {
+                // The shadow will be retrieved individually by the caller, reporting the error (if it persists) there.
+                // So the failed attempt is not kept here, otherwise it would show up in the caller's (e.g. clockwork) result.
+                result.deleteLastSubresultIfError();
+            }
+        }
+        return shadows;
+    }
+
     public String addResourceObject(
             @NotNull ShadowType resourceObjectToAdd,
             OperationProvisioningScriptsType scripts,
@@ -53,6 +53,7 @@ public class ShadowsLocalBeans {
     @Autowired ShadowsFacade shadowsFacade;
     @Autowired ShadowCaretaker shadowCaretaker;
     @Autowired ShadowFinder shadowFinder;
+    @Autowired PrefetchedShadowTracker prefetchedShadowTracker;
     @Autowired OperationResultRecorder operationResultRecorder;
     @Autowired ShadowUpdater shadowUpdater;
     @Autowired ShadowCreator shadowCreator;
@@ -9,12 +9,19 @@ package com.evolveum.midpoint.provisioning.impl.shadows.manager;
 import static com.evolveum.midpoint.provisioning.impl.shadows.ShadowsNormalizationUtil.*;
 import static com.evolveum.midpoint.schema.GetOperationOptions.*;
 import static com.evolveum.midpoint.schema.util.ObjectTypeUtil.asObjectable;
+import static com.evolveum.midpoint.schema.util.ObjectTypeUtil.asObjectables;
 
 import static com.evolveum.midpoint.provisioning.util.ProvisioningUtil.selectLiveShadow;
 import static com.evolveum.midpoint.util.DebugUtil.lazy;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import javax.xml.namespace.QName;
 
 import com.evolveum.midpoint.schema.*;
@@ -24,6 +31,7 @@ import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.google.common.base.Preconditions;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -31,6 +39,7 @@ import org.springframework.stereotype.Component;
 import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.builder.S_FilterEntry;
+import com.evolveum.midpoint.prism.query.builder.S_FilterExit;
 import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
 import com.evolveum.midpoint.provisioning.util.ProvisioningUtil;
 import com.evolveum.midpoint.repo.api.RepositoryService;
@@ -64,6 +73,10 @@ public class ShadowFinder {
     @Autowired @Qualifier("cacheRepositoryService") private RepositoryService repositoryService;
     @Autowired private PrismContext prismContext;
 
+    /** Called with the values before each batch lookup by primary identifier values. It may throw an exception. */
+    @VisibleForTesting
+    private Consumer<Collection<String>> batchLookupHook;
+
     /** Simply gets a repo shadow from the repository. No magic here. */
     public @NotNull PrismObject<ShadowType> getShadow(@NotNull String oid, @NotNull OperationResult result)
             throws ObjectNotFoundException, SchemaException {
@@ -88,6 +101,25 @@ public class ShadowFinder {
                 .asObjectable();
     }
 
+    /**
+     * Gets repo shadows with given OIDs from the repository, using a single query. Shadows that do not exist
+     * are simply not present in the returned list. No magic here.
+     */
+    public @NotNull List<ShadowType> getShadowBeans(
+            @NotNull Collection<String> oids,
+            @Nullable Collection<SelectorOptions<GetOperationOptions>> options,
+            @NotNull OperationResult result)
+            throws SchemaException {
+        if (oids.isEmpty()) {
+            return List.of();
+        }
+        ObjectQuery query = prismContext.queryFor(ShadowType.class)
+                .id(oids.toArray(new String[0]))
+                .build();
+        return asObjectables(
+                repositoryService.searchObjects(ShadowType.class, query, options, result));
+    }
+
     /** Iteratively searches for shadows in the repository. No magic except for handling matching rules. */
     public SearchResultMetadata searchShadowsIterative(
             ProvisioningContext ctx,
@@ -158,6 +190,57 @@ public class ShadowFinder {
         return asObjectable(liveShadow);
     }
 
+    /**
+     * Looks up live shadows by (indexed) primary identifier values, for a batch of resource objects at once.
+     * This avoids executing a repository query for each object found on the resource.
+     *
+     * Only shadows having the `primaryIdentifierValue` set can be found this way. If a shadow for given value is not
+     * returned, the caller should use {@link #lookupLiveShadowByPrimaryId(ProvisioningContext, PrismProperty, QName,
+     * OperationResult)} to be sure.
+     *
+     * @return Live shadows found, indexed by their primary identifier value.
+     */
+    public @NotNull Map<String, ShadowType> lookupLiveShadowsByIndexedPrimaryIdValues(
+            @NotNull ProvisioningContext ctx,
+            @NotNull QName objectClass,
+            @NotNull Collection<String> primaryIdentifierValues,
+            @NotNull OperationResult result)
+            throws SchemaException {
+
+        if (primaryIdentifierValues.isEmpty()) {
+            return Map.of();
+        }
+        Set<String> distinctValues = new LinkedHashSet<>(primaryIdentifierValues);
+        if (batchLookupHook != null) {
+            batchLookupHook.accept(distinctValues);
+        }
+
+        // Multi-value EQ is not supported by all repository implementations, so we use OR of single-value ones.
+        S_FilterEntry valuesEntry = prismContext.queryFor(ShadowType.class).block();
+        S_FilterExit valuesExit = null;
+        for (String value : distinctValues) {
+            valuesExit = (valuesExit != null ? valuesExit.or() : valuesEntry)
+                    .item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).eq(value);
+        }
+        ObjectQuery query = Objects.requireNonNull(valuesExit).endBlock()
+                .and().item(ShadowType.F_OBJECT_CLASS).eq(objectClass)
+                .and().item(ShadowType.F_RESOURCE_REF).ref(ctx.getResourceOid())
+                .build();
+        LOGGER.trace("Searching for shadows by {} primary identifier values using filter:\n{}",
+                distinctValues.size(), query.debugDumpLazily(1));
+
+        Map<String, ShadowType> liveShadows = new HashMap<>();
+        for (PrismObject<ShadowType> shadow : searchRepoShadows(query, zeroStalenessOptions(), result)) { // no caching!
+            if (ShadowUtil.isNotDead(shadow)) {
+                checkConsistency(shadow);
+                liveShadows.put(shadow.asObjectable().getPrimaryIdentifierValue(), shadow.asObjectable());
+            }
+        }
+        LOGGER.trace("Found {} live shadows for {} primary identifier values",
+                liveShadows.size(), distinctValues.size());
+        return liveShadows;
+    }
+
     private @NotNull List<PrismObject<ShadowType>> searchShadowsByPrimaryId(
             ProvisioningContext ctx, ResourceObjectIdentifier.Primary<?> primaryIdentifier, OperationResult result)
             throws SchemaException {
@@ -323,4 +406,9 @@ public class ShadowFinder {
                 updateToDistinct(options),
                 result);
     }
+
+    @VisibleForTesting
+    public void setBatchLookupHook(Consumer<Collection<String>> batchLookupHook) {
+        this.batchLookupHook = batchLookupHook;
+    }
 }
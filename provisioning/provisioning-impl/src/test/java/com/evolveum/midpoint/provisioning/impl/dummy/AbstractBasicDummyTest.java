@@ -21,6 +21,7 @@ import static com.evolveum.midpoint.test.asserter.predicates.TimeAssertionPredic
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -60,7 +61,9 @@ import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.schema.PrismSchema;
 import com.evolveum.midpoint.prism.util.PrismAsserts;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.provisioning.api.ProvisioningOperationContext;
 import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
+import com.evolveum.midpoint.provisioning.impl.shadows.ShadowsFacade;
 import com.evolveum.midpoint.provisioning.ucf.api.AttributesToReturn;
 import com.evolveum.midpoint.provisioning.ucf.api.ConnectorInstance;
 import com.evolveum.midpoint.schema.*;
@@ -1559,6 +1562,61 @@ public class AbstractBasicDummyTest extends AbstractDummyTest {
         assertSteadyResource();
     }
 
+    /**
+     * Gets the shadows in bulk, without contacting the resource. Non-existent shadows, as well as shadows that cannot
+     * be processed (here, because of a non-existent resource), are simply skipped, leaving no error in the result.
+     */
+    @Test
+    public void test104GetAccountsNoFetchInBulk() throws Exception {
+        // GIVEN
+        Task task = getTestTask();
+        OperationResult result = createOperationResult();
+        rememberCounter(InternalCounters.SHADOW_FETCH_OPERATION_COUNT);
+
+        String nonExistentOid = "c0c010c0-d34d-b33f-f00d-ffffffff0104";
+        ShadowType brokenShadow = new ShadowType()
+                .name("broken-104")
+                .resourceRef("c0c010c0-d34d-b33f-f00d-ffffffff0105", ResourceType.COMPLEX_TYPE)
+                .objectClass(RI_ACCOUNT_OBJECT_CLASS)
+                .kind(ShadowKindType.ACCOUNT)
+                .intent(SchemaConstants.INTENT_DEFAULT);
+        String brokenOid = repositoryService.addObject(brokenShadow.asPrismObject(), null, result);
+
+        XMLGregorianCalendar startTs = clock.currentTimeXMLGregorianCalendar();
+
+        // WHEN
+        Map<String, PrismObject<ShadowType>> shadows;
+        try {
+            shadows = provisioningService.getShadowsNoFetch(
+                    Set.of(ACCOUNT_WILL_OID, nonExistentOid, brokenOid),
+                    GetOperationOptions.createNoFetchCollection(),
+                    new ProvisioningOperationContext(),
+                    task, result);
+        } finally {
+            repositoryService.deleteObject(ShadowType.class, brokenOid, createOperationResult());
+        }
+
+        // THEN
+        display("getShadowsNoFetch result", result);
+        assertSuccess(result);
+        assertEquals("Unexpected subresults for failed bulk gets",
+                List.of(), result.findSubresultsDeeply(ShadowsFacade.class.getName() + ".getShadowInBulk").stream()
+                        .filter(r -> !r.isSuccess())
+                        .toList());
+        assertCounterIncrement(InternalCounters.SHADOW_FETCH_OPERATION_COUNT, 0);
+
+        assertEquals("Wrong shadows retrieved", Set.of(ACCOUNT_WILL_OID), shadows.keySet());
+        PrismObject<ShadowType> shadow = shadows.get(ACCOUNT_WILL_OID);
+        display("Retrieved account shadow", shadow);
+
+        checkAccountShadow(shadow, result, false);
+        checkRepoAccountShadowWill(shadow, null, startTs);
+
+        checkUniqueness(shadow);
+
+        assertSteadyResource();
+    }
+
     @Test
     public void test105ApplyDefinitionModifyDelta() throws Exception {
         // GIVEN
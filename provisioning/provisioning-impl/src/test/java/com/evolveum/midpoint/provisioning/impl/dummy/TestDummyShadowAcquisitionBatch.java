@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.impl.dummy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.schema.constants.SchemaConstants.RI_ACCOUNT_OBJECT_CLASS;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.DummyAccount;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
+import com.evolveum.midpoint.provisioning.impl.shadows.manager.ShadowFinder;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.IntegrationTestTools;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Tests the acquisition of repo shadows for objects found by a search on the resource, done in batches
+ * (see `ShadowAcquisitionBatch`): the shadows are looked up by one repository query per batch, existing shadows
+ * are reused (no duplicates are created), and the objects fall back to individual lookups if the batch lookup fails
+ * or if the prefetched shadow is changed before it is used.
+ */
+@ContextConfiguration(locations = "classpath:ctx-provisioning-test-main.xml")
+@DirtiesContext
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class TestDummyShadowAcquisitionBatch extends AbstractDummyTest {
+
+    /** See `ShadowSearchLikeOperation.SHADOW_ACQUISITION_BATCH_SIZE`. */
+    private static final int BATCH_SIZE = 100;
+
+    private static final int ACCOUNTS = 150;
+
+    @Autowired private ShadowFinder shadowFinder;
+
+    /** Sizes of batch lookups executed, as seen by {@link ShadowFinder}. */
+    private final List<Integer> batchLookups = Collections.synchronizedList(new ArrayList<>());
+
+    /** OIDs of shadows of all accounts, by name. */
+    private Map<String, String> shadowOids;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            dummyResource.addAccount(new DummyAccount(accountName(i)));
+        }
+        shadowFinder.setBatchLookupHook(values -> batchLookups.add(values.size()));
+    }
+
+    @AfterMethod
+    public void resetBatchLookups() {
+        batchLookups.clear();
+        shadowFinder.setBatchLookupHook(values -> batchLookups.add(values.size()));
+    }
+
+    @Test
+    public void test000TestResource() throws Exception {
+        Task task = getTestTask();
+
+        when();
+        OperationResult testResult = provisioningService.testResource(RESOURCE_DUMMY_OID, task, task.getResult());
+
+        then();
+        assertSuccess(testResult);
+    }
+
+    @Test
+    public void test100FirstSearchCreatesShadows() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when("accounts are searched for the first time");
+        List<PrismObject<ShadowType>> found = searchAllAccounts(task, result);
+
+        then("shadows are created for all of them, using one lookup per batch");
+        assertSuccess(result);
+        int total = ACCOUNTS + 1; // daemon
+        assertThat(found).hasSize(total);
+        assertThat(batchLookups).containsExactly(BATCH_SIZE, total - BATCH_SIZE);
+        assertThat(countRepoAccountShadows(result)).isEqualTo(total);
+        shadowOids = toOidMap(found);
+        assertThat(new HashSet<>(shadowOids.values())).hasSize(total);
+    }
+
+    @Test
+    public void test110SecondSearchReusesShadows() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when("accounts are searched again");
+        List<PrismObject<ShadowType>> found = searchAllAccounts(task, result);
+
+        then("the existing shadows are returned, no new ones are created");
+        assertSuccess(result);
+        assertThat(batchLookups).containsExactly(BATCH_SIZE, ACCOUNTS + 1 - BATCH_SIZE);
+        assertThat(toOidMap(found)).isEqualTo(shadowOids);
+        assertThat(countRepoAccountShadows(result)).isEqualTo(ACCOUNTS + 1);
+    }
+
+    @Test
+    public void test120NewAndExistingAccountsInOneBatch() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("some new accounts on the resource");
+        int newAccounts = 10;
+        for (int i = ACCOUNTS; i < ACCOUNTS + newAccounts; i++) {
+            dummyResource.addAccount(new DummyAccount(accountName(i)));
+        }
+
+        when("accounts are searched");
+        List<PrismObject<ShadowType>> found = searchAllAccounts(task, result);
+
+        then("new shadows are created only for the new accounts");
+        assertSuccess(result);
+        int total = ACCOUNTS + newAccounts + 1;
+        assertThat(found).hasSize(total);
+        Map<String, String> oids = toOidMap(found);
+        assertThat(oids).containsAllEntriesOf(shadowOids);
+        assertThat(new HashSet<>(oids.values())).hasSize(total);
+        assertThat(countRepoAccountShadows(result)).isEqualTo(total);
+        shadowOids = oids;
+    }
+
+    @Test
+    public void test130LookupWithDuplicateAndUnknownValues() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        ProvisioningContext ctx = provisioningContextFactory.createForShadow(
+                getShadowRepo(shadowOids.get(accountName(0))), task, result);
+
+        when("shadows are looked up by values with duplicates and unknown values");
+        Map<String, ShadowType> shadows = shadowFinder.lookupLiveShadowsByIndexedPrimaryIdValues(
+                ctx, RI_ACCOUNT_OBJECT_CLASS,
+                List.of(accountName(0), accountName(1), accountName(0), "no-such-account"),
+                result);
+
+        then("each existing shadow is returned once");
+        assertSuccess(result);
+        assertThat(shadows).hasSize(2);
+        assertThat(shadows.get(accountName(0)).getOid()).isEqualTo(shadowOids.get(accountName(0)));
+        assertThat(shadows.get(accountName(1)).getOid()).isEqualTo(shadowOids.get(accountName(1)));
+        assertThat(batchLookups).containsExactly(3);
+    }
+
+    @Test
+    public void test200FallbackWhenBatchLookupFails() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("batch lookups fail");
+        shadowFinder.setBatchLookupHook(values -> {
+            batchLookups.add(values.size());
+            throw new IllegalStateException("Simulated batch lookup failure");
+        });
+
+        when("accounts are searched");
+        List<PrismObject<ShadowType>> found = searchAllAccounts(task, result);
+
+        then("the shadows are looked up individually, the failure is not visible in the result");
+        assertSuccess(result);
+        assertThat(batchLookups).hasSize(2);
+        assertThat(toOidMap(found)).isEqualTo(shadowOids);
+        assertThat(countRepoAccountShadows(result)).isEqualTo(shadowOids.size());
+        for (PrismObject<ShadowType> shadow : found) {
+            assertThat(shadow.asObjectable().getFetchResult())
+                    .as("fetch result in " + shadow)
+                    .isNull();
+        }
+    }
+
+    /**
+     * The objects in a batch are processed after the whole batch is looked up. Here the handler of the first object
+     * deletes the shadow of another object from the same batch, and marks the shadow of yet another one as dead.
+     * The prefetched shadows must not be used for these objects; new shadows must be created instead.
+     */
+    @Test
+    public void test300PrefetchedShadowsChangedBeforeUse() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("the values of the first batch lookup are recorded");
+        List<String> firstBatchValues = Collections.synchronizedList(new ArrayList<>());
+        shadowFinder.setBatchLookupHook(values -> {
+            if (batchLookups.isEmpty()) {
+                firstBatchValues.addAll(values);
+            }
+            batchLookups.add(values.size());
+        });
+
+        when("accounts are searched, and the first handler deletes and kills shadows of two objects from the same batch");
+        Map<String, String> oidsFound = new HashMap<>();
+        List<String> changedNames = new ArrayList<>();
+        ResultHandler<ShadowType> handler = (shadow, lResult) -> {
+            String name = shadow.getName().getOrig();
+            if (oidsFound.isEmpty()) {
+                firstBatchValues.stream()
+                        .filter(value -> !value.equals(name) && shadowOids.containsKey(value))
+                        .limit(2)
+                        .forEach(changedNames::add);
+                deleteAndKillShadows(changedNames, lResult);
+            }
+            oidsFound.put(name, shadow.getOid());
+            return true;
+        };
+        provisioningService.searchObjectsIterative(ShadowType.class, createAllAccountsQuery(), null, handler, task, result);
+
+        then("new shadows are created for the objects whose shadows were deleted or killed, the others are reused");
+        assertSuccess(result);
+        assertThat(changedNames).as("names of changed shadows").hasSize(2);
+        assertThat(oidsFound).hasSameSizeAs(shadowOids);
+        for (var entry : shadowOids.entrySet()) {
+            String name = entry.getKey();
+            if (changedNames.contains(name)) {
+                assertThat(oidsFound.get(name)).as("shadow OID for " + name).isNotNull().isNotEqualTo(entry.getValue());
+            } else {
+                assertThat(oidsFound.get(name)).as("shadow OID for " + name).isEqualTo(entry.getValue());
+            }
+        }
+        assertThat(new HashSet<>(oidsFound.values())).hasSize(shadowOids.size());
+        // The dead shadow remains in the repository.
+        assertThat(countRepoAccountShadows(result)).isEqualTo(shadowOids.size() + 1);
+        shadowOids = oidsFound;
+    }
+
+    /** Deletes the shadow for the first name, and marks the shadow for the second one as dead. */
+    private void deleteAndKillShadows(List<String> names, OperationResult result) {
+        try {
+            repositoryService.deleteObject(ShadowType.class, shadowOids.get(names.get(0)), result);
+            repositoryService.modifyObject(
+                    ShadowType.class,
+                    shadowOids.get(names.get(1)),
+                    prismContext.deltaFor(ShadowType.class)
+                            .item(ShadowType.F_DEAD).replace(true)
+                            .item(ShadowType.F_EXISTS).replace(false)
+                            .item(ShadowType.F_PRIMARY_IDENTIFIER_VALUE).replace()
+                            .asItemDeltas(),
+                    result);
+        } catch (Exception e) {
+            throw new AssertionError("Couldn't change the shadows of " + names, e);
+        }
+    }
+
+    private List<PrismObject<ShadowType>> searchAllAccounts(Task task, OperationResult result) throws Exception {
+        return provisioningService.searchObjects(
+                ShadowType.class, createAllAccountsQuery(), null, task, result);
+    }
+
+    private int countRepoAccountShadows(OperationResult result) throws Exception {
+        return repositoryService.countObjects(ShadowType.class, createAllAccountsQuery(), null, result);
+    }
+
+    private ObjectQuery createAllAccountsQuery() {
+        return IntegrationTestTools.createAllShadowsQuery(resourceBean, RI_ACCOUNT_OBJECT_CLASS, prismContext);
+    }
+
+    private Map<String, String> toOidMap(List<PrismObject<ShadowType>> shadows) {
+        return shadows.stream()
+                .collect(Collectors.toMap(s -> s.getName().getOrig(), PrismObject::getOid));
+    }
+
+    private String accountName(int i) {
+        return String.format("batch-%03d", i);
+    }
+}
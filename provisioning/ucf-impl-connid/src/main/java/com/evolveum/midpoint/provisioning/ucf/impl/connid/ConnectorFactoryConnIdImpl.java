@@ -105,6 +105,11 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
             CONNECTOR_SCHEMA_LEGACY_SCHEMA_XML_ELEMENT_NAME);
     public static final QName CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE = DOMUtil.XSD_BOOLEAN;
 
+    public static final String CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_XML_ELEMENT_NAME = "readAheadBufferSize";
+    public static final QName CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
+            CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_XML_ELEMENT_NAME);
+    public static final QName CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_TYPE = DOMUtil.XSD_INT;
+
     public static final String CONNECTOR_SCHEMA_TIMEOUTS_XML_ELEMENT_NAME = "timeouts";
     public static final QName CONNECTOR_SCHEMA_TIMEOUTS_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
             CONNECTOR_SCHEMA_TIMEOUTS_XML_ELEMENT_NAME);
@@ -449,6 +454,9 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
         configurationContainerDef.createPropertyDefinition(
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_LEGACY_SCHEMA_ELEMENT,
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE, 0, 1);
+        configurationContainerDef.createPropertyDefinition(
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_ELEMENT,
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_TYPE, 0, 1);
 
         // No need to create definition of "configuration" element.
         // midPoint will look for this element, but it will be generated as part
@@ -129,6 +129,9 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
     private CapabilityCollectionType capabilities = null;
     private Boolean legacySchema = null;
 
+    /** Size of the buffer for read-ahead search; zero means no read-ahead. See {@link SearchExecutor}. */
+    private int readAheadBufferSize;
+
     private String description;
     private String instanceName; // resource name
     private boolean caseIgnoreAttributeNames = false;
@@ -228,6 +231,14 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
             }
             LOGGER.trace("Legacy schema (config): {}", legacySchema);
 
+            PrismProperty<Integer> readAheadBufferSizeProperty = configurationCloned.findProperty(new ItemName(
+                    SchemaConstants.NS_ICF_CONFIGURATION,
+                    ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_XML_ELEMENT_NAME));
+            Integer readAheadBufferSizeValue =
+                    readAheadBufferSizeProperty != null ? readAheadBufferSizeProperty.getRealValue(Integer.class) : null;
+            readAheadBufferSize = readAheadBufferSizeValue != null ? Math.max(readAheadBufferSizeValue, 0) : 0;
+            LOGGER.trace("Read-ahead buffer size (config): {}", readAheadBufferSize);
+
         } catch (Throwable ex) {
             Throwable midpointEx = processConnIdException(ex, this, result);
             result.computeStatus("Configuration operation failed");
@@ -2224,6 +2235,10 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance {
         return Boolean.TRUE.equals(legacySchema);
     }
 
+    int getReadAheadBufferSize() {
+        return readAheadBufferSize;
+    }
+
     ResourceSchema getRawResourceSchema() {
         return rawResourceSchema;
     }
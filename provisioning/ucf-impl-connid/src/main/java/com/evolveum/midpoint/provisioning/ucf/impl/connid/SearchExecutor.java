@@ -10,7 +10,9 @@ package com.evolveum.midpoint.provisioning.ucf.impl.connid;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnIdUtil.processConnIdException;
 import static com.evolveum.midpoint.provisioning.ucf.impl.connid.ConnectorInstanceConnIdImpl.toShadowDefinition;
 
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.xml.namespace.QName;
 
 import com.evolveum.midpoint.schema.reporting.ConnIdOperation;
@@ -48,11 +50,21 @@ import com.evolveum.prism.xml.ns._public.query_3.OrderDirectionType;
 
 /**
  * Executes `search` operation. (Offloads {@link ConnectorInstanceConnIdImpl} from this task.)
+ *
+ * Normally, the objects are converted and passed to the {@link #handler} right in the connector callback, so the connector
+ * waits until midPoint processes the object before fetching the next one. If `readAheadBufferSize` is configured
+ * for the connector, the search is executed by {@link ReadAheadSearch} instead.
  */
 class SearchExecutor {
 
     private static final Trace LOGGER = TraceManager.getTrace(SearchExecutor.class);
 
+    /** How often does the connector thread check if the search was stopped while waiting for free space in the buffer. */
+    private static final long READ_AHEAD_STOP_CHECK_INTERVAL = 100L;
+
+    /** For naming the threads that execute ConnId search operations in the read-ahead mode. */
+    private static final AtomicInteger READ_AHEAD_THREAD_COUNTER = new AtomicInteger();
+
     @NotNull private final ResourceObjectDefinition resourceObjectDefinition;
     @NotNull private final PrismObjectDefinition<ShadowType> prismObjectDefinition;
     @NotNull private final ObjectClass icfObjectClass;
@@ -68,7 +80,7 @@ class SearchExecutor {
 
     /**
      * Increases on each object fetched. Used for simulated paging and overall result construction.
-     * We can assume we work in a single thread, but let's play it safe.
+     * Updated by the thread executing the connector callback, which is a different thread in the read-ahead mode.
      */
     private final AtomicInteger objectsFetched = new AtomicInteger(0);
 
@@ -228,12 +240,18 @@ class SearchExecutor {
 
         try {
             LOGGER.trace("Executing ConnId search operation: {}", operation);
-            connIdSearchResult = connectorInstance.getConnIdConnectorFacade()
-                    .search(
-                            icfObjectClass,
-                            connIdFilter,
-                            new SearchResultsHandler(operation, result),
-                            connIdOptions);
+            int readAheadBufferSize = connectorInstance.getReadAheadBufferSize();
+            if (readAheadBufferSize > 0) {
+                connIdSearchResult = new ReadAheadSearch(readAheadBufferSize, operation, result)
+                        .execute(connIdOptions);
+            } else {
+                connIdSearchResult = connectorInstance.getConnIdConnectorFacade()
+                        .search(
+                                icfObjectClass,
+                                connIdFilter,
+                                new SearchResultsHandler(operation, result),
+                                connIdOptions);
+            }
             recordIcfOperationEnd(operation, null);
 
             result.recordSuccess();
@@ -282,6 +300,9 @@ class SearchExecutor {
     }
 
     private void recordIcfOperationEnd(ConnIdOperation operation, Throwable ex) {
+        if (operation != null) {
+            operation.setSize(objectsFetched.get());
+        }
         connectorInstance.recordIcfOperationEnd(reporter, operation, ex);
     }
 
@@ -323,6 +344,36 @@ class SearchExecutor {
         return pagedSearchConfiguration == null;
     }
 
+    /**
+     * Applies simulated paging (if needed) to the object with given number.
+     *
+     * @return `null` if the object should be processed, or the value to be returned to the connector otherwise
+     * (`true` = skip the object, `false` = stop the search).
+     */
+    private @Nullable Boolean applySimulatedPaging(int number) {
+        if (isNoConnectorPaging() && query != null && query.getPaging() != null) {
+            int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
+            Integer maxSize = query.getPaging().getMaxSize();
+            if (number < offset) {
+                return true;
+            }
+            if (maxSize != null && number >= offset + maxSize) {
+                return false;
+            }
+        }
+        return null;
+    }
+
+    /** Converts the object and passes it to the {@link #handler}. Returns `false` if the search should stop. */
+    private boolean convertAndHandle(@NotNull ConnectorObject connectorObject, OperationResult result)
+            throws SchemaException {
+        UcfObjectFound ucfObject = connectorInstance.connIdConvertor.convertToUcfObject(
+                connectorObject, prismObjectDefinition, false, connectorInstance.isCaseIgnoreAttributeNames(),
+                connectorInstance.isLegacySchema(), errorReportingMethod, result);
+
+        return handler.handle(ucfObject, result);
+    }
+
     private class SearchResultsHandler implements ResultsHandler {
 
         @NotNull private final ConnIdOperation operation;
@@ -340,24 +391,12 @@ class SearchExecutor {
             recordIcfOperationSuspend(operation);
             try {
                 int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
-                if (isNoConnectorPaging()) {
-                    if (query != null && query.getPaging() != null) {
-                        int offset = MoreObjects.firstNonNull(query.getPaging().getOffset(), 0);
-                        Integer maxSize = query.getPaging().getMaxSize();
-                        if (number < offset) {
-                            return true;
-                        }
-                        if (maxSize != null && number >= offset + maxSize) {
-                            return false;
-                        }
-                    }
+                Boolean pagingDecision = applySimulatedPaging(number);
+                if (pagingDecision != null) {
+                    return pagingDecision;
                 }
 
-                UcfObjectFound ucfObject = connectorInstance.connIdConvertor.convertToUcfObject(
-                        connectorObject, prismObjectDefinition, false, connectorInstance.isCaseIgnoreAttributeNames(),
-                        connectorInstance.isLegacySchema(), errorReportingMethod, result);
-
-                return handler.handle(ucfObject, result);
+                return convertAndHandle(connectorObject, result);
 
             } catch (SchemaException e) {
                 throw new IntermediateException(e);
@@ -371,4 +410,219 @@ class SearchExecutor {
             return "(midPoint searching result handler)";
         }
     }
+
+    /**
+     * Search in the "read-ahead" mode: the ConnId search runs in a separate thread, and its callback only puts the objects
+     * into a bounded buffer. The calling thread takes the objects from the buffer, converts them, and passes them
+     * to the {@link #handler}, one after another, in the order in which the connector returned them. So, the connector can
+     * fetch further objects (e.g. read the next page) while midPoint processes the current one.
+     *
+     * The operation result, the execution context (with its ConnId operation statistics), and the handler are used
+     * by the calling thread only, just as in the regular mode. Parallel processing of the objects, if desired, is the business
+     * of the handler (e.g. a multi-threaded task).
+     *
+     * The ConnId operation is "suspended" while midPoint processes an object, so its net running time contains the time
+     * midPoint waited for the connector.
+     *
+     * Each search has its own reader thread, which is always joined before the search returns. So no threads are left
+     * behind when the connector instance or the whole connector factory is disposed, and searches executed from within
+     * the handler (nested ones) do not compete for a shared pool.
+     */
+    private class ReadAheadSearch {
+
+        /** Marks the end of the search in the {@link #buffer}. The result (or exception) is taken from the reader future. */
+        private static final Fetched END = new Fetched(null);
+
+        private final int bufferSize;
+        private final ConnIdOperation operation;
+        private final OperationResult result;
+
+        @NotNull private final BlockingQueue<Fetched> buffer;
+
+        /** Set when the processing is over (finished, stopped by the handler, or failed); the connector should stop then. */
+        private volatile boolean stopped;
+
+        private final AtomicLong producerStallNanos = new AtomicLong();
+
+        // The following are accessed by the calling thread only.
+        private long consumerStallNanos;
+        private int maxOccupancy;
+        private long occupancySum;
+        private int objectsTaken;
+
+        ReadAheadSearch(int bufferSize, ConnIdOperation operation, OperationResult result) {
+            this.bufferSize = bufferSize;
+            this.operation = operation;
+            this.result = result;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        SearchResult execute(OperationOptions connIdOptions) {
+            ConnectorFacade connIdConnectorFacade = connectorInstance.getConnIdConnectorFacade();
+            FutureTask<SearchResult> reader = new FutureTask<>(() -> {
+                try {
+                    return connIdConnectorFacade.search(icfObjectClass, connIdFilter, this::put, connIdOptions);
+                } finally {
+                    enqueue(END);
+                }
+            });
+            Thread readerThread = new Thread(reader, "connid-read-ahead-" + READ_AHEAD_THREAD_COUNTER.incrementAndGet());
+            readerThread.setDaemon(true);
+            readerThread.start();
+            boolean finished = false;
+            try {
+                for (;;) {
+                    Fetched fetched = take();
+                    if (fetched == END || !process(fetched.object())) {
+                        break;
+                    }
+                }
+                finished = true;
+            } finally {
+                stopped = true;
+                joinReader(readerThread);
+                if (!finished) {
+                    // The exception from the processing takes precedence, the one from the connector is only logged.
+                    logIgnoredReaderFailure(reader);
+                }
+                recordStatistics();
+            }
+            return getReaderResult(reader);
+        }
+
+        /**
+         * Waits until the reader thread finishes. It stops soon after {@link #stopped} is set, at the latest when the connector
+         * gives it the next object. If we are interrupted while waiting, the reader is interrupted as well, and we still wait.
+         */
+        private void joinReader(Thread readerThread) {
+            boolean interrupted = false;
+            for (;;) {
+                try {
+                    readerThread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    readerThread.interrupt();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** The connector callback (executed in the reader thread). */
+        private boolean put(ConnectorObject connectorObject) {
+            Validate.notNull(connectorObject, "null connector object"); // todo apply error reporting method?
+            if (stopped) {
+                return false;
+            }
+            int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
+            Boolean pagingDecision = applySimulatedPaging(number);
+            if (pagingDecision != null) {
+                return pagingDecision;
+            }
+            return enqueue(new Fetched(connectorObject)) && !stopped;
+        }
+
+        /** Returns `false` if the search was stopped in the meanwhile. */
+        private boolean enqueue(Fetched fetched) {
+            if (buffer.offer(fetched)) {
+                return true;
+            }
+            long start = System.nanoTime();
+            try {
+                while (!buffer.offer(fetched, READ_AHEAD_STOP_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                producerStallNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        private @NotNull Fetched take() {
+            int occupancy = buffer.size();
+            maxOccupancy = Math.max(maxOccupancy, occupancy);
+            occupancySum += occupancy;
+            objectsTaken++;
+
+            Fetched fetched = buffer.poll();
+            if (fetched != null) {
+                return fetched;
+            }
+            long start = System.nanoTime();
+            try {
+                return buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SystemException("Interrupted while waiting for objects from the connector", e);
+            } finally {
+                consumerStallNanos += System.nanoTime() - start;
+            }
+        }
+
+        private boolean process(@NotNull ConnectorObject connectorObject) {
+            recordIcfOperationSuspend(operation);
+            try {
+                return convertAndHandle(connectorObject, result);
+            } catch (SchemaException e) {
+                throw new IntermediateException(e);
+            } finally {
+                recordIcfOperationResume(operation);
+            }
+        }
+
+        /** The reader must be already finished. */
+        private SearchResult getReaderResult(Future<SearchResult> reader) {
+            try {
+                return reader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SystemException("Interrupted while getting the result of the connector search", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException; // will be processed as any other ConnId exception
+                } else if (cause instanceof Error error) {
+                    throw error;
+                } else {
+                    throw new SystemException("Unexpected exception from the connector: " + cause.getMessage(), cause);
+                }
+            }
+        }
+
+        /** The reader must be already finished. */
+        private void logIgnoredReaderFailure(Future<SearchResult> reader) {
+            try {
+                reader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.debug("The connector search failed after the processing was stopped: {}", e.getCause().getMessage(),
+                        e.getCause());
+            }
+        }
+
+        private void recordStatistics() {
+            var statistics = new ConnIdOperation.ReadAheadStatistics(
+                    bufferSize,
+                    maxOccupancy,
+                    objectsTaken > 0 ? (double) occupancySum / objectsTaken : 0,
+                    TimeUnit.NANOSECONDS.toMillis(producerStallNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(consumerStallNanos));
+            LOGGER.debug("Read-ahead search of {} finished: {}", icfObjectClass, statistics);
+            if (operation != null) {
+                operation.setReadAheadStatistics(statistics);
+            }
+        }
+    }
+
+    /** An object fetched by the connector; `null` for the {@link ReadAheadSearch#END} marker. */
+    private record Fetched(ConnectorObject object) {
+    }
 }
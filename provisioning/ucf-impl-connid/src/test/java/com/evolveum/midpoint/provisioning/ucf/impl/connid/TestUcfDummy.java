@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Set;
 import javax.xml.namespace.QName;
 
+import org.jetbrains.annotations.NotNull;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
@@ -37,15 +38,18 @@ import com.evolveum.midpoint.provisioning.ucf.api.*;
 import com.evolveum.midpoint.schema.SchemaConstantsGenerated;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.processor.*;
+import com.evolveum.midpoint.schema.reporting.ConnIdOperation;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.statistics.ConnectorOperationalStatus;
 import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
 import com.evolveum.midpoint.schema.util.ResourceTypeUtil;
 import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.task.api.test.NullTaskImpl;
 import com.evolveum.midpoint.test.DummyResourceContoller;
 import com.evolveum.midpoint.test.IntegrationTestTools;
 import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.util.DOMUtil;
+import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 
@@ -364,6 +368,109 @@ public class TestUcfDummy extends AbstractUcfDummyTest {
         assertEquals("Unexpected number of search results", 1, searchResults.size());
     }
 
+    /**
+     * Search in the read-ahead mode, with the buffer smaller than the number of objects.
+     * The objects must come in the same order as in the regular mode; and stopping the search must work.
+     */
+    @Test
+    public void test055SearchWithReadAhead() throws Exception {
+        given("more accounts exist");
+        OperationResult result = createOperationResult();
+        UcfExecutionContext ctx = createExecutionContext();
+        for (int i = 0; i < 20; i++) {
+            dummyResource.addAccount(new DummyAccount("read-ahead-" + i));
+        }
+
+        and("a connector with small read-ahead buffer is configured");
+        ConnectorInstance readAheadConnector = connectorFactory.createConnectorInstance(
+                connectorType, "dummy", "dummy test connector instance with read-ahead");
+        try {
+            //noinspection unchecked
+            PrismContainerValue<ConnectorConfigurationType> configContainer =
+                    resourceType.getConnectorConfiguration().asPrismContainerValue().clone();
+            PrismProperty<Integer> bufferSizeProperty = prismContext.itemFactory()
+                    .createProperty(ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_READ_AHEAD_BUFFER_SIZE_ELEMENT);
+            bufferSizeProperty.setRealValue(3);
+            configContainer.add(bufferSizeProperty);
+            readAheadConnector.configure(configContainer, List.of(RI_ACCOUNT_OBJECT_CLASS), result);
+            readAheadConnector.fetchResourceSchema(result);
+
+            ResourceObjectClassDefinition accountDefinition =
+                    resourceSchema.findObjectClassDefinitionRequired(RI_ACCOUNT_OBJECT_CLASS);
+            List<String> expectedNames = new ArrayList<>();
+            cc.search(accountDefinition, null,
+                    (ucfObject, lResult) -> expectedNames.add(String.valueOf(ucfObject.getPrimaryIdentifierValue())),
+                    null, null, null, null, ctx, result);
+
+            List<ConnIdOperation> operations = new ArrayList<>();
+            UcfExecutionContext readAheadCtx = new UcfExecutionContext(lightweightIdentifierGenerator, resourceType,
+                    new NullTaskImpl() {
+                        @Override
+                        public void onConnIdOperationEnd(@NotNull ConnIdOperation operation) {
+                            operations.add(operation);
+                        }
+                    });
+
+            when("all accounts are searched for, processing each one slower than the connector returns them");
+            List<String> names = new ArrayList<>();
+            readAheadConnector.search(accountDefinition, null,
+                    (ucfObject, lResult) -> {
+                        checkUcfObject(ucfObject.getResourceObject(), accountDefinition);
+                        MiscUtil.sleepCatchingInterruptedException(10);
+                        return names.add(String.valueOf(ucfObject.getPrimaryIdentifierValue()));
+                    },
+                    null, null, null, null, readAheadCtx, result);
+
+            then("they are returned in the same order as without read-ahead");
+            assertThat(names).as("names").hasSize(21);
+            assertThat(names).as("names").containsExactlyElementsOf(expectedNames);
+
+            and("the buffer was full, and the connector had to wait for it");
+            ConnIdReadAheadStatisticsType statistics = getReadAheadStatistics(operations);
+            assertThat(statistics.getBufferSize()).as("buffer size").isEqualTo(3);
+            assertThat(statistics.getMaxOccupancy()).as("max occupancy").isEqualTo(3);
+            assertThat(statistics.getAverageOccupancy()).as("average occupancy").isGreaterThan(0.0).isLessThanOrEqualTo(3.0);
+            assertThat(statistics.getProducerStallTime()).as("producer stall time").isPositive();
+            assertThat(statistics.getConsumerStallTime()).as("consumer stall time").isNotNegative();
+            assertNoReadAheadThreads();
+
+            when("the search is stopped by the handler");
+            operations.clear();
+            List<String> firstNames = new ArrayList<>();
+            readAheadConnector.search(accountDefinition, null,
+                    (ucfObject, lResult) -> {
+                        firstNames.add(String.valueOf(ucfObject.getPrimaryIdentifierValue()));
+                        return firstNames.size() < 5;
+                    },
+                    null, null, null, null, readAheadCtx, result);
+
+            then("only the first objects are processed");
+            assertThat(firstNames).as("names").containsExactlyElementsOf(expectedNames.subList(0, 5));
+            assertThat(getReadAheadStatistics(operations).getBufferSize()).as("buffer size").isEqualTo(3);
+            assertNoReadAheadThreads();
+
+            result.computeStatus();
+            TestUtil.assertSuccess(result);
+        } finally {
+            readAheadConnector.dispose();
+        }
+    }
+
+    private ConnIdReadAheadStatisticsType getReadAheadStatistics(List<ConnIdOperation> operations) {
+        assertThat(operations).as("ConnId operations").hasSize(1);
+        ConnIdOperationRecordType record = operations.get(0).toOperationRecordBean();
+        displayValue("ConnId operation", record);
+        assertThat(record.getReadAhead()).as("read-ahead statistics").isNotNull();
+        return record.getReadAhead();
+    }
+
+    /** The reader threads must be finished when the search returns. */
+    private void assertNoReadAheadThreads() {
+        assertThat(Thread.getAllStackTraces().keySet())
+                .as("threads")
+                .noneMatch(thread -> thread.getName().startsWith("connid-read-ahead-"));
+    }
+
     private void checkUcfObject(UcfResourceObject ucfResourceObject, ResourceObjectClassDefinition objectClassDefinition) {
         var object = ucfResourceObject.getPrismObject();
         ShadowType bean = object.asObjectable();
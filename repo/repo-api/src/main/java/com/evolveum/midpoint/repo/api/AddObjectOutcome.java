@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
+
+/**
+ * Outcome of adding a single object by {@link RepositoryService#addObjects(java.util.Collection, RepoAddOptions,
+ * com.evolveum.midpoint.schema.result.OperationResult)}.
+ *
+ * @param oid OID of the added object, or `null` if the object was not added.
+ * @param exception The reason why the object was not added, or `null` if it was added.
+ */
+@Experimental
+public record AddObjectOutcome(
+        @Nullable String oid,
+        @Nullable Exception exception) {
+
+    public static @NotNull AddObjectOutcome success(@NotNull String oid) {
+        return new AddObjectOutcome(oid, null);
+    }
+
+    public static @NotNull AddObjectOutcome failure(@NotNull Exception exception) {
+        return new AddObjectOutcome(null, exception);
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+}
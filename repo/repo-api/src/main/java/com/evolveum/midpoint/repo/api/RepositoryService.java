@@ -6,7 +6,9 @@
  */
 package com.evolveum.midpoint.repo.api;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.evolveum.midpoint.prism.*;
 
@@ -121,6 +123,7 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
 
     String OP_ADD_OBJECT = "addObject";
     String OP_ADD_OBJECT_OVERWRITE = "addObjectOverwrite"; // addObject with overwrite option
+    String OP_ADD_OBJECTS = "addObjects";
     String OP_DELETE_OBJECT = "deleteObject";
     String OP_COUNT_OBJECTS = "countObjects";
     String OP_MODIFY_OBJECT = "modifyObject";
@@ -151,6 +154,12 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
     String OP_SEARCH_AGGREGATE = "searchAggregate";
     String OP_COUNT_AGGREGATE = "countAggregate";
 
+    String OP_CLAIM_WORK_BUCKET = "claimWorkBucket";
+    String OP_COMPLETE_WORK_BUCKET = "completeWorkBucket";
+    String OP_RELEASE_WORK_BUCKETS = "releaseWorkBuckets";
+    String OP_RECLAIM_WORK_BUCKETS = "reclaimWorkBuckets";
+    String OP_DELETE_WORK_BUCKETS = "deleteWorkBuckets";
+
 
     String OP_FETCH_EXT_ITEMS = "fetchExtItems";
     String OP_ADD_DIAGNOSTIC_INFORMATION = "addDiagnosticInformation";
@@ -258,6 +267,32 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
             @NotNull OperationResult parentResult)
             throws ObjectAlreadyExistsException, SchemaException;
 
+    /**
+     * Adds multiple objects, with the same semantics as {@link #addObject(PrismObject, RepoAddOptions, OperationResult)}
+     * called for each of them. This is meant for bulk loads of large numbers of objects (e.g. by ninja import):
+     * the implementation may insert the objects in batches, using a single transaction for each batch.
+     *
+     * Failure of one object does not prevent the others from being added. The outcomes are returned in the order
+     * of the objects; the added objects have their OIDs set, just as with `addObject`.
+     *
+     * The default implementation simply calls `addObject` for each object.
+     */
+    @Experimental
+    default @NotNull List<AddObjectOutcome> addObjects(
+            @NotNull Collection<? extends PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            @NotNull OperationResult parentResult) {
+        List<AddObjectOutcome> outcomes = new ArrayList<>(objects.size());
+        for (PrismObject<? extends ObjectType> object : objects) {
+            try {
+                outcomes.add(AddObjectOutcome.success(addObject(object, options, parentResult)));
+            } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException e) {
+                outcomes.add(AddObjectOutcome.failure(e));
+            }
+        }
+        return outcomes;
+    }
+
     /**
      * <p>Modifies object using relative change description.</p>
      * Must fail if user with provided OID does not exist.
@@ -364,6 +399,104 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
         throw new UnsupportedOperationException("Not supported yet");
     }
 
+    // Work bucket table
+
+    /**
+     * Returns `true` if the repository can store work buckets of activities in a dedicated table,
+     * see {@link #claimWorkBucket(String, String, String, String, NewWorkBucketsSupplier, OperationResult)}.
+     */
+    @Experimental
+    default boolean supportsWorkBucketTable() {
+        return false;
+    }
+
+    /**
+     * Claims a work bucket from the bucket set stored in the bucket table, all in a single transaction:
+     *
+     * 1. If there is a bucket delegated to the worker, it is returned.
+     * 2. Otherwise, the first ready bucket not being claimed by someone else concurrently is claimed:
+     * delegated to the worker (or left ready, if there is no worker, i.e. in the standalone case).
+     * 3. Otherwise, new buckets are created by the supplier (serialized among the claimers of the set),
+     * and the first one of them is claimed.
+     *
+     * The claim does not wait for other claimers, and does not modify the owner (coordinator) task.
+     *
+     * @param ownerOid OID of the task that owns the buckets (the coordinator or standalone task)
+     * @param activityPath Path of the activity that owns the buckets (for cleanup purposes)
+     * @param bucketSetId Identifier of the bucket set, see `ActivityBucketingStateType.bucketSetId`
+     * @param workerOid OID of the claiming worker task, `null` for standalone activities
+     */
+    @Experimental
+    default @NotNull WorkBucketClaimResult claimWorkBucket(
+            @NotNull String ownerOid,
+            @NotNull String activityPath,
+            @NotNull String bucketSetId,
+            @Nullable String workerOid,
+            @NotNull NewWorkBucketsSupplier newBucketsSupplier,
+            @NotNull OperationResult parentResult) throws SchemaException {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    @FunctionalInterface
+    interface NewWorkBucketsSupplier {
+
+        /**
+         * Creates new buckets (without state and worker) following the last existing one (null if there's none).
+         * Returns an empty list if there are no more buckets.
+         */
+        @NotNull List<WorkBucketType> createNewBuckets(@Nullable WorkBucketType lastBucket) throws SchemaException;
+    }
+
+    /**
+     * Marks a ready or delegated bucket from the bucket table as complete. Returns the number of complete buckets
+     * in the set. Throws {@link IllegalStateException} if there is no such bucket in the ready or delegated state.
+     */
+    @Experimental
+    default int completeWorkBucket(
+            @NotNull String bucketSetId,
+            int sequentialNumber,
+            @NotNull OperationResult parentResult) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    /**
+     * Returns buckets delegated to given worker (all or the one with the specified sequential number)
+     * back to the ready state. Returns the number of released buckets.
+     */
+    @Experimental
+    default int releaseWorkBuckets(
+            @NotNull String bucketSetId,
+            @NotNull String workerOid,
+            @Nullable Integer sequentialNumber,
+            @NotNull OperationResult parentResult) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    /**
+     * Returns buckets delegated to workers other than the specified ones back to the ready state.
+     * Returns the number of reclaimed buckets.
+     */
+    @Experimental
+    default int reclaimWorkBuckets(
+            @NotNull String bucketSetId,
+            @NotNull Collection<String> liveWorkerOids,
+            @NotNull OperationResult parentResult) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    /**
+     * Deletes buckets of given task and activity, except for those in the specified bucket set (if any).
+     * Buckets are deleted automatically with the owning task.
+     */
+    @Experimental
+    default void deleteWorkBuckets(
+            @NotNull String ownerOid,
+            @NotNull String activityPath,
+            @Nullable String exceptBucketSetId,
+            @NotNull OperationResult parentResult) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
     // Counting/searching
 
     <T extends Containerable> int countContainers(Class<T> type, ObjectQuery query,
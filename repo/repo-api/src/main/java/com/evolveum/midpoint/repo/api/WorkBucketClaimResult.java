@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.annotation.Experimental;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
+
+/**
+ * Result of {@link RepositoryService#claimWorkBucket(String, String, String, String,
+ * RepositoryService.NewWorkBucketsSupplier, com.evolveum.midpoint.schema.result.OperationResult)}.
+ *
+ * @param bucket The claimed bucket (detached), or `null` if there is none.
+ * @param situation What happened.
+ * @param completeBuckets Number of complete buckets in the set, as seen by the claiming transaction.
+ */
+@Experimental
+public record WorkBucketClaimResult(
+        @Nullable WorkBucketType bucket,
+        @NotNull Situation situation,
+        int completeBuckets) {
+
+    public enum Situation {
+
+        /** An existing bucket, already delegated to the worker, was found. */
+        FOUND_DELEGATED_TO_ME,
+
+        /** An existing ready bucket was claimed. */
+        FOUND_READY,
+
+        /** New bucket(s) were created, and the first of them was claimed. */
+        CREATED_NEW,
+
+        /** There are no more buckets to claim, but some are still delegated to other workers. */
+        NOTHING_MORE_SOME_DELEGATED,
+
+        /** There are no more buckets to claim, and none is delegated. */
+        NOTHING_MORE_DEFINITE
+    }
+}
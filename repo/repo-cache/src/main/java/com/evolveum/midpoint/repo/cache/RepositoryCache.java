@@ -181,6 +181,13 @@ public class RepositoryCache implements RepositoryService, Cache {
         return modificationOpHandler.addObject(object, options, parentResult);
     }
 
+    @Override
+    public @NotNull List<AddObjectOutcome> addObjects(
+            @NotNull Collection<? extends PrismObject<? extends ObjectType>> objects, RepoAddOptions options,
+            @NotNull OperationResult parentResult) {
+        return modificationOpHandler.addObjects(objects, options, parentResult);
+    }
+
     @Override
     @NotNull
     public <T extends ObjectType> ModifyObjectResult<T> modifyObject(
@@ -235,6 +242,44 @@ public class RepositoryCache implements RepositoryService, Cache {
         return repositoryService.deleteSimulatedProcessedObjects(oid, transactionId, parentResult);
     }
 
+    @Override
+    public boolean supportsWorkBucketTable() {
+        return repositoryService.supportsWorkBucketTable();
+    }
+
+    @Override
+    public @NotNull WorkBucketClaimResult claimWorkBucket(@NotNull String ownerOid, @NotNull String activityPath,
+            @NotNull String bucketSetId, @Nullable String workerOid, @NotNull NewWorkBucketsSupplier newBucketsSupplier,
+            @NotNull OperationResult parentResult) throws SchemaException {
+        // Buckets are not cached, and the owner task is not modified.
+        return repositoryService.claimWorkBucket(
+                ownerOid, activityPath, bucketSetId, workerOid, newBucketsSupplier, parentResult);
+    }
+
+    @Override
+    public int completeWorkBucket(@NotNull String bucketSetId, int sequentialNumber,
+            @NotNull OperationResult parentResult) {
+        return repositoryService.completeWorkBucket(bucketSetId, sequentialNumber, parentResult);
+    }
+
+    @Override
+    public int releaseWorkBuckets(@NotNull String bucketSetId, @NotNull String workerOid,
+            @Nullable Integer sequentialNumber, @NotNull OperationResult parentResult) {
+        return repositoryService.releaseWorkBuckets(bucketSetId, workerOid, sequentialNumber, parentResult);
+    }
+
+    @Override
+    public int reclaimWorkBuckets(@NotNull String bucketSetId, @NotNull Collection<String> liveWorkerOids,
+            @NotNull OperationResult parentResult) {
+        return repositoryService.reclaimWorkBuckets(bucketSetId, liveWorkerOids, parentResult);
+    }
+
+    @Override
+    public void deleteWorkBuckets(@NotNull String ownerOid, @NotNull String activityPath,
+            @Nullable String exceptBucketSetId, @NotNull OperationResult parentResult) {
+        repositoryService.deleteWorkBuckets(ownerOid, activityPath, exceptBucketSetId, parentResult);
+    }
+
     @NotNull
     @Override
     public <T extends ObjectType> DeleteObjectResult deleteObject(Class<T> type, String oid, OperationResult parentResult)
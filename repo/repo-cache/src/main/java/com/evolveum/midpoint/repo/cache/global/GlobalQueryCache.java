@@ -8,6 +8,8 @@
 package com.evolveum.midpoint.repo.cache.global;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.cache.invalidation.ChangeDescription;
+import com.evolveum.midpoint.repo.cache.invalidation.QueryCacheIndex;
 import com.evolveum.midpoint.repo.cache.local.QueryKey;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.cache.CacheType;
@@ -18,6 +20,8 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInfo
 
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.event.CacheEntryEvictedListener;
+import org.cache2k.event.CacheEntryExpiredListener;
 import org.cache2k.expiry.ExpiryPolicy;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
@@ -27,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
@@ -45,6 +50,11 @@ public class GlobalQueryCache extends AbstractGlobalCache {
 
     private org.cache2k.Cache<QueryKey, GlobalCacheQueryValue> cache;
 
+    @NotNull private final QueryCacheIndex.Statistics statistics = new QueryCacheIndex.Statistics();
+
+    /** Secondary indexes for invalidation; see {@link QueryCacheIndex}. */
+    @NotNull private final QueryCacheIndex index = new QueryCacheIndex(statistics);
+
     public void initialize() {
         if (cache != null) {
             LOGGER.warn("Global query cache was already initialized -- ignoring this request.");
@@ -59,6 +69,10 @@ public class GlobalQueryCache extends AbstractGlobalCache {
                     .name(CACHE_NAME)
                     .entryCapacity(capacity)
                     .expiryPolicy(getExpirePolicy())
+                    .addAsyncListener((CacheEntryEvictedListener<QueryKey, GlobalCacheQueryValue>)
+                            (c, e) -> index.remove(e.getKey(), e.getValue().getResult()))
+                    .addAsyncListener((CacheEntryExpiredListener<QueryKey, GlobalCacheQueryValue>)
+                            (c, e) -> index.remove(e.getKey(), e.getValue().getResult()))
                     .build();
             LOGGER.info("Created global repository query cache with a capacity of {} queries", capacity);
         }
@@ -74,6 +88,7 @@ public class GlobalQueryCache extends AbstractGlobalCache {
             cache.close();
             cache = null;
         }
+        index.clear();
     }
 
     public boolean isAvailable() {
@@ -83,8 +98,14 @@ public class GlobalQueryCache extends AbstractGlobalCache {
     public <T extends ObjectType> SearchResultList<PrismObject<T>> get(QueryKey key) {
         if (cache != null) {
             GlobalCacheQueryValue value = cache.peek(key);
-            //noinspection unchecked
-            return value != null ? value.getResult() : null;
+            if (value != null) {
+                statistics.recordHit();
+                //noinspection unchecked
+                return value.getResult();
+            } else {
+                statistics.recordMiss();
+                return null;
+            }
         } else {
             return null;
         }
@@ -93,6 +114,7 @@ public class GlobalQueryCache extends AbstractGlobalCache {
     public void remove(QueryKey cacheKey) {
         if (cache != null) {
             cache.remove(cacheKey);
+            index.remove(cacheKey);
         }
     }
 
@@ -102,14 +124,52 @@ public class GlobalQueryCache extends AbstractGlobalCache {
             if (cacheObject.size() > QUERY_RESULT_SIZE_LIMIT) {
                 throw new IllegalStateException("Trying to cache result list greater than " + QUERY_RESULT_SIZE_LIMIT + ": " + cacheObject.size());
             }
+            // Index first, so any invalidation running concurrently can see the key.
+            index.add(key, cacheObject);
             //noinspection unchecked
             cache.put(key, new GlobalCacheQueryValue(cacheObject));
+            if (!index.contains(key, cacheObject)) {
+                // The index was cleared or the key was removed from it between the two calls above.
+                index.add(key, cacheObject);
+            }
         }
     }
 
     public void deleteMatching(Predicate<Map.Entry<QueryKey, GlobalCacheQueryValue>> predicate) {
         if (cache != null) {
-            cache.asMap().entrySet().removeIf(predicate);
+            for (Map.Entry<QueryKey, GlobalCacheQueryValue> entry : cache.asMap().entrySet()) {
+                if (predicate.test(entry)) {
+                    deleteEntry(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Like {@link #deleteMatching(Predicate)} but checks only the entries selected by the index for given change.
+     */
+    public void deleteMatching(
+            @NotNull ChangeDescription change, Predicate<Map.Entry<QueryKey, GlobalCacheQueryValue>> predicate) {
+        if (cache == null) {
+            return;
+        }
+        Set<QueryKey<?>> candidates = index.getCandidates(change);
+        if (candidates == null) {
+            deleteMatching(predicate);
+            return;
+        }
+        for (QueryKey<?> candidate : candidates) {
+            GlobalCacheQueryValue value = cache.peek(candidate);
+            if (value != null && predicate.test(Map.<QueryKey, GlobalCacheQueryValue>entry(candidate, value))) {
+                deleteEntry(candidate, value);
+            }
+        }
+    }
+
+    /** Removes the entry only if the key still has the given value, so a newer result is not removed by mistake. */
+    private void deleteEntry(QueryKey key, GlobalCacheQueryValue value) {
+        if (cache.asMap().remove(key, value)) {
+            index.remove(key, value.getResult());
         }
     }
 
@@ -126,6 +186,7 @@ public class GlobalQueryCache extends AbstractGlobalCache {
     public void clear() {
         if (cache != null) {
             cache.clear();
+            index.clear();
         }
     }
 
@@ -153,6 +214,7 @@ public class GlobalQueryCache extends AbstractGlobalCache {
                     .name(GlobalQueryCache.class.getName())
                     .size(queries.get())
                     .secondarySize(objects.get());
+            statistics.addTo(info);
             counts.forEach((type, pair) ->
                     info.beginComponent()
                             .name(type.getSimpleName())
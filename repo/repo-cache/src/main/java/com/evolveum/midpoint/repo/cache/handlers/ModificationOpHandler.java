@@ -22,8 +22,11 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 
 import static com.evolveum.midpoint.repo.cache.RepositoryCache.CLASS_NAME_WITH_DOT;
@@ -38,6 +41,7 @@ import static com.evolveum.midpoint.schema.util.TraceUtil.isAtLeastNormal;
 public class ModificationOpHandler extends BaseOpHandler {
 
     private static final String ADD_OBJECT = CLASS_NAME_WITH_DOT + "addObject";
+    private static final String ADD_OBJECTS = CLASS_NAME_WITH_DOT + "addObjects";
     private static final String MODIFY_OBJECT = CLASS_NAME_WITH_DOT + "modifyObject";
     private static final String DELETE_OBJECT = CLASS_NAME_WITH_DOT + "deleteObject";
     private static final String ADVANCE_SEQUENCE = CLASS_NAME_WITH_DOT + "advanceSequence";
@@ -101,6 +105,53 @@ public class ModificationOpHandler extends BaseOpHandler {
         }
     }
 
+    /**
+     * Overwriting needs the original object for the invalidation, so it is done object by object here.
+     * Plain adds are passed to the repository in bulk; the cache entries are invalidated afterwards.
+     */
+    public @NotNull List<AddObjectOutcome> addObjects(
+            Collection<? extends PrismObject<? extends ObjectType>> objects, RepoAddOptions options,
+            OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(ADD_OBJECTS)
+                .addParam("objects", objects.size())
+                .addParam("overwrite", RepoAddOptions.isOverwrite(options))
+                .build();
+        try {
+            if (RepoAddOptions.isOverwrite(options)) {
+                List<AddObjectOutcome> outcomes = new ArrayList<>(objects.size());
+                for (PrismObject<? extends ObjectType> object : objects) {
+                    try {
+                        outcomes.add(AddObjectOutcome.success(addObject(object, options, result)));
+                    } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException e) {
+                        outcomes.add(AddObjectOutcome.failure(e));
+                    }
+                }
+                return outcomes;
+            }
+            List<AddObjectOutcome> outcomes;
+            Long startTime = MonitoringUtil.repoOpStart();
+            try {
+                outcomes = repositoryService.addObjects(objects, options, result);
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+            }
+            Iterator<AddObjectOutcome> outcomeIterator = outcomes.iterator();
+            for (PrismObject<? extends ObjectType> object : objects) {
+                AddObjectOutcome outcome = outcomeIterator.next();
+                if (outcome.isSuccess()) {
+                    invalidator.invalidateCacheEntries(
+                            object.getCompileTimeClass(), outcome.oid(), new AddObjectResult<>(object), result);
+                }
+            }
+            return outcomes;
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
     @NotNull
     public <T extends ObjectType> ModifyObjectResult<T> modifyObject(@NotNull Class<T> type, @NotNull String oid,
             @NotNull Collection<? extends ItemDelta<?, ?>> modifications,
@@ -7,12 +7,17 @@
 
 package com.evolveum.midpoint.repo.cache.invalidation;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.CacheInvalidationContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.match.MatchingRuleRegistry;
+import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
@@ -69,6 +74,12 @@ public abstract class ChangeDescription {
             return filter.match(addInfo.getObject().getValue(), matchingRuleRegistry);
         }
 
+        @Override
+        @Nullable Set<String> getChangedItemRoots() {
+            // A new object can match any query.
+            return null;
+        }
+
         @Override
         public String toString() {
             return "Add{" + addInfo + '}';
@@ -98,6 +109,22 @@ public abstract class ChangeDescription {
             }
         }
 
+        @Override
+        @Nullable Set<String> getChangedItemRoots() {
+            if (modifyInfo.getObjectAfter() == null || modifyInfo.getModifications() == null) {
+                return null;
+            }
+            Set<String> roots = new HashSet<>();
+            for (ItemDelta<?, ?> modification : modifyInfo.getModifications()) {
+                ItemName firstName = modification.getPath().firstName();
+                if (firstName == null) {
+                    return null;
+                }
+                roots.add(firstName.getLocalPart());
+            }
+            return roots;
+        }
+
         @Override
         public String toString() {
             return "Modify{" +
@@ -122,6 +149,11 @@ public abstract class ChangeDescription {
             return false;
         }
 
+        @Override
+        @NotNull Set<String> getChangedItemRoots() {
+            return Set.of();
+        }
+
         @Override
         public String toString() {
             return "Delete{" +
@@ -145,6 +177,11 @@ public abstract class ChangeDescription {
             return safeInvalidation;
         }
 
+        @Override
+        @Nullable Set<String> getChangedItemRoots() {
+            return safeInvalidation ? null : Set.of();
+        }
+
         @Override
         public String toString() {
             return "Any{" +
@@ -238,6 +275,17 @@ public abstract class ChangeDescription {
         }
     }
 
+    /**
+     * Returns local names of top-level items that could be changed, so the match of the object with a query filter
+     * (or its position in the ordered result) could be changed as well. Used to select candidate queries
+     * via {@link QueryCacheIndex}. Queries containing the object, or ones without filter, are always candidates.
+     *
+     * Null means that the object could start matching any query (of the given type).
+     * Empty set means no such item, i.e. the object cannot start matching any query it did not match before.
+     * This must be consistent with {@link #mayMatchAfterChange(ObjectFilter, SearchResultList, MatchingRuleRegistry)}.
+     */
+    @Nullable abstract Set<String> getChangedItemRoots();
+
     public abstract boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
             throws SchemaException;
 
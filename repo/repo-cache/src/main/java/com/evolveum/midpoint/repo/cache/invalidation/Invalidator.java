@@ -125,30 +125,25 @@ public class Invalidator {
 
     private <T extends ObjectType> void clearQueryResultsLocally(LocalQueryCache cache, Class<T> type, String oid,
             Object additionalInfo, MatchingRuleRegistry matchingRuleRegistry) {
-        // TODO implement more efficiently
-
         ChangeDescription change = ChangeDescription.getFrom(type, oid, additionalInfo, true);
 
         long start = System.currentTimeMillis();
-        int all = 0;
-        int removed = 0;
-        Iterator<Map.Entry<QueryKey, SearchResultList>> iterator = cache.getEntryIterator();
-        while (iterator.hasNext()) {
-            Map.Entry<QueryKey, SearchResultList> entry = iterator.next();
+        AtomicInteger checked = new AtomicInteger(0);
+        int removed = cache.removeMatching(change, entry -> {
             QueryKey<?> queryKey = entry.getKey();
-            all++;
+            checked.incrementAndGet();
             if (change.mayAffect(queryKey, entry.getValue(), matchingRuleRegistry)) {
                 LOGGER.trace("Removing (from local cache) query for type={}, change={}: {}", type, change, queryKey.getQuery());
-                iterator.remove();
-                removed++;
+                return true;
+            } else {
+                return false;
             }
-        }
-        LOGGER.trace("Removed (from local cache) {} (of {}) query result entries of type {} in {} ms", removed, all, type, System.currentTimeMillis() - start);
+        });
+        LOGGER.trace("Removed (from local cache) {} (of {} checked) query result entries of type {} in {} ms",
+                removed, checked, type, System.currentTimeMillis() - start);
     }
 
     private <T extends ObjectType> void clearQueryResultsGlobally(Class<T> type, String oid, CacheInvalidationContext context) {
-        // TODO implement more efficiently
-
         // Safe invalidation means we evict queries without looking at details of the change.
         boolean safeIfUnknown =
                 context != null && !context.isFromRemoteNode()
@@ -156,12 +151,12 @@ public class Invalidator {
         ChangeDescription change = ChangeDescription.getFrom(type, oid, context, safeIfUnknown);
 
         long start = System.currentTimeMillis();
-        AtomicInteger all = new AtomicInteger(0);
+        AtomicInteger checked = new AtomicInteger(0);
         AtomicInteger removed = new AtomicInteger(0);
 
-        globalQueryCache.deleteMatching(entry -> {
+        globalQueryCache.deleteMatching(change, entry -> {
             QueryKey queryKey = entry.getKey();
-            all.incrementAndGet();
+            checked.incrementAndGet();
             if (change.mayAffect(queryKey, entry.getValue().getResult(), matchingRuleRegistry)) {
                 LOGGER.trace("Removing (from global cache) query for type={}, change={}: {}", type, change, queryKey.getQuery());
                 removed.incrementAndGet();
@@ -170,7 +165,8 @@ public class Invalidator {
                 return false;
             }
         });
-        LOGGER.trace("Removed (from global cache) {} (of {}) query result entries of type {} in {} ms", removed, all, type, System.currentTimeMillis() - start);
+        LOGGER.trace("Removed (from global cache) {} (of {} checked) query result entries of type {} in {} ms",
+                removed, checked, type, System.currentTimeMillis() - start);
     }
 
     public void registerInvalidationEventsListener(InvalidationEventListener listener) {
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.invalidation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.path.ItemName;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.query.*;
+import com.evolveum.midpoint.repo.cache.local.QueryKey;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
+
+/**
+ * Secondary indexes over the keys of a query cache (global or local one), used to find the entries
+ * that can be affected by a given change without scanning the whole cache.
+ *
+ * The entries are indexed by:
+ *
+ * . the query type,
+ * . OIDs of objects in the cached result list,
+ * . top-level items the query depends on (in the filter or in the ordering).
+ *
+ * Queries without filter or with filters we cannot analyze are kept as "always candidates" for their type.
+ * The candidates are still checked by {@link ChangeDescription#mayAffect(QueryKey, SearchResultList,
+ * com.evolveum.midpoint.prism.match.MatchingRuleRegistry)}, so the index must only be conservative:
+ * it may return more entries than needed, but never less.
+ *
+ * Item names are compared by their local parts only, which is again on the conservative side.
+ *
+ * The index is thread-safe. It is updated before the entry is put into the cache and after it is removed from it;
+ * so a key present in the cache is always present in the index. (The opposite is not guaranteed.)
+ */
+public class QueryCacheIndex {
+
+    /** Index of the queries per (exact) query type. */
+    @NotNull private final Map<Class<?>, TypeIndex> typeIndexes = new ConcurrentHashMap<>();
+
+    /** Data needed to remove the key from the indexes. */
+    @NotNull private final Map<QueryKey<?>, IndexedEntry> entries = new ConcurrentHashMap<>();
+
+    /** Statistics, possibly shared by more indexes (e.g. for thread-local caches). */
+    @NotNull private final Statistics statistics;
+
+    public QueryCacheIndex(@NotNull Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public <T extends ObjectType> void add(@NotNull QueryKey<T> key, @NotNull SearchResultList<PrismObject<T>> list) {
+        IndexedEntry entry = new IndexedEntry(key.getType(), list, getOids(list), getItemRoots(key.getQuery()));
+        TypeIndex typeIndex = typeIndexes.computeIfAbsent(key.getType(), k -> new TypeIndex());
+        // Adding to the type index first; the key must not disappear from it when replacing the previous entry.
+        typeIndex.add(key, entry);
+        IndexedEntry previous = entries.put(key, entry);
+        if (previous != null) {
+            typeIndex.removeStale(key, previous, entry);
+        }
+    }
+
+    /** Returns true if the key is indexed for exactly this list (compared by identity). */
+    public boolean contains(@NotNull QueryKey<?> key, @NotNull SearchResultList<?> list) {
+        IndexedEntry entry = entries.get(key);
+        return entry != null && entry.list == list;
+    }
+
+    /** Removes the key from the index regardless of the list it was indexed for. */
+    public void remove(@NotNull QueryKey<?> key) {
+        IndexedEntry entry = entries.remove(key);
+        if (entry != null) {
+            removeFromTypeIndex(key, entry);
+        }
+    }
+
+    /**
+     * Removes the key only if it is indexed for the given list (compared by identity).
+     * This is used when we know the cache value being removed, e.g. in eviction listeners, so that
+     * a newer value for the same key is not removed from the index by mistake.
+     */
+    public void remove(@NotNull QueryKey<?> key, @NotNull SearchResultList<?> list) {
+        IndexedEntry entry = entries.get(key);
+        if (entry != null && entry.list == list && entries.remove(key, entry)) {
+            removeFromTypeIndex(key, entry);
+        }
+    }
+
+    private void removeFromTypeIndex(QueryKey<?> key, IndexedEntry entry) {
+        TypeIndex typeIndex = typeIndexes.get(entry.type);
+        if (typeIndex != null) {
+            typeIndex.remove(key, entry);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        typeIndexes.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns keys of all queries that may be affected by the change (or null if all of them may be).
+     */
+    public @Nullable Set<QueryKey<?>> getCandidates(@NotNull ChangeDescription change) {
+        statistics.invalidations.increment();
+        if (change.type == null) {
+            statistics.candidatesReturned.add(entries.size());
+            return null;
+        }
+        Set<String> changedItems = change.getChangedItemRoots();
+        Set<QueryKey<?>> candidates = new HashSet<>();
+        typeIndexes.forEach((type, typeIndex) -> {
+            if (type.isAssignableFrom(change.type)) {
+                typeIndex.collectCandidates(change.oid, changedItems, candidates);
+            }
+        });
+        statistics.candidatesReturned.add(candidates.size());
+        return candidates;
+    }
+
+    private static Set<String> getOids(SearchResultList<? extends PrismObject<?>> list) {
+        Set<String> oids = new HashSet<>();
+        for (PrismObject<?> object : list) {
+            if (object.getOid() != null) {
+                oids.add(object.getOid());
+            }
+        }
+        return oids;
+    }
+
+    /**
+     * Returns local names of top-level items the query depends on, or null if they cannot be determined.
+     */
+    @Nullable
+    private static Set<String> getItemRoots(ObjectQuery query) {
+        if (query == null || query.getFilter() == null) {
+            return null;
+        }
+        Set<String> roots = new HashSet<>();
+        if (!addItemRoots(query.getFilter(), roots)) {
+            return null;
+        }
+        ObjectPaging paging = query.getPaging();
+        if (paging != null && paging.getOrderingInstructions() != null) {
+            for (ObjectOrdering ordering : paging.getOrderingInstructions()) {
+                if (!addItemRoot(ordering.getOrderBy(), roots)) {
+                    return null;
+                }
+            }
+        }
+        return roots;
+    }
+
+    /** Returns false if the filter cannot be analyzed. Similar to `QueryAutzItemPaths.addRequiredItemsInternal`. */
+    private static boolean addItemRoots(ObjectFilter filter, Set<String> roots) {
+        if (filter == null
+                || filter instanceof UndefinedFilter
+                || filter instanceof NoneFilter
+                || filter instanceof AllFilter) {
+            return true;
+        } else if (filter instanceof ValueFilter<?, ?> valueFilter) {
+            return addItemRoot(valueFilter.getFullPath(), roots)
+                    && (valueFilter.getRightHandSidePath() == null
+                    || addItemRoot(valueFilter.getRightHandSidePath(), roots));
+        } else if (filter instanceof ExistsFilter existsFilter) {
+            // Everything inside is nested under the exists path, so its root is enough.
+            return addItemRoot(existsFilter.getFullPath(), roots);
+        } else if (filter instanceof TypeFilter typeFilter) {
+            return addItemRoots(typeFilter.getFilter(), roots);
+        } else if (filter instanceof LogicalFilter logicalFilter) {
+            for (ObjectFilter condition : logicalFilter.getConditions()) {
+                if (!addItemRoots(condition, roots)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (filter instanceof InOidFilter inOidFilter) {
+            // OID of an object never changes; but container IDs with owner are out of scope here.
+            return !inOidFilter.isConsiderOwner() && inOidFilter.getExpression() == null;
+        } else {
+            // Org, full text, referenced-by and other filters may depend on other objects or on non-item data.
+            return false;
+        }
+    }
+
+    private static boolean addItemRoot(ItemPath path, Set<String> roots) {
+        ItemName firstName = path != null ? path.firstName() : null;
+        if (firstName == null) {
+            return false;
+        }
+        roots.add(firstName.getLocalPart());
+        return true;
+    }
+
+    private record IndexedEntry(
+            @NotNull Class<?> type,
+            @NotNull Object list,
+            @NotNull Set<String> oids,
+            @Nullable Set<String> itemRoots) {
+    }
+
+    /** Indexes of queries of a single type. */
+    private static class TypeIndex {
+
+        @NotNull private final Set<QueryKey<?>> all = ConcurrentHashMap.newKeySet();
+        @NotNull private final Set<QueryKey<?>> alwaysCandidates = ConcurrentHashMap.newKeySet();
+        @NotNull private final Map<String, Set<QueryKey<?>>> byOid = new ConcurrentHashMap<>();
+        @NotNull private final Map<String, Set<QueryKey<?>>> byItemRoot = new ConcurrentHashMap<>();
+
+        void add(QueryKey<?> key, IndexedEntry entry) {
+            all.add(key);
+            for (String oid : entry.oids) {
+                byOid.computeIfAbsent(oid, k -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+            if (entry.itemRoots == null) {
+                alwaysCandidates.add(key);
+            } else {
+                for (String root : entry.itemRoots) {
+                    byItemRoot.computeIfAbsent(root, k -> ConcurrentHashMap.newKeySet()).add(key);
+                }
+            }
+        }
+
+        void remove(QueryKey<?> key, IndexedEntry entry) {
+            all.remove(key);
+            for (String oid : entry.oids) {
+                removeFrom(byOid, oid, key);
+            }
+            if (entry.itemRoots == null) {
+                alwaysCandidates.remove(key);
+            } else {
+                for (String root : entry.itemRoots) {
+                    removeFrom(byItemRoot, root, key);
+                }
+            }
+        }
+
+        /** Removes index records of the previous entry for the key that are not present in the current one. */
+        void removeStale(QueryKey<?> key, IndexedEntry previous, IndexedEntry current) {
+            for (String oid : previous.oids) {
+                if (!current.oids.contains(oid)) {
+                    removeFrom(byOid, oid, key);
+                }
+            }
+            // Item roots depend on the query only, i.e. they are the same for both entries.
+        }
+
+        private static void removeFrom(Map<String, Set<QueryKey<?>>> map, String indexKey, QueryKey<?> key) {
+            map.computeIfPresent(indexKey, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+
+        /**
+         * Changed items are interpreted like {@link ChangeDescription#getChangedItemRoots()} says.
+         */
+        void collectCandidates(String oid, @Nullable Set<String> changedItems, Set<QueryKey<?>> candidates) {
+            if (changedItems == null) {
+                candidates.addAll(all);
+                return;
+            }
+            candidates.addAll(alwaysCandidates);
+            if (oid != null) {
+                Set<QueryKey<?>> containingOid = byOid.get(oid);
+                if (containingOid != null) {
+                    candidates.addAll(containingOid);
+                }
+            }
+            for (String changedItem : changedItems) {
+                Set<QueryKey<?>> dependingOnItem = byItemRoot.get(changedItem);
+                if (dependingOnItem != null) {
+                    candidates.addAll(dependingOnItem);
+                }
+            }
+        }
+    }
+
+    /** Hit/miss and invalidation statistics for a query cache. */
+    public static class Statistics {
+
+        @NotNull private final LongAdder hits = new LongAdder();
+        @NotNull private final LongAdder misses = new LongAdder();
+
+        /** How many times were the candidates looked for. */
+        @NotNull private final LongAdder invalidations = new LongAdder();
+
+        /** How many candidate entries were returned in total (i.e. how many entries were checked by invalidations). */
+        @NotNull private final LongAdder candidatesReturned = new LongAdder();
+
+        public void recordHit() {
+            hits.increment();
+        }
+
+        public void recordMiss() {
+            misses.increment();
+        }
+
+        /**
+         * Adds hit/miss counts and a component with invalidation statistics to the cache state information.
+         * The component size is the number of invalidations, secondary size is the number of entries checked by them.
+         */
+        public void addTo(@NotNull SingleCacheStateInformationType info) {
+            info.performance(new SingleCachePerformanceInformationType()
+                            .name(info.getName())
+                            .hitCount((int) hits.sum())
+                            .missCount((int) misses.sum()))
+                    .beginComponent()
+                            .name("invalidations")
+                            .size((int) invalidations.sum())
+                            .secondarySize((int) candidatesReturned.sum());
+        }
+    }
+}
@@ -11,16 +11,21 @@ import static com.evolveum.midpoint.repo.cache.handlers.SearchOpHandler.QUERY_RE
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.cache.invalidation.ChangeDescription;
+import com.evolveum.midpoint.repo.cache.invalidation.QueryCacheIndex;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.util.caching.AbstractThreadLocalCache;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * Thread-local cache for storing query results.
@@ -29,11 +34,23 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
 
     private static final Trace LOGGER_CONTENT = TraceManager.getTrace(LocalQueryCache.class.getName() + ".content");
 
+    /** Statistics are shared by all thread-local instances, as these come and go with the threads. */
+    private static final QueryCacheIndex.Statistics STATISTICS = new QueryCacheIndex.Statistics();
+
     private final Map<QueryKey, SearchResultList> data = new ConcurrentHashMap<>();
 
+    /** Secondary indexes for invalidation; see {@link QueryCacheIndex}. */
+    private final QueryCacheIndex index = new QueryCacheIndex(STATISTICS);
+
     public <T extends ObjectType> SearchResultList<PrismObject<T>> get(QueryKey key) {
+        SearchResultList list = data.get(key);
+        if (list != null) {
+            STATISTICS.recordHit();
+        } else {
+            STATISTICS.recordMiss();
+        }
         //noinspection unchecked
-        return data.get(key);
+        return list;
     }
 
     public void put(QueryKey key, @NotNull SearchResultList list) {
@@ -41,11 +58,14 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
         if (list.size() > QUERY_RESULT_SIZE_LIMIT) {
             throw new IllegalStateException("Trying to cache result list greater than " + QUERY_RESULT_SIZE_LIMIT + ": " + list.size());
         }
+        //noinspection unchecked
+        index.add(key, list);
         data.put(key, list);
     }
 
     public void remove(QueryKey key) {
         data.remove(key);
+        index.remove(key);
     }
 
     @Override
@@ -85,4 +105,38 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
     public Iterator<Map.Entry<QueryKey, SearchResultList>> getEntryIterator() {
         return data.entrySet().iterator();
     }
+
+    /**
+     * Removes entries that are selected by the index for given change and that match the predicate.
+     * Returns the number of entries removed.
+     */
+    public int removeMatching(
+            @NotNull ChangeDescription change, @NotNull Predicate<Map.Entry<QueryKey, SearchResultList>> predicate) {
+        Set<QueryKey<?>> candidates = index.getCandidates(change);
+        int removed = 0;
+        if (candidates == null) {
+            Iterator<Map.Entry<QueryKey, SearchResultList>> iterator = data.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<QueryKey, SearchResultList> entry = iterator.next();
+                if (predicate.test(entry)) {
+                    iterator.remove();
+                    index.remove(entry.getKey());
+                    removed++;
+                }
+            }
+        } else {
+            for (QueryKey<?> candidate : candidates) {
+                SearchResultList list = data.get(candidate);
+                if (list != null && predicate.test(Map.<QueryKey, SearchResultList>entry(candidate, list))) {
+                    remove(candidate);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    static void addStatistics(SingleCacheStateInformationType info) {
+        STATISTICS.addTo(info);
+    }
 }
@@ -101,11 +101,12 @@ public class LocalRepoCacheCollection {
         rv.add(new SingleCacheStateInformationType(prismContext)
                 .name(LocalVersionCache.class.getName())
                 .size(LocalVersionCache.getTotalSize(LOCAL_VERSION_CACHE_INSTANCE)));
-        rv.add(new SingleCacheStateInformationType(prismContext)
+        SingleCacheStateInformationType queryCacheInfo = new SingleCacheStateInformationType(prismContext)
                 .name(LocalQueryCache.class.getName())
                 .size(LocalQueryCache.getTotalSize(LOCAL_QUERY_CACHE_INSTANCE))
-                .secondarySize(LocalQueryCache.getTotalCachedObjects(LOCAL_QUERY_CACHE_INSTANCE)));
-
+                .secondarySize(LocalQueryCache.getTotalCachedObjects(LOCAL_QUERY_CACHE_INSTANCE));
+        LocalQueryCache.addStatistics(queryCacheInfo);
+        rv.add(queryCacheInfo);
     }
 
     public void dumpContent() {
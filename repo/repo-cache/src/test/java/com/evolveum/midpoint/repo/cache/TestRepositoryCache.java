@@ -54,6 +54,7 @@ import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ArchetypeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ComponentSizeInformationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
@@ -304,6 +305,63 @@ public class TestRepositoryCache extends AbstractSpringTest implements InfraTest
         assertThat(data.overSizedQueries.get()).as("over-sized counter").isEqualTo(2); // search + searchIterative
     }
 
+    /**
+     * Checks that the invalidation touches only the cached queries selected by the index,
+     * i.e. queries whose filter depends on modified items (or containing the modified object).
+     */
+    @Test
+    public void test340IndexedQueryInvalidation() throws Exception {
+        OperationResult result = createOperationResult();
+
+        deleteExistingObjects(ArchetypeType.class, result);
+
+        clearStatistics();
+        clearCaches();
+
+        List<PrismObject<ArchetypeType>> objects = new ArrayList<>(generateObjects(ArchetypeType.class, 3, result));
+        String modifiedOid = objects.get(0).getOid();
+        String otherName = objects.get(1).getName().getOrig();
+
+        given("queries by name and by description are cached");
+        ObjectQuery byName = prismContext.queryFor(ArchetypeType.class)
+                .item(ArchetypeType.F_NAME).eqPoly(otherName)
+                .build();
+        ObjectQuery byDescription = prismContext.queryFor(ArchetypeType.class)
+                .item(ArchetypeType.F_DESCRIPTION).eq("indexed")
+                .build();
+        repositoryCache.searchObjects(ArchetypeType.class, byName, null, result);
+        repositoryCache.searchObjects(ArchetypeType.class, byDescription, null, result);
+        assertQueryIsCached(ArchetypeType.class, byName);
+        assertQueryIsCached(ArchetypeType.class, byDescription);
+        ComponentSizeInformationType statsBefore = getGlobalQueryCacheInvalidationStatistics();
+
+        when("description of an object not contained in either result is modified");
+        repositoryCache.modifyObject(ArchetypeType.class, modifiedOid,
+                prismContext.deltaFor(ArchetypeType.class)
+                        .item(ArchetypeType.F_DESCRIPTION).replace("indexed")
+                        .asItemDeltas(),
+                result);
+
+        then("only the query by description is invalidated");
+        assertQueryIsCached(ArchetypeType.class, byName);
+        assertQueryIsNotCached(ArchetypeType.class, byDescription);
+
+        and("only the query by description was checked by the invalidation");
+        ComponentSizeInformationType statsAfter = getGlobalQueryCacheInvalidationStatistics();
+        int invalidations = statsAfter.getSize() - statsBefore.getSize();
+        int checked = statsAfter.getSecondarySize() - statsBefore.getSecondarySize();
+        assertThat(invalidations).as("invalidations").isPositive();
+        assertThat(checked).as("checked entries").isLessThanOrEqualTo(invalidations);
+    }
+
+    private ComponentSizeInformationType getGlobalQueryCacheInvalidationStatistics() {
+        return globalQueryCache.getStateInformation().stream()
+                .flatMap(info -> info.getComponent().stream())
+                .filter(component -> "invalidations".equals(component.getName()))
+                .findFirst()
+                .orElseThrow();
+    }
+
     // Must be executed last, because naive deletion such large number of archetypes fails on OOM
     @Test
     public void test900HeapUsage() throws Exception {
@@ -1,63 +1,81 @@
 /*
- * Copyright (C) 2010-2022 Evolveum and contributors
+ * Copyright (C) 2010-2024 Evolveum and contributors
  *
  * This work is dual-licensed under the Apache License 2.0
  * and European Union Public License. See LICENSE file for details.
  */
 package com.evolveum.midpoint.repo.common;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import static com.evolveum.midpoint.schema.GetOperationOptions.createReadOnlyCollection;
+import static com.evolveum.midpoint.schema.util.ObjectTypeUtil.asObjectable;
 
-import com.evolveum.midpoint.util.exception.ConfigurationException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-
-import com.evolveum.midpoint.schema.GetOperationOptionsBuilder;
-
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.CacheInvalidationContext;
-import com.evolveum.midpoint.repo.common.expression.ExpressionProfileCompiler;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
-import com.evolveum.midpoint.repo.api.CacheRegistry;
 import com.evolveum.midpoint.repo.api.Cache;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.common.expression.ExpressionProfileCompiler;
+import com.evolveum.midpoint.schema.GetOperationOptionsBuilder;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.expression.ExpressionProfile;
 import com.evolveum.midpoint.schema.expression.ExpressionProfiles;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
-import static com.evolveum.midpoint.schema.GetOperationOptions.createReadOnlyCollection;
-import static com.evolveum.midpoint.schema.util.ObjectTypeUtil.asObjectable;
-
 /**
  * Cache for system object such as SystemConfigurationType. This is a global cache,
  * independent of the request. It will store the system configuration in memory.
- * It will check for system configuration updates in regular interval using the
- * getVersion() method.
  * <p>
  * This supplements the RepositoryCache. RepositoryCache works on per-request
  * (per-operation) basis. The  SystemObjectCache is global. Its goal is to reduce
  * the number of getObject(SystemConfiguration) and the getVersion(SystemConfiguration)
  * calls.
  * <p>
- * In the future: May be used for more objects that are often used and seldom
- * changed, e.g. object templates.
+ * The cached objects (system configuration, global security policy, compiled expression profiles)
+ * are published as an immutable {@link Snapshot} through an atomic reference, so readers never lock.
+ * <p>
+ * The snapshot is refreshed asynchronously when a relevant cache invalidation event arrives. Readers coming
+ * before the refresh is done wait for it, so that a change made by this node is visible right after it is made.
+ * Changes made by other nodes (without clusterwide invalidation) are detected by checking the object versions
+ * using getVersion() method in regular interval. Only one reader does that check at a time; the others use
+ * the current snapshot in the meanwhile.
+ * <p>
+ * The objects are read from the repository directly, not via the repository cache. This is to avoid reading
+ * an entry from the global repository cache that was not yet invalidated.
  * <p>
- * TODO: use real repo instead of repo cache
+ * Archetypes are not part of the snapshot. They are read via the repository cache, so that their caching
+ * (time to live, version checks) is driven by the caching profiles, like for other objects.
+ * <p>
+ * A reader may come while the snapshot is being loaded by the same thread, e.g. from a listener invoked
+ * during the loading. It cannot wait for the loading (it would wait for itself), so it loads the snapshot on its own.
  *
  * @author semancik
  */
@@ -68,6 +86,20 @@ public class SystemObjectCache implements Cache {
     private static final Trace LOGGER_CONTENT = TraceManager.getTrace(SystemObjectCache.class.getName() + ".content");
 
     private static final String DOT_CLASS = SystemObjectCache.class.getName() + ".";
+    private static final String OP_REFRESH = DOT_CLASS + "refresh";
+
+    /** How often are the versions of cached system configuration and security policy checked. */
+    private static final long VERSION_CHECK_INTERVAL = 1000;
+
+    /** How many times we try to load the snapshot if invalidations come during the loading. */
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    /** How many snapshot loads can be nested in a single thread; see {@link #loadNested(OperationResult)}. */
+    private static final int MAX_LOAD_DEPTH = 3;
+
+    @Autowired
+    @Qualifier("repositoryService")
+    private RepositoryService repositoryService;
 
     @Autowired
     @Qualifier("cacheRepositoryService")
@@ -75,30 +107,62 @@ public class SystemObjectCache implements Cache {
 
     @Autowired private CacheRegistry cacheRegistry;
 
-    private PrismObject<SystemConfigurationType> systemConfiguration;
-    private Long systemConfigurationCheckTimestamp;
-    private PrismObject<SecurityPolicyType> securityPolicy;
-    private Long securityPolicyCheckTimestamp;
+    /** The current snapshot. It is valid only if its generation is equal to {@link #generation}. */
+    private final AtomicReference<Snapshot> snapshotRef = new AtomicReference<>();
+
+    /** Incremented on each invalidation of system configuration or security policy. */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** The loading of the snapshot that is currently in progress, if any. */
+    private final AtomicReference<CompletableFuture<Snapshot>> pendingLoad = new AtomicReference<>();
+
+    /** Number of snapshot loads in progress in the current thread (the published one and the nested ones). */
+    private final ThreadLocal<Integer> loadDepth = ThreadLocal.withInitial(() -> 0);
+
+    /** Whether a version check is currently in progress. */
+    private final AtomicBoolean versionCheckInProgress = new AtomicBoolean();
+
+    /** Whether an asynchronous refresh is scheduled but not yet started. */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private ExecutorService refreshExecutor;
+
+    /** Called at the start of each snapshot loading. */
+    @VisibleForTesting
+    private volatile Consumer<OperationResult> loadHook;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Readers that used the snapshot without waiting for the version check done by another thread. */
+    private final LongAdder staleHits = new LongAdder();
+
+    /** Readers that waited for a snapshot loading started by another thread. */
+    private final LongAdder waits = new LongAdder();
 
-    /** Compiled expression profiles (from system configuration). */
-    private volatile ExpressionProfiles expressionProfiles;
+    private final LongAdder versionChecks = new LongAdder();
+    private final LongAdder versionCheckMismatches = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder asyncRefreshes = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+
+    /** Loads done by readers called during the loading in the same thread. */
+    private final LongAdder nestedLoads = new LongAdder();
 
     @PostConstruct
     public void register() {
+        refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "system-object-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
         cacheRegistry.registerCache(this);
     }
 
     @PreDestroy
     public void unregister() {
         cacheRegistry.unregisterCache(this);
-    }
-
-    private long getSystemConfigurationExpirationMillis() {
-        return 1000;
-    }
-
-    private long getSecurityPolicyExpirationMillis() {
-        return 1000;
+        refreshExecutor.shutdownNow();
     }
 
     public @Nullable SystemConfigurationType getSystemConfigurationBean(OperationResult result) throws SchemaException {
@@ -106,213 +170,438 @@ public class SystemObjectCache implements Cache {
                 getSystemConfiguration(result));
     }
 
-    public synchronized @Nullable PrismObject<SystemConfigurationType> getSystemConfiguration(OperationResult result)
+    public @Nullable PrismObject<SystemConfigurationType> getSystemConfiguration(OperationResult result)
             throws SchemaException {
-        try {
-            if (!hasValidSystemConfiguration(result)) {
-                LOGGER.trace("Cache MISS: reading system configuration from the repository: {}, version {}",
-                        systemConfiguration, systemConfiguration == null ? null : systemConfiguration.getVersion());
-                loadSystemConfiguration(result);
-            } else {
-                LOGGER.trace("Cache HIT: reusing cached system configuration: {}, version {}",
-                        systemConfiguration, systemConfiguration == null ? null : systemConfiguration.getVersion());
-            }
-        } catch (ObjectNotFoundException e) {
-            systemConfiguration = null;
-            LOGGER.trace("Cache ERROR: System configuration not found", e);
-            result.clearLastSubresultError(); // e.g. because of tests
+        return getSnapshot(result).systemConfiguration();
+    }
+
+    public PrismObject<SecurityPolicyType> getSecurityPolicy() throws SchemaException {
+        OperationResult result = new OperationResult(DOT_CLASS + "getSecurityPolicy");
+        return getSnapshot(result).securityPolicy();
+    }
+
+    /** Invalidates everything. The snapshot is loaded again on the next access. */
+    public void invalidateCaches() {
+        generation.incrementAndGet();
+        snapshotRef.set(null);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public PrismObject<ArchetypeType> getArchetype(String oid, OperationResult result) throws ObjectNotFoundException, SchemaException {
+        return cacheRepositoryService.getObject(ArchetypeType.class, oid, createReadOnlyCollection(), result);
+    }
+
+    public SearchResultList<PrismObject<ArchetypeType>> getAllArchetypes(OperationResult result) throws SchemaException {
+        return cacheRepositoryService.searchObjects(ArchetypeType.class, null, createReadOnlyCollection(), result);
+    }
+
+    public @NotNull ExpressionProfile getExpressionProfile(@NotNull String identifier, OperationResult result)
+            throws SchemaException, ConfigurationException {
+        Snapshot snapshot = getSnapshot(result);
+        ExpressionProfiles expressionProfiles = snapshot.expressionProfiles();
+        if (expressionProfiles == null) {
+            // Compiled outside the snapshot loading, so that wrong profiles do not break getting the system configuration.
+            // Concurrent compilations of the same profiles are harmless.
+            expressionProfiles = compileExpressionProfiles(snapshot.systemConfiguration());
+            snapshotRef.compareAndSet(snapshot, snapshot.withExpressionProfiles(expressionProfiles));
         }
-        return systemConfiguration;
+        return expressionProfiles.getProfile(identifier);
     }
 
-    private boolean hasValidSystemConfiguration(OperationResult result) throws ObjectNotFoundException, SchemaException {
+    private ExpressionProfiles compileExpressionProfiles(PrismObject<SystemConfigurationType> systemConfiguration)
+            throws SchemaException, ConfigurationException {
         if (systemConfiguration == null) {
-            return false;
+            // This should only happen in tests - if ever. Empty expression profiles are just fine.
+            return new ExpressionProfiles(List.of());
         }
-        String cachedVersion = systemConfiguration.getVersion();
-        if (cachedVersion == null) {
-            return false;
+        SystemConfigurationExpressionsType expressions = systemConfiguration.asObjectable().getExpressions();
+        if (expressions == null) {
+            return new ExpressionProfiles(List.of());
+        } else {
+            return new ExpressionProfileCompiler().compile(expressions);
         }
-        if (systemConfigurationCheckTimestamp == null) {
-            return false;
+    }
+
+    /**
+     * Returns the current snapshot, loading it if needed. Only the first reader after the version check interval
+     * checks the versions; other readers get the current snapshot meanwhile.
+     */
+    private @NotNull Snapshot getSnapshot(OperationResult result) throws SchemaException {
+        Snapshot snapshot = snapshotRef.get();
+        if (snapshot == null || snapshot.generation() != generation.get()) {
+            misses.increment();
+            return awaitLoad(result);
+        }
+        if (System.currentTimeMillis() < snapshot.checkedAt() + VERSION_CHECK_INTERVAL) {
+            hits.increment();
+            return snapshot;
         }
-        if (System.currentTimeMillis() < systemConfigurationCheckTimestamp + getSystemConfigurationExpirationMillis()) {
-            return true;
+        if (!versionCheckInProgress.compareAndSet(false, true)) {
+            staleHits.increment();
+            return snapshot;
         }
-        String repoVersion = cacheRepositoryService.getVersion(
-                SystemConfigurationType.class, SystemObjectsType.SYSTEM_CONFIGURATION.value(), result);
-        if (cachedVersion.equals(repoVersion)) {
-            systemConfigurationCheckTimestamp = System.currentTimeMillis();
-            return true;
+        try {
+            return checkVersions(snapshot, result);
+        } finally {
+            versionCheckInProgress.set(false);
         }
-        return false;
     }
 
-    private void loadSystemConfiguration(OperationResult result) throws ObjectNotFoundException, SchemaException {
-        systemConfiguration = cacheRepositoryService.getObject(
-                SystemConfigurationType.class,
-                SystemObjectsType.SYSTEM_CONFIGURATION.value(),
-                GetOperationOptionsBuilder.create()
-                        .readOnly()
-                        .allowNotFound()
-                        .build(),
-                result);
-        expressionProfiles = null;
-        systemConfigurationCheckTimestamp = System.currentTimeMillis();
-        if (systemConfiguration != null && systemConfiguration.getVersion() == null) {
-            LOGGER.warn("Retrieved system configuration with null version");
+    private @NotNull Snapshot checkVersions(Snapshot snapshot, OperationResult result) throws SchemaException {
+        versionChecks.increment();
+        if (isUpToDate(snapshot, result)) {
+            LOGGER.trace("Cache HIT: reusing cached system configuration: {}", snapshot);
+            hits.increment();
+            Snapshot checked = snapshot.withCheckedAt(System.currentTimeMillis());
+            snapshotRef.compareAndSet(snapshot, checked);
+            return checked;
+        } else {
+            LOGGER.trace("Cache MISS: system configuration or security policy changed: {}", snapshot);
+            versionCheckMismatches.increment();
+            misses.increment();
+            generation.compareAndSet(snapshot.generation(), snapshot.generation() + 1);
+            return awaitLoad(result);
         }
     }
 
-    public synchronized PrismObject<SecurityPolicyType> getSecurityPolicy() throws SchemaException {
-        OperationResult result = new OperationResult(DOT_CLASS + "getSecurityPolicy");
-        PrismObject<SystemConfigurationType> systemConfiguration = getSystemConfiguration(result);
-        if (systemConfiguration == null) {
-            securityPolicy = null;
-            return null;
-        } else if (systemConfiguration.asObjectable().getGlobalSecurityPolicyRef() == null
-                || systemConfiguration.asObjectable().getGlobalSecurityPolicyRef().getOid() == null) {
-            securityPolicy = null;
-            String message = "Cache ERROR: System configuration doesn't contains auth policy";
-            LOGGER.trace(message);
-            result.recordFatalError(message);
-            return null;
+    private boolean isUpToDate(Snapshot snapshot, OperationResult result) throws SchemaException {
+        if (!isUpToDate(SystemConfigurationType.class, SystemObjectsType.SYSTEM_CONFIGURATION.value(),
+                snapshot.systemConfiguration(), result)) {
+            return false;
         }
+        String securityPolicyOid = snapshot.getSecurityPolicyOid();
+        return securityPolicyOid == null
+                || isUpToDate(SecurityPolicyType.class, securityPolicyOid, snapshot.securityPolicy(), result);
+    }
 
-        String securityPolicyOid = systemConfiguration.asObjectable().getGlobalSecurityPolicyRef().getOid();
+    private <O extends ObjectType> boolean isUpToDate(
+            Class<O> type, String oid, PrismObject<O> cached, OperationResult result) throws SchemaException {
+        String repoVersion;
         try {
-            if (!hasValidSecurityPolicy(result, securityPolicyOid)) {
-                LOGGER.trace("Cache MISS: reading security policy from the repository: {}, oid: {}, version {}",
-                        securityPolicy, securityPolicyOid, securityPolicy == null ? null : securityPolicy.getVersion());
-                loadSecurityPolicy(result, securityPolicyOid);
-            } else {
-                LOGGER.trace("Cache HIT: reusing cached security policy: {}, oid: {}, version {}",
-                        securityPolicy, securityPolicyOid, securityPolicy == null ? null : securityPolicy.getVersion());
-            }
+            repoVersion = repositoryService.getVersion(type, oid, result);
         } catch (ObjectNotFoundException e) {
-            securityPolicy = null;
-            LOGGER.trace("Cache ERROR: Security policy with oid " + securityPolicyOid + " not found", e);
             result.muteLastSubresultError();
+            repoVersion = null;
+        }
+        if (cached == null) {
+            return repoVersion == null;
+        } else {
+            return cached.getVersion() != null && cached.getVersion().equals(repoVersion);
         }
-        return securityPolicy;
     }
 
-    private boolean hasValidSecurityPolicy(OperationResult result, String oid) throws ObjectNotFoundException, SchemaException {
-        if (securityPolicy == null) {
-            return false;
+    /**
+     * Waits for the loading in progress, or starts one if there is none.
+     *
+     * If the snapshot is being loaded by this thread, the waiting would never end. So the snapshot is loaded
+     * on the spot, without being published.
+     */
+    private @NotNull Snapshot awaitLoad(OperationResult result) throws SchemaException {
+        if (loadDepth.get() > 0) {
+            return loadNested(result);
         }
-        if (securityPolicy.getVersion() == null) {
-            return false;
-        }
-        if (securityPolicyCheckTimestamp == null) {
-            return false;
+        for (;;) {
+            CompletableFuture<Snapshot> pending = pendingLoad.get();
+            if (pending != null) {
+                waits.increment();
+                return join(pending);
+            }
+            CompletableFuture<Snapshot> ours = new CompletableFuture<>();
+            if (pendingLoad.compareAndSet(null, ours)) {
+                return loadAndPublish(ours, result);
+            }
         }
+    }
 
-        if (!securityPolicy.getOid().equals(oid)) {
-            return false;
+    private @NotNull Snapshot loadAndPublish(CompletableFuture<Snapshot> future, OperationResult result)
+            throws SchemaException {
+        loadDepth.set(1);
+        try {
+            Snapshot published;
+            int attempt = 0;
+            do {
+                published = load(generation.get(), result);
+                snapshotRef.set(published);
+            } while (published.generation() != generation.get() && ++attempt < MAX_LOAD_ATTEMPTS);
+            pendingLoad.set(null);
+            future.complete(published);
+            return published;
+        } catch (Throwable t) {
+            loadFailures.increment();
+            pendingLoad.set(null);
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            loadDepth.remove();
         }
+    }
 
-        if (System.currentTimeMillis() < securityPolicyCheckTimestamp + getSecurityPolicyExpirationMillis()) {
-            return true;
+    /** Loads the snapshot for a reader called during the loading in the same thread. */
+    private @NotNull Snapshot loadNested(OperationResult result) throws SchemaException {
+        int depth = loadDepth.get();
+        if (depth >= MAX_LOAD_DEPTH) {
+            throw new IllegalStateException("Recursive loading of the system object cache (depth " + depth + ")");
         }
-        String repoVersion = cacheRepositoryService.getVersion(SecurityPolicyType.class, oid, result);
-        if (securityPolicy.getVersion().equals(repoVersion)) {
-            securityPolicyCheckTimestamp = System.currentTimeMillis();
-            return true;
+        LOGGER.trace("Snapshot requested while being loaded in this thread (depth {}), loading it again", depth);
+        nestedLoads.increment();
+        loadDepth.set(depth + 1);
+        try {
+            return load(generation.get(), result);
+        } finally {
+            loadDepth.set(depth);
         }
-        return false;
     }
 
-    private void loadSecurityPolicy(OperationResult result, String oid) throws ObjectNotFoundException, SchemaException {
-        securityPolicy = cacheRepositoryService.getObject(SecurityPolicyType.class, oid, createReadOnlyCollection(), result);
-        expressionProfiles = null;
-        securityPolicyCheckTimestamp = System.currentTimeMillis();
-        if (securityPolicy != null && securityPolicy.getVersion() == null) {
-            LOGGER.warn("Retrieved auth policy with null version");
+    private static @NotNull Snapshot join(CompletableFuture<Snapshot> future) throws SchemaException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SchemaException schemaException) {
+                throw schemaException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            } else {
+                throw new SystemException(cause);
+            }
         }
     }
 
-    public synchronized void invalidateCaches() {
-        systemConfiguration = null;
-        expressionProfiles = null;
-        securityPolicy = null;
-        securityPolicyCheckTimestamp = null;
+    private @NotNull Snapshot load(long generation, OperationResult result) throws SchemaException {
+        loads.increment();
+        Consumer<OperationResult> hook = loadHook;
+        if (hook != null) {
+            hook.accept(result);
+        }
+        PrismObject<SystemConfigurationType> systemConfiguration = loadSystemConfiguration(result);
+        PrismObject<SecurityPolicyType> securityPolicy = loadSecurityPolicy(systemConfiguration, result);
+        // The objects are shared by all the callers. Not every repository implementation honors the "read only" option,
+        // so they are frozen explicitly.
+        if (systemConfiguration != null) {
+            systemConfiguration.freeze();
+        }
+        if (securityPolicy != null) {
+            securityPolicy.freeze();
+        }
+        Snapshot snapshot = new Snapshot(
+                generation, systemConfiguration, securityPolicy, null, System.currentTimeMillis());
+        LOGGER.trace("Loaded {}", snapshot);
+        return snapshot;
     }
 
-    @SuppressWarnings("WeakerAccess")
-    public PrismObject<ArchetypeType> getArchetype(String oid, OperationResult result) throws ObjectNotFoundException, SchemaException {
-        return cacheRepositoryService.getObject(ArchetypeType.class, oid, createReadOnlyCollection(), result);
+    private PrismObject<SystemConfigurationType> loadSystemConfiguration(OperationResult result) throws SchemaException {
+        PrismObject<SystemConfigurationType> systemConfiguration;
+        try {
+            systemConfiguration = repositoryService.getObject(
+                    SystemConfigurationType.class,
+                    SystemObjectsType.SYSTEM_CONFIGURATION.value(),
+                    GetOperationOptionsBuilder.create()
+                            .readOnly()
+                            .allowNotFound()
+                            .build(),
+                    result);
+        } catch (ObjectNotFoundException e) {
+            LOGGER.trace("Cache ERROR: System configuration not found", e);
+            result.clearLastSubresultError(); // e.g. because of tests
+            return null;
+        }
+        if (systemConfiguration.getVersion() == null) {
+            LOGGER.warn("Retrieved system configuration with null version");
+        }
+        return systemConfiguration;
     }
 
-    public SearchResultList<PrismObject<ArchetypeType>> getAllArchetypes(OperationResult result) throws SchemaException {
-        return cacheRepositoryService.searchObjects(ArchetypeType.class, null, createReadOnlyCollection(), result);
+    private PrismObject<SecurityPolicyType> loadSecurityPolicy(
+            PrismObject<SystemConfigurationType> systemConfiguration, OperationResult result) throws SchemaException {
+        String oid = getSecurityPolicyOid(systemConfiguration);
+        if (oid == null) {
+            LOGGER.trace("Cache ERROR: System configuration doesn't contain security policy");
+            return null;
+        }
+        PrismObject<SecurityPolicyType> securityPolicy;
+        try {
+            securityPolicy = repositoryService.getObject(SecurityPolicyType.class, oid, createReadOnlyCollection(), result);
+        } catch (ObjectNotFoundException e) {
+            LOGGER.trace("Cache ERROR: Security policy with oid " + oid + " not found", e);
+            result.muteLastSubresultError();
+            return null;
+        }
+        if (securityPolicy.getVersion() == null) {
+            LOGGER.warn("Retrieved security policy with null version");
+        }
+        return securityPolicy;
     }
 
-    public synchronized @NotNull ExpressionProfile getExpressionProfile(@NotNull String identifier, OperationResult result)
-            throws SchemaException, ConfigurationException {
-        if (expressionProfiles == null) {
-            expressionProfiles = compileExpressionProfiles(result);
+    private static String getSecurityPolicyOid(PrismObject<SystemConfigurationType> systemConfiguration) {
+        if (systemConfiguration == null) {
+            return null;
         }
-        return expressionProfiles.getProfile(identifier);
+        ObjectReferenceType ref = systemConfiguration.asObjectable().getGlobalSecurityPolicyRef();
+        return ref != null ? ref.getOid() : null;
     }
 
-    private ExpressionProfiles compileExpressionProfiles(OperationResult result) throws SchemaException, ConfigurationException {
-        SystemConfigurationType systemConfiguration = getSystemConfigurationBean(result);
-        if (systemConfiguration == null) {
-            // This should only happen in tests - if ever. Empty expression profiles are just fine.
-            return new ExpressionProfiles(List.of());
+    /** Schedules the loading of a new snapshot, unless one is already scheduled. */
+    private void scheduleRefresh() {
+        if (refreshExecutor == null || !refreshScheduled.compareAndSet(false, true)) {
+            return;
         }
-        SystemConfigurationExpressionsType expressions = systemConfiguration.getExpressions();
-        if (expressions == null) {
-            return new ExpressionProfiles(List.of());
-        } else {
-            return new ExpressionProfileCompiler().compile(expressions);
+        try {
+            refreshExecutor.execute(this::refresh);
+        } catch (RuntimeException e) {
+            // e.g. when shutting down; the snapshot will be loaded on the next access
+            refreshScheduled.set(false);
+            LOGGER.debug("Couldn't schedule the refresh: {}", e.getMessage(), e);
         }
     }
 
+    private void refresh() {
+        refreshScheduled.set(false);
+        asyncRefreshes.increment();
+        OperationResult result = new OperationResult(OP_REFRESH);
+        try {
+            getSnapshot(result);
+        } catch (Throwable t) {
+            // Readers will try again and get the exception themselves.
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't refresh the system object cache", t);
+        }
+    }
+
+    @VisibleForTesting
+    public void setLoadHook(Consumer<OperationResult> loadHook) {
+        this.loadHook = loadHook;
+    }
+
     // We could use SystemConfigurationChangeListener instead but in the future there could be more object types
     // managed by this class.
     @Override
-    public synchronized void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
-        // We ignore OID for now
-        if (type == null || type.isAssignableFrom(SystemConfigurationType.class)) {
-            invalidateCaches();
+    public void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
+        if (matches(type, SystemConfigurationType.class) || isSecurityPolicyInvalidation(type, oid)) {
+            generation.incrementAndGet();
+            scheduleRefresh();
+        }
+    }
+
+    private boolean isSecurityPolicyInvalidation(Class<?> type, String oid) {
+        if (!matches(type, SecurityPolicyType.class)) {
+            return false;
         }
-        expressionProfiles = null;
+        Snapshot snapshot = snapshotRef.get();
+        return oid == null || snapshot == null || oid.equals(snapshot.getSecurityPolicyOid());
     }
 
+    private static boolean matches(Class<?> type, Class<?> cachedType) {
+        return type == null || type.isAssignableFrom(cachedType);
+    }
+
+    /**
+     * Besides hits and misses, the following components are reported:
+     *
+     * - `loads`: number of snapshot loads (secondary: how many of them were triggered by invalidation events),
+     * - `versionChecks`: number of version checks (secondary: how many of them found a change),
+     * - `contention`: number of readers that waited for a load started by another thread (secondary: number of readers
+     * that used the snapshot while another thread was checking the versions),
+     * - `loadFailures`: number of failed loads (secondary: number of loads done by readers called during the loading
+     * in the same thread).
+     */
     @NotNull
     @Override
     public Collection<SingleCacheStateInformationType> getStateInformation() {
+        String name = SystemObjectCache.class.getName();
+        Snapshot snapshot = snapshotRef.get();
         return Collections.singleton(new SingleCacheStateInformationType()
-                .name(SystemObjectCache.class.getName())
-                .size(getSize())
+                .name(name)
+                .size(snapshot != null ? snapshot.size() : 0)
+                .performance(new SingleCachePerformanceInformationType()
+                        .name(name)
+                        .hitCount((int) hits.sum())
+                        .missCount((int) misses.sum()))
+                .component(new ComponentSizeInformationType()
+                        .name("loads")
+                        .size((int) loads.sum())
+                        .secondarySize((int) asyncRefreshes.sum()))
+                .component(new ComponentSizeInformationType()
+                        .name("versionChecks")
+                        .size((int) versionChecks.sum())
+                        .secondarySize((int) versionCheckMismatches.sum()))
+                .component(new ComponentSizeInformationType()
+                        .name("contention")
+                        .size((int) waits.sum())
+                        .secondarySize((int) staleHits.sum()))
+                .component(new ComponentSizeInformationType()
+                        .name("loadFailures")
+                        .size((int) loadFailures.sum())
+                        .secondarySize((int) nestedLoads.sum()))
         );
     }
 
-    private int getSize() {
-        ExpressionProfiles cachedProfiles = this.expressionProfiles;
-
-        return (systemConfiguration != null ? 1 : 0) +
-                (cachedProfiles != null ? cachedProfiles.size() : 0);
-    }
-
     @Override
     public void dumpContent() {
         if (LOGGER_CONTENT.isInfoEnabled()) {
-            PrismObject<SystemConfigurationType> cachedConfiguration = this.systemConfiguration;
+            Snapshot snapshot = snapshotRef.get();
+            PrismObject<SystemConfigurationType> cachedConfiguration = snapshot != null ? snapshot.systemConfiguration() : null;
             if (cachedConfiguration != null) {
-                LOGGER_CONTENT.info("Cached system configuration: {} (version {}); systemConfigurationCheckTimestamp: {}",
+                LOGGER_CONTENT.info("Cached system configuration: {} (version {}); checked at: {}; valid: {}",
                         cachedConfiguration, cachedConfiguration.getVersion(),
-                        XmlTypeConverter.createXMLGregorianCalendar(systemConfigurationCheckTimestamp));
+                        XmlTypeConverter.createXMLGregorianCalendar(snapshot.checkedAt()),
+                        snapshot.generation() == generation.get());
             } else {
                 LOGGER_CONTENT.info("No cached system configuration");
             }
-
-            ExpressionProfiles cachedProfiles = this.expressionProfiles;
+            if (snapshot == null) {
+                return;
+            }
+            PrismObject<SecurityPolicyType> cachedPolicy = snapshot.securityPolicy();
+            if (cachedPolicy != null) {
+                LOGGER_CONTENT.info("Cached security policy: {} (version {})", cachedPolicy, cachedPolicy.getVersion());
+            }
+            ExpressionProfiles cachedProfiles = snapshot.expressionProfiles();
             if (cachedProfiles != null) {
                 cachedProfiles.getProfiles().forEach((k, v) -> LOGGER_CONTENT.info("Cached expression profile: {}: {}", k, v));
             }
         }
     }
+
+    /**
+     * Immutable state of the cache. The objects are read-only.
+     *
+     * @param generation Value of {@link #generation} at the start of the loading.
+     * @param checkedAt When was the snapshot loaded or its versions checked.
+     */
+    private record Snapshot(
+            long generation,
+            @Nullable PrismObject<SystemConfigurationType> systemConfiguration,
+            @Nullable PrismObject<SecurityPolicyType> securityPolicy,
+            @Nullable ExpressionProfiles expressionProfiles,
+            long checkedAt) {
+
+        String getSecurityPolicyOid() {
+            return SystemObjectCache.getSecurityPolicyOid(systemConfiguration);
+        }
+
+        Snapshot withCheckedAt(long checkedAt) {
+            return new Snapshot(generation, systemConfiguration, securityPolicy, expressionProfiles, checkedAt);
+        }
+
+        Snapshot withExpressionProfiles(ExpressionProfiles expressionProfiles) {
+            return new Snapshot(generation, systemConfiguration, securityPolicy, expressionProfiles, checkedAt);
+        }
+
+        int size() {
+            return (systemConfiguration != null ? 1 : 0)
+                    + (securityPolicy != null ? 1 : 0)
+                    + (expressionProfiles != null ? expressionProfiles.size() : 0);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{generation=" + generation
+                    + ", systemConfiguration=" + systemConfiguration
+                    + " (version " + (systemConfiguration != null ? systemConfiguration.getVersion() : null) + ")"
+                    + ", securityPolicy=" + securityPolicy
+                    + " (version " + (securityPolicy != null ? securityPolicy.getVersion() : null) + ")"
+                    + "}";
+        }
+    }
 }
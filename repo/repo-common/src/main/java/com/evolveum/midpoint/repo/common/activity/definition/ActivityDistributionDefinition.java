@@ -9,6 +9,8 @@ package com.evolveum.midpoint.repo.common.activity.definition;
 
 import static com.evolveum.midpoint.util.MiscUtil.or0;
 
+import java.util.Objects;
+
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.util.DebugDumpable;
@@ -70,6 +72,10 @@ public class ActivityDistributionDefinition implements DebugDumpable, Cloneable
         return or0(bean.getWorkerThreads());
     }
 
+    public @NotNull WorkerThreadsKindType getWorkerThreadsKind() {
+        return Objects.requireNonNullElse(bean.getWorkerThreadsKind(), WorkerThreadsKindType.PLATFORM);
+    }
+
     void applyChangeTailoring(@NotNull ActivityTailoringType tailoring) {
         if (tailoring.getDistribution() != null) {
             bean = TailoringUtil.getTailoredBean(bean, tailoring.getDistribution());
@@ -12,6 +12,7 @@ import static java.util.Collections.singletonList;
 
 import static com.evolveum.midpoint.util.MiscUtil.stateCheck;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_BUCKET;
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_NUMBER_OF_COMPLETE_BUCKETS;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityStateType.F_BUCKETING;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType.DELEGATED;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType.READY;
@@ -33,10 +34,16 @@ import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityBucketManagementStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.KnownBucketSets.BucketSet;
+import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.task.ActivityPath;
+import com.evolveum.midpoint.schema.util.task.ActivityStateUtil;
+import com.evolveum.midpoint.schema.util.task.BucketingUtil;
 import com.evolveum.midpoint.task.api.TaskManager;
 import com.evolveum.midpoint.util.DebugDumpable;
 import com.evolveum.midpoint.util.DebugUtil;
+import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
@@ -51,6 +58,9 @@ class BucketOperation implements DebugDumpable {
     private static final String CONTENTION_LOG_NAME = BucketOperation.class.getName() + ".contention";
     static final Trace CONTENTION_LOGGER = TraceManager.getTrace(CONTENTION_LOG_NAME);
 
+    /** How often is the number of complete buckets updated in the coordinator task (if the bucket table is used). */
+    private static final long BUCKET_SET_SUMMARY_UPDATE_INTERVAL = 5000L;
+
     /**
      * OID of the coordinator task. For standalone situations, this is the only task we work with.
      */
@@ -79,6 +89,9 @@ class BucketOperation implements DebugDumpable {
      */
     @NotNull final PassingHolder<BucketProgressOverviewType> bucketProgressHolder;
 
+    /** Bucket sets (in the repository bucket table) known to this node. */
+    @NotNull final KnownBucketSets knownBucketSets;
+
     // Useful beans
 
     final CommonTaskBeans beans;
@@ -88,12 +101,13 @@ class BucketOperation implements DebugDumpable {
 
     BucketOperation(@NotNull String coordinatorTaskOid, @Nullable String workerTaskOid, @NotNull ActivityPath activityPath,
             ActivityBucketManagementStatistics statistics, @Nullable Consumer<BucketProgressOverviewType> bucketProgressConsumer,
-            @NotNull CommonTaskBeans beans) {
+            @NotNull KnownBucketSets knownBucketSets, @NotNull CommonTaskBeans beans) {
         this.coordinatorTaskOid = coordinatorTaskOid;
         this.workerTaskOid = workerTaskOid;
         this.activityPath = activityPath;
         this.statisticsKeeper = new BucketOperationStatisticsKeeper(statistics);
         this.bucketProgressHolder = new PassingHolder<>(bucketProgressConsumer);
+        this.knownBucketSets = knownBucketSets;
         this.beans = beans;
         this.taskManager = beans.taskManager;
         this.plainRepositoryService = beans.plainRepositoryService;
@@ -104,6 +118,48 @@ class BucketOperation implements DebugDumpable {
         return workerTaskOid == null;
     }
 
+    /**
+     * If the buckets of the activity are stored in the repository bucket table, registers the bucket set
+     * as known, and returns it. Otherwise returns null.
+     */
+    @Nullable BucketSet registerBucketSetIfInTable(@NotNull TaskType coordinatorTask) {
+        ItemPath statePath = ActivityStateUtil.getStateItemPath(coordinatorTask.getActivityState(), activityPath);
+        ActivityBucketingStateType bucketing =
+                ActivityStateUtil.getActivityStateRequired(coordinatorTask.getActivityState(), statePath).getBucketing();
+        if (BucketingUtil.isInBucketTable(bucketing)) {
+            return knownBucketSets.register(
+                    coordinatorTaskOid, activityPath, bucketing.getBucketSetId(), statePath, bucketing.getNumberOfBuckets());
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Updates the number of complete buckets in the coordinator task, if the last update is old enough (or if forced).
+     * The buckets are in the bucket table, so this is the only modification of the coordinator task
+     * done when completing buckets; hence it is not done for each bucket.
+     */
+    void updateBucketSetSummary(@NotNull BucketSet bucketSet, int completeBuckets, boolean force,
+            @NotNull OperationResult result)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        long now = System.currentTimeMillis();
+        if (force) {
+            bucketSet.lastSummaryUpdate().set(now);
+        } else {
+            long lastUpdate = bucketSet.lastSummaryUpdate().get();
+            if (now - lastUpdate < BUCKET_SET_SUMMARY_UPDATE_INTERVAL
+                    || !bucketSet.lastSummaryUpdate().compareAndSet(lastUpdate, now)) {
+                return; // too early, or another thread is doing the update right now
+            }
+        }
+        plainRepositoryService.modifyObject(TaskType.class, coordinatorTaskOid,
+                prismContext.deltaFor(TaskType.class)
+                        .item(bucketSet.activityStatePath().append(F_BUCKETING, F_NUMBER_OF_COMPLETE_BUCKETS))
+                        .replace(completeBuckets)
+                        .asItemDeltas(),
+                result);
+    }
+
     /** Buckets have to be detached and ID-less, free to be added to the delta. */
     static Collection<ItemDelta<?, ?>> bucketsAddDeltas(ItemPath statePath, List<WorkBucketType> buckets) {
         try {
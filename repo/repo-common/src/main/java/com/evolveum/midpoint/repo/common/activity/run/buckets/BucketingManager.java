@@ -35,6 +35,7 @@ import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractWorkSegmentationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStoreType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
 
 /**
@@ -46,6 +47,9 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
  * 4. Computes query narrowing for given work bucket: {@link #narrowQueryForWorkBucket(Class, ObjectQuery, ActivityDistributionDefinition, ItemDefinitionProvider, WorkBucketType)}.
  *
  * (The last method should be probably moved to a separate class.)
+ *
+ * The buckets are stored in the coordinator (or standalone) task, or - if configured and supported by the repository -
+ * in the repository bucket table, see {@link WorkBucketStoreType}.
  */
 @Component
 public class BucketingManager {
@@ -53,6 +57,9 @@ public class BucketingManager {
     @Autowired private CommonTaskBeans beans;
     @Autowired private WorkBucketContentHandlerRegistry handlerRegistry;
 
+    /** Bucket sets (in the repository bucket table) known to this node, shared by the bucket operations. */
+    private final KnownBucketSets knownBucketSets = new KnownBucketSets();
+
     /**
      * Obtains work bucket. If no free work buckets are currently present it tries to create one.
      * If there is already delegated work bucket for given worker task, it is returned.
@@ -61,7 +68,8 @@ public class BucketingManager {
             @NotNull ActivityPath activityPath, @Nullable GetBucketOperationOptions options,
             ActivityBucketManagementStatistics statistics, @NotNull OperationResult result)
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException, InterruptedException {
-        return new GetBucketOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics, options, beans)
+        return new GetBucketOperation(
+                coordinatorTaskOid, workerTaskOid, activityPath, statistics, options, knownBucketSets, beans)
                 .execute(result);
     }
 
@@ -75,7 +83,7 @@ public class BucketingManager {
             @NotNull OperationResult result)
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
         new CompleteBucketOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics,
-                bucketProgressConsumer, beans, sequentialNumber)
+                bucketProgressConsumer, knownBucketSets, beans, sequentialNumber)
                 .execute(result);
     }
 
@@ -86,7 +94,8 @@ public class BucketingManager {
             @NotNull ActivityPath activityPath, int sequentialNumber,
             ActivityBucketManagementStatistics statistics, OperationResult result)
             throws ObjectNotFoundException, SchemaException {
-        new ReleaseBucketsOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics, beans, sequentialNumber)
+        new ReleaseBucketsOperation(
+                coordinatorTaskOid, workerTaskOid, activityPath, statistics, knownBucketSets, beans, sequentialNumber)
                 .execute(result);
     }
 
@@ -99,7 +108,8 @@ public class BucketingManager {
     public void releaseAllWorkBucketsFromWorker(@NotNull String coordinatorTaskOid, @NotNull String workerTaskOid,
             @NotNull ActivityPath activityPath, ActivityBucketManagementStatistics statistics, OperationResult result)
             throws ObjectNotFoundException, SchemaException {
-        new ReleaseBucketsOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics, beans, null)
+        new ReleaseBucketsOperation(
+                coordinatorTaskOid, workerTaskOid, activityPath, statistics, knownBucketSets, beans, null)
                 .execute(result);
     }
 
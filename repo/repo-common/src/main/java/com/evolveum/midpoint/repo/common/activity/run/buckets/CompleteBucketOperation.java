@@ -25,6 +25,7 @@ import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityBucketManagementStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.KnownBucketSets.BucketSet;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.task.ActivityPath;
 import com.evolveum.midpoint.schema.util.task.ActivityStateUtil;
@@ -44,11 +45,14 @@ public class CompleteBucketOperation extends BucketOperation {
 
     private final int sequentialNumber;
 
+    /** Set if the buckets were found to be in the bucket table when computing the modifications. */
+    private BucketSet bucketSetFound;
+
     CompleteBucketOperation(@NotNull String coordinatorTaskOid, @Nullable String workerTaskOid,
             @NotNull ActivityPath activityPath, ActivityBucketManagementStatistics collector,
-            @Nullable Consumer<BucketProgressOverviewType> bucketProgressConsumer, CommonTaskBeans beans,
-            int sequentialNumber) {
-        super(coordinatorTaskOid, workerTaskOid, activityPath, collector, bucketProgressConsumer, beans);
+            @Nullable Consumer<BucketProgressOverviewType> bucketProgressConsumer, @NotNull KnownBucketSets knownBucketSets,
+            CommonTaskBeans beans, int sequentialNumber) {
+        super(coordinatorTaskOid, workerTaskOid, activityPath, collector, bucketProgressConsumer, knownBucketSets, beans);
         this.sequentialNumber = sequentialNumber;
     }
 
@@ -56,16 +60,48 @@ public class CompleteBucketOperation extends BucketOperation {
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
 
         LOGGER.trace("Completing work bucket #{} in {} (worker {})", sequentialNumber, coordinatorTaskOid, workerTaskOid);
+
+        BucketSet knownBucketSet = knownBucketSets.get(coordinatorTaskOid, activityPath);
+        if (knownBucketSet != null) {
+            completeInBucketTable(knownBucketSet, result);
+            return;
+        }
+
         ModifyObjectResult<TaskType> modifyObjectResult =
                 plainRepositoryService.modifyObjectDynamically(TaskType.class, coordinatorTaskOid, null,
                         this::computeCompletionModifications, null, result);
-        bucketProgressHolder.passValue();
         statisticsKeeper.addToConflictCounts(modifyObjectResult);
+        if (bucketSetFound != null) {
+            completeInBucketTable(bucketSetFound, result);
+            return;
+        }
+        bucketProgressHolder.passValue();
+        statisticsKeeper.register(BucketingConstants.COMPLETE_WORK_BUCKET);
+    }
+
+    /** A single-row update in the bucket table; the coordinator task is updated only occasionally. */
+    private void completeInBucketTable(@NotNull BucketSet bucketSet, OperationResult result)
+            throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
+        int completeBuckets = plainRepositoryService.completeWorkBucket(bucketSet.id(), sequentialNumber, result);
+        bucketProgressHolder.accept(
+                new BucketProgressOverviewType()
+                        .totalBuckets(bucketSet.numberOfBuckets())
+                        .completeBuckets(completeBuckets));
+        bucketProgressHolder.passValue();
+        // The last bucket is recorded immediately, so that the summary is not left stale when the work is done.
+        Integer numberOfBuckets = bucketSet.numberOfBuckets();
+        boolean last = numberOfBuckets != null && completeBuckets >= numberOfBuckets;
+        updateBucketSetSummary(bucketSet, completeBuckets, last, result);
         statisticsKeeper.register(BucketingConstants.COMPLETE_WORK_BUCKET);
     }
 
     private @NotNull Collection<ItemDelta<?, ?>> computeCompletionModifications(@NotNull TaskType task) {
 
+        bucketSetFound = registerBucketSetIfInTable(task);
+        if (bucketSetFound != null) {
+            return List.of();
+        }
+
         ActivityStateType activityState = ActivityStateUtil.getActivityStateRequired(task.getActivityState(), activityPath);
         ActivityBucketingStateType bucketing = activityState.getBucketing();
         List<WorkBucketType> buckets = CloneUtil.cloneCollectionMembers(bucketing.getBucket());
@@ -14,12 +14,16 @@ import static java.util.Objects.requireNonNullElseGet;
 import static com.evolveum.midpoint.schema.util.task.BucketingUtil.getBuckets;
 import static com.evolveum.midpoint.schema.util.task.BucketingUtil.getWorkerOid;
 import static com.evolveum.midpoint.schema.util.task.work.BucketingConstants.*;
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_BUCKET_SET_ID;
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_NUMBER_OF_BUCKETS;
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_NUMBER_OF_COMPLETE_BUCKETS;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_SCAVENGING;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType.F_WORK_COMPLETE;
 import static com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityStateType.F_BUCKETING;
 
 import java.util.Objects;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import com.evolveum.midpoint.repo.common.activity.definition.ActivityDistributionDefinition;
@@ -32,9 +36,12 @@ import org.jetbrains.annotations.Nullable;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
+import com.evolveum.midpoint.repo.api.WorkBucketClaimResult;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.KnownBucketSets.BucketSet;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityBucketManagementStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.segmentation.BucketFactory;
+import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.task.ActivityPath;
 import com.evolveum.midpoint.schema.util.task.ActivityStateUtil;
@@ -69,11 +76,14 @@ public class GetBucketOperation extends BucketOperation {
     /** If doing sampling, we try to get more buckets. All but the last are immediately marked as COMPLETE. */
     private int bucketsToGet;
 
+    /** To avoid repeating the warning for each bucket. */
+    private static volatile boolean bucketTableUnsupportedReported;
+
     GetBucketOperation(@NotNull String coordinatorTaskOid, @Nullable String workerTaskOid, @NotNull ActivityPath activityPath,
             ActivityBucketManagementStatistics statisticsCollector,
-            @Nullable GetBucketOperationOptions options, CommonTaskBeans beans) {
+            @Nullable GetBucketOperationOptions options, @NotNull KnownBucketSets knownBucketSets, CommonTaskBeans beans) {
         super(coordinatorTaskOid, workerTaskOid, activityPath, statisticsCollector,
-                GetBucketOperationOptions.getProgressConsumer(options), beans);
+                GetBucketOperationOptions.getProgressConsumer(options), knownBucketSets, beans);
         this.options = requireNonNullElseGet(options, GetBucketOperationOptions::standard);
     }
 
@@ -92,7 +102,13 @@ public class GetBucketOperation extends BucketOperation {
         this.bucketsToGet = determineBucketsToGet();
 
         try {
-            if (isStandalone()) {
+            BucketSet bucketSet = getBucketSetIfInTable(result);
+            if (bucketSet != null) {
+                if (!isStandalone()) {
+                    executeInitialDelayForMultiNode();
+                }
+                return getBucketFromTable(bucketSet, result);
+            } else if (isStandalone()) {
                 return getBucketStandalone(result);
             } else {
                 executeInitialDelayForMultiNode();
@@ -122,14 +138,14 @@ public class GetBucketOperation extends BucketOperation {
         }
 
         if (attempt.getBucketToUse() != null) {
-            recordNonNullReturn(attempt);
+            recordNonNullReturn(attempt.getSituationRequired(), attempt.getBucketToUse());
             return attempt.getBucketToUse();
         }
 
         // Nothing found!
 
         stateCheck(attempt.isDefinite(), "Nothing was found with indefinite answer in standalone mode");
-        markWorkComplete(result);
+        markWorkComplete(null, result);
         recordNothingFoundDefinite();
         return null;
     }
@@ -161,53 +177,214 @@ public class GetBucketOperation extends BucketOperation {
                     Objects.requireNonNull(lastAttemptHolder.getValue(), "no last attempt recorded");
 
             if (lastAttempt.getBucketToUse() != null) {
-                recordNonNullReturn(lastAttempt);
+                recordNonNullReturn(lastAttempt.getSituationRequired(), lastAttempt.getBucketToUse());
                 return lastAttempt.getBucketToUse();
             }
 
             // Nothing found!
 
-            if (!options.isScavenger()) {
-                markScavengingIfNotYet(result);
-                recordNothingFoundForNonScavenger();
+            if (!waitForFreeBucket(lastAttempt.isDefinite(), null, result)) {
                 return null;
             }
+            reclaimWronglyAllocatedBuckets(result);
+            // We continue even if we could not find any wrongly allocated
+            // bucket -- maybe someone else found them before us, so we could use them.
+        }
+    }
+
+    /**
+     * Gets the bucket from the repository bucket table. The bucket is claimed without modifying the coordinator task,
+     * so there are no conflicts among the workers. The coordinator task is modified only when there are no more buckets.
+     */
+    private WorkBucketType getBucketFromTable(@NotNull BucketSet bucketSet, OperationResult result)
+            throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException, InterruptedException {
+
+        for (;;) {
+
+            WorkBucketClaimResult claim = plainRepositoryService.claimWorkBucket(
+                    coordinatorTaskOid, activityPath.toString(), bucketSet.id(), workerTaskOid,
+                    lastBucket -> bucketFactory.createNewBuckets(
+                            lastBucket != null ? List.of(lastBucket) : List.of(), 1),
+                    result);
+
+            bucketProgressHolder.accept(
+                    new BucketProgressOverviewType()
+                            .totalBuckets(bucketSet.numberOfBuckets())
+                            .completeBuckets(claim.completeBuckets()));
+            bucketProgressHolder.passValue();
+
+            WorkBucketType bucket = claim.bucket();
+            if (bucket != null) {
+                recordNonNullReturn(toAttemptSituation(claim.situation()), bucket);
+                return bucket;
+            }
 
-            if (lastAttempt.isDefinite() || options.getFreeBucketWaitTime() == 0L) {
-                markWorkComplete(result);
+            // Nothing found!
+
+            boolean definite = claim.situation() == WorkBucketClaimResult.Situation.NOTHING_MORE_DEFINITE;
+            if (isStandalone()) {
+                stateCheck(definite, "Nothing was found with indefinite answer in standalone mode");
+                markWorkComplete(claim.completeBuckets(), result);
                 recordNothingFoundDefinite();
                 return null;
             }
 
-            long toWait = getRemainingTimeToWait();
-            if (toWait <= 0) {
-                markWorkComplete(result); // TODO really marking work as complete?
-                recordNothingFoundWithWaitTimeElapsed();
+            if (!waitForFreeBucket(definite, claim.completeBuckets(), result)) {
                 return null;
             }
+            reclaimWronglyAllocatedBuckets(bucketSet, result);
+        }
+    }
 
-            sleep(toWait);
-            reclaimWronglyAllocatedBuckets(result);
-            // We continue even if we could not find any wrongly allocated
-            // bucket -- maybe someone else found them before us, so we could use them.
+    private static @NotNull Situation toAttemptSituation(@NotNull WorkBucketClaimResult.Situation situation) {
+        return switch (situation) {
+            case FOUND_DELEGATED_TO_ME -> Situation.FOUND_DELEGATED_TO_ME;
+            case FOUND_READY -> Situation.FOUND_READY;
+            case CREATED_NEW -> Situation.CREATED_NEW;
+            case NOTHING_MORE_SOME_DELEGATED -> Situation.NOTHING_MORE_SOME_DELEGATED;
+            case NOTHING_MORE_DEFINITE -> Situation.NOTHING_MORE_DEFINITE;
+        };
+    }
+
+    /**
+     * Treats the situation when no bucket was found in the multi-node case: marks scavenging or work completion,
+     * or waits for a free bucket.
+     *
+     * @param completeBuckets Number of complete buckets, if known (i.e. if the buckets are in the bucket table)
+     * @return true if we waited, and the "get bucket" should be tried again
+     */
+    private boolean waitForFreeBucket(boolean definite, @Nullable Integer completeBuckets, OperationResult result)
+            throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException, InterruptedException {
+        if (!options.isScavenger()) {
+            markScavengingIfNotYet(result);
+            recordNothingFoundForNonScavenger();
+            return false;
         }
+
+        if (definite || options.getFreeBucketWaitTime() == 0L) {
+            markWorkComplete(completeBuckets, result);
+            recordNothingFoundDefinite();
+            return false;
+        }
+
+        long toWait = getRemainingTimeToWait();
+        if (toWait <= 0) {
+            markWorkComplete(completeBuckets, result); // TODO really marking work as complete?
+            recordNothingFoundWithWaitTimeElapsed();
+            return false;
+        }
+
+        sleep(toWait);
+        return true;
+    }
+
+    /**
+     * Returns the bucket set in the repository bucket table, if the table is to be used.
+     * Creates the set (i.e. its ID in the coordinator task) if there's none yet.
+     */
+    private @Nullable BucketSet getBucketSetIfInTable(OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        if (!isBucketTableRequested()) {
+            return null;
+        }
+
+        // Reading the current state each time, because the activity may have been restarted (with a new bucket set)
+        // in the meanwhile. This read does not conflict with other workers.
+        TaskType coordinatorTask = plainRepositoryService.getObject(TaskType.class, coordinatorTaskOid,
+                GetOperationOptions.createReadOnlyCollection(), result).asObjectable();
+        BucketSet existing = registerBucketSetIfInTable(coordinatorTask);
+        if (existing != null) {
+            return existing;
+        } else if (!BucketingUtil.getBuckets(coordinatorTask.getActivityState(), activityPath).isEmpty()) {
+            LOGGER.debug("Buckets for {} in {} are already stored in the task, continuing with that",
+                    activityPath, coordinatorTaskOid);
+            return null;
+        } else {
+            return createBucketSet(result);
+        }
+    }
+
+    private boolean isBucketTableRequested() {
+        ActivityDistributionDefinition distribution = options.getDistributionDefinition();
+        BucketsDefinitionType buckets = distribution != null ? distribution.getBuckets() : null;
+        WorkAllocationDefinitionType allocation = buckets != null ? buckets.getAllocation() : null;
+        if (allocation == null || allocation.getBucketStore() != WorkBucketStoreType.REPOSITORY_TABLE) {
+            return false;
+        } else if (buckets.getSampling() != null) {
+            LOGGER.debug("Sampling is used, so buckets for {} in {} will be stored in the task",
+                    activityPath, coordinatorTaskOid);
+            return false;
+        } else if (!plainRepositoryService.supportsWorkBucketTable()) {
+            if (!bucketTableUnsupportedReported) {
+                bucketTableUnsupportedReported = true;
+                LOGGER.warn("Bucket store '{}' is not supported by the repository, the buckets will be stored in the task",
+                        WorkBucketStoreType.REPOSITORY_TABLE.value());
+            }
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Sets new bucket set ID (along with the summary information) in the coordinator task.
+     * The winner of a potential race then deletes buckets from previous sets for this activity, if there are any.
+     */
+    private @Nullable BucketSet createBucketSet(OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        Holder<BucketSet> bucketSetHolder = new Holder<>();
+        Holder<Boolean> createdHolder = new Holder<>();
+        ModifyObjectResult<TaskType> modifyResult = plainRepositoryService.modifyObjectDynamically(TaskType.class,
+                coordinatorTaskOid, null,
+                task -> {
+                    createdHolder.setValue(false);
+                    BucketSet existing = registerBucketSetIfInTable(task);
+                    bucketSetHolder.setValue(existing);
+                    if (existing != null || !BucketingUtil.getBuckets(task.getActivityState(), activityPath).isEmpty()) {
+                        return List.of(); // someone was faster
+                    }
+                    String bucketSetId = UUID.randomUUID().toString();
+                    Integer numberOfBuckets = bucketFactory.estimateNumberOfBuckets();
+                    ItemPath statePath = ActivityStateUtil.getStateItemPath(task.getActivityState(), activityPath);
+                    ItemPath bucketingPath = statePath.append(F_BUCKETING);
+                    createdHolder.setValue(true);
+                    bucketSetHolder.setValue(
+                            new BucketSet(bucketSetId, statePath, numberOfBuckets, new AtomicLong()));
+                    var deltaBuilder = prismContext.deltaFor(TaskType.class)
+                            .item(bucketingPath.append(F_BUCKET_SET_ID)).replace(bucketSetId)
+                            .item(bucketingPath.append(F_NUMBER_OF_COMPLETE_BUCKETS)).replace(0);
+                    if (numberOfBuckets != null) {
+                        deltaBuilder = deltaBuilder
+                                .item(bucketingPath.append(F_NUMBER_OF_BUCKETS)).replace(numberOfBuckets);
+                    }
+                    return deltaBuilder.asItemDeltas();
+                }, null, result);
+        statisticsKeeper.addToConflictCounts(modifyResult);
+
+        BucketSet bucketSet = bucketSetHolder.getValue();
+        if (bucketSet == null || !Boolean.TRUE.equals(createdHolder.getValue())) {
+            return bucketSet;
+        }
+        LOGGER.debug("Created bucket set {} for {} in {}", bucketSet.id(), activityPath, coordinatorTaskOid);
+        plainRepositoryService.deleteWorkBuckets(coordinatorTaskOid, activityPath.toString(), bucketSet.id(), result);
+        return knownBucketSets.register(coordinatorTaskOid, activityPath,
+                bucketSet.id(), bucketSet.activityStatePath(), bucketSet.numberOfBuckets());
     }
 
     /**
      * Recording situation when there is a bucket to be returned.
      * (The cases where there is no bucket are treated separately for standalone/workers cases.
      */
-    private void recordNonNullReturn(@NotNull GetBucketOperationAttempt attempt) {
-        @NotNull Situation situation = attempt.getSituationRequired();
+    private void recordNonNullReturn(@NotNull Situation situation, @NotNull WorkBucketType bucket) {
         switch (situation) {
             case FOUND_DELEGATED_TO_ME:
-                recordFoundDelegated(attempt);
+                recordFoundDelegated(bucket);
                 break;
             case FOUND_READY:
-                recordFoundReady(attempt);
+                recordFoundReady(bucket);
                 break;
             case CREATED_NEW:
-                recordCreatedNew(attempt);
+                recordCreatedNew(bucket);
                 break;
             default:
                 throw new AssertionError(situation);
@@ -275,22 +452,22 @@ public class GetBucketOperation extends BucketOperation {
         return waitUntil - System.currentTimeMillis();
     }
 
-    private void recordFoundDelegated(@NotNull GetBucketOperationAttempt attempt) {
-        LOGGER.trace("Returning already delegated bucket for {}: {}", workerTaskOid, attempt.getBucketToUse());
+    private void recordFoundDelegated(@NotNull WorkBucketType bucket) {
+        LOGGER.trace("Returning already delegated bucket for {}: {}", workerTaskOid, bucket);
         statisticsKeeper.register(GET_WORK_BUCKET_FOUND_DELEGATED);
     }
 
-    private void recordFoundReady(@NotNull GetBucketOperationAttempt attempt) {
+    private void recordFoundReady(@NotNull WorkBucketType bucket) {
         CONTENTION_LOGGER.trace("Existing bucket acquired after {} ms (conflicts: {}) in {}: {}",
                 System.currentTimeMillis() - statisticsKeeper.start, statisticsKeeper.conflictCount, workerTaskOid,
-                attempt.getBucketToUse());
+                bucket);
         statisticsKeeper.register(GET_WORK_BUCKET_FOUND_READY);
     }
 
-    private void recordCreatedNew(@NotNull GetBucketOperationAttempt attempt) {
+    private void recordCreatedNew(@NotNull WorkBucketType bucket) {
         CONTENTION_LOGGER.trace("New bucket(s) acquired after {} ms (retries: {}) in {}: {}",
                 System.currentTimeMillis() - statisticsKeeper.start, statisticsKeeper.conflictCount, workerTaskOid,
-                attempt.getBucketToUse());
+                bucket);
         statisticsKeeper.register(GET_WORK_BUCKET_CREATED_NEW);
     }
 
@@ -353,6 +530,17 @@ public class GetBucketOperation extends BucketOperation {
         }
     }
 
+    /** The same as {@link #reclaimWronglyAllocatedBuckets(OperationResult)} but for buckets in the bucket table. */
+    private void reclaimWronglyAllocatedBuckets(@NotNull BucketSet bucketSet, OperationResult result)
+            throws SchemaException, ObjectNotFoundException {
+        int reclaimed = plainRepositoryService.reclaimWorkBuckets(bucketSet.id(), getLiveWorkers(result), result);
+        if (reclaimed > 0) {
+            LOGGER.info("Reclaimed {} buckets in {}", reclaimed, coordinatorTaskOid);
+        } else {
+            LOGGER.debug("Reclaimed no buckets in {}", coordinatorTaskOid);
+        }
+    }
+
     private Set<String> getLiveWorkers(OperationResult result) throws SchemaException, ObjectNotFoundException {
         Task coordinator = taskManager.getTask(coordinatorTaskOid, null, result);
         return coordinator.listSubtasks(result).stream()
@@ -384,15 +572,23 @@ public class GetBucketOperation extends BucketOperation {
                 }, null, result);
     }
 
-    private void markWorkComplete(OperationResult result)
+    /**
+     * @param completeBuckets Number of complete buckets to be stored in the summary, if the buckets are in the bucket table
+     */
+    private void markWorkComplete(@Nullable Integer completeBuckets, OperationResult result)
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
         // We use dynamic modify only because we do not know the state item path without loading coordinator task first
         plainRepositoryService.modifyObjectDynamically(TaskType.class, coordinatorTaskOid, null,
                 task -> {
                     ItemPath stateItemPath = ActivityStateUtil.getStateItemPath(task.getActivityState(), activityPath);
-                    return prismContext.deltaFor(TaskType.class)
-                            .item(stateItemPath.append(F_BUCKETING, F_WORK_COMPLETE)).replace(true)
-                            .asItemDeltas();
+                    var deltaBuilder = prismContext.deltaFor(TaskType.class)
+                            .item(stateItemPath.append(F_BUCKETING, F_WORK_COMPLETE)).replace(true);
+                    if (completeBuckets != null) {
+                        deltaBuilder = deltaBuilder
+                                .item(stateItemPath.append(F_BUCKETING, F_NUMBER_OF_COMPLETE_BUCKETS))
+                                .replace(completeBuckets);
+                    }
+                    return deltaBuilder.asItemDeltas();
                 }, null, result);
     }
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.buckets;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.schema.util.task.ActivityPath;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStoreType;
+
+/**
+ * Bucket sets stored in the repository bucket table (see {@link WorkBucketStoreType#REPOSITORY_TABLE})
+ * known to this node.
+ *
+ * They are registered by "get bucket" operations (that read the coordinator task anyway), and used by "complete bucket"
+ * and "release bucket" operations, so that these do not need to read - and lock - the coordinator task.
+ * If a bucket set is not known, the operations find it out from the coordinator task.
+ */
+class KnownBucketSets {
+
+    private static final int MAX_SIZE = 1000;
+
+    /** Key is coordinator task OID + activity path. */
+    private final Cache<String, BucketSet> bucketSets = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    @Nullable BucketSet get(@NotNull String coordinatorTaskOid, @NotNull ActivityPath activityPath) {
+        return bucketSets.getIfPresent(key(coordinatorTaskOid, activityPath));
+    }
+
+    /** Registers the bucket set, keeping the existing information if the set is already known. */
+    @NotNull BucketSet register(@NotNull String coordinatorTaskOid, @NotNull ActivityPath activityPath,
+            @NotNull String bucketSetId, @NotNull ItemPath activityStatePath, @Nullable Integer numberOfBuckets) {
+        return bucketSets.asMap().compute(
+                key(coordinatorTaskOid, activityPath),
+                (k, existing) -> existing != null && existing.id().equals(bucketSetId) ?
+                        existing :
+                        new BucketSet(bucketSetId, activityStatePath, numberOfBuckets, new AtomicLong()));
+    }
+
+    private static String key(String coordinatorTaskOid, ActivityPath activityPath) {
+        return coordinatorTaskOid + ":" + activityPath;
+    }
+
+    /**
+     * @param id Bucket set ID, see `ActivityBucketingStateType.bucketSetId`.
+     * @param activityStatePath Path to the activity state in the coordinator task.
+     * @param numberOfBuckets Expected number of buckets, if known.
+     * @param lastSummaryUpdate When was the summary (number of complete buckets) in the coordinator task updated last time.
+     */
+    record BucketSet(
+            @NotNull String id,
+            @NotNull ItemPath activityStatePath,
+            @Nullable Integer numberOfBuckets,
+            @NotNull AtomicLong lastSummaryUpdate) {
+    }
+}
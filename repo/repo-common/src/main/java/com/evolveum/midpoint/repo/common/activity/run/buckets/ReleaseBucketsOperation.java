@@ -18,6 +18,7 @@ import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityBucketManagementStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.KnownBucketSets.BucketSet;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.task.ActivityPath;
 import com.evolveum.midpoint.schema.util.task.ActivityStateUtil;
@@ -41,16 +42,25 @@ public class ReleaseBucketsOperation extends BucketOperation {
     /** null means all delegated buckets */
     private final Integer sequentialNumber;
 
+    /** Set if the buckets were found to be in the bucket table when computing the modifications. */
+    private BucketSet bucketSetFound;
+
     ReleaseBucketsOperation(@NotNull String coordinatorTaskOid, @NotNull String workerTaskOid,
-            @NotNull ActivityPath activityPath, ActivityBucketManagementStatistics collector, CommonTaskBeans beans,
-            Integer sequentialNumber) {
-        super(coordinatorTaskOid, workerTaskOid, activityPath, collector, null, beans);
+            @NotNull ActivityPath activityPath, ActivityBucketManagementStatistics collector,
+            @NotNull KnownBucketSets knownBucketSets, CommonTaskBeans beans, Integer sequentialNumber) {
+        super(coordinatorTaskOid, workerTaskOid, activityPath, collector, null, knownBucketSets, beans);
         this.sequentialNumber = sequentialNumber;
     }
 
     public void execute(OperationResult result)
             throws ObjectNotFoundException, SchemaException {
 
+        BucketSet knownBucketSet = knownBucketSets.get(coordinatorTaskOid, activityPath);
+        if (knownBucketSet != null) {
+            releaseInBucketTable(knownBucketSet, result);
+            return;
+        }
+
         ModifyObjectResult<TaskType> modifyObjectResult;
         try {
             modifyObjectResult = plainRepositoryService.modifyObjectDynamically(TaskType.class, coordinatorTaskOid, null,
@@ -60,12 +70,28 @@ public class ReleaseBucketsOperation extends BucketOperation {
         }
 
         statisticsKeeper.addToConflictCounts(modifyObjectResult);
+        if (bucketSetFound != null) {
+            releaseInBucketTable(bucketSetFound, result);
+            return;
+        }
+        statisticsKeeper.register(BucketingConstants.RELEASE_WORK_BUCKET);
+    }
+
+    private void releaseInBucketTable(@NotNull BucketSet bucketSet, OperationResult result) {
+        assert workerTaskOid != null;
+        int released = plainRepositoryService.releaseWorkBuckets(bucketSet.id(), workerTaskOid, sequentialNumber, result);
+        LOGGER.trace("Released {} bucket(s) in {} (delegated to {})", released, bucketSet.id(), workerTaskOid);
         statisticsKeeper.register(BucketingConstants.RELEASE_WORK_BUCKET);
     }
 
     private @NotNull Collection<ItemDelta<?, ?>> computeReleaseModifications(@NotNull TaskType task) {
         assert workerTaskOid != null;
 
+        bucketSetFound = registerBucketSetIfInTable(task);
+        if (bucketSetFound != null) {
+            return List.of();
+        }
+
         List<WorkBucketType> bucketsToRelease = new ArrayList<>();
         List<WorkBucketType> currentBuckets = BucketingUtil.getBuckets(task.getActivityState(), activityPath);
 
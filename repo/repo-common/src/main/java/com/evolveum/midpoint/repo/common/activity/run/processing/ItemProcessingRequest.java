@@ -24,6 +24,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import javax.xml.namespace.QName;
 import java.util.Objects;
@@ -65,6 +66,16 @@ public abstract class ItemProcessingRequest<I> implements AcknowledgementSink {
         this.identifier = activityRun.getBeans().lightweightIdentifierGenerator.generate().toString();
     }
 
+    /** For unit tests of the request queueing only. Such a request has no activity run, so it cannot be processed. */
+    @VisibleForTesting
+    @SuppressWarnings("DataFlowIssue")
+    ItemProcessingRequest(int sequentialNumber, @NotNull I item, @NotNull String identifier) {
+        this.sequentialNumber = sequentialNumber;
+        this.item = item;
+        this.activityRun = null;
+        this.identifier = identifier;
+    }
+
     public int getSequentialNumber() {
         return sequentialNumber;
     }
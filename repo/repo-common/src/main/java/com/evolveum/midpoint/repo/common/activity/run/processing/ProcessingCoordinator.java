@@ -28,6 +28,7 @@ import com.evolveum.midpoint.schema.result.OperationResultStatus;
 import com.evolveum.midpoint.task.api.LightweightTaskHandler;
 import com.evolveum.midpoint.task.api.RunningTask;
 import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkerThreadsKindType;
 
 /**
  * Responsible for distributing instances of {@link ItemProcessingRequest} to individual worker threads.
@@ -36,6 +37,10 @@ public class ProcessingCoordinator<I> {
 
     private static final Trace LOGGER = TraceManager.getTrace(ProcessingCoordinator.class);
 
+    /**
+     * How long a worker waits for a request before re-checking whether it can run.
+     * Waiting workers are woken up immediately when a request arrives.
+     */
     private static final long WORKER_THREAD_WAIT_FOR_REQUEST = 100L;
 
     private static final String OP_HANDLE_ASYNCHRONOUSLY = ProcessingCoordinator.class.getName() + ".handleAsynchronously";
@@ -44,6 +49,10 @@ public class ProcessingCoordinator<I> {
     @NotNull private final RunningTask coordinatorTask;
 
     private final int threadsCount;
+
+    /** Whether worker threads are virtual ones. See {@link WorkerThreadsKindType}. */
+    private final boolean virtualThreads;
+
     private final boolean multithreaded;
     private final List<OperationResult> workerSpecificResults;
     private final RequestsBuffer<I> requestsBuffer;
@@ -68,6 +77,8 @@ public class ProcessingCoordinator<I> {
         this.activityRun = activityRun;
 
         this.threadsCount = threadsCount;
+        this.virtualThreads = activityRun.getActivity().getDistributionDefinition().getWorkerThreadsKind()
+                == WorkerThreadsKindType.VIRTUAL;
         if (threadsCount > 0) {
             multithreaded = true;
             workerSpecificResults = new ArrayList<>(threadsCount);
@@ -121,6 +132,7 @@ public class ProcessingCoordinator<I> {
      * is not invoked for significant time.
      */
     private void updateCoordinatorTaskStatistics(OperationResult result) {
+        recordWorkerWaitTimes();
         try {
             activityRun.updateStatistics(true, result);
         } catch (SchemaException | ObjectNotFoundException e) {
@@ -129,6 +141,15 @@ public class ProcessingCoordinator<I> {
         }
     }
 
+    /** Moves queue wait and worker idle times from the buffer to the activity statistics. */
+    private void recordWorkerWaitTimes() {
+        if (requestsBuffer != null) {
+            activityRun.getActivityState().getLiveItemProcessingStatistics().recordWorkerWaitTimes(
+                    requestsBuffer.drainQueueWaitNanos() / 1_000_000.0,
+                    requestsBuffer.drainWorkerIdleNanos() / 1_000_000.0);
+        }
+    }
+
     /**
      * Stop can be requested either internally (by handler or error in any worker thread)
      * or externally (by the task manager)
@@ -170,7 +191,7 @@ public class ProcessingCoordinator<I> {
             subtask.setName("Worker thread " + (i+1) + " of " + threadsCount);
             subtask.setExecutionEnvironment(CloneUtil.clone(coordinatorTask.getExecutionEnvironment()));
             subtask.setExecutionMode(activityRun.getTaskExecutionMode());
-            subtask.startLightweightHandler();
+            subtask.startLightweightHandler(virtualThreads);
             LOGGER.trace("Worker subtask {} created", subtask);
         }
     }
@@ -188,7 +209,11 @@ public class ProcessingCoordinator<I> {
         LOGGER.trace("ProcessingCoordinator: finishing processing. Coordinator task canRun = {}", coordinatorTask.canRun());
 
         allItemsSubmitted.set(true);
+        if (requestsBuffer != null) {
+            requestsBuffer.markAllSubmitted();
+        }
         waitForWorkersFinish(result);
+        recordWorkerWaitTimes();
         nackQueuedRequests(result);
     }
 
@@ -230,7 +255,13 @@ public class ProcessingCoordinator<I> {
             while (canRun(workerTask)) {
 
                 workerTask.refreshThreadLocalStatistics();
-                ItemProcessingRequest<I> request = requestsBuffer.poll(taskIdentifier);
+                ItemProcessingRequest<I> request;
+                try {
+                    request = requestsBuffer.poll(taskIdentifier, WORKER_THREAD_WAIT_FOR_REQUEST);
+                } catch (InterruptedException e) {
+                    LOGGER.trace("Waiting interrupted, exiting");
+                    break;
+                }
 
                 if (request != null) {
                     try {
@@ -241,21 +272,11 @@ public class ProcessingCoordinator<I> {
                         requestsBuffer.markProcessed(request, taskIdentifier);
                         treatOperationResultAfterOperation();
                     }
+                } else if (allItemsSubmitted.get()) {
+                    LOGGER.trace("Queue is empty and nothing more is expected - exiting");
+                    break;
                 } else {
-                    if (allItemsSubmitted.get()) {
-                        LOGGER.trace("Queue is empty and nothing more is expected - exiting");
-                        break;
-                    } else {
-                        LOGGER.trace("No requests to be processed but expecting some to come. Waiting for {} msecs",
-                                WORKER_THREAD_WAIT_FOR_REQUEST);
-                        try {
-                            //noinspection BusyWait
-                            Thread.sleep(WORKER_THREAD_WAIT_FOR_REQUEST);
-                        } catch (InterruptedException e) {
-                            LOGGER.trace("Waiting interrupted, exiting");
-                            break;
-                        }
-                    }
+                    LOGGER.trace("No requests to be processed but expecting some to come. Checking whether we can run.");
                 }
             }
 
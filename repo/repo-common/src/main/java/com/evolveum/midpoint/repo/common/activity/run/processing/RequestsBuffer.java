@@ -8,10 +8,11 @@
 package com.evolveum.midpoint.repo.common.activity.run.processing;
 
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -33,6 +34,14 @@ import com.evolveum.midpoint.util.logging.TraceManager;
  * <p>Reservation is represented by a queue of requests waiting to be processed by specified subtask. A request gets
  * onto this queue if it's fetched from the global queue but cannot be processed because it is bound to a subtask different
  * from the current one. So it's put into "owning" task reserved requests queue. See {@link #reserve(ProcessChangeRequest, String)}.</p>
+ *
+ * <p>Worker threads waiting for requests are woken up when a request is offered, when a request is reserved for them,
+ * or when all the requests are submitted (so they can finish). The coordinator waiting for free space in the queue
+ * is woken up when a worker takes a request. All the state is guarded by {@link #lock}.</p>
+ *
+ * <p>The buffer also measures how long the requests wait in the global queue and how long the workers wait
+ * for the requests. These values are collected by the coordinator, see {@link #drainQueueWaitNanos()}
+ * and {@link #drainWorkerIdleNanos()}.</p>
  */
 @SuppressWarnings("JavadocReference")
 class RequestsBuffer<I> {
@@ -41,10 +50,30 @@ class RequestsBuffer<I> {
 
     private static final long REQUEST_QUEUE_OFFER_TIMEOUT = 1000L;
 
+    /** Guards all the state of the buffer. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when there may be a request for waiting workers, or when they should check {@link #allSubmitted}. */
+    private final Condition requestsAvailable = lock.newCondition();
+
+    /** Signalled when there is a free space in {@link #globalQueue}. */
+    private final Condition spaceAvailable = lock.newCondition();
+
     /**
      * Global queue of waiting requests.
      */
-    private final BlockingQueue<ItemProcessingRequest<I>> globalQueue;
+    private final Queue<QueuedRequest<I>> globalQueue;
+
+    private final int globalQueueCapacity;
+
+    /** Set when no more requests will be offered. */
+    private boolean allSubmitted;
+
+    /** Time spent by requests in {@link #globalQueue}, since the last {@link #drainQueueWaitNanos()}. */
+    private final LongAdder queueWaitNanos = new LongAdder();
+
+    /** Time spent by workers waiting for requests, since the last {@link #drainWorkerIdleNanos()}. */
+    private final LongAdder workerIdleNanos = new LongAdder();
 
     /**
      * Current bindings of resource objects (their identifiers) to subtasks.
@@ -63,30 +92,87 @@ class RequestsBuffer<I> {
     private final Map<String, PriorityQueue<ItemProcessingRequest<I>>> reservedRequestsQueueMap = new HashMap<>();
 
     RequestsBuffer(int threadsCount) {
-        int globalQueueSize = threadsCount*2; // actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
-        globalQueue = new ArrayBlockingQueue<>(globalQueueSize);
+        globalQueueCapacity = threadsCount*2; // actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
+        globalQueue = new ArrayDeque<>(globalQueueCapacity);
     }
 
     /**
-     * Offers a request for processing.
-     *
-     * This method is intentionally NOT synchronized.
+     * Offers a request for processing. Waits (a limited time) for a free space in the queue.
      *
+     * @return false if there was no space in the queue even after waiting
      * @throws InterruptedException If present, the request was not put into the queue.
      */
     boolean offer(ItemProcessingRequest<I> request) throws InterruptedException {
-        return globalQueue.offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
+        lock.lockInterruptibly();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(REQUEST_QUEUE_OFFER_TIMEOUT);
+            while (globalQueue.size() >= globalQueueCapacity) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = spaceAvailable.awaitNanos(remaining);
+            }
+            globalQueue.add(new QueuedRequest<>(request, System.nanoTime()));
+            requestsAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Tries to obtain a request to be processed by the specified subtask.
-     * Does NOT wait, it just checks reserved requests and global queues.
+     * Marks that no more requests will be offered. Wakes up all waiting workers, so they can finish
+     * when there is nothing for them to process.
+     */
+    void markAllSubmitted() {
+        lock.lock();
+        try {
+            allSubmitted = true;
+            requestsAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtains a request to be processed by the specified subtask. If there is none, waits for it at most
+     * the specified time. Does not wait if all the requests were already submitted.
      *
      * Post-conditions:
-     * - Returns null only if there are no reserved nor globally available requests.
+     * - Returns null only if there are no reserved nor globally available requests (after waiting, if applicable).
      * - If the request is not null, the primary identifier of the request is (successfully) bound to the specified task.
      */
-    synchronized ItemProcessingRequest<I> poll(String taskIdentifier) {
+    ItemProcessingRequest<I> poll(String taskIdentifier, long maxWaitMillis) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            long waitStart = 0;
+            try {
+                for (;;) {
+                    ItemProcessingRequest<I> request = pollNoWait(taskIdentifier);
+                    if (request != null || allSubmitted || remaining <= 0) {
+                        return request;
+                    }
+                    if (waitStart == 0) {
+                        waitStart = System.nanoTime();
+                    }
+                    remaining = requestsAvailable.awaitNanos(remaining);
+                }
+            } finally {
+                if (waitStart != 0) {
+                    workerIdleNanos.add(System.nanoTime() - waitStart);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tries to obtain a request to be processed by the specified subtask.
+     * Does NOT wait, it just checks reserved requests and global queues. Must be called under the lock.
+     */
+    private ItemProcessingRequest<I> pollNoWait(String taskIdentifier) {
 
         ItemProcessingRequest<I> reserved = getNextReservedRequest(taskIdentifier);
         if (reserved != null) {
@@ -100,14 +186,18 @@ class RequestsBuffer<I> {
         }
 
         for (;;) {
-            ItemProcessingRequest<I> request = globalQueue.poll();
-            LOGGER.trace("Got request from global queue: {}", request);
+            QueuedRequest<I> queued = globalQueue.poll();
+            LOGGER.trace("Got request from global queue: {}", queued);
 
-            if (request == null) {
+            if (queued == null) {
                 // Nothing in the queue for now. OK, let's try next time.
                 return null;
             }
 
+            queueWaitNanos.add(System.nanoTime() - queued.enqueuedAt());
+            spaceAvailable.signal();
+            ItemProcessingRequest<I> request = queued.request();
+
             if (bind(request, taskIdentifier)) {
                 return request;
             } else {
@@ -171,13 +261,20 @@ class RequestsBuffer<I> {
         reservedRequestsQueueMap
                 .computeIfAbsent(owningTaskIdentifier, key -> new PriorityQueue<>())
                 .offer(request);
+        // We don't know which waiting worker is the owning one.
+        requestsAvailable.signalAll();
     }
 
     /**
      * Marks specified request as processed: Unbinds its primary identifier from the calling subtask.
      */
-    synchronized void markProcessed(ItemProcessingRequest<I> request, String taskIdentifier) {
-        unbind(request, taskIdentifier);
+    void markProcessed(ItemProcessingRequest<I> request, String taskIdentifier) {
+        lock.lock();
+        try {
+            unbind(request, taskIdentifier);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void unbind(ItemProcessingRequest<I> request, String taskIdentifier) {
@@ -215,16 +312,38 @@ class RequestsBuffer<I> {
         return false;
     }
 
-    synchronized int getReservedRequestsCount(String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
-        return reservedRequests != null ? reservedRequests.size() : 0;
+    int getReservedRequestsCount(String taskIdentifier) {
+        lock.lock();
+        try {
+            Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
+            return reservedRequests != null ? reservedRequests.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the time spent by requests in the global queue since the last call. */
+    long drainQueueWaitNanos() {
+        return queueWaitNanos.sumThenReset();
+    }
+
+    /** Returns the time spent by workers waiting for requests since the last call. */
+    long drainWorkerIdleNanos() {
+        return workerIdleNanos.sumThenReset();
     }
 
     // should be called when there's no concurrency
     int nackAllRequests(OperationResult result) {
         AtomicInteger nackCounter = new AtomicInteger();
 
-        nackAll(globalQueue, nackCounter, result);
+        for (;;) {
+            QueuedRequest<I> queued = globalQueue.poll();
+            if (queued == null) {
+                break;
+            }
+            queued.request().acknowledge(false, result);
+            nackCounter.incrementAndGet();
+        }
         reservedRequestsQueueMap.values().forEach(queue -> nackAll(queue, nackCounter, result));
 
         return nackCounter.get();
@@ -241,4 +360,7 @@ class RequestsBuffer<I> {
             }
         }
     }
+
+    private record QueuedRequest<T>(ItemProcessingRequest<T> request, long enqueuedAt) {
+    }
 }
@@ -167,6 +167,20 @@ public class ActivityItemProcessingStatistics extends Initializable {
         return newRecord;
     }
 
+    /**
+     * Adds time spent by items in the queue and by worker threads waiting for items (in multi-threaded processing).
+     * Called by the coordinator in regular intervals, so the values are deltas since the last call.
+     */
+    public synchronized void recordWorkerWaitTimes(double queueWaitMillis, double workerIdleMillis) {
+        assertInitialized();
+        if (queueWaitMillis > 0) {
+            value.setQueueWaitTime(or0(value.getQueueWaitTime()) + queueWaitMillis);
+        }
+        if (workerIdleMillis > 0) {
+            value.setWorkerIdleTime(or0(value.getWorkerIdleTime()) + workerIdleMillis);
+        }
+    }
+
     /**
      * Records the operation end. Must be synchronized because it is called externally (through Operation interface).
      */
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Tests the {@link SystemObjectCache}: that the changes are visible immediately after they are made,
+ * and that concurrent readers (as well as readers called during the loading) are served correctly.
+ */
+@ContextConfiguration(locations = "classpath:ctx-repo-common-test-main.xml")
+@DirtiesContext
+public class TestSystemObjectCache extends AbstractRepoCommonTest {
+
+    private static final String SECURITY_POLICY_OID = "5f1bd7c0-24a5-4b0e-9a6d-0fd1c0b8e7a4";
+    private static final String ARCHETYPE_OID = "9d0f4a83-2c1e-4a51-8e0b-6a7c3f2d1e90";
+
+    private static final int THREADS = 8;
+    private static final int READS_PER_THREAD = 10_000;
+
+    @Autowired private SystemObjectCache systemObjectCache;
+
+    @Test
+    public void test100AddSystemConfiguration() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("security policy and system configuration");
+        repositoryService.addObject(
+                new SecurityPolicyType()
+                        .oid(SECURITY_POLICY_OID)
+                        .name("security-policy")
+                        .asPrismObject(),
+                null, result);
+        systemObjectCache.getSystemConfiguration(result); // caches the "no system configuration" state
+
+        when("system configuration is added");
+        repositoryService.addObject(
+                new SystemConfigurationType()
+                        .oid(SystemObjectsType.SYSTEM_CONFIGURATION.value())
+                        .name("system-configuration")
+                        .description("first")
+                        .globalSecurityPolicyRef(SECURITY_POLICY_OID, SecurityPolicyType.COMPLEX_TYPE)
+                        .asPrismObject(),
+                null, result);
+
+        then("it is visible immediately, along with the security policy");
+        PrismObject<SystemConfigurationType> systemConfiguration = systemObjectCache.getSystemConfiguration(result);
+        assertThat(systemConfiguration).as("system configuration").isNotNull();
+        assertThat(systemConfiguration.asObjectable().getDescription()).isEqualTo("first");
+        assertThat(systemObjectCache.getSecurityPolicy()).as("security policy").isNotNull();
+
+        and("it is cached");
+        assertThat(systemObjectCache.getSystemConfiguration(result)).isSameAs(systemConfiguration);
+    }
+
+    @Test
+    public void test110ModifySystemConfiguration() throws Exception {
+        OperationResult result = createOperationResult();
+
+        when("system configuration is modified");
+        repositoryService.modifyObject(
+                SystemConfigurationType.class,
+                SystemObjectsType.SYSTEM_CONFIGURATION.value(),
+                prismContext.deltaFor(SystemConfigurationType.class)
+                        .item(SystemConfigurationType.F_DESCRIPTION).replace("second")
+                        .asItemDeltas(),
+                result);
+
+        then("the change is visible immediately");
+        assertThat(systemObjectCache.getSystemConfigurationBean(result).getDescription()).isEqualTo("second");
+    }
+
+    @Test
+    public void test120ModifySecurityPolicy() throws Exception {
+        OperationResult result = createOperationResult();
+
+        when("security policy is modified");
+        repositoryService.modifyObject(
+                SecurityPolicyType.class,
+                SECURITY_POLICY_OID,
+                prismContext.deltaFor(SecurityPolicyType.class)
+                        .item(SecurityPolicyType.F_DESCRIPTION).replace("modified")
+                        .asItemDeltas(),
+                result);
+
+        then("the change is visible immediately");
+        assertThat(systemObjectCache.getSecurityPolicy().asObjectable().getDescription()).isEqualTo("modified");
+    }
+
+    @Test
+    public void test130ModifyArchetype() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("an archetype that is cached");
+        repositoryService.addObject(
+                new ArchetypeType()
+                        .oid(ARCHETYPE_OID)
+                        .name("archetype")
+                        .asPrismObject(),
+                null, result);
+        assertThat(systemObjectCache.getArchetype(ARCHETYPE_OID, result)).isNotNull();
+        assertThat(systemObjectCache.getAllArchetypes(result)).hasSize(1);
+
+        when("archetype is modified");
+        repositoryService.modifyObject(
+                ArchetypeType.class,
+                ARCHETYPE_OID,
+                prismContext.deltaFor(ArchetypeType.class)
+                        .item(ArchetypeType.F_DESCRIPTION).replace("modified")
+                        .asItemDeltas(),
+                result);
+
+        then("the change is visible immediately");
+        assertThat(systemObjectCache.getArchetype(ARCHETYPE_OID, result).asObjectable().getDescription())
+                .isEqualTo("modified");
+        assertThat(systemObjectCache.getAllArchetypes(result).get(0).asObjectable().getDescription())
+                .isEqualTo("modified");
+    }
+
+    /** Readers running concurrently with modifications; each of them must see a consistent state. */
+    @Test
+    public void test200ConcurrentReaders() throws Exception {
+        OperationResult result = createOperationResult();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            when("readers run while the system configuration is being modified");
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    OperationResult readerResult = new OperationResult("reader");
+                    for (int j = 0; j < READS_PER_THREAD; j++) {
+                        assertThat(systemObjectCache.getSystemConfiguration(readerResult)).isNotNull();
+                        assertThat(systemObjectCache.getSecurityPolicy()).isNotNull();
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 20; i++) {
+                repositoryService.modifyObject(
+                        SystemConfigurationType.class,
+                        SystemObjectsType.SYSTEM_CONFIGURATION.value(),
+                        prismContext.deltaFor(SystemConfigurationType.class)
+                                .item(SystemConfigurationType.F_DESCRIPTION).replace("concurrent " + i)
+                                .asItemDeltas(),
+                        result);
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        then("the last change is visible");
+        assertThat(systemObjectCache.getSystemConfigurationBean(result).getDescription()).isEqualTo("concurrent 19");
+
+        and("statistics are reported");
+        SingleCacheStateInformationType state = systemObjectCache.getStateInformation().iterator().next();
+        displayValue("state", state);
+        assertThat(state.getPerformance().getHitCount()).as("hits").isPositive();
+        assertThat(state.getComponent())
+                .extracting(ComponentSizeInformationType::getName)
+                .contains("loads", "versionChecks", "contention", "loadFailures");
+    }
+
+    /** A reader called during the loading in the same thread (e.g. from a listener) must not wait for itself. */
+    @Test
+    public void test210ReaderDuringLoadingInSameThread() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("a hook that reads the system configuration when the loading starts (only the first time)");
+        AtomicBoolean hookCalled = new AtomicBoolean();
+        AtomicReference<PrismObject<SystemConfigurationType>> readDuringLoading = new AtomicReference<>();
+        systemObjectCache.setLoadHook(hookResult -> {
+            if (hookCalled.compareAndSet(false, true)) {
+                try {
+                    readDuringLoading.set(systemObjectCache.getSystemConfiguration(hookResult));
+                } catch (SchemaException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            when("the cache is invalidated and the system configuration is read");
+            systemObjectCache.invalidateCaches();
+            Future<PrismObject<SystemConfigurationType>> future =
+                    executor.submit(() -> systemObjectCache.getSystemConfiguration(new OperationResult("reader")));
+
+            then("both the reader and the nested reader get the system configuration");
+            assertThat(future.get(1, TimeUnit.MINUTES)).as("system configuration").isNotNull();
+            assertThat(hookCalled).as("hook called").isTrue();
+            assertThat(readDuringLoading.get()).as("system configuration read during loading").isNotNull();
+            assertThat(readDuringLoading.get().asObjectable().getDescription()).isEqualTo("concurrent 19");
+        } finally {
+            systemObjectCache.setLoadHook(null);
+            executor.shutdownNow();
+        }
+
+        and("the nested load is reported");
+        SingleCacheStateInformationType state = systemObjectCache.getStateInformation().iterator().next();
+        assertThat(state.getComponent())
+                .filteredOn(component -> "loadFailures".equals(component.getName()))
+                .singleElement()
+                .extracting(ComponentSizeInformationType::getSecondarySize)
+                .isEqualTo(1);
+        assertThat(systemObjectCache.getSystemConfiguration(result)).isNotNull();
+    }
+}
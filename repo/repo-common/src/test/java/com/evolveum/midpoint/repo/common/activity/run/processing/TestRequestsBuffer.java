@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.common.util.OperationExecutionRecorderForTasks;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.statistics.IterationItemInformation;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SynchronizationSituationType;
+
+/**
+ * Tests the hand-over of requests between the coordinator and the worker threads in {@link RequestsBuffer}:
+ * waiting for a free space (size limit), waiting for requests (time limit), waking up the waiting threads,
+ * and concurrent offering and polling of correlated requests.
+ */
+public class TestRequestsBuffer extends AbstractUnitTest {
+
+    /** See `RequestsBuffer.REQUEST_QUEUE_OFFER_TIMEOUT`. */
+    private static final long OFFER_TIMEOUT = 1000L;
+
+    /** Generous limit for operations that should return "immediately" after being woken up. */
+    private static final long WAKE_UP_LIMIT = 5000L;
+
+    private static final String TASK_1 = "task-1";
+
+    @Test
+    public void test100OfferWaitsForFreeSpace() throws Exception {
+        given("buffer for one thread (i.e. with capacity of 2) that is full");
+        RequestsBuffer<String> buffer = new RequestsBuffer<>(1);
+        assertThat(buffer.offer(request(1, null))).isTrue();
+        assertThat(buffer.offer(request(2, null))).isTrue();
+
+        when("another request is offered");
+        long start = System.currentTimeMillis();
+        boolean accepted = buffer.offer(request(3, null));
+        long duration = System.currentTimeMillis() - start;
+
+        then("it is refused after the timeout");
+        assertThat(accepted).as("accepted").isFalse();
+        assertThat(duration).as("duration").isGreaterThanOrEqualTo(OFFER_TIMEOUT - 50);
+
+        when("a request is taken while another one is being offered");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ScheduledFuture<ItemProcessingRequest<String>> polled =
+                    executor.schedule(() -> buffer.poll(TASK_1, 0), 100, TimeUnit.MILLISECONDS);
+            boolean acceptedAfterPoll = buffer.offer(request(4, null));
+
+            then("the offer is accepted");
+            assertThat(acceptedAfterPoll).as("accepted after poll").isTrue();
+            assertThat(polled.get().getSequentialNumber()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        then("requests are taken in the order in which they were offered");
+        assertThat(buffer.poll(TASK_1, 0).getSequentialNumber()).isEqualTo(2);
+        assertThat(buffer.poll(TASK_1, 0).getSequentialNumber()).isEqualTo(4);
+        assertThat(buffer.poll(TASK_1, 0)).isNull();
+    }
+
+    @Test
+    public void test110PollWaitsForRequest() throws Exception {
+        given("empty buffer");
+        RequestsBuffer<String> buffer = new RequestsBuffer<>(2);
+
+        when("a request is polled with a timeout");
+        long start = System.currentTimeMillis();
+        ItemProcessingRequest<String> polled = buffer.poll(TASK_1, 200);
+        long duration = System.currentTimeMillis() - start;
+
+        then("nothing is returned after the timeout");
+        assertThat(polled).isNull();
+        assertThat(duration).as("duration").isGreaterThanOrEqualTo(150);
+        assertThat(buffer.drainWorkerIdleNanos())
+                .as("worker idle time")
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    public void test120WaitingWorkerIsWokenByOffer() throws Exception {
+        given("empty buffer with a worker waiting for a request");
+        RequestsBuffer<String> buffer = new RequestsBuffer<>(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long start = System.currentTimeMillis();
+            Future<ItemProcessingRequest<String>> polled = executor.submit(() -> buffer.poll(TASK_1, 60_000));
+
+            when("a request is offered");
+            Thread.sleep(100);
+            assertThat(buffer.offer(request(1, null))).isTrue();
+
+            then("the worker gets it without waiting for the poll timeout");
+            assertThat(polled.get(WAKE_UP_LIMIT, TimeUnit.MILLISECONDS).getSequentialNumber()).isEqualTo(1);
+            assertThat(System.currentTimeMillis() - start).as("duration").isLessThan(WAKE_UP_LIMIT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test130WaitingWorkerIsWokenWhenAllSubmitted() throws Exception {
+        given("empty buffer with a worker waiting for a request");
+        RequestsBuffer<String> buffer = new RequestsBuffer<>(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ItemProcessingRequest<String>> polled = executor.submit(() -> buffer.poll(TASK_1, 60_000));
+
+            when("all requests are marked as submitted");
+            Thread.sleep(100);
+            buffer.markAllSubmitted();
+
+            then("the worker finishes without waiting for the poll timeout");
+            assertThat(polled.get(WAKE_UP_LIMIT, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        then("subsequent polls do not wait");
+        long start = System.currentTimeMillis();
+        assertThat(buffer.poll(TASK_1, 60_000)).isNull();
+        assertThat(System.currentTimeMillis() - start).as("duration").isLessThan(WAKE_UP_LIMIT);
+    }
+
+    @Test
+    public void test140NackAllRequests() throws Exception {
+        given("buffer with some requests, one of them being reserved for a task");
+        RequestsBuffer<String> buffer = new RequestsBuffer<>(2);
+        TestRequest r1 = request(1, "a");
+        TestRequest r2 = request(2, "a");
+        TestRequest r3 = request(3, "b");
+        buffer.offer(r1);
+        buffer.offer(r2);
+        buffer.offer(r3);
+        assertThat(buffer.poll(TASK_1, 0)).isSameAs(r1);
+        assertThat(buffer.poll("task-2", 0))
+                .as("request polled by task-2")
+                .isSameAs(r3); // r2 is reserved for task-1, as "a" is bound to it
+        assertThat(buffer.getReservedRequestsCount(TASK_1)).isEqualTo(1);
+
+        when("the requests are nacked");
+        int nacked = buffer.nackAllRequests(new OperationResult("nack"));
+
+        then("the unprocessed (reserved) request is nacked");
+        assertThat(nacked).isEqualTo(1);
+        assertThat(r2.acknowledgements).containsExactly(false);
+        assertThat(r1.acknowledgements).isEmpty();
+        assertThat(r3.acknowledgements).isEmpty();
+    }
+
+    @Test
+    public void test200ConcurrentOfferAndPoll() throws Exception {
+        int threads = 4;
+        int requests = 2000;
+        int correlationValues = 10;
+
+        given("buffer with " + threads + " workers");
+        RequestsBuffer<String> buffer = new RequestsBuffer<>(threads);
+        Map<Object, String> inProgress = new ConcurrentHashMap<>();
+        Map<Object, Integer> lastProcessed = new ConcurrentHashMap<>();
+        Set<Integer> processed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        List<String> problems = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean allSubmitted = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String taskId = "worker-" + i;
+            workers.add(executor.submit(() -> {
+                for (;;) {
+                    ItemProcessingRequest<String> request = buffer.poll(taskId, 100);
+                    if (request == null) {
+                        if (allSubmitted.get()) {
+                            return null; // nothing in the queue nor reserved for us, and nothing more will come
+                        } else {
+                            continue; // timed out
+                        }
+                    }
+                    Object correlationValue = ((TestRequest) request).getCorrelationValue();
+                    String otherTask = inProgress.putIfAbsent(correlationValue, taskId);
+                    if (otherTask != null) {
+                        problems.add(request + " processed concurrently by " + taskId + " and " + otherTask);
+                    }
+                    Integer previous = lastProcessed.put(correlationValue, request.getSequentialNumber());
+                    if (previous != null && previous > request.getSequentialNumber()) {
+                        problems.add(request + " processed after #" + previous);
+                    }
+                    if (!processed.add(request.getSequentialNumber())) {
+                        duplicates.incrementAndGet();
+                    }
+                    inProgress.remove(correlationValue);
+                    buffer.markProcessed(request, taskId);
+                }
+            }));
+        }
+
+        when("requests are offered concurrently with the processing");
+        try {
+            for (int i = 0; i < requests; i++) {
+                TestRequest request = request(i, "value-" + (i % correlationValues));
+                while (!buffer.offer(request)) {
+                    // The workers are slow, let's try again.
+                }
+            }
+            allSubmitted.set(true);
+            buffer.markAllSubmitted();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        then("each request is processed exactly once, in the order for each correlation value");
+        assertThat(problems).as("problems").isEmpty();
+        assertThat(duplicates.get()).as("duplicates").isZero();
+        assertThat(processed).as("processed requests").hasSize(requests);
+        for (int i = 0; i < threads; i++) {
+            assertThat(buffer.getReservedRequestsCount("worker-" + i)).as("reserved requests").isZero();
+        }
+    }
+
+    private TestRequest request(int sequentialNumber, @Nullable Object correlationValue) {
+        return new TestRequest(sequentialNumber, correlationValue);
+    }
+
+    private static class TestRequest extends ItemProcessingRequest<String>
+            implements CorrelatableProcessingRequest, Comparable<TestRequest> {
+
+        private final Object correlationValue;
+        private final List<Boolean> acknowledgements = Collections.synchronizedList(new ArrayList<>());
+
+        TestRequest(int sequentialNumber, @Nullable Object correlationValue) {
+            super(sequentialNumber, "item-" + sequentialNumber, "request-" + sequentialNumber);
+            this.correlationValue = correlationValue;
+        }
+
+        @Override
+        public Object getCorrelationValue() {
+            return correlationValue;
+        }
+
+        @Override
+        public int compareTo(@NotNull TestRequest other) {
+            return Integer.compare(getSequentialNumber(), other.getSequentialNumber());
+        }
+
+        @Override
+        public void acknowledge(boolean release, OperationResult result) {
+            acknowledgements.add(release);
+        }
+
+        @Override
+        public OperationExecutionRecorderForTasks.Target getOperationExecutionRecordingTarget() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getObjectOidToRecordRetryTrigger() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public @NotNull IterationItemInformation getIterationItemInformation() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public @Nullable String getItemOid() {
+            return null;
+        }
+
+        @Override
+        public @Nullable SynchronizationSituationType getSynchronizationSituationOnProcessingStart() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.common.tasks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.testng.SkipException;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.common.AbstractRepoCommonTest;
+import com.evolveum.midpoint.repo.common.tasks.handlers.MockRecorder;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.TestObject;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Compares bucket management overhead when buckets are stored in the coordinator task and in the repository bucket table,
+ * for various numbers of worker tasks.
+ *
+ * The activity has many small buckets, so the time is spent mainly in getting and completing the buckets.
+ * Reported are the processing time and the number of conflicts (modification retries) of bucket management operations.
+ *
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * The bucket table is supported only by the native repository.
+ */
+@DirtiesContext
+public class BucketStorePerfTest extends AbstractRepoCommonTest
+        implements PerformanceTestClassMixin {
+
+    private static final File TEST_DIR = new File("src/test/resources/tasks/perf");
+
+    private static final TestObject<TaskType> TASK_BUCKET_STORE_PERF =
+            TestObject.file(TEST_DIR, "task-bucket-store-perf.xml", "7f2d4c1a-6b3e-4e8d-9a05-c1e2b3d4f5a6");
+
+    /** Must correspond to the task definition. */
+    private static final int ITEMS = 2000;
+
+    /** Must correspond to the task definition. */
+    private static final int BUCKETS = 1000;
+
+    private static final long TIMEOUT = 1_800_000;
+
+    @Autowired private MockRecorder recorder;
+
+    @DataProvider
+    public Object[][] configurations() {
+        return new Object[][] {
+                { 4, WorkBucketStoreType.COORDINATOR_TASK },
+                { 4, WorkBucketStoreType.REPOSITORY_TABLE },
+                { 16, WorkBucketStoreType.COORDINATOR_TASK },
+                { 16, WorkBucketStoreType.REPOSITORY_TABLE },
+                { 32, WorkBucketStoreType.COORDINATOR_TASK },
+                { 32, WorkBucketStoreType.REPOSITORY_TABLE },
+        };
+    }
+
+    @Test(dataProvider = "configurations")
+    public void test100ProcessBuckets(int workers, WorkBucketStoreType bucketStore) throws Exception {
+        if (bucketStore == WorkBucketStoreType.REPOSITORY_TABLE && !plainRepositoryService.supportsWorkBucketTable()) {
+            throw new SkipException("Bucket table is not supported by the repository");
+        }
+
+        given("task with " + workers + " workers and buckets stored in " + bucketStore.value());
+        OperationResult result = getTestTask().getResult();
+        recorder.reset();
+
+        PrismObject<TaskType> task = TASK_BUCKET_STORE_PERF.getFresh();
+        ActivityDistributionDefinitionType distribution = task.asObjectable().getActivity().getDistribution();
+        distribution.getBuckets().getAllocation().setBucketStore(bucketStore);
+        distribution.getWorkers().getWorkersPerNode().get(0).setCount(workers);
+
+        when("task is run");
+        Stopwatch stopwatch = stopwatch(workers + "-" + bucketStore.value(), "Processing of " + BUCKETS + " buckets");
+        long start = System.currentTimeMillis();
+        try (Split ignored = stopwatch.start()) {
+            taskManager.addTask(task, result);
+            waitForTaskTreeCloseCheckingSuspensionWithError(TASK_BUCKET_STORE_PERF.oid, result, TIMEOUT);
+        }
+        long duration = System.currentTimeMillis() - start;
+
+        then("all items are processed");
+        assertThat(recorder.getExecutions()).as("recorder").hasSize(ITEMS);
+
+        int conflicts = 0;
+        Task root = taskManager.getTaskPlain(TASK_BUCKET_STORE_PERF.oid, result);
+        for (Task worker : root.listSubtasks(result)) {
+            ActivityStatisticsType statistics = worker.getWorkState().getActivity().getStatistics();
+            ActivityBucketManagementStatisticsType bucketManagement =
+                    statistics != null ? statistics.getBucketManagement() : null;
+            if (bucketManagement != null) {
+                for (BucketManagementOperationStatisticsType operation : bucketManagement.getOperation()) {
+                    conflicts += operation.getConflictCount() != null ? operation.getConflictCount() : 0;
+                }
+            }
+        }
+        display(String.format("%d workers, %s: %d buckets in %d ms, %.1f buckets/s, %d conflicts",
+                workers, bucketStore.value(), BUCKETS, duration, BUCKETS * 1000.0 / duration, conflicts));
+
+        taskManager.deleteTaskTree(TASK_BUCKET_STORE_PERF.oid, result);
+    }
+}
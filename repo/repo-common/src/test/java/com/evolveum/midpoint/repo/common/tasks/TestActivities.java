@@ -65,7 +65,8 @@ import com.evolveum.midpoint.util.DebugUtil;
  * 1. running simple mock activity ({@link #test120RunSimpleTask()}),
  * 2. running mock semi-composite activity ({@link #test130RunCompositeTask()}),
  * 3. running custom composite activity ({@link #test140RunCustomCompositeTask()}),
- * 4. running mock iterative activity, including bucketing ({@link #test150RunMockIterativeTask()}, {@link #test155RunBucketedMockIterativeTask()}),
+ * 4. running mock iterative activity, including bucketing ({@link #test150RunMockIterativeTask()}, {@link #test155RunBucketedMockIterativeTask()})
+ * and virtual worker threads ({@link #test157RunMockIterativeTaskInVirtualThreads()}),
  * 5. running mock search-based activity, including bucketing ({@link #test160RunMockSearchBasedTask()}, {@link #test170RunBucketedTask()}),
  * 6. running tree of bucketed activities ({@link #test180RunBucketedTree()}),
  * 7. delegation of processing to separate task(s) - for simple activity ({@link #test200Subtask()}) or children
@@ -96,6 +97,7 @@ public class TestActivities extends AbstractRepoCommonTest {
     private static final TestObject<TaskType> TASK_140_CUSTOM_COMPOSITE = TestObject.file(TEST_DIR, "task-140-custom-composite.xml", "65866e01-73cd-4249-9b7b-03ebc4413bd0");
     private static final TestObject<TaskType> TASK_150_MOCK_ITERATIVE = TestObject.file(TEST_DIR, "task-150-mock-iterative.xml", "c21785e9-1c67-492f-bc79-0c51f74561a1");
     private static final TestObject<TaskType> TASK_155_MOCK_ITERATIVE_BUCKETED = TestObject.file(TEST_DIR, "task-155-mock-iterative-bucketed.xml", "02a94071-2eff-4ca0-aa63-3fdf9d540064");
+    private static final TestObject<TaskType> TASK_157_MOCK_ITERATIVE_VIRTUAL_THREADS = TestObject.file(TEST_DIR, "task-157-mock-iterative-virtual-threads.xml", "8b1f0c52-4d3e-4f0a-9a57-2f6c1e4d7b30");
     private static final TestObject<TaskType> TASK_160_MOCK_SEARCH_ITERATIVE = TestObject.file(TEST_DIR, "task-160-mock-search-iterative.xml", "9d8384b3-a007-44e2-a9f7-084a64bdc285");
     private static final TestObject<TaskType> TASK_170_MOCK_BUCKETED = TestObject.file(TEST_DIR, "task-170-mock-bucketed.xml", "04e257d1-bb25-4675-8e00-f248f164fbc3");
     private static final TestObject<TaskType> TASK_180_BUCKETED_TREE = TestObject.file(TEST_DIR, "task-180-bucketed-tree.xml", "ac3220c5-6ded-4b94-894e-9ed39c05db66");
@@ -649,6 +651,67 @@ public class TestActivities extends AbstractRepoCommonTest {
                 .assertHasWallClockTime();
     }
 
+    /**
+     * Runs mock iterative activity with worker threads being virtual ones, and checks the items were processed in them.
+     * (On JVMs without virtual threads, platform threads are used; the result should be the same.)
+     */
+    @Test
+    public void test157RunMockIterativeTaskInVirtualThreads() throws Exception {
+        given();
+
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        recorder.reset();
+
+        Task task1 = taskAdd(TASK_157_MOCK_ITERATIVE_VIRTUAL_THREADS, result);
+
+        when();
+
+        waitForTaskClose(task1.getOid(), result, 10000);
+
+        then();
+
+        displayDumpable("recorder", recorder);
+
+        task1.refresh(result);
+        // @formatter:off
+        assertTask(task1, "after")
+                .display()
+                .assertSuccess()
+                .assertClosed()
+                .assertProgress(20)
+                .activityState()
+                    .rootActivity()
+                        .assertComplete()
+                        .assertSuccess()
+                        .itemProcessingStatistics()
+                            .assertTotalCounts(20, 0, 0)
+                            .assertRuns(1)
+                        .end();
+        // @formatter:on
+
+        assertThat(recorder.getExecutions()).as("recorder")
+                .hasSize(20)
+                .contains("Item: 1", "Item: 20");
+
+        boolean virtualThreadsAvailable = Runtime.version().feature() >= 21;
+        assertThat(recorder.getExecutionThreads()).as("execution threads")
+                .isNotEmpty()
+                .allSatisfy((name, virtual) -> {
+                    assertThat(virtual).as("thread '%s' is virtual", name).isEqualTo(virtualThreadsAvailable);
+                    if (virtualThreadsAvailable) {
+                        assertThat(name).as("thread name").startsWith("midpoint-virtual-worker-");
+                    }
+                });
+
+        assertPerformance(task1.getOid(), "after")
+                .display()
+                .assertItemsProcessed(20)
+                .assertErrors(0)
+                .assertProgress(20);
+    }
+
     /**
      * Runs mock search-based activity.
      */
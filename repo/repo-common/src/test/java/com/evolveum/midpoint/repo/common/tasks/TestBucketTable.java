@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.common.tasks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.test.IntegrationTestTools.waitFor;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import jakarta.annotation.PostConstruct;
+
+import org.jetbrains.annotations.NotNull;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.api.WorkBucketClaimResult;
+import com.evolveum.midpoint.repo.common.AbstractRepoCommonTest;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.BucketingConfigurationOverrides;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.test.TestObject;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStoreType;
+
+/**
+ * Runs multi-worker bucketed activities with the buckets stored in the repository bucket table
+ * (see {@link WorkBucketStoreType#REPOSITORY_TABLE}): completion of the buckets, their release when the workers
+ * are suspended, reclaiming of a bucket from a dead worker, and deletion of the buckets that are no longer needed.
+ *
+ * The buckets are not visible in the coordinator task. Their state is checked using the bucket table operations
+ * of the repository; see {@link #countCompleteBuckets(String, String, OperationResult)}.
+ *
+ * The bucket table is supported only by the native repository; the tests are skipped for other ones.
+ */
+public class TestBucketTable extends AbstractRepoCommonTest {
+
+    private static final File TEST_DIR = new File("src/test/resources/tasks/bucket-table");
+
+    private static final TestObject<TaskType> TASK_100_FOUR_WORKERS =
+            TestObject.file(TEST_DIR, "task-100-four-workers.xml", "0b7c1e52-3d4f-4a6b-8c9d-1e2f3a4b5c6d");
+    private static final TestObject<TaskType> TASK_200_SUSPEND_RESUME =
+            TestObject.file(TEST_DIR, "task-200-suspend-resume.xml", "5d2e8f71-9a3b-4c4d-8e5f-6a7b8c9d0e1f");
+
+    /** Must correspond to the task definitions. */
+    private static final int ITEMS = 100;
+
+    private static final long TIMEOUT = 60000L;
+
+    /** Bucket set used in the first run of {@link #TASK_100_FOUR_WORKERS}. */
+    private String firstBucketSetId;
+
+    @PostConstruct
+    public void initialize() {
+        // The scavenger should not wait long before reclaiming the buckets of dead workers.
+        BucketingConfigurationOverrides.setFreeBucketWaitIntervalOverride(1000L);
+    }
+
+    /** All buckets are processed by four workers, each one exactly once. */
+    @Test
+    public void test100RunWithFourWorkers() throws Exception {
+        skipIfBucketTableNotSupported();
+
+        given();
+        OperationResult result = createOperationResult();
+        mockRecorder.reset();
+
+        when();
+        Task root = taskAdd(TASK_100_FOUR_WORKERS, result);
+        waitForTaskTreeCloseCheckingSuspensionWithError(root.getOid(), result, TIMEOUT);
+
+        then();
+        root.refresh(result);
+        assertTask(root, "after")
+                .display()
+                .assertClosed()
+                .assertSuccess();
+
+        assertThat(mockRecorder.getExecutions())
+                .as("executions")
+                .containsExactlyInAnyOrderElementsOf(getExpectedExecutions());
+
+        firstBucketSetId = assertBucketsComplete(root, 20, result);
+    }
+
+    /** The second run uses a new bucket set; the old one is deleted. The buckets are deleted along with the task. */
+    @Test
+    public void test110RunAgainAndDelete() throws Exception {
+        skipIfBucketTableNotSupported();
+
+        given();
+        OperationResult result = createOperationResult();
+        mockRecorder.reset();
+
+        when("second run");
+        taskManager.scheduleTasksNow(List.of(TASK_100_FOUR_WORKERS.oid), result);
+        waitForTaskTreeCloseCheckingSuspensionWithError(TASK_100_FOUR_WORKERS.oid, result, TIMEOUT);
+
+        then("second run");
+        Task root = taskManager.getTaskPlain(TASK_100_FOUR_WORKERS.oid, result);
+        assertTask(root, "after 2nd run")
+                .display()
+                .assertClosed()
+                .assertSuccess();
+
+        assertThat(mockRecorder.getExecutions())
+                .as("executions")
+                .containsExactlyInAnyOrderElementsOf(getExpectedExecutions());
+
+        String secondBucketSetId = assertBucketsComplete(root, 20, result);
+        assertThat(secondBucketSetId).as("bucket set ID in the 2nd run").isNotEqualTo(firstBucketSetId);
+        assertThat(countCompleteBuckets(root.getOid(), firstBucketSetId, result))
+                .as("buckets in the first (obsolete) bucket set")
+                .isZero();
+
+        when("task is deleted");
+        taskManager.deleteTaskTree(root.getOid(), result);
+
+        then("task is deleted");
+        assertThat(countCompleteBuckets(root.getOid(), secondBucketSetId, result))
+                .as("buckets of the deleted task")
+                .isZero();
+    }
+
+    /**
+     * Workers are suspended in the middle of the processing; they release their buckets. One of the released buckets
+     * is then claimed by a non-existent ("dead") worker. After the resume, the scavenger reclaims that bucket,
+     * so all the items are processed.
+     *
+     * (The items being processed at the time of suspension may be processed twice.)
+     */
+    @Test
+    public void test200SuspendAndResume() throws Exception {
+        skipIfBucketTableNotSupported();
+
+        given();
+        OperationResult result = createOperationResult();
+        mockRecorder.reset();
+
+        Task root = taskAdd(TASK_200_SUSPEND_RESUME, result);
+        try {
+            waitFor("Waiting for some items being processed",
+                    () -> mockRecorder.getExecutions().size() >= 5, TIMEOUT, 200);
+
+            when("task tree is suspended");
+            taskManager.suspendTaskTree(root.getOid(), TaskManager.WAIT_INDEFINITELY, result);
+
+            then("no bucket remains delegated");
+            root.refresh(result);
+            String bucketSetId = getBucketing(root).getBucketSetId();
+            assertThat(bucketSetId).as("bucket set ID").isNotNull();
+            assertNoDelegatedBuckets(bucketSetId, result);
+
+            when("a released bucket is claimed by a dead worker");
+            String deadWorkerOid = UUID.randomUUID().toString();
+            WorkBucketClaimResult claim = claimWithoutCreating(root.getOid(), bucketSetId, deadWorkerOid, result);
+            assertThat(claim.situation()).as("claim situation").isEqualTo(WorkBucketClaimResult.Situation.FOUND_READY);
+            displayValue("bucket claimed by the dead worker", claim.bucket());
+
+            and("task tree is resumed");
+            taskManager.resumeTaskTree(root.getOid(), result);
+            waitForTaskTreeCloseCheckingSuspensionWithError(root.getOid(), result, TIMEOUT);
+
+            then("all the items are processed, including the ones from the reclaimed bucket");
+            root.refresh(result);
+            assertTask(root, "after")
+                    .display()
+                    .assertClosed();
+
+            assertThat(Set.copyOf(mockRecorder.getExecutions()))
+                    .as("executions")
+                    .containsExactlyInAnyOrderElementsOf(getExpectedExecutions());
+
+            assertBucketsComplete(root, 10, result);
+        } finally {
+            suspendAndDeleteTasks(root.getOid());
+        }
+    }
+
+    /** Checks the summary in the coordinator task and the buckets in the table. Returns the bucket set ID. */
+    private String assertBucketsComplete(Task root, int expectedBuckets, OperationResult result)
+            throws SchemaException {
+        ActivityBucketingStateType bucketing = getBucketing(root);
+        displayValue("bucketing state", bucketing);
+        String bucketSetId = bucketing.getBucketSetId();
+        assertThat(bucketSetId).as("bucket set ID").isNotNull();
+        assertThat(bucketing.getBucket()).as("buckets in the task").isEmpty();
+        assertThat(bucketing.getNumberOfBuckets()).as("number of buckets").isEqualTo(expectedBuckets);
+        assertThat(bucketing.getNumberOfCompleteBuckets()).as("number of complete buckets").isEqualTo(expectedBuckets);
+        assertThat(bucketing.isWorkComplete()).as("work complete flag").isTrue();
+
+        assertThat(countCompleteBuckets(root.getOid(), bucketSetId, result))
+                .as("complete buckets in the table")
+                .isEqualTo(expectedBuckets);
+        assertNoDelegatedBuckets(bucketSetId, result);
+        return bucketSetId;
+    }
+
+    /** Reclaiming from "no live workers" returns the number of all delegated buckets (they must be none). */
+    private void assertNoDelegatedBuckets(String bucketSetId, OperationResult result) {
+        assertThat(plainRepositoryService.reclaimWorkBuckets(bucketSetId, List.of(), result))
+                .as("delegated buckets")
+                .isZero();
+    }
+
+    /** Returns the number of complete buckets in the set, as seen by a claim that cannot create any new buckets. */
+    private int countCompleteBuckets(String ownerOid, String bucketSetId, OperationResult result) throws SchemaException {
+        return claimWithoutCreating(ownerOid, bucketSetId, null, result).completeBuckets();
+    }
+
+    private WorkBucketClaimResult claimWithoutCreating(
+            String ownerOid, String bucketSetId, String workerOid, OperationResult result) throws SchemaException {
+        return plainRepositoryService.claimWorkBucket(
+                ownerOid, "", bucketSetId, workerOid, lastBucket -> List.of(), result);
+    }
+
+    private @NotNull ActivityBucketingStateType getBucketing(Task root) {
+        ActivityBucketingStateType bucketing = root.getWorkState().getActivity().getBucketing();
+        assertThat(bucketing).as("bucketing state").isNotNull();
+        return bucketing;
+    }
+
+    private List<String> getExpectedExecutions() {
+        return IntStream.rangeClosed(1, ITEMS)
+                .mapToObj(i -> "Item: " + i)
+                .collect(Collectors.toList());
+    }
+
+    private void skipIfBucketTableNotSupported() {
+        if (!plainRepositoryService.supportsWorkBucketTable()) {
+            throw new SkipException("Bucket table is not supported by the repository");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.common.tasks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.common.AbstractRepoCommonTest;
+import com.evolveum.midpoint.repo.common.tasks.handlers.MockRecorder;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.test.TestObject;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityDistributionDefinitionType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkerThreadsKindType;
+
+/**
+ * Compares the throughput of an I/O bound iterative activity with platform and virtual worker threads.
+ *
+ * The latency of item processing (e.g. of a connector call) is simulated by a delay in the mock iterative activity.
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * Virtual threads are used only if the tests are run on Java 21 or later.
+ */
+@DirtiesContext
+public class WorkerThreadsPerfTest extends AbstractRepoCommonTest
+        implements PerformanceTestClassMixin {
+
+    private static final File TEST_DIR = new File("src/test/resources/tasks/perf");
+
+    private static final TestObject<TaskType> TASK_WORKER_THREADS_PERF =
+            TestObject.file(TEST_DIR, "task-worker-threads-perf.xml", "3d6c2b8e-95a4-4c31-8f0e-7a1b5e9c2d40");
+
+    /** Must correspond to the task definition. */
+    private static final int ITEMS = 2000;
+
+    private static final long TIMEOUT = 600_000;
+
+    @Autowired private MockRecorder recorder;
+
+    @DataProvider
+    public Object[][] configurations() {
+        return new Object[][] {
+                { 8, WorkerThreadsKindType.PLATFORM },
+                { 8, WorkerThreadsKindType.VIRTUAL },
+                { 64, WorkerThreadsKindType.PLATFORM },
+                { 64, WorkerThreadsKindType.VIRTUAL },
+                { 256, WorkerThreadsKindType.PLATFORM },
+                { 256, WorkerThreadsKindType.VIRTUAL },
+        };
+    }
+
+    @Test(dataProvider = "configurations")
+    public void test100ProcessItems(int threads, WorkerThreadsKindType kind) throws Exception {
+        given("task with " + threads + " " + kind.value() + " worker threads");
+        OperationResult result = getTestTask().getResult();
+        recorder.reset();
+
+        PrismObject<TaskType> task = TASK_WORKER_THREADS_PERF.getFresh();
+        ActivityDistributionDefinitionType distribution = task.asObjectable().getActivity().getDistribution();
+        distribution.setWorkerThreads(threads);
+        distribution.setWorkerThreadsKind(kind);
+
+        when("task is run");
+        Stopwatch stopwatch = stopwatch(threads + "-" + kind.value(), "Processing of " + ITEMS + " items");
+        long start = System.currentTimeMillis();
+        try (Split ignored = stopwatch.start()) {
+            taskManager.addTask(task, result);
+            waitForTaskClose(TASK_WORKER_THREADS_PERF.oid, result, TIMEOUT);
+        }
+        long duration = System.currentTimeMillis() - start;
+
+        then("all items are processed");
+        assertThat(recorder.getExecutions()).as("recorder").hasSize(ITEMS);
+        display(String.format("%d %s worker threads: %d items in %d ms, %.1f items/s",
+                threads, kind.value(), ITEMS, duration, ITEMS * 1000.0 / duration));
+
+        taskManager.deleteTaskTree(TASK_WORKER_THREADS_PERF.oid, result);
+    }
+}
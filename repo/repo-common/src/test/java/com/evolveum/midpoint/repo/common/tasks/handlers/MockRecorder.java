@@ -9,12 +9,14 @@ package com.evolveum.midpoint.repo.common.tasks.handlers;
 
 import com.evolveum.midpoint.util.DebugDumpable;
 import com.evolveum.midpoint.util.DebugUtil;
+import com.evolveum.midpoint.util.exception.SystemException;
 
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.collections4.ListUtils.synchronizedList;
 
@@ -27,14 +29,34 @@ public class MockRecorder implements DebugDumpable {
     /** This is to verify that realization start timestamps in workers are the same. */
     @NotNull private final Set<XMLGregorianCalendar> realizationStartTimestamps = new HashSet<>();
 
+    /** Names of the threads that executed the items, with the information if they were virtual. */
+    @NotNull private final Map<String, Boolean> executionThreads = new ConcurrentHashMap<>();
+
     public void recordExecution(String value) {
         executions.add(value);
+        Thread thread = Thread.currentThread();
+        executionThreads.put(thread.getName(), isVirtual(thread));
+    }
+
+    /** Virtual threads exist since Java 21, but we are compiled for Java 17. */
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (ReflectiveOperationException e) {
+            throw new SystemException(e);
+        }
     }
 
     public List<String> getExecutions() {
         return executions;
     }
 
+    public @NotNull Map<String, Boolean> getExecutionThreads() {
+        return executionThreads;
+    }
+
     public void recordRealizationStartTimestamp(XMLGregorianCalendar value) {
         realizationStartTimestamps.add(value);
     }
@@ -45,6 +67,7 @@ public class MockRecorder implements DebugDumpable {
 
     public void reset() {
         executions.clear();
+        executionThreads.clear();
         realizationStartTimestamps.clear();
     }
 
@@ -53,6 +76,7 @@ public class MockRecorder implements DebugDumpable {
         StringBuilder sb = new StringBuilder();
         DebugUtil.debugDumpLabelLn(sb, "MockRecorder", indent);
         DebugUtil.debugDumpWithLabelLn(sb, "executions", executions, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "execution threads", executionThreads, indent + 1);
         DebugUtil.debugDumpWithLabel(sb, "realization start timestamps", realizationStartTimestamps, indent + 1);
         return sb.toString();
     }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.ParsingContext;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.impl.ParserInputStreamSource;
+import com.evolveum.midpoint.prism.impl.lex.json.reader.JsonReader;
+import com.evolveum.midpoint.prism.schema.SchemaRegistry;
+import com.evolveum.midpoint.prism.xnode.RootXNode;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * Encoding of the binary fullObject format ({@link #FORMAT_SMILE}) and detection of the format
+ * of the stored fullObject.
+ *
+ * The binary format is the prism JSON serialization transcoded to https://github.com/FasterXML/smile-format-specification[Smile],
+ * binary JSON with back-references to already written property names and short string values.
+ * This works as a dictionary for repeated item names, namespaces and type QNames which are most of the size
+ * of a serialized object.
+ * When reading, the Smile tokens are consumed directly by the prism JSON reader, see {@link #parseSmile}.
+ *
+ * The format of the stored value is always detected from its content, so the rows written in text formats
+ * (XML, JSON) are still readable after the configured format is changed and vice versa.
+ */
+public class FullObjectEncoding {
+
+    /** Value of `fullObjectFormat` configuration property for the binary format. */
+    public static final String FORMAT_SMILE = "smile";
+
+    /** Smile header, see the format specification; fourth byte contains version and flags. */
+    private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final SmileFactory SMILE_FACTORY = SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build();
+
+    /** Transcodes JSON (as produced by prism serializer) to the binary format. */
+    public static byte[] jsonToSmile(@NotNull String json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() / 2);
+        try (JsonParser parser = JSON_FACTORY.createParser(json);
+                JsonGenerator generator = SMILE_FACTORY.createGenerator(out)) {
+            transcode(parser, generator);
+        } catch (IOException e) {
+            throw new SystemException("Couldn't encode fullObject to the binary format: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses the binary format to XNode. Prism JSON reader reads the Smile tokens directly,
+     * there is no intermediate JSON text.
+     */
+    public static @NotNull RootXNode parseSmile(@NotNull byte[] smile, @NotNull SchemaRegistry schemaRegistry,
+            @NotNull ParsingContext parsingContext) throws SchemaException, IOException {
+        return new SmileReader(schemaRegistry)
+                .read(new ParserInputStreamSource(new ByteArrayInputStream(smile)), parsingContext);
+    }
+
+    /** Transcodes the binary format back to JSON text, returned as UTF-8 bytes. Used for diagnostics only. */
+    public static byte[] smileToJson(@NotNull byte[] smile) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(smile.length * 2);
+        try (JsonParser parser = SMILE_FACTORY.createParser(smile);
+                JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            transcode(parser, generator);
+        }
+        return out.toByteArray();
+    }
+
+    private static void transcode(JsonParser parser, JsonGenerator generator) throws IOException {
+        while (parser.nextToken() != null) {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT
+                    && parser.getNumberType() != JsonParser.NumberType.BIG_DECIMAL) {
+                // Copying would go through double, decimal value is exact (e.g. for xsd:decimal).
+                generator.writeNumber(parser.getDecimalValue());
+            } else {
+                generator.copyCurrentEvent(parser);
+            }
+        }
+    }
+
+    public static boolean isSmile(@Nullable byte[] fullObject) {
+        if (fullObject == null || fullObject.length < SMILE_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (fullObject[i] != SMILE_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the prism language of the text serialized form (XML or JSON)
+     * or null if it can't be determined (e.g. YAML, which is not detected).
+     */
+    public static @Nullable String detectTextLanguage(@NotNull byte[] text) {
+        int i = 0;
+        // UTF-8 BOM
+        if (text.length >= 3 && text[0] == (byte) 0xEF && text[1] == (byte) 0xBB && text[2] == (byte) 0xBF) {
+            i = 3;
+        }
+        for (; i < text.length; i++) {
+            switch (text[i]) {
+                case ' ', '\t', '\r', '\n':
+                    continue;
+                case '<':
+                    return PrismContext.LANG_XML;
+                case '{', '[':
+                    return PrismContext.LANG_JSON;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    /** Returns human-readable form of the stored fullObject, used for logging and in delete result. */
+    public static @Nullable String toText(@Nullable byte[] fullObject) {
+        if (fullObject == null) {
+            return null;
+        }
+        if (isSmile(fullObject)) {
+            try {
+                return new String(smileToJson(fullObject), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return "<corrupted binary fullObject: " + e.getMessage() + ">";
+            }
+        }
+        return new String(fullObject, StandardCharsets.UTF_8);
+    }
+
+    /** Prism JSON reader taking the tokens from the Smile parser instead of the JSON text parser. */
+    private static class SmileReader extends JsonReader {
+
+        SmileReader(@NotNull SchemaRegistry schemaRegistry) {
+            super(schemaRegistry);
+        }
+
+        @Override
+        protected JsonParser createJacksonParser(InputStream stream) throws IOException {
+            return SMILE_FACTORY.createParser(stream);
+        }
+    }
+}
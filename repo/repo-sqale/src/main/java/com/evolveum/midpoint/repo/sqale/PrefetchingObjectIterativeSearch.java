@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import static com.evolveum.midpoint.repo.api.RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE_PAGE;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectOrdering;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.sqlbase.RepositoryException;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.SearchResultMetadata;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectQueryUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Pipelined variant of {@link SqaleRepositoryService#searchObjectsIterative}, used when
+ * {@link SqaleRepositoryConfiguration#getIterativeSearchPrefetchPages()} is positive.
+ *
+ * Pages are read and parsed by a producer running on a separate thread while the caller's thread
+ * runs the result handler over the previous page.
+ * The next keyset condition depends only on the last object of the previous page, not on the handler,
+ * so the producer can run ahead of the handler - but only up to the configured number of pages.
+ *
+ * Ordering, paging cookie and the returned metadata are the same as for the non-prefetching search.
+ * When the handler stops the search (or the requested max size is reached), the producer is stopped
+ * and the already prefetched pages are thrown away.
+ *
+ * [NOTE]
+ * Page reads are not accounted into the thread-local performance information of the caller,
+ * because they happen on a different thread; they are still visible in the global repository statistics.
+ */
+public class PrefetchingObjectIterativeSearch<T extends ObjectType> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(PrefetchingObjectIterativeSearch.class);
+
+    /** How long the producer waits for a free queue slot before it checks the cancellation flag again. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final SqaleRepositoryService repoService;
+    private final Executor executor;
+    private final Class<T> type;
+    private final Collection<SelectorOptions<GetOperationOptions>> options;
+
+    private final BlockingQueue<Page<T>> pages;
+    private volatile boolean cancelled;
+
+    public PrefetchingObjectIterativeSearch(
+            SqaleRepositoryService repoService,
+            Executor executor,
+            Class<T> type,
+            Collection<SelectorOptions<GetOperationOptions>> options,
+            int prefetchPages) {
+        this.repoService = repoService;
+        this.executor = executor;
+        this.type = type;
+        this.options = options;
+        this.pages = new ArrayBlockingQueue<>(prefetchPages);
+    }
+
+    /**
+     * Executes the search over the provided paged query.
+     * Paging (ordering, offset and max size of the first page) must be already set up by the caller.
+     */
+    public SearchResultMetadata execute(
+            @Nullable ObjectQuery originalQuery,
+            @NotNull ObjectQuery pagedQuery,
+            @Nullable List<? extends ObjectOrdering> providedOrdering,
+            @Nullable Integer maxSize,
+            int pageSize,
+            ResultHandler<T> handler,
+            OperationResult operationResult) throws SchemaException, RepositoryException {
+        executor.execute(() -> producePages(originalQuery, pagedQuery, providedOrdering, maxSize, pageSize));
+        try {
+            PrismObject<T> lastProcessedObject = null;
+            int handledObjectsTotal = 0;
+
+            while (true) {
+                Page<T> page = takePage();
+                if (page.error != null) {
+                    throw rethrow(page.error);
+                }
+
+                // process page results, exactly like in the non-prefetching version
+                for (PrismObject<T> object : page.objects) {
+                    lastProcessedObject = object;
+                    if (!handler.handle(object, operationResult)) {
+                        return new SearchResultMetadata()
+                                .approxNumberOfAllResults(handledObjectsTotal + 1)
+                                .pagingCookie(lastProcessedObject.getOid())
+                                .partialResults(true);
+                    }
+                    handledObjectsTotal += 1;
+
+                    if (maxSize != null && handledObjectsTotal >= maxSize) {
+                        return new SearchResultMetadata()
+                                .approxNumberOfAllResults(handledObjectsTotal)
+                                .pagingCookie(lastProcessedObject.getOid());
+                    }
+                }
+
+                if (page.last) {
+                    return new SearchResultMetadata()
+                            .approxNumberOfAllResults(handledObjectsTotal)
+                            .pagingCookie(lastProcessedObject != null
+                                    ? lastProcessedObject.getOid() : null);
+                }
+            }
+        } finally {
+            cancelled = true;
+            // Frees the slots, if the producer is blocked on a full queue it finishes soon.
+            pages.clear();
+        }
+    }
+
+    private void producePages(
+            @Nullable ObjectQuery originalQuery,
+            @NotNull ObjectQuery pagedQuery,
+            @Nullable List<? extends ObjectOrdering> providedOrdering,
+            @Nullable Integer maxSize,
+            int pageSize) {
+        try {
+            PrismObject<T> lastFetchedObject = null;
+            int fetchedObjectsTotal = 0;
+            while (!cancelled) {
+                if (maxSize != null && maxSize - fetchedObjectsTotal < pageSize) {
+                    // relevant only for the last page
+                    pagedQuery.getPaging().setMaxSize(maxSize - fetchedObjectsTotal);
+                }
+
+                // null safe, even for both nulls - don't use filterAnd which mutates original AND filter
+                pagedQuery.setFilter(ObjectQueryUtil.filterAndImmutable(
+                        originalQuery != null ? originalQuery.getFilter() : null,
+                        repoService.lastOidCondition(lastFetchedObject, providedOrdering)));
+
+                repoService.logSearchInputParameters(type, pagedQuery, "Search object iterative page (prefetch)");
+                List<PrismObject<T>> objects = repoService.executeSearchObjects(
+                        type, pagedQuery, options, OP_SEARCH_OBJECTS_ITERATIVE_PAGE);
+                fetchedObjectsTotal += objects.size();
+
+                boolean last = objects.isEmpty() || objects.size() < pageSize
+                        || maxSize != null && fetchedObjectsTotal >= maxSize;
+                if (!offerPage(new Page<>(objects, last, null)) || last) {
+                    return;
+                }
+
+                lastFetchedObject = objects.get(objects.size() - 1);
+                pagedQuery.getPaging().setOffset(null);
+            }
+        } catch (Throwable t) {
+            LOGGER.debug("Prefetching of iterative search page for {} failed", type.getSimpleName(), t);
+            offerPage(new Page<>(List.of(), true, t));
+        }
+    }
+
+    /** Returns false if the search was cancelled before the page could be enqueued. */
+    private boolean offerPage(Page<T> page) {
+        try {
+            while (!cancelled) {
+                if (pages.offer(page, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private Page<T> takePage() {
+        try {
+            return pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for prefetched iterative search page", e);
+        }
+    }
+
+    private RuntimeException rethrow(Throwable t) throws SchemaException, RepositoryException {
+        if (t instanceof SchemaException) {
+            throw (SchemaException) t;
+        } else if (t instanceof RepositoryException) {
+            throw (RepositoryException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else {
+            throw new SystemException(t);
+        }
+    }
+
+    private static class Page<T extends ObjectType> {
+        private final List<PrismObject<T>> objects;
+        private final boolean last;
+        private final Throwable error;
+
+        private Page(List<PrismObject<T>> objects, boolean last, Throwable error) {
+            this.objects = objects;
+            this.last = last;
+            this.error = error;
+        }
+    }
+}
@@ -6,6 +6,8 @@
  */
 package com.evolveum.midpoint.repo.sqale;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
@@ -24,10 +26,12 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
+import com.evolveum.midpoint.prism.ParsingContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.SerializationOptions;
 import com.evolveum.midpoint.prism.delta.ChangeType;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.xnode.RootXNode;
 import com.evolveum.midpoint.repo.sqale.jsonb.Jsonb;
 import com.evolveum.midpoint.repo.sqale.jsonb.QuerydslJsonbType;
 import com.evolveum.midpoint.repo.sqale.qmodel.common.MContainerType;
@@ -41,6 +45,7 @@ import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
 import com.evolveum.midpoint.repo.sqale.qmodel.ref.MReferenceType;
 import com.evolveum.midpoint.repo.sqlbase.JdbcRepositoryConfiguration;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.repo.sqlbase.RepositoryObjectParseResult;
 import com.evolveum.midpoint.repo.sqlbase.SqlRepoContext;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryModelMappingRegistry;
 import com.evolveum.midpoint.schema.SchemaConstantsGenerated;
@@ -114,6 +119,7 @@ public class SqaleRepoContext extends SqlRepoContext {
         querydslConfig.register(new EnumAsObjectType<>(TaskWaitingReasonType.class));
         querydslConfig.register(new EnumAsObjectType<>(ThreadStopActionType.class));
         querydslConfig.register(new EnumAsObjectType<>(TimeIntervalStatusType.class));
+        querydslConfig.register(new EnumAsObjectType<>(WorkBucketStateType.class));
         querydslConfig.register(new EnumAsObjectType<>(ExecutionModeType.class));
         querydslConfig.register(new EnumAsObjectType<>(PredefinedConfigurationType.class));
 
@@ -252,6 +258,51 @@ public class SqaleRepoContext extends SqlRepoContext {
                 fullTextSearchConfig, prismObject.getCompileTimeClass(), modifications);
     }
 
+    /** Returns fullObject value for the text serialized in {@link #getJdbcRepositoryConfiguration()} format. */
+    public byte[] encodeFullObject(String serializedForm) {
+        if (getJdbcRepositoryConfiguration() instanceof SqaleRepositoryConfiguration config
+                && config.isFullObjectBinary()) {
+            return FullObjectEncoding.jsonToSmile(serializedForm);
+        }
+        return serializedForm.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the fullObject value regardless of the format it was stored in, see {@link FullObjectEncoding}.
+     * Text is parsed directly from the bytes, without creating intermediate string,
+     * the binary format is parsed directly from the Smile tokens.
+     */
+    public <T> RepositoryObjectParseResult<T> parsePrismObject(
+            @NotNull byte[] fullObject, Class<T> schemaType) throws SchemaException {
+        try {
+            // "Postel mode": be tolerant what you read. We need this to tolerate (custom) schema changes
+            ParsingContext parsingContext = prismContext().createParsingContextForCompatibilityMode();
+            T value;
+            if (FullObjectEncoding.isSmile(fullObject)) {
+                RootXNode xnode = FullObjectEncoding.parseSmile(
+                        fullObject, prismContext().getSchemaRegistry(), parsingContext);
+                value = prismContext().parserFor(xnode)
+                        .context(parsingContext)
+                        .fastAddOperations()
+                        .parseRealValue(schemaType);
+            } else {
+                String language = FullObjectEncoding.detectTextLanguage(fullObject);
+                if (language == null) {
+                    // Unknown text format (e.g. YAML), parser must detect it from the string.
+                    return parsePrismObject(new String(fullObject, StandardCharsets.UTF_8), schemaType);
+                }
+                value = prismContext().parserFor(new ByteArrayInputStream(fullObject))
+                        .language(language)
+                        .context(parsingContext)
+                        .fastAddOperations()
+                        .parseRealValue(schemaType);
+            }
+            return new RepositoryObjectParseResult<>(parsingContext, value);
+        } catch (IOException | RuntimeException e) {
+            throw new SchemaException("Unexpected exception while parsing serialized form: " + e, e);
+        }
+    }
+
     public byte[] createFullResult(OperationResultType operationResult) {
         try {
             // Note that escaping invalid characters and using toString for unsupported types
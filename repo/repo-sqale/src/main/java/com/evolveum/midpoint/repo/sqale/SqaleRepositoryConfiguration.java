@@ -30,6 +30,12 @@ import com.evolveum.midpoint.util.exception.SystemException;
 public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration {
 
     private static final String PROPERTY_SQL_DURATION_WARNING_MS = "sqlDurationWarningMs";
+    private static final String PROPERTY_ITERATIVE_SEARCH_PREFETCH_PAGES = "iterativeSearchPrefetchPages";
+    private static final String PROPERTY_ASYNC_AUDIT_QUEUE_SIZE = "asyncAuditQueueSize";
+    private static final String PROPERTY_ASYNC_AUDIT_BATCH_SIZE = "asyncAuditBatchSize";
+    private static final String PROPERTY_ASYNC_AUDIT_WAIT_FOR_FLUSH = "asyncAuditWaitForFlush";
+    private static final String PROPERTY_AUDIT_CLEANUP_BATCH_SIZE = "auditCleanupBatchSize";
+    private static final String PROPERTY_AUDIT_PARTITIONS_AHEAD = "auditPartitionsAhead";
 
     private static final String DEFAULT_DRIVER = "org.postgresql.Driver";
     private static final SupportedDatabase DEFAULT_DATABASE = SupportedDatabase.POSTGRESQL;
@@ -59,8 +65,20 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
     private static final int DEFAULT_ITERATIVE_SEARCH_PAGE_SIZE = 100;
 
+    /** Prefetching of iterative search pages is opt-in, 0 means pages are fetched on demand. */
+    private static final int DEFAULT_ITERATIVE_SEARCH_PREFETCH_PAGES = 0;
+
     private static final int DEFAULT_SQL_DURATION_WARNING_MS = 0; // 0 or less means no warning
 
+    /** Asynchronous audit writing is opt-in, 0 means that audit records are written on the caller's thread. */
+    private static final int DEFAULT_ASYNC_AUDIT_QUEUE_SIZE = 0;
+    private static final int DEFAULT_ASYNC_AUDIT_BATCH_SIZE = 100;
+
+    private static final int DEFAULT_AUDIT_CLEANUP_BATCH_SIZE = 10_000;
+
+    /** Number of monthly audit partitions kept created ahead, used only if monthly partitions already exist. */
+    private static final int DEFAULT_AUDIT_PARTITIONS_AHEAD = 3;
+
     @NotNull private final Configuration configuration;
 
     // either dataSource or JDBC URL must be set
@@ -85,10 +103,18 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     private int performanceStatisticsLevel;
 
     private int iterativeSearchByPagingBatchSize;
+    private int iterativeSearchPrefetchPages;
     private boolean createMissingCustomColumns;
 
     private long sqlDurationWarningMs; // 0 or less means no warning
 
+    private int asyncAuditQueueSize;
+    private int asyncAuditBatchSize;
+    private boolean asyncAuditWaitForFlush;
+
+    private int auditCleanupBatchSize;
+    private int auditPartitionsAhead;
+
     // Provided with configuration node "midpoint.repository".
     public SqaleRepositoryConfiguration(@NotNull Configuration configuration) {
         this.configuration = configuration;
@@ -137,12 +163,17 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
         iterativeSearchByPagingBatchSize = configuration.getInt(
                 PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE, DEFAULT_ITERATIVE_SEARCH_PAGE_SIZE);
+        iterativeSearchPrefetchPages = Math.max(0, configuration.getInt(
+                PROPERTY_ITERATIVE_SEARCH_PREFETCH_PAGES, DEFAULT_ITERATIVE_SEARCH_PREFETCH_PAGES));
         createMissingCustomColumns =
                 configuration.getBoolean(PROPERTY_CREATE_MISSING_CUSTOM_COLUMNS, false);
 
         sqlDurationWarningMs = configuration.getLong(
                 PROPERTY_SQL_DURATION_WARNING_MS, DEFAULT_SQL_DURATION_WARNING_MS);
 
+        initAsyncAudit(configuration);
+        initAuditMaintenance(configuration);
+
         validateConfiguration();
     }
 
@@ -209,9 +240,22 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     /**
      * Returns serialization format (language) for writing fullObject.
      * Also see {@link #PROPERTY_FULL_OBJECT_FORMAT}.
+     *
+     * For the binary format ({@link FullObjectEncoding#FORMAT_SMILE}) this returns JSON, which is the prism
+     * language it is based on; other serialized values (e.g. audit deltas) are stored as JSON text in that case.
      */
     public String getFullObjectFormat() {
-        return fullObjectFormat;
+        return isFullObjectBinary() ? PrismContext.LANG_JSON : fullObjectFormat;
+    }
+
+    /** Returns true if fullObject is stored in the binary format, see {@link FullObjectEncoding}. */
+    public boolean isFullObjectBinary() {
+        return FullObjectEncoding.FORMAT_SMILE.equals(fullObjectFormat);
+    }
+
+    // exists because of testing
+    public void setFullObjectFormat(String fullObjectFormat) {
+        this.fullObjectFormat = fullObjectFormat.toLowerCase();
     }
 
     @Override
@@ -296,6 +340,20 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         this.iterativeSearchByPagingBatchSize = iterativeSearchByPagingBatchSize;
     }
 
+    /**
+     * Returns the maximum number of pages fetched ahead by object iterative search
+     * while the current page is still being handled.
+     * Value of 0 means that the prefetching is disabled and pages are fetched on demand.
+     */
+    public int getIterativeSearchPrefetchPages() {
+        return iterativeSearchPrefetchPages;
+    }
+
+    // exists because of testing
+    public void setIterativeSearchPrefetchPages(int iterativeSearchPrefetchPages) {
+        this.iterativeSearchPrefetchPages = iterativeSearchPrefetchPages;
+    }
+
     @Override
     public boolean isCreateMissingCustomColumns() {
         return createMissingCustomColumns;
@@ -309,6 +367,74 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         return sqlDurationWarningMs;
     }
 
+    /**
+     * Returns capacity of the queue for asynchronously written audit records.
+     * Value of 0 means that the asynchronous writing is disabled and each record is written
+     * in its own transaction on the caller's thread.
+     */
+    public int getAsyncAuditQueueSize() {
+        return asyncAuditQueueSize;
+    }
+
+    // exists because of testing
+    public void setAsyncAuditQueueSize(int asyncAuditQueueSize) {
+        this.asyncAuditQueueSize = asyncAuditQueueSize;
+    }
+
+    /** Returns the maximum number of audit records written by the asynchronous writer in a single transaction. */
+    public int getAsyncAuditBatchSize() {
+        return asyncAuditBatchSize;
+    }
+
+    /**
+     * Returns true if the caller of asynchronous audit waits until its record is committed.
+     * If false, the audit call returns as soon as the record is queued (fire-and-forget).
+     */
+    public boolean isAsyncAuditWaitForFlush() {
+        return asyncAuditWaitForFlush;
+    }
+
+    // exists because of testing
+    public void setAsyncAuditWaitForFlush(boolean asyncAuditWaitForFlush) {
+        this.asyncAuditWaitForFlush = asyncAuditWaitForFlush;
+    }
+
+    /**
+     * Returns the maximum number of audit records deleted by the audit cleanup in a single transaction.
+     * Whole partitions older than the cleanup cutoff are dropped regardless of this value.
+     */
+    public int getAuditCleanupBatchSize() {
+        return auditCleanupBatchSize;
+    }
+
+    // exists because of testing
+    public void setAuditCleanupBatchSize(int auditCleanupBatchSize) {
+        this.auditCleanupBatchSize = auditCleanupBatchSize;
+    }
+
+    /**
+     * Returns the number of future monthly audit partitions that are created periodically.
+     * Nothing is created if the audit does not use monthly partitions yet, value of 0 disables the creation.
+     */
+    public int getAuditPartitionsAhead() {
+        return auditPartitionsAhead;
+    }
+
+    private void initAsyncAudit(Configuration auditConfig) {
+        asyncAuditQueueSize = Math.max(0, auditConfig.getInt(
+                PROPERTY_ASYNC_AUDIT_QUEUE_SIZE, DEFAULT_ASYNC_AUDIT_QUEUE_SIZE));
+        asyncAuditBatchSize = Math.max(1, auditConfig.getInt(
+                PROPERTY_ASYNC_AUDIT_BATCH_SIZE, DEFAULT_ASYNC_AUDIT_BATCH_SIZE));
+        asyncAuditWaitForFlush = auditConfig.getBoolean(PROPERTY_ASYNC_AUDIT_WAIT_FOR_FLUSH, true);
+    }
+
+    private void initAuditMaintenance(Configuration auditConfig) {
+        auditCleanupBatchSize = Math.max(1, auditConfig.getInt(
+                PROPERTY_AUDIT_CLEANUP_BATCH_SIZE, DEFAULT_AUDIT_CLEANUP_BATCH_SIZE));
+        auditPartitionsAhead = Math.max(0, auditConfig.getInt(
+                PROPERTY_AUDIT_PARTITIONS_AHEAD, DEFAULT_AUDIT_PARTITIONS_AHEAD));
+    }
+
     /**
      * Creates a copy of provided configuration for audit and applies override from config.xml.
      * This is used when the same data source is used by audit and repository.
@@ -323,6 +449,8 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
                 PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE, mainRepoConfig.iterativeSearchByPagingBatchSize);
         config.createMissingCustomColumns = auditConfig.getBoolean(
                 PROPERTY_CREATE_MISSING_CUSTOM_COLUMNS, mainRepoConfig.createMissingCustomColumns);
+        config.initAsyncAudit(auditConfig);
+        config.initAuditMaintenance(auditConfig);
 
         // perf stats settings must be copied to allow proper perf monitoring of audit
         config.performanceStatisticsFile = mainRepoConfig.performanceStatisticsFile;
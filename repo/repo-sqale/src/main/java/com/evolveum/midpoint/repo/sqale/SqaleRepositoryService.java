@@ -10,8 +10,10 @@ import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 
 import static com.evolveum.midpoint.schema.GetOperationOptions.isAllowNotFound;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -21,7 +23,6 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ObjectArrays;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Path;
-import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.sql.SQLQuery;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
@@ -56,6 +57,7 @@ import com.evolveum.midpoint.repo.sqale.qmodel.ref.QReferenceMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.simulation.QProcessedObject;
 import com.evolveum.midpoint.repo.sqale.qmodel.simulation.QProcessedObjectMapping;
 import com.evolveum.midpoint.repo.sqale.update.AddObjectContext;
+import com.evolveum.midpoint.repo.sqale.update.AddObjectsContext;
 import com.evolveum.midpoint.repo.sqale.update.RootUpdateContext;
 import com.evolveum.midpoint.repo.sqlbase.*;
 import com.evolveum.midpoint.repo.sqlbase.mapping.QueryTableMapping;
@@ -117,6 +119,9 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
 
     private FullTextSearchConfigurationType fullTextSearchConfiguration;
 
+    /** Created lazily, only if prefetching of iterative search pages is enabled. */
+    private ExecutorService iterativeSearchPrefetchExecutor;
+
     public SqaleRepositoryService(
             SqaleRepoContext repositoryContext,
             SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
@@ -297,26 +302,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .build();
 
         try {
-            PolyString name = object.getName();
-            if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
-                throw new SchemaException("Attempt to add object without name.");
-            }
-
-            //noinspection ConstantConditions
-            logger.debug(
-                    "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
-                    object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
-                    options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
-
-            if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
-                CryptoUtil.checkEncrypted(object);
-            }
-
-            if (InternalsConfig.consistencyChecks) {
-                object.checkConsistence(ConsistencyCheckScope.THOROUGH);
-            } else {
-                object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
-            }
+            checkObjectToAdd(object, options);
 
             return object.getOid() == null || !options.isOverwrite()
                     ? executeAddObject(object)
@@ -332,6 +318,130 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    private void checkObjectToAdd(
+            @NotNull PrismObject<? extends ObjectType> object, @NotNull RepoAddOptions options)
+            throws SchemaException {
+        PolyString name = object.getName();
+        if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
+            throw new SchemaException("Attempt to add object without name.");
+        }
+
+        //noinspection ConstantConditions
+        logger.debug(
+                "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
+                object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
+                options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
+
+        if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
+            CryptoUtil.checkEncrypted(object);
+        }
+
+        if (InternalsConfig.consistencyChecks) {
+            object.checkConsistence(ConsistencyCheckScope.THOROUGH);
+        } else {
+            object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
+        }
+    }
+
+    /**
+     * Objects are inserted by {@link AddObjectsContext}, in a single transaction.
+     * If that fails, the objects are added one by one using {@link #addObject}, so the failure is attributed
+     * to the right object(s) and the others are added.
+     * Overwrite is always done one by one, as it is more like modify.
+     */
+    @Override
+    public @NotNull List<AddObjectOutcome> addObjects(
+            @NotNull Collection<? extends PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            @NotNull OperationResult parentResult) {
+        Objects.requireNonNull(objects, "Objects must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        RepoAddOptions addOptions = options != null ? options : new RepoAddOptions();
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_ADD_OBJECTS)
+                .addParam("objects", objects.size())
+                .addParam(OperationResult.PARAM_OPTIONS, addOptions.toString())
+                .build();
+        try {
+            if (addOptions.isOverwrite() || objects.size() < 2) {
+                return RepositoryService.super.addObjects(objects, addOptions, operationResult);
+            }
+
+            AddObjectOutcome[] outcomes = new AddObjectOutcome[objects.size()];
+            List<PrismObject<? extends ObjectType>> objectsToAdd = new ArrayList<>();
+            List<Integer> indices = new ArrayList<>();
+            int index = 0;
+            for (PrismObject<? extends ObjectType> object : objects) {
+                try {
+                    checkObjectToAdd(object, addOptions);
+                    objectsToAdd.add(object);
+                    indices.add(index);
+                } catch (SchemaException | RuntimeException e) {
+                    outcomes[index] = AddObjectOutcome.failure(e);
+                }
+                index++;
+            }
+
+            List<String> oids = executeAddObjects(objectsToAdd);
+            for (int i = 0; i < objectsToAdd.size(); i++) {
+                if (oids != null) {
+                    PrismObject<? extends ObjectType> object = objectsToAdd.get(i);
+                    String oid = oids.get(i);
+                    invokeConflictWatchers((w) -> w.afterAddObject(oid, object));
+                    outcomes[indices.get(i)] = AddObjectOutcome.success(oid);
+                } else {
+                    outcomes[indices.get(i)] = addObjectSeparately(objectsToAdd.get(i), addOptions, operationResult);
+                }
+            }
+            List<AddObjectOutcome> rv = Arrays.asList(outcomes);
+            operationResult.addReturn("added", rv.stream().filter(AddObjectOutcome::isSuccess).count());
+            return rv;
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            operationResult.close();
+        }
+    }
+
+    /** Returns OIDs of the added objects or null if the batch failed and nothing was added. */
+    private @Nullable List<String> executeAddObjects(
+            @NotNull List<PrismObject<? extends ObjectType>> objects) {
+        if (objects.isEmpty()) {
+            return List.of();
+        }
+        // OIDs are generated by the batch insert; they must be removed again if the batch fails
+        List<Boolean> withoutOid = new ArrayList<>(objects.size());
+        for (PrismObject<? extends ObjectType> object : objects) {
+            withoutOid.add(object.getOid() == null);
+        }
+
+        long opHandle = registerOperationStart(OP_ADD_OBJECTS, ObjectType.class);
+        try {
+            return new AddObjectsContext(sqlRepoContext, objects)
+                    .execute();
+        } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException e) {
+            logger.debug("Adding {} objects in a batch failed, adding them one by one: {}", objects.size(), e.toString());
+            for (int i = 0; i < objects.size(); i++) {
+                if (withoutOid.get(i)) {
+                    objects.get(i).setOid(null);
+                }
+            }
+            return null;
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+    }
+
+    private AddObjectOutcome addObjectSeparately(
+            PrismObject<? extends ObjectType> object, RepoAddOptions options, OperationResult result) {
+        try {
+            return AddObjectOutcome.success(addObject(object, options, result));
+        } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException e) {
+            return AddObjectOutcome.failure(e);
+        }
+    }
+
     private <T extends ObjectType> String executeAddObject(
             @NotNull PrismObject<T> object)
             throws SchemaException, ObjectAlreadyExistsException {
@@ -848,7 +958,147 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .where(entityPath.oid.eq(oid))
                 .execute();
 
-        return new DeleteObjectResult(new String(fullObject, StandardCharsets.UTF_8));
+        return new DeleteObjectResult(FullObjectEncoding.toText(fullObject));
+    }
+    // endregion
+
+    // region Work bucket table
+    @Override
+    public boolean supportsWorkBucketTable() {
+        return true;
+    }
+
+    @Override
+    public @NotNull WorkBucketClaimResult claimWorkBucket(@NotNull String ownerOid, @NotNull String activityPath,
+            @NotNull String bucketSetId, @Nullable String workerOid, @NotNull NewWorkBucketsSupplier newBucketsSupplier,
+            @NotNull OperationResult parentResult) throws SchemaException {
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_CLAIM_WORK_BUCKET)
+                .addParam(OperationResult.PARAM_OID, ownerOid)
+                .addParam("bucketSetId", bucketSetId)
+                .addParam("workerOid", workerOid)
+                .build();
+
+        long opHandle = registerOperationStart(OP_CLAIM_WORK_BUCKET, TaskType.class);
+        try {
+            WorkBucketClaimResult claimResult = new WorkBucketTableSupport(sqlRepoContext).claim(
+                    SqaleUtils.oidToUuidMandatory(ownerOid), activityPath,
+                    WorkBucketTableSupport.toUuid(bucketSetId),
+                    workerOid != null ? SqaleUtils.oidToUuidMandatory(workerOid) : null,
+                    newBucketsSupplier);
+            operationResult.addReturn("situation", claimResult.situation().name());
+            return claimResult;
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            registerOperationFinish(opHandle);
+            operationResult.close();
+        }
+    }
+
+    @Override
+    public int completeWorkBucket(@NotNull String bucketSetId, int sequentialNumber,
+            @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_COMPLETE_WORK_BUCKET)
+                .addParam("bucketSetId", bucketSetId)
+                .addParam("sequentialNumber", sequentialNumber)
+                .build();
+
+        long opHandle = registerOperationStart(OP_COMPLETE_WORK_BUCKET, TaskType.class);
+        try {
+            return new WorkBucketTableSupport(sqlRepoContext)
+                    .complete(WorkBucketTableSupport.toUuid(bucketSetId), sequentialNumber);
+        } catch (IllegalStateException e) {
+            // Wrong bucket state is a problem of the caller, not of the repository.
+            recordFatalError(operationResult, e);
+            throw e;
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            registerOperationFinish(opHandle);
+            operationResult.close();
+        }
+    }
+
+    @Override
+    public int releaseWorkBuckets(@NotNull String bucketSetId, @NotNull String workerOid,
+            @Nullable Integer sequentialNumber, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_RELEASE_WORK_BUCKETS)
+                .addParam("bucketSetId", bucketSetId)
+                .addParam("workerOid", workerOid)
+                .addArbitraryObjectAsParam("sequentialNumber", sequentialNumber)
+                .build();
+
+        long opHandle = registerOperationStart(OP_RELEASE_WORK_BUCKETS, TaskType.class);
+        try {
+            return new WorkBucketTableSupport(sqlRepoContext).release(
+                    WorkBucketTableSupport.toUuid(bucketSetId), SqaleUtils.oidToUuidMandatory(workerOid),
+                    sequentialNumber);
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            registerOperationFinish(opHandle);
+            operationResult.close();
+        }
+    }
+
+    @Override
+    public int reclaimWorkBuckets(@NotNull String bucketSetId, @NotNull Collection<String> liveWorkerOids,
+            @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_RECLAIM_WORK_BUCKETS)
+                .addParam("bucketSetId", bucketSetId)
+                .addArbitraryObjectCollectionAsParam("liveWorkerOids", liveWorkerOids)
+                .build();
+
+        long opHandle = registerOperationStart(OP_RECLAIM_WORK_BUCKETS, TaskType.class);
+        try {
+            return new WorkBucketTableSupport(sqlRepoContext).reclaim(
+                    WorkBucketTableSupport.toUuid(bucketSetId),
+                    liveWorkerOids.stream()
+                            .map(SqaleUtils::oidToUuidMandatory)
+                            .toList());
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            registerOperationFinish(opHandle);
+            operationResult.close();
+        }
+    }
+
+    @Override
+    public void deleteWorkBuckets(@NotNull String ownerOid, @NotNull String activityPath,
+            @Nullable String exceptBucketSetId, @NotNull OperationResult parentResult) {
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_DELETE_WORK_BUCKETS)
+                .addParam(OperationResult.PARAM_OID, ownerOid)
+                .addParam("activityPath", activityPath)
+                .addParam("exceptBucketSetId", exceptBucketSetId)
+                .build();
+
+        long opHandle = registerOperationStart(OP_DELETE_WORK_BUCKETS, TaskType.class);
+        try {
+            new WorkBucketTableSupport(sqlRepoContext).delete(
+                    SqaleUtils.oidToUuidMandatory(ownerOid), activityPath,
+                    exceptBucketSetId != null ? WorkBucketTableSupport.toUuid(exceptBucketSetId) : null);
+        } catch (RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            registerOperationFinish(opHandle);
+            operationResult.close();
+        }
     }
     // endregion
 
@@ -936,7 +1186,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
-    private <T extends ObjectType> SearchResultList<PrismObject<T>> executeSearchObjects(
+    <T extends ObjectType> SearchResultList<PrismObject<T>> executeSearchObjects(
             @NotNull Class<T> type,
             ObjectQuery query,
             Collection<SelectorOptions<GetOperationOptions>> options,
@@ -991,6 +1241,27 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    private synchronized ExecutorService iterativeSearchPrefetchExecutor() {
+        if (iterativeSearchPrefetchExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            iterativeSearchPrefetchExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "repo-iterative-search-prefetch-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return iterativeSearchPrefetchExecutor;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (iterativeSearchPrefetchExecutor != null) {
+            iterativeSearchPrefetchExecutor.shutdownNow();
+            iterativeSearchPrefetchExecutor = null;
+        }
+        super.destroy();
+    }
+
     private static final ItemPath OID_PATH = PrismConstants.T_ID;
     private static final ItemPath CONTAINER_ID_PATH = PrismConstants.T_ID;
 
@@ -1039,6 +1310,14 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             pagedQuery.getPaging().setMaxSize(pageSize);
             pagedQuery.getPaging().setOffset(offset);
 
+            int prefetchPages = repositoryConfiguration().getIterativeSearchPrefetchPages();
+            if (prefetchPages > 0) {
+                return new PrefetchingObjectIterativeSearch<>(
+                        this, iterativeSearchPrefetchExecutor(), type, options, prefetchPages)
+                        .execute(originalQuery, pagedQuery, providedOrdering, maxSize, pageSize,
+                                handler, operationResult);
+            }
+
             PrismObject<T> lastProcessedObject = null;
             int handledObjectsTotal = 0;
 
@@ -1113,7 +1392,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
      * TODO: What about nullable columns?
      */
     @Nullable
-    private <T extends ObjectType> ObjectFilter lastOidCondition(
+    <T extends ObjectType> ObjectFilter lastOidCondition(
             PrismObject<T> lastProcessedObject, List<? extends ObjectOrdering> providedOrdering) {
         if (lastProcessedObject == null) {
             return null;
@@ -1786,9 +2065,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .collect(Collectors.toList());
 
         long opHandle = registerOperationStart(OP_IS_DESCENDANT, OrgType.class);
-        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-            jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
             QOrgClosure oc = new QOrgClosure();
             long count = jdbcSession.newQuery()
                     .from(oc)
@@ -1814,9 +2091,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
 
         long opHandle = registerOperationStart(OP_IS_ANCESTOR, OrgType.class);
-        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-            jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
             QOrgClosure oc = new QOrgClosure();
             long count = jdbcSession.newQuery()
                     .from(oc)
@@ -2033,22 +2308,16 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                     sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                 QOrgClosure oc = new QOrgClosure();
                 closureCount = jdbcSession.newQuery().from(oc).fetchCount();
-                // this is CTE used also for m_org_closure materialized view (here with count)
+                // this is CTE used also for m_org_closure rebuild (here with count)
                 QOrg o = QOrgMapping.getOrgMapping().defaultAlias();
-                QObjectReference<?> ref = QObjectReferenceMapping.getForParentOrg().newAlias("ref");
                 QObjectReference<?> par = QObjectReferenceMapping.getForParentOrg().newAlias("par");
                 //noinspection unchecked
                 expectedCount = jdbcSession.newQuery()
                         .withRecursive(oc, oc.ancestorOid, oc.descendantOid)
                         .as(new SQLQuery<>().union(
-                                // non-recursive term: initial select
+                                // non-recursive term: initial select of identity rows
                                 new SQLQuery<>().select(o.oid, o.oid)
-                                        .from(o)
-                                        .where(new SQLQuery<>().select(Expressions.ONE)
-                                                .from(ref)
-                                                .where(ref.targetOid.eq(o.oid)
-                                                        .or(ref.ownerOid.eq(o.oid)))
-                                                .exists()),
+                                        .from(o),
                                 new SQLQuery<>().select(par.targetOid, oc.descendantOid)
                                         .from(par, oc)
                                         .where(par.ownerOid.eq(oc.ancestorOid))))
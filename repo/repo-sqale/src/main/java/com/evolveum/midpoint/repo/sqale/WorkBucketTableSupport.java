@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import static com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.sql.dml.SQLInsertClause;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService.NewWorkBucketsSupplier;
+import com.evolveum.midpoint.repo.api.WorkBucketClaimResult;
+import com.evolveum.midpoint.repo.api.WorkBucketClaimResult.Situation;
+import com.evolveum.midpoint.repo.sqale.qmodel.task.MTaskWorkBucket;
+import com.evolveum.midpoint.repo.sqale.qmodel.task.QTaskWorkBucket;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityBucketingStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
+
+/**
+ * Logic details for work bucket table operations of {@link SqaleRepositoryService}, e.g.
+ * {@link SqaleRepositoryService#claimWorkBucket}.
+ *
+ * Each bucket is a row in {@value QTaskWorkBucket#TABLE_NAME} table; the state and the worker are kept in columns,
+ * the bucket itself (content, sequential number) is serialized in the `bucket` column.
+ * A ready bucket is claimed using `SELECT ... FOR UPDATE SKIP LOCKED`, so concurrent claimers simply take
+ * different rows instead of conflicting on the coordinator task.
+ * Only the creation of new buckets is serialized - using transaction-level advisory lock for the bucket set.
+ */
+class WorkBucketTableSupport {
+
+    private static final Trace LOGGER = TraceManager.getTrace(WorkBucketTableSupport.class);
+
+    /**
+     * The first key of two-key advisory locks used for bucket creation; the second one is derived from the bucket set ID.
+     * (Two-key locks do not collide with single-key ones used elsewhere.)
+     */
+    private static final int BUCKET_CREATION_LOCK_NAMESPACE = 0x6d627574; // "mbut"
+
+    private static final QTaskWorkBucket B = QTaskWorkBucket.DEFAULT;
+
+    private final SqaleRepoContext repoContext;
+
+    WorkBucketTableSupport(SqaleRepoContext repoContext) {
+        this.repoContext = repoContext;
+    }
+
+    WorkBucketClaimResult claim(@NotNull UUID ownerOid, @NotNull String activityPath, @NotNull UUID bucketSetId,
+            @Nullable UUID workerOid, @NotNull NewWorkBucketsSupplier newBucketsSupplier) throws SchemaException {
+        try (JdbcSession jdbcSession = repoContext.newJdbcSession().startTransaction()) {
+            WorkBucketClaimResult claimResult =
+                    claim(jdbcSession, ownerOid, activityPath, bucketSetId, workerOid, newBucketsSupplier);
+            jdbcSession.commit();
+            LOGGER.trace("Claimed work bucket in {} for worker {}: {}", bucketSetId, workerOid, claimResult);
+            return claimResult;
+        }
+    }
+
+    private WorkBucketClaimResult claim(JdbcSession jdbcSession, UUID ownerOid, String activityPath, UUID bucketSetId,
+            UUID workerOid, NewWorkBucketsSupplier newBucketsSupplier) throws SchemaException {
+        if (workerOid != null) {
+            MTaskWorkBucket delegated = jdbcSession.newQuery()
+                    .select(B)
+                    .from(B)
+                    .where(B.bucketSetId.eq(bucketSetId)
+                            .and(B.state.eq(DELEGATED))
+                            .and(B.workerOid.eq(workerOid)))
+                    .orderBy(B.sequentialNumber.asc())
+                    .limit(1)
+                    .fetchOne();
+            if (delegated != null) {
+                return result(jdbcSession, delegated, Situation.FOUND_DELEGATED_TO_ME);
+            }
+        }
+
+        MTaskWorkBucket ready = claimReady(jdbcSession, bucketSetId, workerOid);
+        if (ready != null) {
+            return result(jdbcSession, ready, Situation.FOUND_READY);
+        }
+
+        // No ready bucket, new ones must be created. Only one claimer of the set can do that at a time,
+        // the others wait here and then (usually) find the newly created buckets.
+        jdbcSession.executeStatement("select pg_advisory_xact_lock("
+                + BUCKET_CREATION_LOCK_NAMESPACE + ", " + bucketSetId.hashCode() + ")");
+
+        ready = claimReady(jdbcSession, bucketSetId, workerOid);
+        if (ready != null) {
+            return result(jdbcSession, ready, Situation.FOUND_READY);
+        }
+
+        MTaskWorkBucket last = jdbcSession.newQuery()
+                .select(B)
+                .from(B)
+                .where(B.bucketSetId.eq(bucketSetId))
+                .orderBy(B.sequentialNumber.desc())
+                .limit(1)
+                .fetchOne();
+        List<WorkBucketType> newBuckets =
+                newBucketsSupplier.createNewBuckets(last != null ? toBucket(last) : null);
+        if (!newBuckets.isEmpty()) {
+            SQLInsertClause insert = jdbcSession.newInsert(B);
+            MTaskWorkBucket first = null;
+            for (WorkBucketType newBucket : newBuckets) {
+                MTaskWorkBucket row = new MTaskWorkBucket();
+                row.ownerOid = ownerOid;
+                row.activityPath = activityPath;
+                row.bucketSetId = bucketSetId;
+                row.sequentialNumber = newBucket.getSequentialNumber();
+                if (first == null && workerOid != null) {
+                    row.state = DELEGATED;
+                    row.workerOid = workerOid;
+                } else {
+                    row.state = READY;
+                }
+                row.bucket = serialize(newBucket);
+                insert.populate(row).addBatch();
+                if (first == null) {
+                    first = row;
+                }
+            }
+            insert.execute();
+            return result(jdbcSession, first, Situation.CREATED_NEW);
+        }
+
+        // Any bucket that is not complete is being worked on: either delegated, or claimed by a standalone claimer
+        // (it stays ready until completed), or locked by a concurrent claimer that has not committed yet.
+        // Hence no "skip locked" here, and the state as seen by this transaction is sufficient.
+        boolean someNotComplete = jdbcSession.newQuery()
+                .select(B.sequentialNumber)
+                .from(B)
+                .where(B.bucketSetId.eq(bucketSetId).and(B.state.ne(COMPLETE)))
+                .fetchFirst() != null;
+        return new WorkBucketClaimResult(null,
+                someNotComplete ? Situation.NOTHING_MORE_SOME_DELEGATED : Situation.NOTHING_MORE_DEFINITE,
+                countComplete(jdbcSession, bucketSetId));
+    }
+
+    /**
+     * Locks the first ready bucket not locked by other claimers, and delegates it to the worker (if there's one).
+     * In the standalone case, the bucket stays ready until it is completed.
+     */
+    private MTaskWorkBucket claimReady(JdbcSession jdbcSession, UUID bucketSetId, UUID workerOid) {
+        MTaskWorkBucket ready = jdbcSession.newQuery()
+                .select(B)
+                .from(B)
+                .where(B.bucketSetId.eq(bucketSetId).and(B.state.eq(READY)))
+                .orderBy(B.sequentialNumber.asc())
+                .limit(1)
+                .addFlag(QueryFlag.Position.END, "\nfor update skip locked")
+                .fetchOne();
+        if (ready != null && workerOid != null) {
+            jdbcSession.newUpdate(B)
+                    .set(B.state, DELEGATED)
+                    .set(B.workerOid, workerOid)
+                    .where(B.bucketSetId.eq(bucketSetId).and(B.sequentialNumber.eq(ready.sequentialNumber)))
+                    .execute();
+            ready.state = DELEGATED;
+            ready.workerOid = workerOid;
+        }
+        return ready;
+    }
+
+    int complete(@NotNull UUID bucketSetId, int sequentialNumber) {
+        try (JdbcSession jdbcSession = repoContext.newJdbcSession().startTransaction()) {
+            long updated = jdbcSession.newUpdate(B)
+                    .set(B.state, COMPLETE)
+                    .where(B.bucketSetId.eq(bucketSetId)
+                            .and(B.sequentialNumber.eq(sequentialNumber))
+                            .and(B.state.in(READY, DELEGATED)))
+                    .execute();
+            if (updated == 0) {
+                throw new IllegalStateException(
+                        "Bucket #" + sequentialNumber + " in " + bucketSetId + " is not ready nor delegated");
+            }
+            int complete = countComplete(jdbcSession, bucketSetId);
+            jdbcSession.commit();
+            return complete;
+        }
+    }
+
+    /** Returns buckets delegated to workers matching the predicate (null means any worker) back to the ready state. */
+    private int release(@NotNull UUID bucketSetId, @Nullable Predicate workerPredicate) {
+        try (JdbcSession jdbcSession = repoContext.newJdbcSession().startTransaction()) {
+            long updated = jdbcSession.newUpdate(B)
+                    .set(B.state, READY)
+                    .setNull(B.workerOid)
+                    .where(B.bucketSetId.eq(bucketSetId)
+                            .and(B.state.eq(DELEGATED))
+                            .and(workerPredicate))
+                    .execute();
+            jdbcSession.commit();
+            return (int) updated;
+        }
+    }
+
+    int release(@NotNull UUID bucketSetId, @NotNull UUID workerOid, @Nullable Integer sequentialNumber) {
+        return release(bucketSetId, sequentialNumber != null
+                ? B.workerOid.eq(workerOid).and(B.sequentialNumber.eq(sequentialNumber))
+                : B.workerOid.eq(workerOid));
+    }
+
+    int reclaim(@NotNull UUID bucketSetId, @NotNull Collection<UUID> liveWorkerOids) {
+        return release(bucketSetId, liveWorkerOids.isEmpty()
+                ? null
+                : B.workerOid.notIn(liveWorkerOids).or(B.workerOid.isNull()));
+    }
+
+    void delete(@NotNull UUID ownerOid, @NotNull String activityPath, @Nullable UUID exceptBucketSetId) {
+        try (JdbcSession jdbcSession = repoContext.newJdbcSession().startTransaction()) {
+            long deleted = jdbcSession.newDelete(B)
+                    .where(B.ownerOid.eq(ownerOid)
+                            .and(B.activityPath.eq(activityPath))
+                            .and(exceptBucketSetId != null ? B.bucketSetId.ne(exceptBucketSetId) : null))
+                    .execute();
+            jdbcSession.commit();
+            LOGGER.trace("Deleted {} work buckets of {}:{} (except for {})",
+                    deleted, ownerOid, activityPath, exceptBucketSetId);
+        }
+    }
+
+    private int countComplete(JdbcSession jdbcSession, UUID bucketSetId) {
+        Long count = jdbcSession.newQuery()
+                .select(B.sequentialNumber.count())
+                .from(B)
+                .where(B.bucketSetId.eq(bucketSetId).and(B.state.eq(COMPLETE)))
+                .fetchOne();
+        return count != null ? count.intValue() : 0;
+    }
+
+    private WorkBucketClaimResult result(JdbcSession jdbcSession, MTaskWorkBucket row, Situation situation)
+            throws SchemaException {
+        return new WorkBucketClaimResult(toBucket(row), situation, countComplete(jdbcSession, row.bucketSetId));
+    }
+
+    /** State and worker are taken from the columns; the serialized form does not contain them. */
+    private WorkBucketType toBucket(MTaskWorkBucket row) throws SchemaException {
+        WorkBucketType bucket = repoContext.parsePrismObject(row.bucket, WorkBucketType.class).prismValue;
+        bucket.setState(row.state);
+        if (row.workerOid != null) {
+            bucket.workerRef(row.workerOid.toString(), TaskType.COMPLEX_TYPE);
+        }
+        return bucket;
+    }
+
+    private byte[] serialize(WorkBucketType bucket) throws SchemaException {
+        WorkBucketType stateless = bucket.cloneWithoutId()
+                .state(null)
+                .workerRef(null);
+        return repoContext.encodeFullObject(repoContext.createStringSerializer()
+                .options(SerializationOptions
+                        .createSerializeReferenceNamesForNullOids()
+                        .skipWhitespaces(true))
+                .serializeRealValue(stateless, ActivityBucketingStateType.F_BUCKET));
+    }
+
+    static @NotNull UUID toUuid(@NotNull String bucketSetId) {
+        return UUID.fromString(bucketSetId);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Group-commit writer used by {@link SqaleAuditService} when asynchronous audit is enabled.
+ *
+ * Prepared audit records are put into a bounded queue and a single writer thread writes them
+ * in batches, each batch in a single transaction (see the batch writer provided to the constructor).
+ * If the queue is full, the caller blocks until there is a free slot (backpressure).
+ * Records are written in the order they were submitted.
+ *
+ * If writing of the batch fails, its records are written again one by one, so that one bad record
+ * does not cause the loss of the others; each record is then completed with its own outcome.
+ *
+ * After {@link #destroy()}, the records are written synchronously on the caller's thread.
+ * This covers also the records that got into the queue after the writer thread finished.
+ * If the writer thread does not finish in time, it is interrupted and the records still queued
+ * are completed exceptionally, so that nobody waits for them forever.
+ *
+ * Simple statistics are maintained: batches and records written, records failed and how many times
+ * the caller had to wait for a free slot. The time of the batch writes is recorded by the batch writer
+ * in the usual repository performance monitor.
+ *
+ * @param <R> type of the prepared record
+ */
+public class AsyncAuditWriter<R> {
+
+    private static final Trace LOGGER = TraceManager.getTrace(AsyncAuditWriter.class);
+
+    /** How long the writer waits for the first record of the batch before it checks the stop flag again. */
+    private static final long POLL_TIMEOUT_MS = 500;
+
+    /** How long the destroy waits for the queued records to be written. */
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final BlockingQueue<Pending<R>> queue;
+    private final int batchSize;
+    private final Consumer<List<R>> batchWriter;
+    private final Thread writerThread;
+
+    private volatile boolean stopped;
+
+    /** Set by the writer thread when it no longer takes records from the queue. */
+    private volatile boolean terminated;
+
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder recordsWritten = new LongAdder();
+    private final LongAdder recordsFailed = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+
+    public AsyncAuditWriter(
+            @NotNull String name, int queueSize, int batchSize, @NotNull Consumer<List<R>> batchWriter) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.batchWriter = batchWriter;
+        this.writerThread = new Thread(this::run, name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues the record for writing, blocking while the queue is full.
+     * Returned future is completed when the record is committed (or its writing fails).
+     * If the writer is already stopped, the record is written before this method returns.
+     */
+    public CompletableFuture<Void> submit(@NotNull R record) {
+        Pending<R> pending = new Pending<>(record);
+        if (stopped) {
+            writeBatch(List.of(pending));
+            return pending.future;
+        }
+        try {
+            if (!queue.offer(pending)) {
+                backpressureWaits.increment();
+                queue.put(pending);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for free slot in the audit queue", e);
+        }
+        if (terminated) {
+            // The writer thread finished after our check of the stop flag, it may have missed our record.
+            writeQueuedDirectly();
+        }
+        return pending.future;
+    }
+
+    private void run() {
+        List<Pending<R>> batch = new ArrayList<>(batchSize);
+        try {
+            while (!stopped || !queue.isEmpty()) {
+                try {
+                    Pending<R> first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                } catch (InterruptedException e) {
+                    // Only destroy interrupts us, when the queued records were not written in time.
+                    stopped = true;
+                    break;
+                } catch (Throwable t) {
+                    // Should not happen, writeBatch handles the failures, but the thread must survive.
+                    LOGGER.error("Unexpected problem in asynchronous audit writer", t);
+                } finally {
+                    batch.clear();
+                }
+            }
+        } finally {
+            terminated = true;
+            failQueued();
+        }
+    }
+
+    /** Writes the records left in the queue on the current thread, one by one. */
+    private void writeQueuedDirectly() {
+        List<Pending<R>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (Pending<R> pending : remaining) {
+            writeBatch(List.of(pending));
+        }
+    }
+
+    /** Completes the records left in the queue exceptionally. Normally, there are none. */
+    private void failQueued() {
+        List<Pending<R>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            LOGGER.warn("Asynchronous audit writer stopped, {} queued records were not written", remaining.size());
+            SystemException e = new SystemException("Asynchronous audit writer was stopped before the record was written");
+            for (Pending<R> pending : remaining) {
+                recordsFailed.increment();
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending<R>> batch) {
+        try {
+            batchWriter.accept(batch.stream().map(p -> p.record).toList());
+            batchesWritten.increment();
+            recordsWritten.add(batch.size());
+            batch.forEach(p -> p.future.complete(null));
+        } catch (Throwable t) {
+            if (batch.size() == 1) {
+                recordsFailed.increment();
+                LOGGER.warn("Asynchronous audit record write failed", t);
+                batch.get(0).future.completeExceptionally(t);
+                return;
+            }
+            LOGGER.warn("Asynchronous audit batch of {} records failed, writing the records one by one", batch.size(), t);
+            for (Pending<R> pending : batch) {
+                writeBatch(List.of(pending));
+            }
+        }
+    }
+
+    /**
+     * Stops queueing new records and waits (with a timeout) for the queued records to be written.
+     * The records submitted afterwards are written synchronously.
+     */
+    public void destroy() {
+        stopped = true;
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            LOGGER.warn("Asynchronous audit writer did not finish in time, {} queued records will not be written",
+                    queue.size());
+            writerThread.interrupt();
+        }
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.sum();
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten.sum();
+    }
+
+    public long getRecordsFailed() {
+        return recordsFailed.sum();
+    }
+
+    /** Returns how many times the caller had to wait for a free slot in the queue. */
+    public long getBackpressureWaits() {
+        return backpressureWaits.sum();
+    }
+
+    private static class Pending<R> {
+        private final R record;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(R record) {
+            this.record = record;
+        }
+    }
+}
@@ -18,15 +18,25 @@ import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.xml.datatype.Duration;
 
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.SQLExpressions;
 import com.querydsl.sql.dml.DefaultMapper;
 import com.querydsl.sql.dml.SQLInsertClause;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
 import com.evolveum.midpoint.audit.api.AuditReferenceValue;
@@ -68,12 +78,38 @@ import com.evolveum.prism.xml.ns._public.types_3.ObjectDeltaType;
  */
 public class SqaleAuditService extends SqaleServiceBase implements AuditService {
 
+    /** Operation name for a batch of records written by the asynchronous audit writer. */
+    public static final String OP_AUDIT_BATCH = "auditBatch";
+
+    private static final long PARTITION_MAINTENANCE_INTERVAL_HOURS = 24;
+
+    /**
+     * Transaction-level advisory lock guarding the partition maintenance, so only one node of the cluster
+     * does it at a time. The same lock is used by `audit_drop_partitions_before` function.
+     */
+    private static final int PARTITION_MAINTENANCE_LOCK = 48;
+
+    /** How often is the progress of long audit cleanup logged on the info level. */
+    private static final long CLEANUP_PROGRESS_LOG_INTERVAL_MS = 10_000;
+
+    /** How long the caller waits for the asynchronously written record, if configured to wait. */
+    private static final long ASYNC_AUDIT_WAIT_TIMEOUT_MS = 60_000;
+
     private final SqlQueryExecutor sqlQueryExecutor;
 
     // set from SystemConfigurationAuditType
     private boolean escapeIllegalCharacters = false;
     @NotNull private OperationResultDetailLevel deltaSuccessExecutionResult = OperationResultDetailLevel.CLEANED_UP;
 
+    /** Started lazily when asynchronous audit is enabled, see {@link #asyncAuditWriter()}. */
+    private AsyncAuditWriter<PreparedAuditRecord> asyncAuditWriter;
+
+    /** Set by {@link #destroy()}; records are then written synchronously and no new writer is started. */
+    private boolean stopped;
+
+    /** Creates future audit partitions periodically, see {@link #startPartitionMaintenance()}. */
+    private ScheduledExecutorService partitionMaintenanceExecutor;
+
     public SqaleAuditService(
             SqaleRepoContext sqlRepoContext,
             SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
@@ -88,7 +124,13 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         OperationResult operationResult = parentResult.createSubresult(opNamePrefix + OP_AUDIT);
 
         try {
-            executeAudit(record);
+            AsyncAuditWriter<PreparedAuditRecord> writer =
+                    repositoryConfiguration().getAsyncAuditQueueSize() > 0 ? asyncAuditWriter() : null;
+            if (writer != null) {
+                executeAuditAsync(record, writer);
+            } else {
+                executeAudit(record);
+            }
         } catch (RuntimeException e) {
             throw handledGeneralException(e, operationResult);
         } catch (Throwable t) {
@@ -103,12 +145,87 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         long opHandle = registerOperationStart(OP_AUDIT);
         try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
             record.setRepoId(null); // we want DB to assign the ID
-            MAuditEventRecord auditRow = insertAuditEventRecord(jdbcSession, record);
-            record.setRepoId(auditRow.id);
+            PreparedAuditRecord preparedRecord = prepareAuditEventRecord(record);
+            insertAuditEventRecords(jdbcSession, List.of(preparedRecord));
+            record.setRepoId(preparedRecord.row.id);
 
-            insertAuditDeltas(jdbcSession, auditRow);
-            insertReferences(jdbcSession, auditRow, record.getReferences());
+            jdbcSession.commit();
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+    }
+
+    /**
+     * Prepares the rows on the caller's thread (so the record can be changed by the caller afterwards)
+     * and submits them to the asynchronous writer.
+     * Depending on the configuration, waits until the record is committed or returns immediately.
+     * Repo ID of the record is set only in the former case.
+     */
+    private void executeAuditAsync(AuditEventRecord record, AsyncAuditWriter<PreparedAuditRecord> writer) {
+        long opHandle = registerOperationStart(OP_AUDIT);
+        try {
+            record.setRepoId(null); // we want DB to assign the ID
+            PreparedAuditRecord preparedRecord = prepareAuditEventRecord(record);
+            CompletableFuture<Void> written = writer.submit(preparedRecord);
+            if (repositoryConfiguration().isAsyncAuditWaitForFlush()) {
+                waitForAsyncAudit(written);
+                record.setRepoId(preparedRecord.row.id);
+            }
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+    }
+
+    private void waitForAsyncAudit(CompletableFuture<Void> written) {
+        try {
+            written.get(ASYNC_AUDIT_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SystemException(
+                    "Audit record was not written in " + ASYNC_AUDIT_WAIT_TIMEOUT_MS + " ms, giving up waiting for it", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for the audit record to be written", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new SystemException(cause.getMessage(), cause);
+        }
+    }
 
+    /** Returns the writer, starting it if needed; or null if the service is already destroyed. */
+    private synchronized @Nullable AsyncAuditWriter<PreparedAuditRecord> asyncAuditWriter() {
+        if (stopped) {
+            return null;
+        }
+        if (asyncAuditWriter == null) {
+            SqaleRepositoryConfiguration config = repositoryConfiguration();
+            logger.info("Starting asynchronous audit writer, queue size {}, batch size {}, wait for flush: {}",
+                    config.getAsyncAuditQueueSize(), config.getAsyncAuditBatchSize(),
+                    config.isAsyncAuditWaitForFlush());
+            asyncAuditWriter = new AsyncAuditWriter<>("sqale-audit-writer",
+                    config.getAsyncAuditQueueSize(), config.getAsyncAuditBatchSize(), this::writeAuditBatch);
+        }
+        return asyncAuditWriter;
+    }
+
+    /**
+     * Returns the asynchronous audit writer, e.g. for its statistics, or null if it was not used yet.
+     * The writer is started on the first audit after asynchronous audit is enabled
+     * and the queue and batch size are fixed after that.
+     */
+    public synchronized @Nullable AsyncAuditWriter<?> getAsyncAuditWriter() {
+        return asyncAuditWriter;
+    }
+
+    /** Called by the asynchronous writer thread, writes all the records in a single transaction. */
+    private void writeAuditBatch(List<PreparedAuditRecord> records) {
+        long opHandle = registerOperationStart(OP_AUDIT_BATCH);
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            for (PreparedAuditRecord record : records) {
+                record.row.id = null; // the previous attempt could have set it before rollback
+            }
+            insertAuditEventRecords(jdbcSession, records);
             jdbcSession.commit();
         } finally {
             registerOperationFinish(opHandle);
@@ -116,19 +233,30 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     }
 
     /**
-     * Inserts audit event record aggregate root without any subentities.
+     * Inserts the audit event records with their deltas and references.
+     * Root rows are inserted one by one, because we need their generated IDs;
+     * deltas and references of all the records are inserted using a single bulk insert each.
+     */
+    private void insertAuditEventRecords(JdbcSession jdbcSession, List<PreparedAuditRecord> records) {
+        for (PreparedAuditRecord record : records) {
+            insertAuditEventRecord(jdbcSession, record);
+        }
+        insertAuditDeltas(jdbcSession, records);
+        insertReferences(jdbcSession, records);
+    }
+
+    /**
+     * Prepares audit event record aggregate root with its subentities.
      * Traditional Sqale "insert root first, then insert children" is not optimal here,
      * because to insert root we need to collect some information from children anyway.
      * So we prepare the subentities in collections, gather the needed information
      * (e.g. changed item paths) and then insert root entity.
-     * Subentities are inserted later out of this method.
+     * Subentities are inserted later out of {@link #insertAuditEventRecord}.
      *
-     * @return inserted row with transient deltas prepared for insertion
+     * @return row with transient deltas prepared for insertion, with other data needed for insertion
      */
-    private MAuditEventRecord insertAuditEventRecord(JdbcSession jdbcSession, AuditEventRecord record) {
-        QAuditEventRecordMapping aerMapping = QAuditEventRecordMapping.get();
-        QAuditEventRecord aer = aerMapping.defaultAlias();
-        MAuditEventRecord row = aerMapping.toRowObject(record);
+    private PreparedAuditRecord prepareAuditEventRecord(AuditEventRecord record) {
+        MAuditEventRecord row = QAuditEventRecordMapping.get().toRowObject(record);
 
         Collection<MAuditDelta> deltaRows = prepareDeltas(record.getDeltas());
         row.deltas = deltaRows;
@@ -136,9 +264,24 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         Set<String> changedItemPaths = collectChangedItemPaths(deltaRows);
         row.changedItemPaths = changedItemPaths.isEmpty() ? null : changedItemPaths.toArray(String[]::new);
 
+        // Copies, as the record can be changed by the caller before it is written asynchronously.
+        Map<String, Set<AuditReferenceValue>> references = new HashMap<>();
+        record.getReferences().forEach((name, values) -> references.put(name, new HashSet<>(values)));
+        return new PreparedAuditRecord(row, new HashMap<>(record.getCustomColumnProperty()), references);
+    }
+
+    /**
+     * Inserts audit event record aggregate root without any subentities.
+     * Sets the ID of the inserted row.
+     */
+    private void insertAuditEventRecord(JdbcSession jdbcSession, PreparedAuditRecord record) {
+        QAuditEventRecordMapping aerMapping = QAuditEventRecordMapping.get();
+        QAuditEventRecord aer = aerMapping.defaultAlias();
+        MAuditEventRecord row = record.row;
+
         SQLInsertClause insert = jdbcSession.newInsert(aer).populate(row);
         Map<String, ColumnMetadata> customColumns = aerMapping.getExtensionColumns();
-        for (Map.Entry<String, String> property : record.getCustomColumnProperty().entrySet()) {
+        for (Map.Entry<String, String> property : record.customColumnProperties.entrySet()) {
             String propertyName = property.getKey();
             if (!customColumns.containsKey(propertyName)) {
                 throw new IllegalArgumentException("Audit event record table doesn't"
@@ -150,8 +293,9 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
 
         Long returnedId = insert.executeWithKey(aer.id);
         // If returned ID is null, it was likely provided, so we use that one.
-        row.id = returnedId != null ? returnedId : record.getRepoId();
-        return row;
+        if (returnedId != null) {
+            row.id = returnedId;
+        }
     }
 
     private Collection<MAuditDelta> prepareDeltas(Collection<ObjectDeltaOperation<?>> deltas) {
@@ -308,12 +452,11 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         return changedItemPaths;
     }
 
-    private void insertAuditDeltas(
-            JdbcSession jdbcSession, MAuditEventRecord auditRow) {
-
-        if (!auditRow.deltas.isEmpty()) {
-            SQLInsertClause insertBatch = jdbcSession.newInsert(
-                    QAuditDeltaMapping.get().defaultAlias());
+    private void insertAuditDeltas(JdbcSession jdbcSession, List<PreparedAuditRecord> records) {
+        SQLInsertClause insertBatch = jdbcSession.newInsert(
+                QAuditDeltaMapping.get().defaultAlias());
+        for (PreparedAuditRecord record : records) {
+            MAuditEventRecord auditRow = record.row;
             for (MAuditDelta deltaRow : auditRow.deltas) {
                 deltaRow.recordId = auditRow.id;
                 deltaRow.timestamp = auditRow.timestamp;
@@ -321,36 +464,39 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
                 // NULLs are important to keep the value count consistent during the batch
                 insertBatch.populate(deltaRow, DefaultMapper.WITH_NULL_BINDINGS).addBatch();
             }
-            insertBatch.setBatchToBulk(true);
-            insertBatch.execute();
         }
-    }
-
-    private void insertReferences(JdbcSession jdbcSession,
-            MAuditEventRecord auditRow, Map<String, Set<AuditReferenceValue>> references) {
-        if (references.isEmpty()) {
+        if (insertBatch.getBatchCount() == 0) {
             return;
         }
 
+        insertBatch.setBatchToBulk(true);
+        insertBatch.execute();
+    }
+
+    private void insertReferences(JdbcSession jdbcSession, List<PreparedAuditRecord> records) {
         QAuditRefValue qr = QAuditRefValueMapping.get().defaultAlias();
         SQLInsertClause insertBatch = jdbcSession.newInsert(qr);
-        for (String refName : references.keySet()) {
-            for (AuditReferenceValue refValue : references.get(refName)) {
-                // id will be generated, but we're not interested in those here
-                PolyString targetName = refValue.getTargetName();
-                insertBatch.set(qr.recordId, auditRow.id)
-                        .set(qr.timestamp, auditRow.timestamp)
-                        .set(qr.name, refName)
-                        .set(qr.targetOid, SqaleUtils.oidToUuid(refValue.getOid()))
-                        .set(qr.targetType, refValue.getType() != null
-                                ? MObjectType.fromTypeQName(refValue.getType()) : null)
-                        .set(qr.targetNameOrig, PolyString.getOrig(targetName))
-                        .set(qr.targetNameNorm, PolyString.getNorm(targetName))
-                        .addBatch();
+        for (PreparedAuditRecord record : records) {
+            MAuditEventRecord auditRow = record.row;
+            for (Map.Entry<String, Set<AuditReferenceValue>> entry : record.references.entrySet()) {
+                String refName = entry.getKey();
+                for (AuditReferenceValue refValue : entry.getValue()) {
+                    // id will be generated, but we're not interested in those here
+                    PolyString targetName = refValue.getTargetName();
+                    insertBatch.set(qr.recordId, auditRow.id)
+                            .set(qr.timestamp, auditRow.timestamp)
+                            .set(qr.name, refName)
+                            .set(qr.targetOid, SqaleUtils.oidToUuid(refValue.getOid()))
+                            .set(qr.targetType, refValue.getType() != null
+                                    ? MObjectType.fromTypeQName(refValue.getType()) : null)
+                            .set(qr.targetNameOrig, PolyString.getOrig(targetName))
+                            .set(qr.targetNameNorm, PolyString.getNorm(targetName))
+                            .addBatch();
+                }
             }
         }
         if (insertBatch.getBatchCount() == 0) {
-            return; // strange, no values anywhere?
+            return; // no references in any record
         }
 
         insertBatch.setBatchToBulk(true);
@@ -407,7 +553,7 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         OperationResult operationResult =
                 parentResult.createSubresult(opNamePrefix + OP_CLEANUP_AUDIT_MAX_AGE);
         try {
-            executeCleanupAuditMaxAge(policy.getMaxAge());
+            executeCleanupAuditMaxAge(policy.getMaxAge(), operationResult);
         } catch (RuntimeException e) {
             throw handledGeneralException(e, operationResult);
         } catch (Throwable t) {
@@ -418,7 +564,12 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         }
     }
 
-    private void executeCleanupAuditMaxAge(Duration maxAge) {
+    /**
+     * Monthly partitions containing only records older than the cutoff are dropped as a whole,
+     * the rest (default partition and the partition with the cutoff) is deleted in committed chunks,
+     * so that no single transaction holds locks or bloats WAL for the whole cleanup.
+     */
+    private void executeCleanupAuditMaxAge(Duration maxAge, OperationResult operationResult) {
         long opHandle = registerOperationStart(OP_CLEANUP_AUDIT_MAX_AGE);
 
         if (maxAge.getSign() > 0) {
@@ -430,22 +581,70 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         Instant olderThan = Instant.ofEpochMilli(minValue.getTime());
 
         long start = System.currentTimeMillis();
-        long deletedCount = 0;
-        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+        int droppedPartitions = 0;
+        CleanupProgress progress = new CleanupProgress(start);
+        try {
             logger.info("Audit cleanup, deleting records older than {}.", olderThan);
+            droppedPartitions = dropAuditPartitionsBefore(olderThan);
+            if (droppedPartitions > 0) {
+                logger.info("Audit cleanup dropped {} monthly partitions older than {}.", droppedPartitions, olderThan);
+            }
 
             QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
-            deletedCount = jdbcSession.newDelete(qae)
-                    .where(qae.timestamp.lt(olderThan))
-                    .execute();
-            jdbcSession.commit();
+            QAuditEventRecord qaeChunk = QAuditEventRecordMapping.get().newAlias("aec");
+            deleteInChunks(progress, qae.timestamp.lt(olderThan), qae.id.in(
+                    SQLExpressions.select(qaeChunk.id)
+                            .from(qaeChunk)
+                            .where(qaeChunk.timestamp.lt(olderThan))
+                            .limit(repositoryConfiguration().getAuditCleanupBatchSize())));
         } finally {
             registerOperationFinish(opHandle);
-            logger.info("Audit cleanup based on age finished; deleted {} entries in {} seconds.",
-                    deletedCount, (System.currentTimeMillis() - start) / 1000L);
+            operationResult.addReturn("droppedPartitions", droppedPartitions);
+            operationResult.addReturn("deletedCount", progress.deletedCount);
+            logger.info("Audit cleanup based on age finished; dropped {} partitions and deleted {} entries in {} seconds.",
+                    droppedPartitions, progress.deletedCount, (System.currentTimeMillis() - start) / 1000L);
         }
     }
 
+    /**
+     * Drops whole monthly partitions older than the cutoff, returns the number of dropped months.
+     * Each month is dropped in its own transaction, so the exclusive locks on the audit tables are held only briefly.
+     */
+    private int dropAuditPartitionsBefore(Instant olderThan) {
+        int droppedCount = 0;
+        for (;;) {
+            try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+                Integer dropped = jdbcSession.newQuery()
+                        .select(Expressions.numberTemplate(Integer.class, "audit_drop_partitions_before({0})", olderThan))
+                        .fetchOne();
+                jdbcSession.commit();
+                if (dropped == null || dropped == 0) {
+                    return droppedCount;
+                }
+                droppedCount += dropped;
+            }
+        }
+    }
+
+    /**
+     * Repeatedly deletes the audit events matching the conditions, each chunk in its own transaction,
+     * until nothing is deleted. The conditions must limit the number of rows deleted by a single statement.
+     * Deltas and references are deleted by cascading FKs.
+     */
+    private void deleteInChunks(CleanupProgress progress, Predicate... conditions) {
+        QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
+        long deleted;
+        do {
+            try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+                deleted = jdbcSession.newDelete(qae)
+                        .where(conditions)
+                        .execute();
+                jdbcSession.commit();
+            }
+            progress.chunkDeleted(deleted);
+        } while (deleted > 0);
+    }
+
     // TODO: Document that this is less efficient with current timestamp-partitioned repo.
     //  Not necessarily inefficient per se, just less efficient than using timestamp.
     private void cleanupAuditMaxRecords(CleanupPolicyType policy, OperationResult parentResult) {
@@ -457,7 +656,7 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         OperationResult operationResult =
                 parentResult.createSubresult(opNamePrefix + OP_CLEANUP_AUDIT_MAX_RECORDS);
         try {
-            executeCleanupAuditMaxRecords(maxRecords);
+            executeCleanupAuditMaxRecords(maxRecords, operationResult);
         } catch (RuntimeException e) {
             throw handledGeneralException(e, operationResult);
         } catch (Throwable t) {
@@ -468,33 +667,98 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         }
     }
 
-    private void executeCleanupAuditMaxRecords(int maxRecords) {
+    private void executeCleanupAuditMaxRecords(int maxRecords, OperationResult operationResult) {
         long opHandle = registerOperationStart(OP_CLEANUP_AUDIT_MAX_RECORDS);
 
         long start = System.currentTimeMillis();
-        long deletedCount = 0;
-        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+        CleanupProgress progress = new CleanupProgress(start);
+        try {
             logger.info("Audit cleanup, deleting to leave only {} records.", maxRecords);
             QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
-            Long deleteFromId = jdbcSession.newQuery()
-                    .select(qae.id)
-                    .from(qae)
-                    .orderBy(qae.id.desc())
-                    .offset(maxRecords)
-                    .fetchFirst();
+            Long deleteFromId;
+            try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
+                deleteFromId = jdbcSession.newQuery()
+                        .select(qae.id)
+                        .from(qae)
+                        .orderBy(qae.id.desc())
+                        .offset(maxRecords)
+                        .fetchFirst();
+            }
             if (deleteFromId == null) {
                 logger.info("Nothing to delete from audit, {} entries allowed.", maxRecords);
                 return;
             }
 
-            deletedCount = jdbcSession.newDelete(qae)
-                    .where(qae.id.loe(deleteFromId))
-                    .execute();
-            jdbcSession.commit();
+            QAuditEventRecord qaeChunk = QAuditEventRecordMapping.get().newAlias("aec");
+            deleteInChunks(progress, qae.id.in(
+                    SQLExpressions.select(qaeChunk.id)
+                            .from(qaeChunk)
+                            .where(qaeChunk.id.loe(deleteFromId))
+                            .limit(repositoryConfiguration().getAuditCleanupBatchSize())));
         } finally {
             registerOperationFinish(opHandle);
+            operationResult.addReturn("deletedCount", progress.deletedCount);
             logger.info("Audit cleanup based on record count finished; deleted {} entries in {} seconds.",
-                    deletedCount, (System.currentTimeMillis() - start) / 1000L);
+                    progress.deletedCount, (System.currentTimeMillis() - start) / 1000L);
+        }
+    }
+
+    /**
+     * Starts the periodic creation of future monthly audit partitions, see {@link #createFuturePartitions()}.
+     * Called by the factory after the service is initialized.
+     */
+    public synchronized void startPartitionMaintenance() {
+        if (partitionMaintenanceExecutor != null || repositoryConfiguration().getAuditPartitionsAhead() <= 0) {
+            return;
+        }
+        partitionMaintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "audit-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        partitionMaintenanceExecutor.scheduleWithFixedDelay(
+                this::createFuturePartitions, 0, PARTITION_MAINTENANCE_INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    /**
+     * Makes sure the configured number of future monthly partitions exists, so that new audit
+     * records never end up in the default partition.
+     * Does nothing if no monthly partitions exist - that is, partitioning is not used - or if another node
+     * is maintaining the partitions right now (the advisory lock is taken).
+     *
+     * @return true if the partitions were checked and created by this call
+     */
+    @VisibleForTesting
+    public boolean createFuturePartitions() {
+        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+            Boolean locked = jdbcSession.newQuery()
+                    .select(Expressions.booleanTemplate("pg_try_advisory_xact_lock({0})", PARTITION_MAINTENANCE_LOCK))
+                    .fetchOne();
+            if (!Boolean.TRUE.equals(locked)) {
+                logger.debug("Audit partitions are being maintained by another node, skipping.");
+                return false;
+            }
+
+            Boolean partitioned = jdbcSession.newQuery()
+                    .select(Expressions.booleanTemplate("exists (select 1 from pg_inherits i"
+                            + " join pg_class c on c.oid = i.inhrelid"
+                            + " where i.inhparent = 'ma_audit_event'::regclass"
+                            + " and c.relname ~ '^ma_audit_event_[0-9]+$')"))
+                    .fetchOne();
+            if (!Boolean.TRUE.equals(partitioned)) {
+                logger.debug("Audit does not use monthly partitions, no partitions are created.");
+                return false;
+            }
+
+            int partitionsAhead = repositoryConfiguration().getAuditPartitionsAhead();
+            logger.debug("Creating missing audit partitions for {} months ahead.", partitionsAhead);
+            jdbcSession.executeStatement("call audit_create_monthly_partitions(" + partitionsAhead + ")");
+            jdbcSession.commit();
+            return true;
+        } catch (RuntimeException e) {
+            // e.g. the default partition contains records for a created month, we'll try again next time
+            logger.warn("Couldn't create future audit partitions: {}", e.getMessage(), e);
+            return false;
         }
     }
 
@@ -799,4 +1063,53 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     protected long registerOperationStart(String kind) {
         return registerOperationStart(kind, AuditEventRecordType.class);
     }
+
+    @Override
+    public void destroy() {
+        AsyncAuditWriter<?> writer;
+        synchronized (this) {
+            stopped = true;
+            writer = asyncAuditWriter;
+            if (partitionMaintenanceExecutor != null) {
+                partitionMaintenanceExecutor.shutdownNow();
+                partitionMaintenanceExecutor = null;
+            }
+        }
+        if (writer != null) {
+            writer.destroy(); // writes the queued records, we want it before the monitor is gone
+        }
+        super.destroy();
+    }
+
+    /** Counts the records deleted by the chunked audit cleanup and logs the progress. */
+    private class CleanupProgress {
+
+        private final long start;
+        private long deletedCount;
+        private long lastInfoLog;
+
+        CleanupProgress(long start) {
+            this.start = start;
+            this.lastInfoLog = start;
+        }
+
+        void chunkDeleted(long count) {
+            deletedCount += count;
+            long now = System.currentTimeMillis();
+            if (count > 0 && now - lastInfoLog >= CLEANUP_PROGRESS_LOG_INTERVAL_MS) {
+                lastInfoLog = now;
+                logger.info("Audit cleanup in progress; deleted {} entries in {} seconds so far.",
+                        deletedCount, (now - start) / 1000L);
+            } else {
+                logger.debug("Audit cleanup deleted chunk of {} entries, {} in total.", count, deletedCount);
+            }
+        }
+    }
+
+    /** Audit record converted to rows, with other data needed for the insertion. */
+    private record PreparedAuditRecord(
+            @NotNull MAuditEventRecord row,
+            @NotNull Map<String, String> customColumnProperties,
+            @NotNull Map<String, Set<AuditReferenceValue>> references) {
+    }
 }
@@ -84,6 +84,7 @@ public class SqaleAuditServiceFactory implements AuditServiceFactory {
             SqaleRepoContext sqlRepoContext = createSqaleRepoContext(configuration);
             auditService = new SqaleAuditService(sqlRepoContext, sqlPerformanceMonitorsCollection);
             initCustomColumns(configuration, sqlRepoContext);
+            auditService.startPartitionMaintenance();
         } catch (RepositoryServiceFactoryException ex) {
             throw new AuditServiceFactoryException(ex.getMessage(), ex);
         }
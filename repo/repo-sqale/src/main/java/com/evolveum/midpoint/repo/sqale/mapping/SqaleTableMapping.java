@@ -6,7 +6,6 @@
  */
 package com.evolveum.midpoint.repo.sqale.mapping;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -25,6 +24,7 @@ import com.evolveum.midpoint.prism.SerializationOptions;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.path.PathSet;
 import com.evolveum.midpoint.repo.sqale.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.FullObjectEncoding;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
 import com.evolveum.midpoint.repo.sqale.SqaleUtils;
 import com.evolveum.midpoint.repo.sqale.delta.item.*;
@@ -440,8 +440,15 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
         return strings.toArray(String[]::new);
     }
 
-    /** Convenient insert shortcut when the row is fully populated. */
+    /**
+     * Convenient insert shortcut when the row is fully populated.
+     * If the session collects inserts into batches, the row is only added to the batch.
+     */
     protected void insert(R row, JdbcSession jdbcSession) {
+        if (jdbcSession.isInsertBatching()) {
+            jdbcSession.addToInsertBatch(defaultAlias(), row);
+            return;
+        }
         jdbcSession.newInsert(defaultAlias())
                 .populate(row)
                 .execute();
@@ -472,12 +479,10 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
     }
 
     protected <T> T parseSchemaObject(byte[] fullObject, String identifier, Class<T> clazz) throws SchemaException {
-        String serializedForm = fullObject != null
-                ? new String(fullObject, StandardCharsets.UTF_8)
-                : null;
         try {
-            RepositoryObjectParseResult<T> result =
-                    repositoryContext().parsePrismObject(serializedForm, clazz);
+            RepositoryObjectParseResult<T> result = fullObject != null
+                    ? repositoryContext().parsePrismObject(fullObject, clazz)
+                    : repositoryContext().parsePrismObject((String) null, clazz);
             T schemaObject = result.prismValue;
             if (result.parsingContext.hasWarnings()) {
                 logger.warn("Object {} parsed with {} warnings",
@@ -492,7 +497,7 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
             // The message is enough to fix the problem.
             logger.error("Couldn't parse object {} {}: {}: {}\nSerialized form: '{}'",
                     clazz.getSimpleName(), identifier,
-                    e.getClass().getName(), e.getMessage(), serializedForm);
+                    e.getClass().getName(), e.getMessage(), FullObjectEncoding.toText(fullObject));
             throw e;
         }
     }
@@ -500,15 +505,14 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
     /** Creates serialized (byte array) form of an object or a container. */
     public <C extends Containerable> byte[] createFullObject(C container) throws SchemaException {
         repositoryContext().normalizeAllRelations(container.asPrismContainerValue());
-        return repositoryContext().createStringSerializer()
+        return repositoryContext().encodeFullObject(repositoryContext().createStringSerializer()
                 .itemsToSkip(fullObjectItemsToSkip())
                 .options(SerializationOptions
                         .createSerializeReferenceNamesForNullOids()
                         .skipIndexOnly(true)
                         .skipTransient(true)
                         .skipWhitespaces(true))
-                .serialize(container.asPrismContainerValue())
-                .getBytes(StandardCharsets.UTF_8);
+                .serialize(container.asPrismContainerValue()));
     }
 
     protected PathSet fullObjectItemsToSkip() {
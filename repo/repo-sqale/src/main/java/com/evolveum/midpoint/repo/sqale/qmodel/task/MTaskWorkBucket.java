@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.qmodel.task;
+
+import java.util.UUID;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType;
+
+/**
+ * Querydsl "row bean" type related to {@link QTaskWorkBucket}.
+ */
+public class MTaskWorkBucket {
+
+    public UUID ownerOid;
+    public String activityPath;
+    public UUID bucketSetId;
+    public Integer sequentialNumber;
+    public WorkBucketStateType state;
+    public UUID workerOid;
+    public byte[] bucket;
+
+    @Override
+    public String toString() {
+        return "MTaskWorkBucket{" +
+                "bucketSetId=" + bucketSetId +
+                ", sequentialNumber=" + sequentialNumber +
+                ", state=" + state +
+                ", workerOid=" + workerOid +
+                '}';
+    }
+}
@@ -40,6 +40,9 @@ public class AddObjectContext<S extends ObjectType, Q extends QObject<R>, R exte
     private QObjectMapping<S, Q, R> rootMapping;
     private MObjectType objectType;
 
+    /** Root row added to the insert batch; used by the batch methods only. */
+    private R row;
+
     public AddObjectContext(
             @NotNull SqaleRepoContext repositoryContext,
             @NotNull PrismObject<S> object) {
@@ -93,6 +96,37 @@ public class AddObjectContext<S extends ObjectType, Q extends QObject<R>, R exte
         }
     }
 
+    /**
+     * Prepares the object for the insert and adds its root row to the insert batch of the session.
+     * OID is generated here if missing, so the full object can be serialized without an additional update.
+     * The related entities are added later by {@link #addRelatedEntitiesToBatch(JdbcSession)},
+     * after the batch with all the root rows is flushed.
+     */
+    void addRootRowToBatch(JdbcSession jdbcSession) throws SchemaException {
+        object.setVersion(INITIAL_VERSION_STRING);
+        initContexts();
+        if (object.getOid() == null) {
+            object.setOid(UUID.randomUUID().toString());
+        }
+        long lastCid = new ContainerValueIdGenerator(object).generateForNewObject();
+        S schemaObject = object.asObjectable();
+        row = rootMapping.toRowObjectWithoutFullObject(schemaObject, jdbcSession);
+        row.containerIdSeq = lastCid + 1;
+        rootMapping.setFullObject(row, schemaObject);
+        // default populate mapper ignores null, that's good, especially for objectType
+        jdbcSession.addToInsertBatch(root, row);
+    }
+
+    /** Adds rows of the related entities; the root row must be already inserted, see {@link #addRootRowToBatch}. */
+    void addRelatedEntitiesToBatch(JdbcSession jdbcSession) throws SchemaException {
+        row.objectType = objectType; // sub-entities can use it, now it's safe to set it
+        rootMapping.storeRelatedEntities(row, object.asObjectable(), jdbcSession);
+    }
+
+    String getOid() {
+        return object.getOid();
+    }
+
     private void initContexts() {
         Class<S> schemaObjectClass = object.getCompileTimeClass();
         objectType = MObjectType.fromSchemaType(schemaObjectClass);
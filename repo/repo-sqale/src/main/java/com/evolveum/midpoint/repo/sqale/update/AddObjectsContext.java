@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.update;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.querydsl.core.QueryException;
+import org.jetbrains.annotations.NotNull;
+import org.postgresql.util.PSQLException;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.SqaleUtils;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Adds multiple objects in a single transaction, using JDBC batches for the inserts.
+ * Used only for true add, not overwrite, just like {@link AddObjectContext}.
+ *
+ * The inserts are done in two phases:
+ *
+ * 1. Root rows of all the objects are inserted - one batch per table, i.e. per object type.
+ * OIDs are generated beforehand, so the full objects can be stored right away.
+ * 2. Rows of the related entities (assignments, references, etc.) are inserted - one batch per table,
+ * in the order in which the tables were first used. Container rows are always added before the rows they own,
+ * so the tables they belong to are also flushed first.
+ *
+ * The first phase must be finished before the second one, because the tables of the related entities are shared
+ * by multiple object types and their rows have foreign keys to the root rows.
+ *
+ * Either all the objects are added or none of them; it is up to the caller to find out which of the objects
+ * caused the failure, if needed.
+ */
+public class AddObjectsContext {
+
+    private final SqaleRepoContext repositoryContext;
+    private final List<AddObjectContext<?, ?, ?>> contexts = new ArrayList<>();
+
+    public AddObjectsContext(
+            @NotNull SqaleRepoContext repositoryContext,
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects) {
+        this.repositoryContext = repositoryContext;
+        for (PrismObject<? extends ObjectType> object : objects) {
+            contexts.add(createContext(object));
+        }
+    }
+
+    private <S extends ObjectType> AddObjectContext<S, ?, ?> createContext(PrismObject<S> object) {
+        return new AddObjectContext<>(repositoryContext, object);
+    }
+
+    /**
+     * Inserts the objects provided to the constructor and returns their OIDs, in the same order.
+     */
+    public List<String> execute()
+            throws SchemaException, ObjectAlreadyExistsException {
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            jdbcSession.startInsertBatching();
+            for (AddObjectContext<?, ?, ?> context : contexts) {
+                context.addRootRowToBatch(jdbcSession);
+            }
+            jdbcSession.flushInsertBatches();
+
+            jdbcSession.startInsertBatching();
+            for (AddObjectContext<?, ?, ?> context : contexts) {
+                context.addRelatedEntitiesToBatch(jdbcSession);
+            }
+            jdbcSession.flushInsertBatches();
+
+            jdbcSession.commit();
+        } catch (QueryException e) { // Querydsl exception, not ours
+            Throwable cause = e.getCause();
+            if (cause instanceof PSQLException) {
+                SqaleUtils.handlePostgresException((PSQLException) cause);
+            }
+            throw e;
+        }
+
+        List<String> oids = new ArrayList<>(contexts.size());
+        for (AddObjectContext<?, ?, ?> context : contexts) {
+            oids.add(context.getOid());
+        }
+        return oids;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.init.AuditServiceProxy;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.SqaleRepositoryConfiguration;
+import com.evolveum.midpoint.repo.sqale.audit.AsyncAuditWriter;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditService;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditDelta;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecord;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditRefValue;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.task.api.test.NullTaskImpl;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests the asynchronous (group-commit) audit writing, see {@link AsyncAuditWriter}.
+ */
+public class AuditAsyncWriteTest extends SqaleRepoBaseTest {
+
+    private SqaleAuditService sqaleAuditService;
+    private SqaleRepositoryConfiguration auditConfiguration;
+
+    @BeforeClass
+    public void initObjects() {
+        sqaleAuditService = ((AuditServiceProxy) auditService).getImplementation(SqaleAuditService.class);
+        auditConfiguration = sqaleAuditService.repositoryConfiguration();
+    }
+
+    @AfterMethod
+    public void resetAsyncAudit() {
+        // Without this other audit tests would have to care.
+        auditConfiguration.setAsyncAuditQueueSize(0);
+        auditConfiguration.setAsyncAuditWaitForFlush(true);
+    }
+
+    @Test
+    public void test100AsyncAuditWaitingForFlush() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("clear audit and asynchronous audit waiting for flush");
+        clearAudit();
+        auditConfiguration.setAsyncAuditQueueSize(10);
+        auditConfiguration.setAsyncAuditWaitForFlush(true);
+
+        when("audit records are stored");
+        List<AuditEventRecord> records = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            AuditEventRecord record = createAuditRecord(i);
+            auditService.audit(record, NullTaskImpl.INSTANCE, result);
+            records.add(record);
+        }
+
+        then("records are stored with their deltas and references when audit returns");
+        assertThat(records).allMatch(r -> r.getRepoId() != null);
+        assertCount(QAuditEventRecord.class, 5);
+        assertCount(QAuditDelta.class, 5);
+        assertCount(QAuditRefValue.class, 5);
+
+        and("writer statistics are updated");
+        AsyncAuditWriter<?> writer = sqaleAuditService.getAsyncAuditWriter();
+        assertThat(writer).isNotNull();
+        assertThat(writer.getRecordsWritten()).isGreaterThanOrEqualTo(5);
+        assertThat(writer.getBatchesWritten()).isGreaterThanOrEqualTo(1);
+        assertThat(writer.getRecordsFailed()).isZero();
+    }
+
+    @Test
+    public void test110AsyncAuditFireAndForgetFromMultipleThreads() throws Exception {
+        given("clear audit and asynchronous fire-and-forget audit");
+        clearAudit();
+        auditConfiguration.setAsyncAuditQueueSize(10);
+        auditConfiguration.setAsyncAuditWaitForFlush(false);
+
+        when("many audit records are stored from multiple threads");
+        int threads = 4;
+        int recordsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * recordsPerThread;
+                futures.add(executor.submit(() -> {
+                    OperationResult result = createOperationResult();
+                    for (int i = 1; i <= recordsPerThread; i++) {
+                        auditService.audit(createAuditRecord(base + i), NullTaskImpl.INSTANCE, result);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        then("all records are eventually written");
+        int total = threads * recordsPerThread;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (count(QAuditEventRecord.class) < total && System.currentTimeMillis() < deadline) {
+            //noinspection BusyWait
+            Thread.sleep(50);
+        }
+        assertCount(QAuditEventRecord.class, total);
+        assertCount(QAuditDelta.class, total);
+        assertCount(QAuditRefValue.class, total);
+
+        and("records were written in batches");
+        AsyncAuditWriter<?> writer = sqaleAuditService.getAsyncAuditWriter();
+        assertThat(writer).isNotNull();
+        assertThat(writer.getRecordsWritten()).isGreaterThanOrEqualTo(total);
+        assertThat(writer.getRecordsFailed()).isZero();
+        display("Batches: " + writer.getBatchesWritten() + ", records: " + writer.getRecordsWritten()
+                + ", backpressure waits: " + writer.getBackpressureWaits());
+    }
+
+    @Test
+    public void test200SubmitAfterDestroy() {
+        given("writer with a record in the queue");
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditWriter<String> writer = new AsyncAuditWriter<>("test-audit-writer", 10, 5, written::addAll);
+        CompletableFuture<Void> first = writer.submit("first");
+
+        when("writer is destroyed and another record is submitted");
+        writer.destroy();
+        CompletableFuture<Void> second = writer.submit("second");
+
+        then("both records are written and their futures are completed");
+        assertThat(first).isCompleted();
+        assertThat(second).isCompleted();
+        assertThat(written).containsExactly("first", "second");
+        assertThat(writer.getRecordsWritten()).isEqualTo(2);
+    }
+
+    @Test
+    public void test210FailedRecordAfterDestroy() {
+        given("destroyed writer that cannot write");
+        AsyncAuditWriter<String> writer = new AsyncAuditWriter<>("test-audit-writer", 10, 5, records -> {
+            throw new IllegalStateException("DB is down");
+        });
+        writer.destroy();
+
+        when("record is submitted");
+        CompletableFuture<Void> future = writer.submit("record");
+
+        then("the future is completed exceptionally, nobody waits for it forever");
+        assertThat(future).isCompletedExceptionally();
+        assertThat(writer.getRecordsFailed()).isEqualTo(1);
+    }
+
+    private AuditEventRecord createAuditRecord(int i) throws SchemaException {
+        AuditEventRecord record = new AuditEventRecord();
+        record.setParameter(String.valueOf(i));
+        record.setTimestamp(System.currentTimeMillis());
+
+        ObjectDeltaOperation<UserType> delta = new ObjectDeltaOperation<>();
+        delta.setObjectDelta(prismContext.deltaFor(UserType.class)
+                .item(UserType.F_FULL_NAME).replace(PolyString.fromOrig("newVal" + i))
+                .asObjectDelta(UUID.randomUUID().toString()));
+        record.addDelta(delta);
+
+        record.addReferenceValue("ref1",
+                ObjectTypeUtil.createObjectRef(UUID.randomUUID().toString(), ObjectTypes.USER)
+                        .asReferenceValue());
+        return record;
+    }
+}
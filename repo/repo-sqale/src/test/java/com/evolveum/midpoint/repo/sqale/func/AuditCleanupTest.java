@@ -9,17 +9,27 @@ package com.evolveum.midpoint.repo.sqale.func;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.Instant;
+import java.util.Objects;
 import java.util.UUID;
 
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.StringTemplate;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.init.AuditServiceProxy;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.SqaleRepositoryConfiguration;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditService;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditDelta;
 import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecord;
 import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditEventRecordMapping;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.QAuditRefValue;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
 import com.evolveum.midpoint.schema.ObjectDeltaOperation;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
@@ -36,6 +46,22 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 @SuppressWarnings("unchecked")
 public class AuditCleanupTest extends SqaleRepoBaseTest {
 
+    private SqaleAuditService sqaleAuditService;
+    private SqaleRepositoryConfiguration auditConfiguration;
+    private int defaultCleanupBatchSize;
+
+    @BeforeClass
+    public void initObjects() {
+        sqaleAuditService = ((AuditServiceProxy) auditService).getImplementation(SqaleAuditService.class);
+        auditConfiguration = sqaleAuditService.repositoryConfiguration();
+        defaultCleanupBatchSize = auditConfiguration.getAuditCleanupBatchSize();
+    }
+
+    @AfterMethod
+    public void resetCleanupBatchSize() {
+        auditConfiguration.setAuditCleanupBatchSize(defaultCleanupBatchSize);
+    }
+
     /**
      * Prepares `count` audit records with timestamp starting with specified value
      * and going up by second for each item.
@@ -47,26 +73,29 @@ public class AuditCleanupTest extends SqaleRepoBaseTest {
 
         long timestamp = startTimestamp;
         for (int i = 1; i <= count; i++) {
-            AuditEventRecord record = new AuditEventRecord();
-            record.setParameter(String.valueOf(i));
-            record.setTimestamp(timestamp);
-            record.getCustomColumnProperty().put("foo", "foo-value");
+            addAuditRecord(String.valueOf(i), timestamp, result);
+            timestamp += 1000;
+        }
+    }
 
-            // to check that child tables (delta and refs) are also cleared
-            ObjectDeltaOperation<UserType> delta = new ObjectDeltaOperation<>();
-            delta.setObjectDelta(prismContext.deltaFor(UserType.class)
-                    .item(UserType.F_FULL_NAME).replace(PolyString.fromOrig("newVal"))
-                    .asObjectDelta(UUID.randomUUID().toString()));
-            record.addDelta(delta);
+    private void addAuditRecord(String parameter, long timestamp, OperationResult result) throws SchemaException {
+        AuditEventRecord record = new AuditEventRecord();
+        record.setParameter(parameter);
+        record.setTimestamp(timestamp);
+        record.getCustomColumnProperty().put("foo", "foo-value");
 
-            record.addReferenceValue("ref1",
-                    ObjectTypeUtil.createObjectRef(UUID.randomUUID().toString(), ObjectTypes.USER)
-                            .asReferenceValue());
+        // to check that child tables (delta and refs) are also cleared
+        ObjectDeltaOperation<UserType> delta = new ObjectDeltaOperation<>();
+        delta.setObjectDelta(prismContext.deltaFor(UserType.class)
+                .item(UserType.F_FULL_NAME).replace(PolyString.fromOrig("newVal"))
+                .asObjectDelta(UUID.randomUUID().toString()));
+        record.addDelta(delta);
 
-            auditService.audit(record, NullTaskImpl.INSTANCE, result);
+        record.addReferenceValue("ref1",
+                ObjectTypeUtil.createObjectRef(UUID.randomUUID().toString(), ObjectTypes.USER)
+                        .asReferenceValue());
 
-            timestamp += 1000;
-        }
+        auditService.audit(record, NullTaskImpl.INSTANCE, result);
     }
 
     // These tests rely on uninterrupted ID series, but cleanup works even with holes
@@ -125,6 +154,29 @@ public class AuditCleanupTest extends SqaleRepoBaseTest {
         assertCount(qae, 0);
     }
 
+    @Test
+    public void test110CleanupByCountInChunks() throws SchemaException {
+        given("audit has 100 records and cleanup deletes 7 records per transaction");
+        OperationResult operationResult = createOperationResult();
+        prepareAuditRecords(System.currentTimeMillis(), 100, operationResult);
+        auditConfiguration.setAuditCleanupBatchSize(7);
+        QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
+        long maxId = selectMinMaxId(qae, qae.id.max());
+
+        when("audit cleanup is called to leave 30 records");
+        int recordsToLeave = 30;
+        auditService.cleanupAudit(new CleanupPolicyType()
+                .maxRecords(recordsToLeave), operationResult);
+
+        then("operation is success and only the newest 30 records are left, with their deltas and refs");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertCount(qae, recordsToLeave);
+        assertCount(QAuditDelta.class, recordsToLeave);
+        assertCount(QAuditRefValue.class, recordsToLeave);
+        long minId = selectMinMaxId(qae, qae.id.min());
+        assertThat(maxId - minId).isEqualTo(recordsToLeave - 1);
+    }
+
     @Test
     public void test200CleanupByAge() throws SchemaException {
         given("audit has 100 records across the last 100s");
@@ -146,6 +198,131 @@ public class AuditCleanupTest extends SqaleRepoBaseTest {
                 .isZero(); // start + 40s should be < now - 60s, it should be all gone
     }
 
+    @Test
+    public void test210CleanupByAgeInChunks() throws SchemaException {
+        given("audit has 100 records across the last 100s and cleanup deletes 7 records per transaction");
+        OperationResult operationResult = createOperationResult();
+        long startTimestamp = System.currentTimeMillis() - 100_000;
+        prepareAuditRecords(startTimestamp, 100, operationResult);
+        auditConfiguration.setAuditCleanupBatchSize(7);
+        QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
+
+        when("audit cleanup is called to leave just last 1 minute");
+        auditService.cleanupAudit(new CleanupPolicyType()
+                .maxAge(XmlTypeConverter.createDuration("PT1M")), operationResult);
+
+        then("operation is success and all older records are deleted, with their deltas and refs");
+        assertThatOperationResult(operationResult).isSuccess();
+        long left = count(qae);
+        assertThat(left).isLessThanOrEqualTo(60).isGreaterThan(55);
+        assertThat(count(qae, qae.timestamp.lt(Instant.ofEpochMilli(startTimestamp + 40_000))))
+                .isZero();
+        assertCount(QAuditDelta.class, left);
+        assertCount(QAuditRefValue.class, left);
+    }
+
+    /**
+     * Uses monthly partitions for the previous, current and the next months (as computed by the DB).
+     * The partitions are dropped at the end, so other tests use the default partitions again.
+     */
+    @Test
+    public void test300MonthlyPartitionsCreatedDroppedAndCleaned() throws SchemaException {
+        OperationResult operationResult = createOperationResult();
+        clearAudit();
+        try {
+            given("audit with monthly partitions for the current and two previous months");
+            try (JdbcSession jdbcSession = startTransaction()) {
+                jdbcSession.executeStatement("call audit_create_monthly_partitions(-3)");
+                jdbcSession.commit();
+            }
+            assertThat(partitionExists(-2)).isTrue();
+            assertThat(partitionExists(1)).isFalse();
+
+            when("future partitions are created while another node holds the maintenance lock");
+            boolean created;
+            try (JdbcSession otherNodeSession = startTransaction()) {
+                otherNodeSession.executeStatement("select pg_advisory_xact_lock(48)");
+                created = sqaleAuditService.createFuturePartitions();
+                otherNodeSession.commit();
+            }
+
+            then("nothing is created");
+            assertThat(created).isFalse();
+            assertThat(partitionExists(1)).isFalse();
+
+            when("future partitions are created when the lock is free");
+            created = sqaleAuditService.createFuturePartitions();
+
+            then("the configured number of months ahead is created");
+            assertThat(created).isTrue();
+            for (int month = 1; month < auditConfiguration.getAuditPartitionsAhead(); month++) {
+                assertThat(partitionExists(month)).as("partition for month " + month).isTrue();
+            }
+
+            given("records in the default partition (6 months old), in partition 2 months old, and now");
+            addAuditRecord("default", monthStart(-6) + 86_400_000, operationResult);
+            addAuditRecord("old-partition", monthStart(-2) + 86_400_000, operationResult);
+            addAuditRecord("current", System.currentTimeMillis(), operationResult);
+            QAuditEventRecord qae = QAuditEventRecordMapping.get().defaultAlias();
+            assertCount(qae, 3);
+
+            when("audit cleanup is called to leave just the last month");
+            auditService.cleanupAudit(new CleanupPolicyType()
+                    .maxAge(XmlTypeConverter.createDuration("P1M")), operationResult);
+
+            then("the old partition is dropped, the old record in the default partition is deleted");
+            assertThatOperationResult(operationResult).isSuccess();
+            assertThat(partitionExists(-2)).isFalse();
+            assertThat(partitionExists(-1)).isTrue();
+            assertThat(partitionExists(0)).isTrue();
+            assertCount(qae, 1);
+            assertThat(count(qae, qae.parameter.eq("current"))).isEqualTo(1);
+            assertCount(QAuditDelta.class, 1);
+            assertCount(QAuditRefValue.class, 1);
+        } finally {
+            clearAudit();
+            Integer dropped;
+            do {
+                try (JdbcSession jdbcSession = startTransaction()) {
+                    dropped = jdbcSession.newQuery()
+                            .select(Expressions.numberTemplate(Integer.class, "audit_drop_partitions_before('infinity')"))
+                            .fetchOne();
+                    jdbcSession.commit();
+                }
+            } while (dropped != null && dropped > 0);
+        }
+    }
+
+    /** Checks the existence of the monthly audit partitions for the month with the offset relative to the current one. */
+    private boolean partitionExists(int monthOffset) {
+        try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
+            return Boolean.TRUE.equals(jdbcSession.newQuery()
+                    .select(Expressions.booleanTemplate("to_regclass({0}) is not null"
+                                    + " and to_regclass({1}) is not null and to_regclass({2}) is not null",
+                            partitionNameTemplate("ma_audit_event_", monthOffset),
+                            partitionNameTemplate("ma_audit_delta_", monthOffset),
+                            partitionNameTemplate("ma_audit_ref_", monthOffset)))
+                    .fetchOne());
+        }
+    }
+
+    private StringTemplate partitionNameTemplate(String prefix, int monthOffset) {
+        return Expressions.stringTemplate("{0} || to_char(date_trunc('month', current_timestamp)"
+                + " + make_interval(months => {1}), 'YYYYMM')", prefix, monthOffset);
+    }
+
+    /** Returns the start of the month with the offset relative to the current one, as computed by the DB. */
+    private long monthStart(int monthOffset) {
+        try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
+            Long millis = jdbcSession.newQuery()
+                    .select(Expressions.numberTemplate(Long.class, "(extract(epoch from"
+                            + " date_trunc('month', current_timestamp) + make_interval(months => {0})) * 1000)::bigint",
+                            monthOffset))
+                    .fetchOne();
+            return Objects.requireNonNull(millis);
+        }
+    }
+
     private long selectMinMaxId(QAuditEventRecord qae, NumberExpression<Long> minMaxPath) {
         try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
             return jdbcSession.newQuery()
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
+import com.evolveum.midpoint.repo.sqale.FullObjectEncoding;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.MUser;
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.QUser;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.CommonException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationStatusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Tests storing of fullObject in the binary format and reading/converting of objects stored in other formats.
+ */
+public class FullObjectFormatTest extends SqaleRepoBaseTest {
+
+    private String binaryUserOid;
+
+    @AfterMethod
+    public void resetFullObjectFormat() {
+        repositoryConfiguration.setFullObjectFormat(PrismContext.LANG_JSON);
+    }
+
+    @Test
+    public void test100AddObjectInBinaryFormat() throws CommonException {
+        OperationResult result = createOperationResult();
+
+        given("binary fullObject format is configured");
+        repositoryConfiguration.setFullObjectFormat(FullObjectEncoding.FORMAT_SMILE);
+        UserType user = createUser("binary-user");
+
+        when("object is added");
+        binaryUserOid = repositoryService.addObject(user.asPrismObject(), null, result);
+
+        then("fullObject is stored in the binary format");
+        assertThatOperationResult(result).isSuccess();
+        MUser row = selectObjectByOid(QUser.class, binaryUserOid);
+        assertThat(FullObjectEncoding.isSmile(row.fullObject)).isTrue();
+
+        and("object is read back with all its values");
+        assertUser(repositoryService.getObject(UserType.class, binaryUserOid, null, result).asObjectable(),
+                "binary-user");
+    }
+
+    @Test
+    public void test110BinaryObjectIsReadableWithTextFormatConfigured() throws CommonException {
+        OperationResult result = createOperationResult();
+
+        given("text fullObject format is configured");
+        repositoryConfiguration.setFullObjectFormat(PrismContext.LANG_JSON);
+
+        expect("object stored in the binary format is still readable");
+        assertUser(repositoryService.getObject(UserType.class, binaryUserOid, null, result).asObjectable(),
+                "binary-user");
+    }
+
+    @Test
+    public void test120ReindexConvertsFullObjectToConfiguredFormat() throws CommonException {
+        OperationResult result = createOperationResult();
+
+        given("text fullObject format is configured");
+        repositoryConfiguration.setFullObjectFormat(PrismContext.LANG_JSON);
+
+        when("object stored in the binary format is reindexed");
+        repositoryService.modifyObject(UserType.class, binaryUserOid, Collections.emptyList(),
+                RepoModifyOptions.createForceReindex(), result);
+
+        then("fullObject is stored as JSON text");
+        assertThatOperationResult(result).isSuccess();
+        MUser row = selectObjectByOid(QUser.class, binaryUserOid);
+        assertThat(FullObjectEncoding.isSmile(row.fullObject)).isFalse();
+        assertThat(FullObjectEncoding.detectTextLanguage(row.fullObject)).isEqualTo(PrismContext.LANG_JSON);
+        assertUser(repositoryService.getObject(UserType.class, binaryUserOid, null, result).asObjectable(),
+                "binary-user");
+    }
+
+    @Test
+    public void test130TextObjectIsReadableAndConvertibleWithBinaryFormatConfigured() throws CommonException {
+        OperationResult result = createOperationResult();
+
+        given("object stored in XML");
+        repositoryConfiguration.setFullObjectFormat(PrismContext.LANG_XML);
+        String oid = repositoryService.addObject(createUser("xml-user").asPrismObject(), null, result);
+        assertThat(FullObjectEncoding.detectTextLanguage(selectObjectByOid(QUser.class, oid).fullObject))
+                .isEqualTo(PrismContext.LANG_XML);
+
+        when("binary format is configured and the object is read");
+        repositoryConfiguration.setFullObjectFormat(FullObjectEncoding.FORMAT_SMILE);
+        UserType user = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+
+        then("the object is read correctly");
+        assertUser(user, "xml-user");
+
+        when("the object is reindexed");
+        repositoryService.modifyObject(UserType.class, oid, Collections.emptyList(),
+                RepoModifyOptions.createForceReindex(), result);
+
+        then("fullObject is converted to the binary format");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(FullObjectEncoding.isSmile(selectObjectByOid(QUser.class, oid).fullObject)).isTrue();
+        assertUser(repositoryService.getObject(UserType.class, oid, null, result).asObjectable(), "xml-user");
+    }
+
+    @Test
+    public void test200SmileRoundTrip() throws Exception {
+        given("user with values of various types serialized to JSON");
+        UserType user = createUser("round-trip-user")
+                .activation(new ActivationType()
+                        .administrativeStatus(ActivationStatusType.ENABLED)
+                        .validFrom(XmlTypeConverter.createXMLGregorianCalendar("2024-05-06T07:08:09.123Z")))
+                .linkRef(new ObjectReferenceType()
+                        .oid("c0c010c0-d34d-b33f-f00d-111111111111")
+                        .type(ShadowType.COMPLEX_TYPE)
+                        .relation(SchemaConstants.ORG_DEFAULT));
+        String json = prismContext.jsonSerializer().serialize(user.asPrismObject());
+
+        when("it is encoded to the binary format and parsed back");
+        byte[] smile = FullObjectEncoding.jsonToSmile(json);
+        UserType fromSmile = sqlRepoContext.parsePrismObject(smile, UserType.class).prismValue;
+
+        then("the result is the same as when parsed from JSON");
+        assertThat(FullObjectEncoding.isSmile(smile)).isTrue();
+        UserType fromJson = sqlRepoContext.parsePrismObject(
+                json.getBytes(StandardCharsets.UTF_8), UserType.class).prismValue;
+        assertThat(fromSmile.asPrismObject().equivalent(fromJson.asPrismObject())).isTrue();
+        assertThat(fromSmile.asPrismObject().equivalent(user.asPrismObject())).isTrue();
+        assertUser(fromSmile, "round-trip-user");
+        assertThat(fromSmile.getActivation().getValidFrom())
+                .isEqualTo(XmlTypeConverter.createXMLGregorianCalendar("2024-05-06T07:08:09.123Z"));
+        assertThat(fromSmile.getLinkRef()).singleElement()
+                .satisfies(ref -> assertThat(ref.getType()).isEqualTo(ShadowType.COMPLEX_TYPE));
+    }
+
+    private UserType createUser(String name) {
+        return new UserType()
+                .name(name)
+                .fullName(PolyStringType.fromOrig("Full name of " + name))
+                .description("Description with non-ASCII characters: čšž")
+                .emailAddress(name + "@example.com")
+                .assignment(new AssignmentType()
+                        .targetRef(new ObjectReferenceType()
+                                .oid("00000000-0000-0000-0000-000000000008")
+                                .type(RoleType.COMPLEX_TYPE)))
+                .assignment(new AssignmentType()
+                        .targetRef(new ObjectReferenceType()
+                                .oid("00000000-0000-0000-0000-000000000004")
+                                .type(RoleType.COMPLEX_TYPE)));
+    }
+
+    private void assertUser(UserType user, String name) {
+        assertThat(user.getName().getOrig()).isEqualTo(name);
+        assertThat(user.getFullName().getOrig()).isEqualTo("Full name of " + name);
+        assertThat(user.getDescription()).isEqualTo("Description with non-ASCII characters: čšž");
+        assertThat(user.getEmailAddress()).isEqualTo(name + "@example.com");
+        assertThat(user.getAssignment()).hasSize(2)
+                .extracting(a -> a.getTargetRef().getOid())
+                .containsExactlyInAnyOrder(
+                        "00000000-0000-0000-0000-000000000008", "00000000-0000-0000-0000-000000000004");
+    }
+}
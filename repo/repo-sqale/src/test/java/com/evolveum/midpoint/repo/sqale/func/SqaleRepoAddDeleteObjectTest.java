@@ -29,6 +29,7 @@ import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.api.AddObjectOutcome;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
@@ -64,6 +65,7 @@ import com.evolveum.midpoint.repo.sqale.qmodel.resource.MResource;
 import com.evolveum.midpoint.repo.sqale.qmodel.resource.QResource;
 import com.evolveum.midpoint.repo.sqale.qmodel.role.MArchetype;
 import com.evolveum.midpoint.repo.sqale.qmodel.role.QArchetype;
+import com.evolveum.midpoint.repo.sqale.qmodel.role.QRole;
 import com.evolveum.midpoint.repo.sqale.qmodel.shadow.MShadow;
 import com.evolveum.midpoint.repo.sqale.qmodel.shadow.QShadow;
 import com.evolveum.midpoint.repo.sqale.qmodel.system.QSystemConfiguration;
@@ -710,6 +712,112 @@ public class SqaleRepoAddDeleteObjectTest extends SqaleRepoBaseTest {
         assertThatOperationResult(result).isSuccess();
         assertThat(count(QUser.class)).isEqualTo(previousUserCount + 1);
     }
+
+    @Test
+    public void test295AddObjectsInBulk() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("objects of various types, with containers, with and without OID");
+        String userName = "user" + getTestNumber();
+        String providedOid = UUID.randomUUID().toString();
+        String targetOid = UUID.randomUUID().toString();
+        UserType user1 = new UserType()
+                .name(userName + "-1")
+                .assignment(new AssignmentType()
+                        .targetRef(targetOid, RoleType.COMPLEX_TYPE));
+        RoleType role = new RoleType()
+                .name("role" + getTestNumber())
+                .inducement(new AssignmentType()
+                        .targetRef(targetOid, RoleType.COMPLEX_TYPE));
+        UserType user2 = new UserType()
+                .oid(providedOid)
+                .name(userName + "-2")
+                .assignment(new AssignmentType()
+                        .targetRef(targetOid, RoleType.COMPLEX_TYPE))
+                .assignment(new AssignmentType()
+                        .targetRef(targetOid, OrgType.COMPLEX_TYPE));
+
+        when("adding them to the repository in bulk");
+        List<AddObjectOutcome> outcomes = repositoryService.addObjects(
+                List.of(user1.asPrismObject(), role.asPrismObject(), user2.asPrismObject()), null, result);
+
+        then("operation is successful and all the objects are added");
+        assertThatOperationResult(result).isSuccess();
+        assertThat(outcomes).hasSize(3)
+                .allMatch(AddObjectOutcome::isSuccess);
+        assertThat(outcomes.get(0).oid()).isNotNull().isEqualTo(user1.getOid());
+        assertThat(outcomes.get(1).oid()).isNotNull().isEqualTo(role.getOid());
+        assertThat(outcomes.get(2).oid()).isEqualTo(providedOid);
+
+        MUser userRow1 = selectObjectByOid(QUser.class, user1.getOid());
+        assertThat(userRow1.objectType).isEqualTo(MObjectType.USER);
+        assertThat(userRow1.version).isEqualTo(SqaleRepositoryService.INITIAL_VERSION_NUMBER);
+        assertThat(userRow1.containerIdSeq).isEqualTo(2);
+        MUser userRow2 = selectObjectByOid(QUser.class, providedOid);
+        assertThat(userRow2.containerIdSeq).isEqualTo(3);
+        assertThat(selectObjectByOid(QRole.class, role.getOid()).objectType).isEqualTo(MObjectType.ROLE);
+
+        and("the full objects are stored with OIDs and container IDs");
+        UserType user1FromRepo = repositoryService.getObject(
+                UserType.class, user1.getOid(), null, result).asObjectable();
+        assertThat(user1FromRepo.getOid()).isEqualTo(user1.getOid());
+        assertThat(user1FromRepo.getAssignment()).singleElement()
+                .extracting(AssignmentType::getId).isEqualTo(1L);
+
+        and("container rows are created for all the objects");
+        QContainer<MContainer, ?> c = aliasFor(QAssignment.class);
+        assertThat(select(c, c.ownerOid.eq(userRow1.oid))).hasSize(1);
+        assertThat(select(c, c.ownerOid.eq(userRow2.oid)))
+                .extracting(cRow -> cRow.cid)
+                .containsExactlyInAnyOrder(1L, 2L);
+        assertThat(select(c, c.ownerOid.eq(UUID.fromString(role.getOid()))))
+                .singleElement()
+                .matches(cRow -> cRow.containerType == MContainerType.INDUCEMENT);
+    }
+
+    @Test
+    public void test296AddObjectsInBulkReportsFailuresPerObject() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("user already in the repository");
+        String userName = "user" + getTestNumber();
+        UserType existingUser = new UserType()
+                .name(userName + "-existing");
+        repositoryService.addObject(existingUser.asPrismObject(), null, result);
+        long baseCount = count(QUser.class);
+
+        and("new objects, one with conflicting OID and one without name");
+        UserType user1 = new UserType()
+                .name(userName + "-1");
+        UserType conflictingUser = new UserType()
+                .oid(existingUser.getOid())
+                .name(userName + "-conflicting");
+        UserType userWithoutName = new UserType();
+        UserType user2 = new UserType()
+                .name(userName + "-2")
+                .assignment(new AssignmentType()
+                        .targetRef(UUID.randomUUID().toString(), RoleType.COMPLEX_TYPE));
+
+        when("adding them to the repository in bulk");
+        List<AddObjectOutcome> outcomes = repositoryService.addObjects(
+                List.of(user1.asPrismObject(), conflictingUser.asPrismObject(),
+                        userWithoutName.asPrismObject(), user2.asPrismObject()),
+                null, createOperationResult());
+
+        then("the problematic objects are reported and the others are added");
+        assertThat(outcomes).hasSize(4);
+        assertThat(outcomes.get(0).isSuccess()).isTrue();
+        assertThat(outcomes.get(1).exception()).isInstanceOf(ObjectAlreadyExistsException.class);
+        assertThat(outcomes.get(2).exception()).isInstanceOf(SchemaException.class)
+                .hasMessage("Attempt to add object without name.");
+        assertThat(outcomes.get(3).isSuccess()).isTrue();
+
+        assertThat(count(QUser.class)).isEqualTo(baseCount + 2);
+        assertThat(selectObjectByOid(QUser.class, outcomes.get(0).oid()).nameOrig).isEqualTo(userName + "-1");
+        assertThat(selectObjectByOid(QUser.class, outcomes.get(3).oid()).nameOrig).isEqualTo(userName + "-2");
+        assertThat(selectObjectByOid(QUser.class, existingUser.getOid()).nameOrig)
+                .isEqualTo(userName + "-existing");
+    }
     // endregion
 
     // region extension items
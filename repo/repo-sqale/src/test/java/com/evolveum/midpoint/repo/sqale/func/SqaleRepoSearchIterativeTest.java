@@ -75,6 +75,7 @@ public class SqaleRepoSearchIterativeTest extends SqaleRepoBaseTest {
     public void resetTestHandler() {
         testHandler.reset();
         repositoryConfiguration.setIterativeSearchByPagingBatchSize(ITERATION_PAGE_SIZE);
+        repositoryConfiguration.setIterativeSearchPrefetchPages(0);
     }
 
     @AfterMethod
@@ -391,6 +392,100 @@ public class SqaleRepoSearchIterativeTest extends SqaleRepoBaseTest {
         assertThat(testHandler.getCounter()).isEqualTo(COUNT_OF_CREATED_USERS - 100);
     }
 
+    @Test
+    public void test200SearchIterativeWithPrefetch() throws Exception {
+        OperationResult operationResult = createOperationResult();
+        SqlPerformanceMonitorImpl pm = getPerformanceMonitor();
+        pm.clearGlobalPerformanceInformation();
+
+        given("prefetching of pages is enabled and page size is not a divisor of total count");
+        repositoryConfiguration.setIterativeSearchPrefetchPages(2);
+        repositoryConfiguration.setIterativeSearchByPagingBatchSize(47);
+
+        when("calling search iterative with custom ordering");
+        SearchResultMetadata metadata = searchObjectsIterative(
+                prismContext.queryFor(UserType.class)
+                        .desc(UserType.F_COST_CENTER)
+                        .build(),
+                operationResult);
+
+        then("result metadata is not null and not partial result");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(metadata).isNotNull();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(metadata.isPartialResults()).isFalse();
+        assertThat(UUID.fromString(metadata.getPagingCookie())).isNotNull();
+
+        and("search operations were called");
+        assertOperationRecordedCount(
+                REPO_OP_PREFIX + RepositoryService.OP_SEARCH_OBJECTS_ITERATIVE, 1);
+        assertTypicalPageOperationCount(metadata);
+
+        and("all objects were processed in the expected order");
+        assertThat(testHandler.getCounter()).isEqualTo(count(QUser.class));
+        QUser u = aliasFor(QUser.class);
+        try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
+            List<String> result = jdbcSession.newQuery()
+                    .from(u)
+                    .orderBy(u.costCenter.desc(), u.oid.desc())
+                    .select(u.employeeNumber)
+                    .fetch();
+
+            for (int i = 0; i < result.size(); i++) {
+                assertThat(result.get(i)).isEqualTo(getTestNumber() + "-" + i); // order matches
+            }
+        }
+    }
+
+    @Test
+    public void test210SearchIterativeWithPrefetchAndBreakingCondition() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("prefetching of pages is enabled");
+        repositoryConfiguration.setIterativeSearchPrefetchPages(3);
+        repositoryConfiguration.setIterativeSearchByPagingBatchSize(10);
+
+        String midOid = "80000000-0000-0000-0000-000000000000";
+        and("condition that breaks iterative search based on UUID");
+        testHandler.setStoppingPredicate(u -> u.getOid().compareTo(midOid) >= 0);
+
+        when("calling search iterative with null query");
+        SearchResultMetadata metadata = searchObjectsIterative(null, operationResult);
+
+        then("result metadata reports partial result and the cookie of the last handled object");
+        assertThat(metadata).isNotNull();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(metadata.isPartialResults()).isTrue();
+        assertThat(metadata.getPagingCookie()).isGreaterThanOrEqualTo(midOid);
+
+        and("only objects up to specified UUID were processed, prefetched pages were ignored");
+        QUser u = aliasFor(QUser.class);
+        assertThat(testHandler.getCounter())
+                .isEqualTo(count(u, u.oid.lt(UUID.fromString(midOid))) + 1);
+    }
+
+    @Test
+    public void test220SearchIterativeWithPrefetchAndMaxSize() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("prefetching of pages is enabled and query with maxSize specified");
+        repositoryConfiguration.setIterativeSearchPrefetchPages(2);
+        ObjectQuery query = prismContext.queryFor(UserType.class)
+                .maxSize(101)
+                .build();
+
+        when("calling search iterative");
+        SearchResultMetadata metadata = searchObjectsIterative(query, operationResult);
+
+        then("result metadata is not null and not partial result");
+        assertThat(metadata).isNotNull();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(metadata.isPartialResults()).isFalse();
+
+        and("specified amount of objects was processed");
+        assertThat(testHandler.getCounter()).isEqualTo(101);
+    }
+
     @SafeVarargs
     private SearchResultMetadata searchObjectsIterative(
             ObjectQuery query,
@@ -141,6 +141,18 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
         UserType user = new UserType().name("user" + getTestNumber())
                 .parentOrgRef(orgOid, OrgType.COMPLEX_TYPE);
         repositoryService.addObject(user.asPrismObject(), null, result);
+        // two equality rows for each org + 1 for parent reference, maintained immediately
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3);
+
+        and("closure is broken");
+        try (JdbcSession jdbcSession = startTransaction()) {
+            QOrgClosure oc = new QOrgClosure();
+            jdbcSession.newDelete(oc)
+                    .where(oc.ancestorOid.eq(UUID.fromString(rootOid))
+                            .and(oc.descendantOid.eq(UUID.fromString(orgOid))))
+                    .execute();
+            jdbcSession.commit();
+        }
 
         when("testOrgClosureConsistency() is called with rebuild flag");
         repositoryService.testOrgClosureConsistency(true, result);
@@ -148,10 +160,8 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
         expect("operation is successful and contains info about closure");
         assertThatOperationResult(result).isSuccess();
         OperationResult subresult = result.getLastSubresult();
-        assertThat(subresult.getReturnSingle("closure-count")).isEqualTo(String.valueOf(baseCount));
-        assertThat(subresult.getReturnSingle("expected-count"))
-                // two equality rows for each org + 1 for parent reference
-                .isEqualTo(String.valueOf(baseCount + 3));
+        assertThat(subresult.getReturnSingle("closure-count")).isEqualTo(String.valueOf(baseCount + 2));
+        assertThat(subresult.getReturnSingle("expected-count")).isEqualTo(String.valueOf(baseCount + 3));
         assertThat(subresult.getReturnSingle("rebuild-done")).isEqualTo("true");
 
         and("closure is rebuilt");
@@ -159,37 +169,90 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
     }
 
     @Test
-    public void test021OrgClosureIsRefreshedBeforeOrgFilterQuery() throws Exception {
+    public void test021OrgClosureIsUpdatedWithParentOrgRefChanges() throws Exception {
         OperationResult result = createOperationResult();
 
-        given("reset closure");
-        refreshOrgClosureForce();
-        long baseCount = count(new QOrgClosure());
-
-        given("user belonging to org hierarchy");
-        OrgType orgRoot = new OrgType().name("orgRoot" + getTestNumber());
-        String rootOid = repositoryService.addObject(orgRoot.asPrismObject(), null, result);
-        OrgType org = new OrgType().name("org" + getTestNumber())
-                .parentOrgRef(rootOid, OrgType.COMPLEX_TYPE);
-        String orgOid = repositoryService.addObject(org.asPrismObject(), null, result);
-        UserType user = new UserType().name("user" + getTestNumber())
-                .parentOrgRef(orgOid, OrgType.COMPLEX_TYPE);
-        String userOid = repositoryService.addObject(user.asPrismObject(), null, result);
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount); // not refreshed yet
-
-        when("query with org filter is used");
-        SearchResultList<PrismObject<UserType>> users = repositoryService.searchObjects(
-                UserType.class, prismContext.queryFor(UserType.class).isChildOf(rootOid).build(),
-                null, result);
+        given("org hierarchy with diamond (C is under A and B, D is under C) and user in D");
+        String aOid = repositoryService.addObject(
+                new OrgType().name("orgA" + getTestNumber()).asPrismObject(), null, result);
+        String bOid = repositoryService.addObject(
+                new OrgType().name("orgB" + getTestNumber()).asPrismObject(), null, result);
+        String cOid = repositoryService.addObject(
+                new OrgType().name("orgC" + getTestNumber())
+                        .parentOrgRef(aOid, OrgType.COMPLEX_TYPE)
+                        .parentOrgRef(bOid, OrgType.COMPLEX_TYPE)
+                        .asPrismObject(), null, result);
+        String dOid = repositoryService.addObject(
+                new OrgType().name("orgD" + getTestNumber())
+                        .parentOrgRef(cOid, OrgType.COMPLEX_TYPE)
+                        .asPrismObject(), null, result);
+        String userOid = repositoryService.addObject(
+                new UserType().name("user" + getTestNumber())
+                        .parentOrgRef(dOid, OrgType.COMPLEX_TYPE)
+                        .asPrismObject(), null, result);
+
+        expect("closure is updated immediately and query with org filter works");
+        assertOrgClosure(aOid, dOid, true);
+        assertOrgClosure(bOid, dOid, true);
+        assertThat(searchUsersUnder(aOid, result)).containsExactly(userOid);
+
+        when("C is moved out of A");
+        repositoryService.modifyObject(OrgType.class, cOid,
+                prismContext.deltaFor(OrgType.class)
+                        .item(ObjectType.F_PARENT_ORG_REF)
+                        .delete(new ObjectReferenceType().oid(aOid).type(OrgType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
 
-        expect("operation is successful and returns proper results");
+        then("only paths via A are removed");
+        assertOrgClosure(aOid, cOid, false);
+        assertOrgClosure(aOid, dOid, false);
+        assertOrgClosure(bOid, cOid, true);
+        assertOrgClosure(bOid, dOid, true);
+        assertThat(searchUsersUnder(aOid, result)).isEmpty();
+        assertThat(searchUsersUnder(bOid, result)).containsExactly(userOid);
+
+        when("D is put directly under A and C is deleted");
+        repositoryService.modifyObject(OrgType.class, dOid,
+                prismContext.deltaFor(OrgType.class)
+                        .item(ObjectType.F_PARENT_ORG_REF)
+                        .add(new ObjectReferenceType().oid(aOid).type(OrgType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
+        repositoryService.deleteObject(OrgType.class, cOid, result);
+
+        then("closure reflects the new hierarchy");
+        assertOrgClosure(aOid, dOid, true);
+        assertOrgClosure(bOid, dOid, false);
+        assertOrgClosure(cOid, cOid, false);
+        // reference from D to C is still there, like for any other dangling reference
+        assertOrgClosure(cOid, dOid, true);
+        assertThat(searchUsersUnder(aOid, result)).containsExactly(userOid);
+        assertThat(searchUsersUnder(bOid, result)).isEmpty();
+
+        and("closure is consistent");
+        repositoryService.testOrgClosureConsistency(false, result);
         assertThatOperationResult(result).isSuccess();
-        assertThat(users).hasSize(1)
-                .extracting(p -> p.asObjectable().getOid())
-                .containsExactlyInAnyOrder(userOid);
+        OperationResult subresult = result.getLastSubresult();
+        assertThat(subresult.getReturnSingle("closure-count"))
+                .isEqualTo(subresult.getReturnSingle("expected-count"));
+    }
 
-        and("closure is rebuilt");
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // see previous test
+    private void assertOrgClosure(String ancestorOid, String descendantOid, boolean expected) {
+        QOrgClosure oc = new QOrgClosure();
+        assertThat(count(oc, oc.ancestorOid.eq(UUID.fromString(ancestorOid)),
+                oc.descendantOid.eq(UUID.fromString(descendantOid))))
+                .as("closure row %s -> %s", ancestorOid, descendantOid)
+                .isEqualTo(expected ? 1 : 0);
+    }
+
+    private List<String> searchUsersUnder(String orgOid, OperationResult result) throws SchemaException {
+        return repositoryService.searchObjects(
+                        UserType.class, prismContext.queryFor(UserType.class).isChildOf(orgOid).build(),
+                        null, result)
+                .stream()
+                .map(PrismObject::getOid)
+                .toList();
     }
 
     @Test
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.api.RepositoryService.NewWorkBucketsSupplier;
+import com.evolveum.midpoint.repo.api.WorkBucketClaimResult;
+import com.evolveum.midpoint.repo.api.WorkBucketClaimResult.Situation;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.qmodel.task.QTaskWorkBucket;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.NumericIntervalWorkBucketContentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
+
+/**
+ * Tests the work bucket table operations (claiming, completing, releasing, reclaiming and deleting buckets).
+ */
+public class WorkBucketTableTest extends SqaleRepoBaseTest {
+
+    private static final QTaskWorkBucket B = QTaskWorkBucket.DEFAULT;
+
+    private static final String ACTIVITY_PATH = "";
+    private static final String WORKER_1 = UUID.randomUUID().toString();
+    private static final String WORKER_2 = UUID.randomUUID().toString();
+
+    /** The supplier creates two buckets at once, at most {@link #MAX_BUCKETS} buckets in total. */
+    private static final int MAX_BUCKETS = 5;
+
+    private String taskOid;
+
+    @BeforeClass
+    public void initObjects() throws Exception {
+        OperationResult result = createOperationResult();
+        taskOid = repositoryService.addObject(
+                new TaskType().name("coordinator").asPrismObject(), null, result);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test100ClaimAndComplete() throws Exception {
+        OperationResult result = createOperationResult();
+        String setId = UUID.randomUUID().toString();
+        assertThat(repositoryService.supportsWorkBucketTable()).isTrue();
+
+        given("worker 1 claims a bucket");
+        WorkBucketClaimResult claim1 = claim(setId, WORKER_1, result);
+        assertClaim(claim1, Situation.CREATED_NEW, 1, WORKER_1);
+        assertCount(B, 2, B.bucketSetId.eq(UUID.fromString(setId)));
+
+        when("worker 1 claims again without completing the bucket");
+        WorkBucketClaimResult claim1again = claim(setId, WORKER_1, result);
+
+        then("the same bucket is returned");
+        assertClaim(claim1again, Situation.FOUND_DELEGATED_TO_ME, 1, WORKER_1);
+
+        when("worker 2 claims a bucket");
+        WorkBucketClaimResult claim2 = claim(setId, WORKER_2, result);
+
+        then("the second bucket (created with the first one) is returned");
+        assertClaim(claim2, Situation.FOUND_READY, 2, WORKER_2);
+
+        when("the buckets are completed");
+        int complete1 = repositoryService.completeWorkBucket(setId, 1, result);
+        int complete2 = repositoryService.completeWorkBucket(setId, 2, result);
+
+        then("numbers of complete buckets are returned");
+        assertThat(complete1).isEqualTo(1);
+        assertThat(complete2).isEqualTo(2);
+        assertThatThrownBy(() -> repositoryService.completeWorkBucket(setId, 2, result))
+                .isInstanceOf(IllegalStateException.class);
+
+        when("the rest of the buckets are claimed and completed");
+        List<Integer> sequentialNumbers = new ArrayList<>();
+        for (;;) {
+            WorkBucketClaimResult claim = claim(setId, WORKER_1, createOperationResult());
+            if (claim.bucket() == null) {
+                assertThat(claim.situation()).isEqualTo(Situation.NOTHING_MORE_DEFINITE);
+                assertThat(claim.completeBuckets()).isEqualTo(MAX_BUCKETS);
+                break;
+            }
+            sequentialNumbers.add(claim.bucket().getSequentialNumber());
+            repositoryService.completeWorkBucket(setId, claim.bucket().getSequentialNumber(), result);
+        }
+
+        then("all buckets are processed exactly once");
+        assertThat(sequentialNumbers).containsExactly(3, 4, 5);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test110ClaimStandalone() throws Exception {
+        OperationResult result = createOperationResult();
+        String setId = UUID.randomUUID().toString();
+
+        when("bucket is claimed without a worker");
+        WorkBucketClaimResult claim = claim(setId, null, result);
+
+        then("it is created and kept ready");
+        assertClaim(claim, Situation.CREATED_NEW, 1, null);
+        assertThat(claim.bucket().getState()).isEqualTo(WorkBucketStateType.READY);
+        assertThat(claim(setId, null, result).bucket().getSequentialNumber()).isEqualTo(1);
+    }
+
+    /**
+     * A bucket locked by a concurrent claimer (not committed yet) is skipped by other claimers.
+     * It must not lead them to a conclusion that the work is done.
+     */
+    @Test
+    public void test120ClaimWhileOtherClaimerHoldsLastBucket() throws Exception {
+        OperationResult result = createOperationResult();
+        String setId = UUID.randomUUID().toString();
+        UUID setUuid = UUID.fromString(setId);
+
+        given("all buckets but the last one are claimed and completed in standalone mode");
+        for (int i = 1; i < MAX_BUCKETS; i++) {
+            WorkBucketClaimResult claim = claim(setId, null, result);
+            assertThat(claim.bucket().getSequentialNumber()).isEqualTo(i);
+            repositoryService.completeWorkBucket(setId, i, result);
+        }
+        assertClaim(claim(setId, null, result), Situation.CREATED_NEW, MAX_BUCKETS, null);
+
+        try (JdbcSession otherClaimer = startTransaction()) {
+            Integer locked = otherClaimer.newQuery()
+                    .select(B.sequentialNumber)
+                    .from(B)
+                    .where(B.bucketSetId.eq(setUuid).and(B.state.eq(WorkBucketStateType.READY)))
+                    .forUpdate()
+                    .fetchOne();
+            assertThat(locked).as("bucket locked by the other claimer").isEqualTo(MAX_BUCKETS);
+
+            when("a bucket is claimed while the last one is locked by the other claimer");
+            WorkBucketClaimResult claim = claim(setId, WORKER_1, result);
+
+            then("nothing is found, but the answer is not definite");
+            assertThat(claim.bucket()).isNull();
+            assertThat(claim.situation()).isEqualTo(Situation.NOTHING_MORE_SOME_DELEGATED);
+            assertThat(claim.completeBuckets()).isEqualTo(MAX_BUCKETS - 1);
+            otherClaimer.commit();
+        }
+
+        when("the last bucket is completed and a bucket is claimed again");
+        int complete = repositoryService.completeWorkBucket(setId, MAX_BUCKETS, result);
+        WorkBucketClaimResult claim = claim(setId, WORKER_1, result);
+
+        then("the answer is definite");
+        assertThat(complete).isEqualTo(MAX_BUCKETS);
+        assertThat(claim.bucket()).isNull();
+        assertThat(claim.situation()).isEqualTo(Situation.NOTHING_MORE_DEFINITE);
+        assertThat(claim.completeBuckets()).isEqualTo(MAX_BUCKETS);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test200ReleaseAndReclaim() throws Exception {
+        OperationResult result = createOperationResult();
+        String setId = UUID.randomUUID().toString();
+
+        given("both workers have a bucket");
+        assertClaim(claim(setId, WORKER_1, result), Situation.CREATED_NEW, 1, WORKER_1);
+        assertClaim(claim(setId, WORKER_2, result), Situation.FOUND_READY, 2, WORKER_2);
+
+        when("worker 1 releases its buckets");
+        int released = repositoryService.releaseWorkBuckets(setId, WORKER_1, null, result);
+
+        then("the bucket is available to worker 2");
+        assertThat(released).isEqualTo(1);
+        // worker 2 still has bucket #2 delegated, so this is returned first
+        assertClaim(claim(setId, WORKER_2, result), Situation.FOUND_DELEGATED_TO_ME, 2, WORKER_2);
+
+        when("buckets of workers other than worker 1 are reclaimed");
+        int reclaimed = repositoryService.reclaimWorkBuckets(setId, Set.of(WORKER_1), result);
+
+        then("the bucket of worker 2 is available again");
+        assertThat(reclaimed).isEqualTo(1);
+        assertClaim(claim(setId, WORKER_1, result), Situation.FOUND_READY, 1, WORKER_1);
+        assertClaim(claim(setId, WORKER_2, result), Situation.FOUND_READY, 2, WORKER_2);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test300Delete() throws Exception {
+        OperationResult result = createOperationResult();
+        String oldSetId = UUID.randomUUID().toString();
+        String newSetId = UUID.randomUUID().toString();
+        claim(oldSetId, WORKER_1, result);
+        claim(newSetId, WORKER_1, result);
+
+        when("buckets except for the new set are deleted");
+        repositoryService.deleteWorkBuckets(taskOid, ACTIVITY_PATH, newSetId, result);
+
+        then("only the new set remains");
+        assertCount(B, 0, B.bucketSetId.eq(UUID.fromString(oldSetId)));
+        assertCount(B, 2, B.bucketSetId.eq(UUID.fromString(newSetId)));
+
+        when("the owner task is deleted");
+        repositoryService.deleteObject(TaskType.class, taskOid, result);
+
+        then("its buckets are deleted as well");
+        assertCount(B, 0, B.ownerOid.eq(UUID.fromString(taskOid)));
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    private WorkBucketClaimResult claim(String setId, String workerOid, OperationResult result) throws Exception {
+        return repositoryService.claimWorkBucket(taskOid, ACTIVITY_PATH, setId, workerOid, NEW_BUCKETS, result);
+    }
+
+    private static final NewWorkBucketsSupplier NEW_BUCKETS = lastBucket -> {
+        int next = lastBucket != null ? lastBucket.getSequentialNumber() + 1 : 1;
+        List<WorkBucketType> buckets = new ArrayList<>();
+        for (int i = next; i <= Math.min(next + 1, MAX_BUCKETS); i++) {
+            buckets.add(new WorkBucketType()
+                    .sequentialNumber(i)
+                    .content(new NumericIntervalWorkBucketContentType()
+                            .from(BigInteger.valueOf(i * 10L))
+                            .to(BigInteger.valueOf(i * 10L + 10))));
+        }
+        return buckets;
+    };
+
+    private void assertClaim(WorkBucketClaimResult claim, Situation situation, int sequentialNumber, String workerOid) {
+        assertThat(claim.situation()).isEqualTo(situation);
+        WorkBucketType bucket = claim.bucket();
+        assertThat(bucket).isNotNull();
+        assertThat(bucket.getSequentialNumber()).isEqualTo(sequentialNumber);
+        assertThat(bucket.getContent()).isInstanceOf(NumericIntervalWorkBucketContentType.class);
+        if (workerOid != null) {
+            assertThat(bucket.getState()).isEqualTo(WorkBucketStateType.DELEGATED);
+            assertThat(bucket.getWorkerRef().getOid()).isEqualTo(workerOid);
+        } else {
+            assertThat(bucket.getWorkerRef()).isNull();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.perf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.repo.sqale.FullObjectEncoding;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Compares the cost of serialization and parsing of fullObject in various formats.
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ *
+ * Run it with -DfullObjectFormatIterations=N to change the number of measured iterations.
+ */
+public class FullObjectFormatPerfTest extends SqaleRepoBaseTest
+        implements PerformanceTestClassMixin {
+
+    private static final int ITERATIONS = Integer.getInteger("fullObjectFormatIterations", 1000);
+    private static final int WARM_UP_ITERATIONS = ITERATIONS / 10;
+    private static final int INDUCEMENT_COUNT = 500;
+
+    private RoleType role;
+
+    @BeforeClass
+    public void createLargeRole() {
+        role = new RoleType()
+                .oid("00000000-0000-0000-0000-00000000aaaa")
+                .version("1")
+                .name("large-role")
+                .description("Role with many inducements");
+        for (int i = 1; i <= INDUCEMENT_COUNT; i++) {
+            role.inducement(new AssignmentType()
+                    .id((long) i)
+                    .description("Inducement " + i)
+                    .targetRef(String.format("00000000-0000-0000-0000-%012d", i), RoleType.COMPLEX_TYPE)
+                    .activation(new ActivationType()
+                            .administrativeStatus(ActivationStatusType.ENABLED))
+                    .construction(new ConstructionType()
+                            .resourceRef(String.format("10000000-0000-0000-0000-%012d", i % 10),
+                                    ResourceType.COMPLEX_TYPE)
+                            .kind(ShadowKindType.ACCOUNT)
+                            .intent("default")));
+        }
+        role.setDisplayName(PolyStringType.fromOrig("Large role"));
+    }
+
+    @DataProvider
+    public Object[][] formats() {
+        return new Object[][] {
+                { PrismContext.LANG_XML },
+                { PrismContext.LANG_JSON },
+                { FullObjectEncoding.FORMAT_SMILE },
+        };
+    }
+
+    @Test(dataProvider = "formats")
+    public void test100SerializeAndParse(String format) throws SchemaException {
+        byte[] fullObject = serialize(format);
+        display(format + " size: " + fullObject.length + " B");
+        assertThat(sqlRepoContext.parsePrismObject(fullObject, RoleType.class).prismValue.getInducement())
+                .hasSize(INDUCEMENT_COUNT);
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            serialize(format);
+            sqlRepoContext.parsePrismObject(fullObject, RoleType.class);
+        }
+
+        Stopwatch serializeStopwatch = stopwatch(format + ".serialize", "Serialization of fullObject");
+        for (int i = 0; i < ITERATIONS; i++) {
+            try (Split ignored = serializeStopwatch.start()) {
+                serialize(format);
+            }
+        }
+
+        Stopwatch parseStopwatch = stopwatch(format + ".parse", "Parsing of fullObject");
+        for (int i = 0; i < ITERATIONS; i++) {
+            try (Split ignored = parseStopwatch.start()) {
+                sqlRepoContext.parsePrismObject(fullObject, RoleType.class);
+            }
+        }
+
+        if (!FullObjectEncoding.FORMAT_SMILE.equals(format)) {
+            // Previous way of parsing, through the String, for comparison.
+            Stopwatch parseStringStopwatch = stopwatch(format + ".parse-string", "Parsing of fullObject via String");
+            for (int i = 0; i < ITERATIONS; i++) {
+                try (Split ignored = parseStringStopwatch.start()) {
+                    sqlRepoContext.parsePrismObject(
+                            new String(fullObject, StandardCharsets.UTF_8), RoleType.class);
+                }
+            }
+        }
+    }
+
+    /** Serializes the role the same way as {@code SqaleTableMapping.createFullObject} does. */
+    private byte[] serialize(String format) throws SchemaException {
+        boolean binary = FullObjectEncoding.FORMAT_SMILE.equals(format);
+        String text = prismContext.serializerFor(binary ? PrismContext.LANG_JSON : format)
+                .options(SerializationOptions
+                        .createSerializeReferenceNamesForNullOids()
+                        .skipIndexOnly(true)
+                        .skipTransient(true)
+                        .skipWhitespaces(true))
+                .serialize(role.asPrismContainerValue());
+        return binary
+                ? FullObjectEncoding.jsonToSmile(text)
+                : text.getBytes(StandardCharsets.UTF_8);
+    }
+}
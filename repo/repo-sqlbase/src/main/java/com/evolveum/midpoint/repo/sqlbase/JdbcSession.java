@@ -10,6 +10,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import com.querydsl.sql.ColumnMetadata;
@@ -59,6 +61,12 @@ public class JdbcSession implements AutoCloseable {
 
     private boolean rollbackForReadOnly;
 
+    /**
+     * Inserts collected by {@link #addToInsertBatch(RelationalPath, Object)}, one clause per table, ordered by the first use
+     * of the table. Null if insert batching is not active.
+     */
+    private Map<RelationalPath<?>, SQLInsertClause> insertBatches;
+
     public JdbcSession(
             @NotNull Connection connection,
             @NotNull JdbcRepositoryConfiguration jdbcRepositoryConfiguration,
@@ -244,6 +252,41 @@ public class JdbcSession implements AutoCloseable {
         return sqlRepoContext.newInsert(connection, entity);
     }
 
+    /**
+     * Starts collecting inserts added by {@link #addToInsertBatch(RelationalPath, Object)} instead of executing them.
+     * They are executed as JDBC batches by {@link #flushInsertBatches()}.
+     * Only rows not needing any generated keys can be inserted this way.
+     */
+    public void startInsertBatching() {
+        insertBatches = new LinkedHashMap<>();
+    }
+
+    public boolean isInsertBatching() {
+        return insertBatches != null;
+    }
+
+    /** Adds the row to the insert batch for the entity; the columns with null values are not inserted. */
+    public void addToInsertBatch(RelationalPath<?> entity, Object row) {
+        Objects.requireNonNull(insertBatches, "Insert batching is not active")
+                .computeIfAbsent(entity, this::newInsert)
+                .populate(row)
+                .addBatch();
+    }
+
+    /**
+     * Executes the collected inserts, table after table, in the order in which the tables were first used,
+     * and stops insert batching.
+     */
+    public void flushInsertBatches() {
+        Map<RelationalPath<?>, SQLInsertClause> batches = Objects.requireNonNull(insertBatches, "Insert batching is not active");
+        insertBatches = null;
+        for (Map.Entry<RelationalPath<?>, SQLInsertClause> entry : batches.entrySet()) {
+            LOGGER.trace("Executing batch of {} inserts into {} (session {})",
+                    entry.getValue().getBatchCount(), entry.getKey().getTableName(), sessionId);
+            entry.getValue().execute();
+        }
+    }
+
     public SQLUpdateClause newUpdate(RelationalPath<?> entity) {
         return sqlRepoContext.newUpdate(connection, entity);
     }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.security.api;
+
+import static com.evolveum.midpoint.security.api.AuthorizationConstants.AUTZ_ALL_URL;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
+
+/**
+ * Authorizations of a principal, indexed by action URLs (and phases), so that the security enforcer does not need to
+ * go through all the authorizations when deciding about a particular action.
+ *
+ * Built lazily, once per principal (see {@link MidPointPrincipal#getCompiledAuthorizations()}), and thrown away
+ * whenever the authorizations of the principal change, e.g. when the principal profile is refreshed.
+ * Selectors of the authorizations are parsed when this structure is built.
+ *
+ * The selection methods return the authorizations in their original order, along with their original index
+ * (that is used e.g. for tracing). They only pre-select the authorizations: the caller still has to check the other
+ * conditions, like selectors, limitations, or order constraints.
+ */
+public class CompiledAuthorizations {
+
+    private static final Trace LOGGER = TraceManager.getTrace(CompiledAuthorizations.class);
+
+    /** To avoid unlimited growth of {@link #selectionCache} in case of unusual usage patterns. */
+    private static final int MAX_CACHED_SELECTIONS = 1000;
+
+    private static final int[] NO_INDICES = new int[0];
+
+    /** All authorizations, in their original order. */
+    @NotNull private final List<IndexedAuthorization> authorizations;
+
+    /** Indices of authorizations mentioning given action URL. Authorizations having `#all` action are not included here. */
+    @NotNull private final Map<String, int[]> indicesByAction;
+
+    /** Indices of authorizations having `#all` action. */
+    @NotNull private final int[] allActionIndices;
+
+    /** Results of {@link #select(String[], AuthorizationPhaseType)} calls, as the same selections are repeated very often. */
+    @NotNull private final Map<SelectionKey, List<IndexedAuthorization>> selectionCache = new ConcurrentHashMap<>();
+
+    private CompiledAuthorizations(@NotNull Collection<Authorization> authorizations) {
+        List<IndexedAuthorization> indexed = new ArrayList<>(authorizations.size());
+        Map<String, List<Integer>> byAction = new HashMap<>();
+        List<Integer> allAction = new ArrayList<>();
+        int i = 0;
+        for (Authorization authorization : authorizations) {
+            int index = i++;
+            indexed.add(new IndexedAuthorization(index, authorization));
+            for (String action : new HashSet<>(authorization.getAction())) {
+                if (AUTZ_ALL_URL.equals(action)) {
+                    allAction.add(index);
+                } else {
+                    byAction.computeIfAbsent(action, k -> new ArrayList<>())
+                            .add(index);
+                }
+            }
+            preParseSelectors(authorization);
+        }
+        this.authorizations = Collections.unmodifiableList(indexed);
+        this.indicesByAction = new HashMap<>();
+        byAction.forEach((action, indices) -> indicesByAction.put(action, toArray(indices)));
+        this.allActionIndices = toArray(allAction);
+    }
+
+    public static @NotNull CompiledAuthorizations compile(@NotNull Collection<Authorization> authorizations) {
+        return new CompiledAuthorizations(authorizations);
+    }
+
+    /** Parsing errors are ignored here; they will be reported when the authorization is evaluated. */
+    private static void preParseSelectors(@NotNull Authorization authorization) {
+        try {
+            authorization.getParsedObjectSelectors();
+            authorization.getParsedTargetSelectors();
+        } catch (ConfigurationException | RuntimeException e) {
+            LOGGER.trace("Couldn't parse selectors in {}, will retry during the evaluation", authorization, e);
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Returns all authorizations, in their original order. */
+    public @NotNull List<IndexedAuthorization> getAll() {
+        return authorizations;
+    }
+
+    public int size() {
+        return authorizations.size();
+    }
+
+    /**
+     * Returns authorizations that are applicable to at least one of the actions, and (if phase is specified) to given phase,
+     * i.e. having either that phase or no phase at all. The original order is kept.
+     */
+    public @NotNull List<IndexedAuthorization> select(@NotNull String[] actionUrls, @Nullable AuthorizationPhaseType phase) {
+        SelectionKey key = new SelectionKey(List.of(actionUrls), phase);
+        List<IndexedAuthorization> cached = selectionCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<IndexedAuthorization> selected = computeSelection(actionUrls, phase);
+        if (selectionCache.size() < MAX_CACHED_SELECTIONS) {
+            selectionCache.put(key, selected);
+        }
+        return selected;
+    }
+
+    /** Convenience variant of {@link #select(String[], AuthorizationPhaseType)} for a single action. */
+    public @NotNull List<IndexedAuthorization> select(@NotNull String actionUrl, @Nullable AuthorizationPhaseType phase) {
+        return select(new String[] { actionUrl }, phase);
+    }
+
+    private @NotNull List<IndexedAuthorization> computeSelection(
+            @NotNull String[] actionUrls, @Nullable AuthorizationPhaseType phase) {
+        BitSet indices = new BitSet(authorizations.size());
+        for (int index : allActionIndices) {
+            indices.set(index);
+        }
+        for (String actionUrl : actionUrls) {
+            for (int index : indicesByAction.getOrDefault(actionUrl, NO_INDICES)) {
+                indices.set(index);
+            }
+        }
+        List<IndexedAuthorization> selected = new ArrayList<>(indices.cardinality());
+        for (int index = indices.nextSetBit(0); index >= 0; index = indices.nextSetBit(index + 1)) {
+            IndexedAuthorization indexed = authorizations.get(index);
+            if (phase == null || indexed.authorization().matchesPhase(phase)) {
+                selected.add(indexed);
+            }
+        }
+        return Collections.unmodifiableList(selected);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledAuthorizations{" +
+                "authorizations=" + authorizations.size() +
+                ", actions=" + indicesByAction.size() +
+                ", allActions=" + allActionIndices.length +
+                ", cachedSelections=" + selectionCache.size() +
+                '}';
+    }
+
+    /** An authorization along with its position in the list of all authorizations of the principal. */
+    public record IndexedAuthorization(int index, @NotNull Authorization authorization) {
+    }
+
+    private record SelectionKey(@NotNull List<String> actionUrls, @Nullable AuthorizationPhaseType phase) {
+    }
+}
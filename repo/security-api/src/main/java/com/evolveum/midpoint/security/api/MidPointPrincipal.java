@@ -65,6 +65,12 @@ public class MidPointPrincipal implements UserDetails, DebugDumpable, ShortDumpa
      */
     @NotNull private final List<Authorization> authorizations = new ArrayList<>();
 
+    /**
+     * Indexed form of {@link #authorizations}, built lazily. Invalidated whenever the authorizations change.
+     * Not serialized; it is simply rebuilt when needed.
+     */
+    private transient volatile CompiledAuthorizations compiledAuthorizations;
+
     /**
      * Set if the authorizations may differ from the default ones of {@link #focus} (e.g., when "runPrivileged" is used).
      * Not final because the {@link #authorizations} list is not immutable/freezable either.
@@ -107,6 +113,17 @@ public class MidPointPrincipal implements UserDetails, DebugDumpable, ShortDumpa
     /** Use only during "regular" building or updating of a principal. Does NOT set {@link #effectivePrivilegesModification} flag. */
     public void addAuthorization(@NotNull Authorization authorization) {
         authorizations.add(authorization);
+        compiledAuthorizations = null;
+    }
+
+    /** Returns the authorizations in the form suitable for quick evaluation. See {@link CompiledAuthorizations}. */
+    public @NotNull CompiledAuthorizations getCompiledAuthorizations() {
+        var compiled = compiledAuthorizations;
+        if (compiled == null) {
+            compiled = CompiledAuthorizations.compile(authorizations);
+            compiledAuthorizations = compiled;
+        }
+        return compiled;
     }
 
     /**
@@ -122,6 +139,7 @@ public class MidPointPrincipal implements UserDetails, DebugDumpable, ShortDumpa
     public void addExtraAuthorizationIfMissing(@NotNull Authorization authorization, boolean full) {
         if (!authorizations.contains(authorization)) {
             authorizations.add(authorization);
+            compiledAuthorizations = null;
             if (full) {
                 effectivePrivilegesModification = EffectivePrivilegesModificationType.FULL_ELEVATION;
             } else if (effectivePrivilegesModification != EffectivePrivilegesModificationType.REDUCTION) {
@@ -134,6 +152,7 @@ public class MidPointPrincipal implements UserDetails, DebugDumpable, ShortDumpa
 
     public void clearAuthorizations() {
         authorizations.clear();
+        compiledAuthorizations = null;
     }
 
     @Override
@@ -290,6 +309,7 @@ public class MidPointPrincipal implements UserDetails, DebugDumpable, ShortDumpa
         clone.effectivePrivilegesModification = this.effectivePrivilegesModification;
         clone.applicableSecurityPolicy = this.applicableSecurityPolicy;
         clone.authorizations.addAll(authorizations);
+        clone.compiledAuthorizations = this.compiledAuthorizations; // the same authorizations, so it can be shared
         clone.effectiveActivationStatus = this.effectiveActivationStatus;
         clone.otherPrivilegesLimitations.copyValuesFrom(this.otherPrivilegesLimitations);
     }
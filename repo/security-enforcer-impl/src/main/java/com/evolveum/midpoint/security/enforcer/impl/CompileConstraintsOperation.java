@@ -81,9 +81,9 @@ class CompileConstraintsOperation<O extends ObjectType> extends EnforcerOperatio
                 phase != null ?
                         new SinglePhasePrismEntityOpConstraintsImpl.ForValueContent(phase)
                         : new TwoPhasesPrismEntityOpConstraintsImpl.ForValueContent();
-        int i = 0;
-        for (Authorization autz : getAuthorizations()) {
-            var evaluation = new AuthorizationEvaluation(i++, autz, this, result);
+        // Phases are treated by the constraints themselves, so we do not pre-select by the phase here.
+        for (var indexedAutz : selectAuthorizations(actionUrls, null)) {
+            var evaluation = new AuthorizationEvaluation(indexedAutz.index(), indexedAutz.authorization(), this, result);
             evaluation.traceStart();
             if (evaluation.isApplicableToActions(actionUrls)) {
                 constraints.applyAuthorization(value, evaluation);
@@ -80,9 +80,9 @@ class EnforcerDecisionOperation extends EnforcerOperation {
 
         AccessDecision overallDecision = AccessDecision.DEFAULT;
         AutzItemPaths allowedItems = new AutzItemPaths();
-        int i = 0;
-        for (Authorization authorization : getAuthorizations()) {
-            var evaluation = new AuthorizationEvaluation(i++, authorization, this, result);
+        for (var indexedAuthorization : selectAuthorizations(operationUrl, phase)) {
+            Authorization authorization = indexedAuthorization.authorization();
+            var evaluation = new AuthorizationEvaluation(indexedAuthorization.index(), authorization, this, result);
             evaluation.traceStart();
             if (!evaluation.isApplicableToAction(operationUrl)
                     || !evaluation.isApplicableToPhase(nonStrict(phase))
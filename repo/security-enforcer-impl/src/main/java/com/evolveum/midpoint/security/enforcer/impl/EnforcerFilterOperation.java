@@ -148,12 +148,13 @@ class EnforcerFilterOperation<T, F> extends EnforcerOperation {
             queryItemsSpec.addRequiredItems(origFilter); // MID-3916
             tracePartialOperationStarted();
 
-            int i = 0;
-            for (Authorization authorization : getAuthorizations()) {
+            // Phase selector may be strict, so the phase is checked for each authorization below.
+            for (var indexedAuthorization : selectAuthorizations(operationUrls, null)) {
 
+                Authorization authorization = indexedAuthorization.authorization();
                 AuthorizationFilterEvaluation<T> autzEvaluation;
                 autzEvaluation = new AuthorizationFilterEvaluation<>(
-                        i++,
+                        indexedAuthorization.index(),
                         filterType,
                         origFilter,
                         authorization,
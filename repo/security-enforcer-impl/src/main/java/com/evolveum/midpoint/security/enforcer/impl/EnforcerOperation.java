@@ -24,10 +24,13 @@ import com.evolveum.midpoint.schema.selector.eval.OwnerResolver;
 import com.evolveum.midpoint.schema.selector.eval.SubjectedEvaluationContext.DelegatorSelection;
 import com.evolveum.midpoint.schema.traces.details.ProcessingTracer;
 import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.CompiledAuthorizations;
+import com.evolveum.midpoint.security.api.CompiledAuthorizations.IndexedAuthorization;
 import com.evolveum.midpoint.security.api.MidPointPrincipal;
 import com.evolveum.midpoint.security.api.OtherPrivilegesLimitations;
 import com.evolveum.midpoint.security.enforcer.api.SecurityEnforcer;
 import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AuthorizationPhaseType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
 
 /**
@@ -91,6 +94,33 @@ class EnforcerOperation {
         }
     }
 
+    /** Cached in the principal; for anonymous access (no principal) it is compiled each time. */
+    private @NotNull CompiledAuthorizations getCompiledAuthorizations() {
+        if (principal != null) {
+            return principal.getCompiledAuthorizations();
+        } else {
+            return CompiledAuthorizations.compile(getAuthorizations());
+        }
+    }
+
+    /**
+     * Returns authorizations that may be applicable to (any of) given actions and given phase (`null` means any phase),
+     * see {@link CompiledAuthorizations#select(String[], AuthorizationPhaseType)}. The caller must check the applicability
+     * anyway.
+     *
+     * If tracing is enabled, all authorizations are returned, so that the trace shows why the others are not applicable.
+     */
+    @NotNull List<IndexedAuthorization> selectAuthorizations(
+            @NotNull String[] actionUrls, @Nullable AuthorizationPhaseType phase) {
+        var compiled = getCompiledAuthorizations();
+        return tracer.isEnabled() ? compiled.getAll() : compiled.select(actionUrls, phase);
+    }
+
+    @NotNull List<IndexedAuthorization> selectAuthorizations(
+            @NotNull String actionUrl, @Nullable AuthorizationPhaseType phase) {
+        return selectAuthorizations(new String[] { actionUrl }, phase);
+    }
+
     String getPrincipalOid() {
         return principal != null ? principal.getOid() : null;
     }
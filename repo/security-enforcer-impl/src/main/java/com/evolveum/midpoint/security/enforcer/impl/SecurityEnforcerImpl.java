@@ -284,9 +284,9 @@ public class SecurityEnforcerImpl implements SecurityEnforcer {
 
         EnforcerOperation ctx = new EnforcerOperation(midPointPrincipal, Options.create(), beans, task);
         ItemSecurityConstraintsImpl itemConstraints = new ItemSecurityConstraintsImpl();
-        int i = 0;
-        for (Authorization autz : ctx.getAuthorizations()) {
-            var evaluation = new AuthorizationEvaluation(i++, autz, ctx, result);
+        for (var indexedAutz : ctx.selectAuthorizations(operationUrl, REQUEST)) {
+            Authorization autz = indexedAutz.authorization();
+            var evaluation = new AuthorizationEvaluation(indexedAutz.index(), autz, ctx, result);
             evaluation.traceStart();
             if (evaluation.isApplicableToAction(operationUrl)
                     && evaluation.isApplicableToPhase(nonStrict(REQUEST))
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.security.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import static com.evolveum.midpoint.security.api.AuthorizationConstants.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.CompiledAuthorizations;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.tools.testng.PerformanceTestClassMixin;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Compares the selection of authorizations applicable to an action (and phase) done by going through all of them
+ * with the selection using {@link CompiledAuthorizations}.
+ *
+ * The authorization set mimics a delegated administrator: a few hundred authorizations, each for one to three actions
+ * out of several dozens of GUI, REST and model actions, some of them limited to a phase, and a couple of `#all` ones.
+ *
+ * The test is not part of automatically run tests (it is not mentioned in suite XMLs).
+ * The correctness of the selection is checked by {@link TestCompiledAuthorizations}.
+ */
+public class CompiledAuthorizationsPerfTest extends AbstractUnitTest implements PerformanceTestClassMixin {
+
+    private static final int AUTHORIZATIONS = 300;
+    private static final int ACTIONS = 60;
+    private static final int ALL_ACTION_AUTHORIZATIONS = 2;
+    private static final int ITERATIONS = 200_000;
+
+    private final List<String> actionUrls = new ArrayList<>();
+    private final List<Authorization> authorizations = new ArrayList<>();
+
+    @BeforeClass
+    public void setup() throws Exception {
+        PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+
+        for (int i = 0; i < ACTIONS; i++) {
+            actionUrls.add(switch (i % 3) {
+                case 0 -> NS_AUTHORIZATION_UI + "#action" + i;
+                case 1 -> NS_AUTHORIZATION_REST + "#action" + i;
+                default -> NS_AUTHORIZATION_MODEL + "#action" + i;
+            });
+        }
+
+        Random random = new Random(42); // to be reproducible
+        for (int i = 0; i < AUTHORIZATIONS; i++) {
+            AuthorizationType bean = new AuthorizationType()
+                    .name("autz-" + i);
+            if (i < ALL_ACTION_AUTHORIZATIONS) {
+                bean.getAction().add(AUTZ_ALL_URL);
+                bean.setDecision(AuthorizationDecisionType.DENY);
+            } else {
+                int actions = 1 + random.nextInt(3);
+                for (int j = 0; j < actions; j++) {
+                    bean.getAction().add(actionUrls.get(random.nextInt(ACTIONS)));
+                }
+            }
+            switch (random.nextInt(4)) {
+                case 0 -> bean.setPhase(AuthorizationPhaseType.REQUEST);
+                case 1 -> bean.setPhase(AuthorizationPhaseType.EXECUTION);
+                default -> { } // both phases
+            }
+            bean.getObject().add(
+                    new OwnedObjectSelectorType()
+                            .type(random.nextBoolean() ? UserType.COMPLEX_TYPE : RoleType.COMPLEX_TYPE));
+            authorizations.add(Authorization.create(bean, "role-" + (i / 10)));
+        }
+    }
+
+    @Test
+    public void test200CompareSelection() {
+        CompiledAuthorizations compiled = CompiledAuthorizations.compile(authorizations);
+
+        long applicable = 0;
+        Stopwatch linearWatch = stopwatch("linear", "Selecting authorizations by going through all of them");
+        try (Split ignored = linearWatch.start()) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                applicable += selectLinearly(actionUrls.get(i % ACTIONS), phaseFor(i)).size();
+            }
+        }
+
+        long applicableCompiled = 0;
+        Stopwatch compiledWatch = stopwatch("compiled", "Selecting authorizations using the compiled form");
+        try (Split ignored = compiledWatch.start()) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                applicableCompiled += compiled.select(actionUrls.get(i % ACTIONS), phaseFor(i)).size();
+            }
+        }
+
+        assertEquals("Wrong number of applicable authorizations", applicable, applicableCompiled);
+        report(String.format("%d selections over %d authorizations: linear %.1f ms, compiled %.1f ms",
+                ITERATIONS, AUTHORIZATIONS, linearWatch.getTotal() / 1e6, compiledWatch.getTotal() / 1e6));
+    }
+
+    @Test
+    public void test300Compile() {
+        int size = 0;
+        Stopwatch watch = stopwatch("compile", "Compiling the authorizations");
+        for (int i = 0; i < 1000; i++) {
+            try (Split ignored = watch.start()) {
+                size += CompiledAuthorizations.compile(authorizations).size();
+            }
+        }
+        assertEquals("Wrong total size", 1000 * AUTHORIZATIONS, size);
+        report(String.format("Compilation of %d authorizations: %.1f us on average",
+                AUTHORIZATIONS, watch.getTotal() / 1e3 / watch.getCounter()));
+    }
+
+    /** This is how the authorizations were selected before {@link CompiledAuthorizations} were introduced. */
+    private List<Integer> selectLinearly(String actionUrl, AuthorizationPhaseType phase) {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < authorizations.size(); i++) {
+            Authorization authorization = authorizations.get(i);
+            List<String> actions = authorization.getAction();
+            if ((actions.contains(actionUrl) || actions.contains(AUTZ_ALL_URL))
+                    && (phase == null || authorization.matchesPhase(phase))) {
+                selected.add(i);
+            }
+        }
+        return selected;
+    }
+
+    private void report(String message) {
+        System.out.println(message);
+        logger.info(message);
+    }
+
+    private static AuthorizationPhaseType phaseFor(int i) {
+        return i % 2 == 0 ? AuthorizationPhaseType.REQUEST : AuthorizationPhaseType.EXECUTION;
+    }
+}
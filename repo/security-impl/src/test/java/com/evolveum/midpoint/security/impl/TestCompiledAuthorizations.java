@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.security.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.security.api.AuthorizationConstants.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.security.api.Authorization;
+import com.evolveum.midpoint.security.api.CompiledAuthorizations;
+import com.evolveum.midpoint.security.api.CompiledAuthorizations.IndexedAuthorization;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Checks that {@link CompiledAuthorizations} select the same authorizations (in the same order and with the same indices)
+ * as going through all of them does. See also {@link CompiledAuthorizationsPerfTest}.
+ */
+public class TestCompiledAuthorizations extends AbstractUnitTest {
+
+    private static final String ACTION_READ = NS_AUTHORIZATION_MODEL + "#read";
+    private static final String ACTION_ADD = NS_AUTHORIZATION_MODEL + "#add";
+    private static final String ACTION_MODIFY = NS_AUTHORIZATION_MODEL + "#modify";
+    private static final String ACTION_UNKNOWN = NS_AUTHORIZATION_MODEL + "#unknown";
+
+    private static final AuthorizationPhaseType[] PHASES = {
+            null, AuthorizationPhaseType.REQUEST, AuthorizationPhaseType.EXECUTION };
+
+    @BeforeClass
+    public void setup() throws Exception {
+        PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+    }
+
+    @Test
+    public void test100Empty() {
+        when("empty authorizations are compiled");
+        CompiledAuthorizations compiled = CompiledAuthorizations.compile(List.of());
+
+        then("nothing is selected");
+        assertThat(compiled.size()).isZero();
+        for (AuthorizationPhaseType phase : PHASES) {
+            assertThat(compiled.select(ACTION_READ, phase)).isEmpty();
+            assertThat(compiled.select(new String[0], phase)).isEmpty();
+        }
+    }
+
+    @Test
+    public void test110MultiActionAuthorizations() {
+        given("authorizations with multiple actions, duplicate actions, phases and `#all` action");
+        List<Authorization> authorizations = List.of(
+                authorization(null, ACTION_READ, ACTION_ADD), // 0
+                authorization(AuthorizationPhaseType.REQUEST, ACTION_ADD, ACTION_MODIFY, ACTION_ADD), // 1
+                authorization(AuthorizationPhaseType.EXECUTION, AUTZ_ALL_URL), // 2
+                authorization(AuthorizationPhaseType.EXECUTION, ACTION_MODIFY), // 3
+                authorization(null, ACTION_READ, AUTZ_ALL_URL)); // 4
+
+        when("they are compiled");
+        CompiledAuthorizations compiled = CompiledAuthorizations.compile(authorizations);
+
+        then("selection works for all phases, including none");
+        assertThat(compiled.size()).isEqualTo(5);
+        assertThat(indices(compiled.select(ACTION_READ, null))).containsExactly(0, 2, 4);
+        assertThat(indices(compiled.select(ACTION_READ, AuthorizationPhaseType.REQUEST))).containsExactly(0, 4);
+        assertThat(indices(compiled.select(ACTION_ADD, null))).containsExactly(0, 1, 2, 4);
+        assertThat(indices(compiled.select(ACTION_ADD, AuthorizationPhaseType.REQUEST))).containsExactly(0, 1, 4);
+        assertThat(indices(compiled.select(ACTION_ADD, AuthorizationPhaseType.EXECUTION))).containsExactly(0, 2, 4);
+        assertThat(indices(compiled.select(ACTION_UNKNOWN, null))).containsExactly(2, 4);
+
+        then("selection by multiple actions returns each authorization once, in the original order");
+        assertThat(indices(compiled.select(new String[] { ACTION_MODIFY, ACTION_READ }, null)))
+                .containsExactly(0, 1, 2, 3, 4);
+        assertThat(indices(compiled.select(new String[] { ACTION_MODIFY, ACTION_ADD }, AuthorizationPhaseType.EXECUTION)))
+                .containsExactly(0, 2, 3, 4);
+
+        then("the authorizations themselves are returned");
+        for (IndexedAuthorization indexed : compiled.getAll()) {
+            assertThat(indexed.authorization()).isSameAs(authorizations.get(indexed.index()));
+        }
+    }
+
+    @Test
+    public void test200SelectionIsTheSameAsLinear() {
+        given("pseudo-random authorizations and actions");
+        List<String> actionUrls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            actionUrls.add(NS_AUTHORIZATION_UI + "#action" + i);
+        }
+        Random random = new Random(42); // to be reproducible
+        List<Authorization> authorizations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String[] actions = new String[random.nextInt(4)]; // may be empty
+            for (int j = 0; j < actions.length; j++) {
+                actions[j] = random.nextInt(30) == 0 ? AUTZ_ALL_URL : actionUrls.get(random.nextInt(actionUrls.size()));
+            }
+            authorizations.add(authorization(PHASES[random.nextInt(PHASES.length)], actions));
+        }
+
+        when("they are compiled");
+        CompiledAuthorizations compiled = CompiledAuthorizations.compile(authorizations);
+
+        then("the selection is the same as when going through all of them, also when repeated (i.e. cached)");
+        for (int round = 0; round < 2; round++) {
+            for (String actionUrl : actionUrls) {
+                for (AuthorizationPhaseType phase : PHASES) {
+                    assertThat(indices(compiled.select(actionUrl, phase)))
+                            .as("authorizations for %s in %s", actionUrl, phase)
+                            .isEqualTo(selectLinearly(authorizations, new String[] { actionUrl }, phase));
+                }
+            }
+            for (int i = 0; i < actionUrls.size(); i++) {
+                String[] actions = { actionUrls.get(i), actionUrls.get((i * 7 + 3) % actionUrls.size()) };
+                for (AuthorizationPhaseType phase : PHASES) {
+                    assertThat(indices(compiled.select(actions, phase)))
+                            .as("authorizations for %s in %s", Arrays.toString(actions), phase)
+                            .isEqualTo(selectLinearly(authorizations, actions, phase));
+                }
+            }
+        }
+    }
+
+    private static Authorization authorization(AuthorizationPhaseType phase, String... actions) {
+        AuthorizationType bean = new AuthorizationType()
+                .phase(phase);
+        bean.getAction().addAll(List.of(actions));
+        return Authorization.create(bean, "test");
+    }
+
+    /** This is how the authorizations were selected before {@link CompiledAuthorizations} were introduced. */
+    private static List<Integer> selectLinearly(
+            List<Authorization> authorizations, String[] actionUrls, AuthorizationPhaseType phase) {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < authorizations.size(); i++) {
+            Authorization authorization = authorizations.get(i);
+            List<String> actions = authorization.getAction();
+            if ((actions.contains(AUTZ_ALL_URL) || Arrays.stream(actionUrls).anyMatch(actions::contains))
+                    && (phase == null || authorization.matchesPhase(phase))) {
+                selected.add(i);
+            }
+        }
+        return selected;
+    }
+
+    private static List<Integer> indices(List<IndexedAuthorization> authorizations) {
+        return authorizations.stream()
+                .map(IndexedAuthorization::index)
+                .toList();
+    }
+}
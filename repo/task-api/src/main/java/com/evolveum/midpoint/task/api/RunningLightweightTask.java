@@ -30,9 +30,17 @@ public interface RunningLightweightTask extends RunningTask {
 
     /**
      * Request the start of the execution of this task's handler.
-     * The handler is executed asynchronously.
+     * The handler is executed asynchronously, in a platform thread.
      */
-    void startLightweightHandler();
+    default void startLightweightHandler() {
+        startLightweightHandler(false);
+    }
+
+    /**
+     * Request the start of the execution of this task's handler.
+     * The handler is executed asynchronously, in a virtual thread if requested (and if supported by the JVM).
+     */
+    void startLightweightHandler(boolean virtualThread);
 
     /**
      * Was the task requested to start? (It may or may not actually started.)
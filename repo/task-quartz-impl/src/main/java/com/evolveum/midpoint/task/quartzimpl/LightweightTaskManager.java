@@ -14,27 +14,77 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 
 /**
  * Manages lightweight asynchronous tasks.
  *
+ * Lightweight task handlers run either in platform threads (from a cached pool) or in virtual threads.
+ * Virtual threads are available since Java 21. As midPoint is compiled for Java 17, they are created
+ * via reflection; if they are not available, platform threads are used instead.
+ *
  * TODO finish revision of this class
  */
 @Component
 public class LightweightTaskManager {
 
+    private static final Trace LOGGER = TraceManager.getTrace(LightweightTaskManager.class);
+
+    private static final String VIRTUAL_THREAD_NAME_PREFIX = "midpoint-virtual-worker-";
+
     @Autowired private LocalNodeState localNodeState;
 
     private final ExecutorService lightweightHandlersExecutor = Executors.newCachedThreadPool();
 
-    Future<?> submit(Runnable r) {
-        return lightweightHandlersExecutor.submit(r);
+    /** Created on first use. Guarded by `this`. */
+    private ExecutorService virtualThreadsExecutor;
+
+    /** True if we found that virtual threads are not available in this JVM. Guarded by `this`. */
+    private boolean virtualThreadsUnavailable;
+
+    Future<?> submit(Runnable r, boolean virtualThread) {
+        ExecutorService virtualExecutor = virtualThread ? getVirtualThreadsExecutor() : null;
+        if (virtualExecutor != null) {
+            return virtualExecutor.submit(r);
+        } else {
+            return lightweightHandlersExecutor.submit(r);
+        }
+    }
+
+    private synchronized ExecutorService getVirtualThreadsExecutor() {
+        if (virtualThreadsExecutor == null && !virtualThreadsUnavailable) {
+            try {
+                virtualThreadsExecutor = createVirtualThreadsExecutor();
+                LOGGER.info("Created executor for lightweight tasks running in virtual threads");
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warn("Virtual threads are not available in this JVM ({}), platform threads will be used instead", e.toString());
+                LOGGER.debug("Details of the exception", e);
+                virtualThreadsUnavailable = true;
+            }
+        }
+        return virtualThreadsExecutor;
+    }
+
+    /**
+     * Equivalent of `Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory())`
+     * that can be compiled for Java 17.
+     */
+    private static ExecutorService createVirtualThreadsExecutor() throws ReflectiveOperationException {
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        builder = builderClass.getMethod("name", String.class, long.class)
+                .invoke(builder, VIRTUAL_THREAD_NAME_PREFIX, 1L);
+        ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
     }
 
     public void waitForTransientChildrenAndCloseThem(RunningTask task, OperationResult result) {
@@ -179,8 +179,11 @@ public class ClusterExecutionHelperImpl implements ClusterExecutionHelper {
                 try {
                     WebClient client = getOrCreateClient(node, options, context);
                     if (client != null) {
-                        resetClientForUse(client, options, context);
-                        code.execute(client, node, result);
+                        // The client is shared by all threads talking to the node, see getOrCreateClient.
+                        synchronized (client) {
+                            resetClientForUse(client, options, context);
+                            code.execute(client, node, result);
+                        }
                     } else {
                         result.recordStatus(OperationResultStatus.NOT_APPLICABLE, "Node " + nodeIdentifier +
                                 " couldn't be contacted. Maybe URL is not known?"); // todo better error reporting
@@ -12,6 +12,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.xml.bind.JAXBElement;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -28,6 +29,7 @@ import com.evolveum.midpoint.prism.crypto.EncryptionException;
 import com.evolveum.midpoint.prism.delta.ChangeType;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.schema.DeltaConvertor;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
@@ -39,6 +41,8 @@ import com.evolveum.midpoint.util.QNameUtil;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.api_types_3.ExecuteScriptResponseType;
+import com.evolveum.midpoint.xml.ns._public.common.api_types_3.ObjectDeltaListType;
+import com.evolveum.midpoint.xml.ns._public.common.api_types_3.ObjectDeltaOperationListType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 import com.evolveum.midpoint.xml.ns._public.model.scripting_3.PipelineItemType;
 import com.evolveum.prism.xml.ns._public.query_3.QueryType;
@@ -631,6 +635,60 @@ public abstract class TestAbstractRestService extends RestServiceInitializer {
         getDummyAuditService().assertLoginLogout(SchemaConstants.CHANNEL_REST_URI);
     }
 
+    @Test
+    public void test210searchAllUsersStreaming() {
+        WebClient client = prepareClient();
+        client.path("/users/search/stream");
+
+        when();
+        Response response = client.post(new QueryType());
+
+        then();
+        displayResponse(response);
+
+        assertStatus(response, 200);
+        String body = response.readEntity(String.class);
+        assertTrue("Administrator is not in the response", body.contains(SystemObjectsType.USER_ADMINISTRATOR.value()));
+        assertTrue("Jack is not in the response", body.contains(USER_JACK_OID));
+
+        displayDumpable("Audit", getDummyAuditService());
+        getDummyAuditService().assertRecords(2);
+        getDummyAuditService().assertLoginLogout(SchemaConstants.CHANNEL_REST_URI);
+    }
+
+    /** Cyclops can use REST but cannot read users, so nothing should be returned. */
+    @Test
+    public void test212searchUsersByTypeStreamingByCyclops() {
+        WebClient client = prepareClient(USER_CYCLOPS_USERNAME, USER_CYCLOPS_PASSWORD);
+        client.path("/users/stream");
+
+        when();
+        Response response = client.get();
+
+        then();
+        displayResponse(response);
+
+        assertStatus(response, 200);
+        String body = response.readEntity(String.class);
+        assertFalse("Jack is in the response", body.contains(USER_JACK_OID));
+    }
+
+    /** Empty NDJSON result has no lines at all. */
+    @Test
+    public void test214searchUsersStreamingAsNdjsonByCyclops() {
+        WebClient client = prepareClient(USER_CYCLOPS_USERNAME, USER_CYCLOPS_PASSWORD);
+        client.path("/users/stream");
+        client.replaceHeader(HttpHeaders.ACCEPT, "application/x-ndjson");
+
+        when();
+        Response response = client.get();
+
+        then();
+        assertStatus(response, 200);
+        String body = response.readEntity(String.class);
+        assertTrue("Response is not empty: '" + body + "'", body == null || body.isEmpty());
+    }
+
     @Test
     public void test401AddUserTemplateOverwrite() {
         WebClient client = prepareClient();
@@ -1151,6 +1209,98 @@ public abstract class TestAbstractRestService extends RestServiceInitializer {
         assertEquals("Wrong validTo", expectedValidTo, jackAfter.getActivation().getValidTo());
     }
 
+    @Test
+    public void test540ExecuteChangesInBulk() throws Exception {
+        WebClient client = prepareClient();
+        client.path("/rpc/executeChanges");
+        client.query("threads", 2);
+
+        String nonExistingOid = "8f3ac2a4-5a6c-4e0a-9a5e-7c0bd5e2c1f0";
+        ObjectDeltaListType deltaList = new ObjectDeltaListType();
+        deltaList.getDelta().add(DeltaConvertor.toObjectDeltaType(
+                deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("modified in bulk")
+                        .asObjectDelta(USER_JACK_OID)));
+        deltaList.getDelta().add(DeltaConvertor.toObjectDeltaType(
+                deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("does not exist")
+                        .asObjectDelta(nonExistingOid)));
+
+        when();
+        Response response = client.post(deltaList);
+
+        then();
+        displayResponse(response);
+        assertStatus(response, 200);
+
+        ObjectDeltaOperationListType responseData = response.readEntity(ObjectDeltaOperationListType.class);
+        List<ObjectDeltaOperationType> deltaOperations = responseData.getDeltaOperation();
+        assertEquals("Wrong # of delta operations", 2, deltaOperations.size());
+
+        assertEquals("Wrong OID in first result", USER_JACK_OID, deltaOperations.get(0).getObjectOid());
+        assertEquals("Wrong status in first result",
+                OperationResultStatusType.SUCCESS, deltaOperations.get(0).getExecutionResult().getStatus());
+        assertEquals("Wrong OID in second result", nonExistingOid, deltaOperations.get(1).getObjectOid());
+        assertEquals("Wrong status in second result",
+                OperationResultStatusType.FATAL_ERROR, deltaOperations.get(1).getExecutionResult().getStatus());
+
+        UserType jackAfter = getRepositoryService()
+                .getObject(UserType.class, USER_JACK_OID, null, new OperationResult("getObject")).asObjectable();
+        assertEquals("Wrong description", "modified in bulk", jackAfter.getDescription());
+
+        displayDumpable("Audit", getDummyAuditService());
+        getDummyAuditService().assertLoginLogout(SchemaConstants.CHANNEL_REST_URI);
+    }
+
+    /** A handled error in one of the deltas must not replace the list of delta operations by the operation result. */
+    @Test
+    public void test541ExecuteChangesInBulkHandledError() throws Exception {
+        WebClient client = prepareClient();
+        client.path("/rpc/executeChanges");
+        client.query("options", "raw");
+        client.query("threads", 2);
+
+        String shadowOid = "1d4c7b2e-3f9a-4c61-8e2d-5b0a9f6c3e17";
+        ShadowType shadow = new ShadowType()
+                .oid(shadowOid)
+                .name("uid=bulk,ou=people,dc=example,dc=com")
+                .resourceRef("ef2bc95b-76e0-59e2-86d6-3d4f02d3ffff", ResourceType.COMPLEX_TYPE) // does not exist
+                .objectClass(SchemaConstants.RI_ACCOUNT_OBJECT_CLASS);
+        ObjectDeltaListType deltaList = new ObjectDeltaListType();
+        deltaList.getDelta().add(DeltaConvertor.toObjectDeltaType(
+                deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("modified in bulk again")
+                        .asObjectDelta(USER_JACK_OID)));
+        deltaList.getDelta().add(DeltaConvertor.toObjectDeltaType(
+                shadow.asPrismObject().createAddDelta()));
+
+        when();
+        Response response = client.post(deltaList);
+
+        then();
+        displayResponse(response);
+        // not 240 (handled error), as the results of individual deltas are in the response
+        assertStatus(response, 200);
+
+        ObjectDeltaOperationListType responseData = response.readEntity(ObjectDeltaOperationListType.class);
+        List<ObjectDeltaOperationType> deltaOperations = responseData.getDeltaOperation();
+        assertEquals("Wrong # of delta operations", 2, deltaOperations.size());
+
+        assertEquals("Wrong OID in first result", USER_JACK_OID, deltaOperations.get(0).getObjectOid());
+        assertEquals("Wrong status in first result",
+                OperationResultStatusType.SUCCESS, deltaOperations.get(0).getExecutionResult().getStatus());
+        assertEquals("Wrong OID in second result", shadowOid, deltaOperations.get(1).getObjectOid());
+        assertEquals("Wrong status in second result",
+                OperationResultStatusType.HANDLED_ERROR, deltaOperations.get(1).getExecutionResult().getStatus());
+
+        // the shadow was added to the repository, as the error was handled
+        getRepositoryService()
+                .getObject(ShadowType.class, shadowOid, null, new OperationResult("getObject"));
+
+        displayDumpable("Audit", getDummyAuditService());
+        getDummyAuditService().assertLoginLogout(SchemaConstants.CHANNEL_REST_URI);
+    }
+
     // this is just a minimalistic sketch; adapt and polish as necessary
     private static class ItemProcessingResult<T extends OperationSpecificData> {
         String oid;
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.testing.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.apache.cxf.common.util.Base64Utility;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.common.rest.MidpointAbstractProvider;
+import com.evolveum.midpoint.gui.test.TestMidPointSpringApplication;
+import com.evolveum.midpoint.model.api.util.ClusterServiceConsts;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheInvalidationEventSpecification;
+import com.evolveum.midpoint.repo.api.CacheInvalidationListener;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.security.api.RestAuthenticationMethod;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.NodeType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests the batched cache invalidation endpoint of the cluster REST service
+ * (see {@link ClusterServiceConsts#EVENT_INVALIDATION_BATCH}).
+ *
+ * The requests are sent from this node to itself, authenticated by the local node secret.
+ */
+public class TestClusterRestService extends RestServiceInitializer {
+
+    private static final String CLUSTER_ENDPOINT_ADDRESS = "http://localhost:"
+            + TestMidPointSpringApplication.DEFAULT_PORT + "/ws/cluster";
+
+    @Autowired private CacheDispatcher cacheDispatcher;
+
+    private final RecordingListener listener = new RecordingListener();
+
+    @BeforeMethod
+    public void registerListener() {
+        cacheDispatcher.registerCacheInvalidationListener(listener);
+        listener.events.clear();
+    }
+
+    @AfterMethod
+    public void unregisterListener() {
+        cacheDispatcher.unregisterCacheInvalidationListener(listener);
+    }
+
+    @Test
+    public void test100InvalidationBatch() throws Exception {
+        given("local node is recognized as a cluster node");
+        allowLocalNodeCalls();
+
+        when("a batch with specific, type-wide and global invalidations is sent");
+        WebClient client = prepareClusterClient();
+        client.path(ClusterServiceConsts.EVENT_INVALIDATION_BATCH);
+        Response response = client.post("users/" + USER_ADMINISTRATOR_OID + "\nroles\n\n*\n");
+
+        then("all the invalidations are dispatched locally (not cluster-wide)");
+        assertStatus(response, 200);
+        assertThat(listener.events).containsExactly(
+                new Event(UserType.class, USER_ADMINISTRATOR_OID, false),
+                new Event(RoleType.class, null, false),
+                new Event(null, null, false));
+    }
+
+    @Test
+    public void test110EmptyInvalidationBatch() throws Exception {
+        given("local node is recognized as a cluster node");
+        allowLocalNodeCalls();
+
+        when("an empty batch is sent");
+        WebClient client = prepareClusterClient();
+        client.path(ClusterServiceConsts.EVENT_INVALIDATION_BATCH);
+        Response response = client.post("");
+
+        then("nothing is invalidated");
+        assertStatus(response, 200);
+        assertThat(listener.events).isEmpty();
+    }
+
+    @Test
+    public void test120InvalidationBatchWithoutNodeAuthentication() {
+        when("a batch is sent by a regular user");
+        WebClient client = WebClient.create(CLUSTER_ENDPOINT_ADDRESS);
+        client.type(MediaType.TEXT_PLAIN);
+        createAuthorizationHeader(client, USER_ADMINISTRATOR_USERNAME, USER_ADMINISTRATOR_PASSWORD);
+        client.path(ClusterServiceConsts.EVENT_INVALIDATION_BATCH);
+        Response response = client.post("*");
+
+        then("it is rejected");
+        assertThat(response.getStatusInfo().getFamily()).isNotEqualTo(Response.Status.Family.SUCCESSFUL);
+        assertThat(listener.events).isEmpty();
+    }
+
+    /**
+     * Node authentication matches the caller by IP address (or host name); here the caller is on the loopback interface.
+     * We add the addresses right before the call, as the node registration may overwrite them.
+     */
+    private void allowLocalNodeCalls() throws Exception {
+        OperationResult result = getTestOperationResult();
+        repositoryService.modifyObject(NodeType.class, taskManager.getLocalNode().getOid(),
+                deltaFor(NodeType.class)
+                        .item(NodeType.F_IP_ADDRESS).add("127.0.0.1", "0:0:0:0:0:0:0:1")
+                        .asItemDeltas(),
+                result);
+    }
+
+    private WebClient prepareClusterClient() throws Exception {
+        WebClient client = WebClient.create(CLUSTER_ENDPOINT_ADDRESS);
+        client.type(MediaType.TEXT_PLAIN);
+        String secret = protector.decryptString(taskManager.getLocalNode().getSecret());
+        client.header("Authorization",
+                RestAuthenticationMethod.CLUSTER.getMethod() + " " + Base64Utility.encode(secret.getBytes()));
+        return client;
+    }
+
+    @Override
+    protected String getAcceptHeader() {
+        return MediaType.APPLICATION_JSON;
+    }
+
+    @Override
+    protected String getContentType() {
+        return MediaType.APPLICATION_JSON;
+    }
+
+    @Override
+    protected MidpointAbstractProvider getProvider() {
+        return jsonProvider;
+    }
+
+    private record Event(Class<?> type, String oid, boolean clusterwide) {
+    }
+
+    private static class RecordingListener implements CacheInvalidationListener {
+
+        private final List<Event> events = new ArrayList<>();
+
+        @Override
+        public Collection<CacheInvalidationEventSpecification> getEventSpecifications() {
+            return CacheInvalidationEventSpecification.ALL_AVAILABLE_EVENTS;
+        }
+
+        @Override
+        public synchronized <O extends ObjectType> void invalidate(
+                Class<O> type, String oid, boolean clusterwide, CacheInvalidationContext context) {
+            events.add(new Event(type, oid, clusterwide));
+        }
+    }
+}
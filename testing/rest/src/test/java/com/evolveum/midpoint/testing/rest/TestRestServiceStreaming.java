@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.testing.rest;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.rest.MidpointAbstractProvider;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Exports a large number of users by the streaming search.
+ *
+ * This test is not part of the default REST suite, as it takes long. It is meant to be run with a heap that is
+ * too small to hold all the users at once, using the `restStreamingTest` profile:
+ *
+ * ----
+ * mvn verify -P restStreamingTest -pl testing/rest
+ * ----
+ */
+public class TestRestServiceStreaming extends RestServiceInitializer {
+
+    private static final int USERS = 100_000;
+    private static final String USER_NAME_PREFIX = "stream-user-";
+
+    @Override
+    public void initSystem(Task initTask, OperationResult result) throws Exception {
+        super.initSystem(initTask, result);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < USERS; i++) {
+            repositoryService.addObject(
+                    new UserType()
+                            .name(String.format(USER_NAME_PREFIX + "%06d", i))
+                            .givenName("Given " + i)
+                            .familyName("Family " + i)
+                            .emailAddress(USER_NAME_PREFIX + i + "@example.com")
+                            .asPrismObject(),
+                    null, result);
+        }
+        logger.info("{} users created in {} ms", USERS, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Besides the number of the users, checks that the heap retained while streaming (measured after GC)
+     * grows less than the size of the result, i.e. that the result is not collected in memory.
+     */
+    @Test
+    public void test100ExportUsersAsNdjson() throws Exception {
+        WebClient client = prepareClient(USER_ADMINISTRATOR_USERNAME, USER_ADMINISTRATOR_PASSWORD);
+        client.path("/users/stream");
+        client.replaceHeader(HttpHeaders.ACCEPT, "application/x-ndjson");
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long baselineHeap = getUsedHeapAfterGc(memory);
+        long maxUsedHeap = baselineHeap;
+        long streamedChars = 0;
+
+        when();
+        long start = System.currentTimeMillis();
+        Response response = client.get();
+
+        then();
+        assertStatus(response, 200);
+
+        int streamedUsers = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.readEntity(InputStream.class), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                streamedChars += line.length() + 1;
+                if (line.isBlank()) {
+                    continue;
+                }
+                assertTrue("Not a single-line JSON object: " + line, line.startsWith("{") && line.endsWith("}"));
+                if (line.contains(USER_NAME_PREFIX)) {
+                    streamedUsers++;
+                    if (streamedUsers % 10_000 == 0) {
+                        maxUsedHeap = Math.max(maxUsedHeap, getUsedHeapAfterGc(memory));
+                    }
+                }
+            }
+        }
+
+        long heapGrowth = maxUsedHeap - baselineHeap;
+        logger.info("{} users ({} MB) streamed in {} ms, max heap growth observed: {} MB, max heap: {} MB",
+                streamedUsers, streamedChars / 1024 / 1024, System.currentTimeMillis() - start,
+                heapGrowth / 1024 / 1024, memory.getHeapMemoryUsage().getMax() / 1024 / 1024);
+        assertEquals("Wrong number of streamed users", USERS, streamedUsers);
+        assertTrue("Heap grew by " + heapGrowth + " bytes while streaming " + streamedChars
+                        + " characters, the result seems to be kept in memory",
+                heapGrowth < streamedChars);
+    }
+
+    /** Heap used by live objects; the garbage would make the numbers useless. */
+    private long getUsedHeapAfterGc(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Test
+    public void test110ExportUsersAsXml() throws Exception {
+        WebClient client = prepareClient(USER_ADMINISTRATOR_USERNAME, USER_ADMINISTRATOR_PASSWORD);
+        client.path("/users/stream");
+        client.replaceHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_XML);
+
+        when();
+        Response response = client.get();
+
+        then();
+        assertStatus(response, 200);
+
+        int streamedUsers = 0;
+        boolean closed = false;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.readEntity(InputStream.class), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("<name>" + USER_NAME_PREFIX)) {
+                    streamedUsers++;
+                }
+                if (line.contains("</c:objects>")) {
+                    closed = true;
+                }
+            }
+        }
+
+        assertEquals("Wrong number of streamed users", USERS, streamedUsers);
+        assertTrue("The document was not closed", closed);
+    }
+
+    @Override
+    protected String getAcceptHeader() {
+        return MediaType.APPLICATION_JSON;
+    }
+
+    @Override
+    protected String getContentType() {
+        return MediaType.APPLICATION_JSON;
+    }
+
+    @Override
+    protected MidpointAbstractProvider getProvider() {
+        return jsonProvider;
+    }
+}
@@ -0,0 +1,17 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action;
+
+import com.beust.jcommander.Parameters;
+
+/**
+ * Options for reindexing objects in the repository.
+ * Search options from export are reused, output related options are ignored.
+ */
+@Parameters(resourceBundle = "messages", commandDescriptionKey = "reindex")
+public class ReindexOptions extends ExportOptions {
+}
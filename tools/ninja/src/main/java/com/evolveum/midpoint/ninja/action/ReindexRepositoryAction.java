@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+import com.evolveum.midpoint.ninja.action.worker.ReindexConsumerWorker;
+import com.evolveum.midpoint.ninja.impl.LogTarget;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Reindexes objects in the repository, i.e. rewrites their stored form and derived columns/tables.
+ * This is used e.g. to convert fullObject of existing objects to the currently configured `fullObjectFormat`.
+ */
+public class ReindexRepositoryAction extends AbstractRepositorySearchAction<ReindexOptions, Void> {
+
+    @Override
+    public String getOperationName() {
+        return "reindex objects";
+    }
+
+    @Override
+    public LogTarget getLogTarget() {
+        return LogTarget.SYSTEM_OUT;
+    }
+
+    @Override
+    protected Callable<Void> createConsumer(BlockingQueue<ObjectType> queue, OperationStatus operation) {
+        return () -> {
+            new ReindexConsumerWorker(context, options, queue, operation).run();
+            return null;
+        };
+    }
+}
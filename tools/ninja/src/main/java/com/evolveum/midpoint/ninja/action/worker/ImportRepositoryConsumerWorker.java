@@ -6,6 +6,7 @@
  */
 package com.evolveum.midpoint.ninja.action.worker;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -18,6 +19,7 @@ import com.evolveum.midpoint.ninja.impl.NinjaContext;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.crypto.Protector;
+import com.evolveum.midpoint.repo.api.AddObjectOutcome;
 import com.evolveum.midpoint.repo.api.RepoAddOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -39,22 +41,35 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
         ApplicationContext ctx = context.getApplicationContext();
         Protector protector = ctx.getBean(Protector.class);
 
+        RepoAddOptions opts = createRepoAddOptions(options);
+        int batchSize = options.getBatchSize();
+        // objects waiting to be added in bulk, used only if batch size is greater than 1
+        List<PrismObject<? extends ObjectType>> batch = new ArrayList<>();
+
         try {
             while (!shouldConsumerStop()) {
                 ObjectType object = null;
                 try {
                     object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
                     if (object == null) {
+                        // nothing new in the queue, no reason to keep the collected objects waiting
+                        addObjects(batch, opts);
                         continue;
                     }
                     PrismObject<? extends ObjectType> prismObject = object.asPrismObject();
 
-                    RepoAddOptions opts = createRepoAddOptions(options);
-
                     if (!opts.isAllowUnencryptedValues()) {
                         CryptoUtil.encryptValues(protector, prismObject);
                     }
 
+                    if (batchSize > 1) {
+                        batch.add(prismObject);
+                        if (batch.size() >= batchSize) {
+                            addObjects(batch, opts);
+                        }
+                        continue;
+                    }
+
                     RepositoryService repository = context.getRepository();
                     repository.addObject(prismObject, opts, new OperationResult("Import object"));
 
@@ -64,6 +79,8 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
                     operation.incrementError();
                 }
             }
+
+            addObjects(batch, opts);
         } catch (Exception ex) {
             operation.finish();
 
@@ -77,6 +94,38 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
         }
     }
 
+    /**
+     * Adds the collected objects using the bulk repository operation and clears the batch (always, so that the objects
+     * are not re-sent later). If the whole operation fails, all the objects in the batch are counted as errors.
+     */
+    private void addObjects(List<PrismObject<? extends ObjectType>> batch, RepoAddOptions opts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            RepositoryService repository = context.getRepository();
+            List<AddObjectOutcome> outcomes = repository.addObjects(batch, opts, new OperationResult("Import objects"));
+            for (int i = 0; i < batch.size(); i++) {
+                AddObjectOutcome outcome = outcomes.get(i);
+                if (outcome.isSuccess()) {
+                    operation.incrementTotal();
+                } else {
+                    Exception ex = outcome.exception();
+                    context.getLog().error("Couldn't add object {}, reason: {}", ex, batch.get(i), ex.getMessage());
+                    operation.incrementError();
+                }
+            }
+        } catch (Exception ex) {
+            for (PrismObject<? extends ObjectType> object : batch) {
+                context.getLog().error("Couldn't add object {}, reason: {}", ex, object, ex.getMessage());
+                operation.incrementError();
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
     private RepoAddOptions createRepoAddOptions(ImportOptions options) {
         RepoAddOptions opts = new RepoAddOptions();
         opts.setOverwrite(options.isOverwrite());
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action.worker;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.evolveum.midpoint.ninja.action.ReindexOptions;
+import com.evolveum.midpoint.ninja.impl.Log;
+import com.evolveum.midpoint.ninja.impl.NinjaContext;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Reindexes each object from the queue using modify operation without modifications and with force reindex option.
+ */
+public class ReindexConsumerWorker extends BaseWorker<ReindexOptions, ObjectType> {
+
+    private static final String OPERATION_REINDEX = ReindexConsumerWorker.class.getName() + ".reindex";
+
+    private final Log log;
+
+    public ReindexConsumerWorker(NinjaContext context, ReindexOptions options,
+            BlockingQueue<ObjectType> queue, OperationStatus operation) {
+        super(context, options, queue, operation);
+
+        this.log = context.getLog();
+    }
+
+    @Override
+    public void run() {
+        RepositoryService repository = context.getRepository();
+
+        try {
+            while (!shouldConsumerStop()) {
+                ObjectType object = null;
+                try {
+                    object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
+                    if (object == null) {
+                        continue;
+                    }
+
+                    OperationResult result = new OperationResult(OPERATION_REINDEX);
+                    repository.modifyObject(object.getClass(), object.getOid(), List.of(),
+                            RepoModifyOptions.createForceReindex(), result);
+
+                    operation.incrementTotal();
+                } catch (Exception ex) {
+                    log.error("Couldn't reindex object {}, reason: {}", ex, object, ex.getMessage());
+                    operation.incrementError();
+                }
+            }
+        } finally {
+            markDone();
+
+            if (isWorkersDone()) {
+                operation.finish();
+            }
+        }
+    }
+}
@@ -32,6 +32,8 @@ public enum Command {
 
     VERIFY("verify", VerifyOptions.class, VerifyAction.class),
 
+    REINDEX("reindex", ReindexOptions.class, ReindexRepositoryAction.class),
+
     KEYS("keys", ListKeysOptions.class, ListKeysRepositoryAction.class),
 
     INFO("info", InfoOptions.class, InfoRepositoryAction.class),